@@ -0,0 +1,45 @@
+/* @file BenchmarkRunner.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid benchmarks: entry point
+ *
+ * The benchmarks are not part of the app: the bench directory is not in the sources of the build.
+ * To run them add bench to the sources of a debug or test build (see howto.build),
+ * and call BenchmarkRunner.run() from a tester, off the UI thread.
+ * Each benchmark logs its report lines, and returns them.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+class BenchmarkRunner
+{
+  /** run all the benchmarks
+   * @return the report
+   */
+  static String run()
+  {
+    StringBuilder sb = new StringBuilder();
+    // compare the BH implementations on the stored calibrations
+    sb.append( CalibBenchmark.run( TopoDroidApp.mDData, TDInstance.deviceAddress() ) );
+    // loop closure on grid mazes
+    sb.append( LoopClosureBenchmark.run() );
+    // selection with many line points
+    sb.append( SelectionBenchmark.run() );
+    // lock hold time of the sketch save
+    sb.append( SnapshotBenchmark.run() );
+    // packed and linked line points
+    sb.append( LinePointBenchmark.run() );
+    // write and read PocketTopo files
+    sb.append( PocketTopoBenchmark.run( TopoDroidApp.mData, TDInstance.sid ) );
+    // import synthetic files
+    sb.append( ParserBenchmark.run() );
+    // read packets from a simulated DistoX
+    sb.append( DistoXStreamBenchmark.run( TDInstance.context ) );
+    return sb.toString();
+  }
+}
@@ -0,0 +1,82 @@
+/* @file CalibBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid DistoX calibration: comparison of the BH implementations
+ *
+ * The stored calibrations of a device are computed with the single-precision code
+ * and with the double-precision kernel, linear and non-linear. The report lists,
+ * for each calibration, the iterations, the time, the max difference of the
+ * coefficients, the number of differing coefficient bytes, and the errors.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.List;
+import java.util.Locale;
+
+class CalibBenchmark
+{
+  private static final int REPEAT = 10; // runs of each calibration for the timing
+
+  /** replay the calibrations of a device
+   * @param data    device database
+   * @param device  device address
+   * @return the report
+   */
+  static String run( DeviceHelper data, String device )
+  {
+    StringBuilder sb = new StringBuilder();
+    if ( data == null || device == null ) return sb.toString();
+    List< CalibInfo > calibs = data.selectDeviceCalibsInfo( device );
+    for ( CalibInfo info : calibs ) {
+      long cid = data.getCalibCID( info.name, device );
+      if ( cid < 0 ) continue;
+      List< CalibCBlock > list = data.selectAllGMs( cid, 0, false ); // false: skip negative-grp
+      if ( list.size() < 16 ) continue;
+      for ( int k = 0; k < 2; ++k ) {
+        boolean non_linear = ( k == 1 );
+        CalibAlgoBH calib0 = makeCalib( list, non_linear );
+        CalibAlgoBH calib1 = makeCalib( list, non_linear );
+        int it0 = 0;
+        int it1 = 0;
+        long t0 = System.nanoTime();
+        for ( int r = 0; r < REPEAT; ++r ) it0 = calib0.CalibrateFloat();
+        long t1 = System.nanoTime();
+        for ( int r = 0; r < REPEAT; ++r ) it1 = calib1.Calibrate();
+        long t2 = System.nanoTime();
+        if ( it0 <= 0 || it1 <= 0 ) {
+          sb.append( String.format( Locale.US, "%s %s failed %d %d\n", info.name, (non_linear? "NL" : "L"), it0, it1 ) );
+          continue;
+        }
+        float diff = Math.max( Math.max( calib0.GetAG().MaxDiff( calib1.GetAG() ), calib0.GetAM().MaxDiff( calib1.GetAM() ) ),
+                               Math.max( calib0.GetBG().MaxDiff( calib1.GetBG() ), calib0.GetBM().MaxDiff( calib1.GetBM() ) ) );
+        if ( non_linear ) diff = Math.max( diff, calib0.GetNL().MaxDiff( calib1.GetNL() ) );
+        byte[] coeff0 = calib0.GetCoeff();
+        byte[] coeff1 = calib1.GetCoeff();
+        int nb = 0;
+        for ( int j = 0; j < coeff0.length && j < coeff1.length; ++j ) if ( coeff0[j] != coeff1[j] ) ++ nb;
+        String line = String.format( Locale.US,
+          "%s %s data %d iter %d/%d time %.2f/%.2f ms coeff diff %.2e bytes %d delta %.4f/%.4f BH %.4f/%.4f",
+          info.name, (non_linear? "NL" : "L"), list.size(), it0, it1,
+          (t1-t0)/(1.0e6*REPEAT), (t2-t1)/(1.0e6*REPEAT), diff, nb,
+          calib0.Delta(), calib1.Delta(), calib0.DeltaBH(), calib1.DeltaBH() );
+        TDLog.Log( TDLog.LOG_CALIB, line );
+        sb.append( line ).append( "\n" );
+      }
+    }
+    return sb.toString();
+  }
+
+  private static CalibAlgoBH makeCalib( List< CalibCBlock > list, boolean non_linear )
+  {
+    CalibAlgoBH calib = new CalibAlgoBH( 0, non_linear );
+    calib.Reset( list.size() );
+    for ( CalibCBlock item : list ) calib.AddValues( item );
+    return calib;
+  }
+}
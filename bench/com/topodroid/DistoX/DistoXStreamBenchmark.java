@@ -0,0 +1,202 @@
+/* @file DistoXStreamBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid DistoX input: protocol reads on a simulated DistoX
+ *
+ * The protocol reads the packets of a mock DistoX connection: single shots sent after a delay,
+ * a packet with the sequence bit not flipped, a stall longer than the read timeout,
+ * a packet split by a stall, a memory download burst, and the device turning off.
+ * The report lists the shot latency, the stall times, the burst time, the acknowledgements,
+ * and the packets that were not read as expected.
+ * The benchmark is not run when the packet log is on.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import android.content.Context;
+
+class DistoXStreamBenchmark
+{
+  private static final int SHOTS = 20;    // single shots
+  private static final int BURST = 2000;  // packets of the memory download
+  private static final long DELAY = 30;   // delay of a single shot [ms]
+  private static final long STALL = 2000; // stall in the middle of a packet [ms]
+
+  // device side of the mock connection: the bytes sent by the DistoX
+  private static class MockStream extends InputStream
+  {
+    private final byte[] mQueue = new byte[ 1<<16 ];
+    private int mHead  = 0;
+    private int mCount = 0;
+    private boolean mOff = false;
+
+    synchronized void send( byte[] b, int off, int len )
+    {
+      for ( int k = 0; k < len; ++k ) {
+        while ( mCount == mQueue.length ) {
+          try { wait(); } catch ( InterruptedException e ) { return; }
+        }
+        mQueue[ ( mHead + mCount ) % mQueue.length ] = b[ off + k ];
+        ++ mCount;
+      }
+      notifyAll();
+    }
+
+    synchronized void turnOff()
+    {
+      mOff = true;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized int available() { return mCount; }
+
+    @Override
+    public synchronized int read() throws IOException
+    {
+      byte[] b = new byte[1];
+      return ( read( b, 0, 1 ) < 0 )? -1 : ( b[0] & 0xff );
+    }
+
+    @Override
+    public synchronized int read( byte[] b, int off, int len ) throws IOException
+    {
+      while ( mCount == 0 && ! mOff ) {
+        try { wait(); } catch ( InterruptedException e ) { throw new InterruptedIOException(); }
+      }
+      if ( mCount == 0 ) return -1;
+      int n = Math.min( len, mCount );
+      for ( int k = 0; k < n; ++k ) {
+        b[ off + k ] = mQueue[ mHead ];
+        mHead = ( mHead + 1 ) % mQueue.length;
+      }
+      mCount -= n;
+      notifyAll();
+      return n;
+    }
+
+    @Override
+    public void close() { turnOff(); }
+  }
+
+  // @return a G or M packet with the given sequence bit and x value
+  private static byte[] packet( int type, int seq, int x )
+  {
+    byte[] b = new byte[8];
+    b[0] = (byte)( type | ( ( seq != 0 )? 0x80 : 0 ) );
+    b[1] = (byte)( x & 0xff );
+    b[2] = (byte)( ( x >> 8 ) & 0xff );
+    b[3] = 1;
+    b[4] = 0;
+    b[5] = 2;
+    b[6] = 0;
+    b[7] = 0;
+    return b;
+  }
+
+  // send bytes after a delay
+  private static void sendLater( final MockStream dev, final byte[] b, final int off, final int len, final long delay, final long[] sent )
+  {
+    ( new Thread() {
+      public void run()
+      {
+        TDUtil.slowDown( (int)delay );
+        if ( sent != null ) sent[0] = System.nanoTime();
+        dev.send( b, off, len );
+      }
+    } ).start();
+  }
+
+  /** read packets from a simulated DistoX
+   * @param context  context (for the protocol packet logger)
+   * @return the report
+   */
+  static String run( Context context )
+  {
+    StringBuilder sb = new StringBuilder();
+    if ( TDSetting.mPacketLog ) return sb.toString(); // do not log the mock packets
+    MockStream dev = new MockStream();
+    ByteArrayOutputStream acks = new ByteArrayOutputStream();
+    DistoXProtocol proto = new DistoXProtocol( new DataInputStream( dev ), new DataOutputStream( acks ),
+                                               new Device( "00:00:00:00:00:00", "X310", "mock", null ), context );
+    int errors = 0;
+    int seq = 0;
+    try {
+      // single shots, read with timeout as in the continuous download
+      long[] sent = new long[1];
+      long latency = 0;
+      for ( int k = 0; k < SHOTS; ++k ) {
+        sendLater( dev, packet( 0x02, seq, k ), 0, 8, DELAY, sent );
+        seq ^= 1;
+        int res = proto.readPacket( false );
+        latency += System.nanoTime() - sent[0];
+        if ( res != TopoDroidProtocol.DISTOX_PACKET_G || proto.mGX != k ) ++ errors;
+      }
+      // sequence bit not flipped: the packet is acknowledged and ignored
+      byte[] dup = packet( 0x02, seq^1, 99 );
+      dev.send( dup, 0, 8 );
+      if ( proto.readPacket( false ) != TopoDroidProtocol.DISTOX_PACKET_NONE ) ++ errors;
+      // stall: no packet within the timeout
+      long t0 = System.nanoTime();
+      if ( proto.readPacket( false ) != TopoDroidProtocol.DISTOX_PACKET_NONE ) ++ errors;
+      long stall = System.nanoTime() - t0;
+      // packet split by a stall longer than the timeout: it is completed by a later read
+      byte[] frag = packet( 0x03, seq, 7 );
+      seq ^= 1;
+      dev.send( frag, 0, 3 );
+      sendLater( dev, frag, 3, 5, STALL, null );
+      t0 = System.nanoTime();
+      int res = proto.readPacket( false );
+      long split = System.nanoTime() - t0;
+      for ( int k = 0; k < 3 && res == TopoDroidProtocol.DISTOX_PACKET_NONE; ++k ) res = proto.readPacket( false );
+      if ( res != TopoDroidProtocol.DISTOX_PACKET_M || proto.mMX != 7 ) ++ errors;
+      // memory download: burst of packets, read without timeout
+      final MockStream burst_dev = dev;
+      final int burst_seq = seq;
+      Thread burst = new Thread() {
+        public void run()
+        {
+          int s = burst_seq;
+          for ( int k = 0; k < BURST; ++k ) {
+            burst_dev.send( packet( 0x02, s, k ), 0, 8 );
+            s ^= 1;
+          }
+        }
+      };
+      t0 = System.nanoTime();
+      burst.start();
+      for ( int k = 0; k < BURST; ++k ) {
+        if ( proto.readPacket( true ) != TopoDroidProtocol.DISTOX_PACKET_G || proto.mGX != k ) ++ errors;
+      }
+      long download = System.nanoTime() - t0;
+      try { burst.join(); } catch ( InterruptedException e ) { }
+      // the device turns off
+      dev.turnOff();
+      int off = proto.readPacket( false );
+
+      String line = String.format( Locale.US,
+        "stream Z6 %s shot latency %.2f ms stall %d ms split %d ms burst %d packets %d ms acks %d/%d off %d errors %d",
+        ( TDSetting.mZ6Workaround ? "on" : "off" ), latency / ( 1.0e6 * SHOTS ), stall / 1000000, split / 1000000,
+        BURST, download / 1000000, acks.size(), SHOTS + 2 + BURST, off, errors );
+      TDLog.Log( TDLog.LOG_PROTO, line );
+      sb.append( line ).append( "\n" );
+    } finally {
+      proto.closeIOstreams();
+    }
+    return sb.toString();
+  }
+}
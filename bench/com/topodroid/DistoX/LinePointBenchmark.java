@@ -0,0 +1,144 @@
+/* @file LinePointBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: memory and time of the packed and of the linked line points
+ *
+ * The same lines (100k vertices, one point in three with control-points) are made with
+ * the packed points, as the lines read from file, and with the linked points.
+ * The report lists, for both forms, the memory per vertex, the time to make the lines,
+ * to traverse the points with the point iterator, to shift the lines and to write them
+ * to a data stream, and the selection points after the lines are inserted in a selection
+ * and after a selection query.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+class LinePointBenchmark
+{
+  private static final int LINES  = 2000; // lines
+  private static final int POINTS = 50;   // points of each line
+  private static final int REPEAT = 3;    // runs of each measure
+
+  /** make the lines in packed and linked form and measure them
+   * @return the report
+   */
+  static String run()
+  {
+    StringBuilder sb = new StringBuilder();
+    try {
+      for ( int k = 0; k < 2; ++k ) {
+        String line = measure( k == 0 );
+        TDLog.Log( TDLog.LOG_PATH, line );
+        sb.append( line ).append( "\n" );
+      }
+    } catch ( IOException e ) {
+      TDLog.Error( "line point benchmark I/O error " + e.getMessage() );
+    }
+    return sb.toString();
+  }
+
+  private static String measure( boolean packed ) throws IOException
+  {
+    Runtime runtime = Runtime.getRuntime();
+    DrawingLinePath[] lines = null;
+    long make = Long.MAX_VALUE;
+    long memory = 0;
+    for ( int r = 0; r < REPEAT; ++r ) {
+      lines = null;
+      runtime.gc();
+      long mem0 = runtime.totalMemory() - runtime.freeMemory();
+      long t0 = System.nanoTime();
+      lines = makeLines( packed );
+      long t1 = System.nanoTime();
+      runtime.gc();
+      memory = runtime.totalMemory() - runtime.freeMemory() - mem0;
+      if ( t1 - t0 < make ) make = t1 - t0;
+    }
+
+    long traverse = Long.MAX_VALUE;
+    float sum = 0;
+    for ( int r = 0; r < REPEAT; ++r ) {
+      long t0 = System.nanoTime();
+      for ( DrawingLinePath line : lines ) {
+        for ( DrawingPointLinePath.PointIterator it = line.pointIterator(); it.hasNext(); ) {
+          it.next();
+          sum += it.x + it.y;
+        }
+      }
+      long t1 = System.nanoTime();
+      if ( t1 - t0 < traverse ) traverse = t1 - t0;
+    }
+
+    long shift = Long.MAX_VALUE;
+    for ( int r = 0; r < REPEAT; ++r ) {
+      long t0 = System.nanoTime();
+      for ( DrawingLinePath line : lines ) line.shiftBy( 1, 1 );
+      long t1 = System.nanoTime();
+      if ( t1 - t0 < shift ) shift = t1 - t0;
+    }
+
+    long write = Long.MAX_VALUE;
+    int bytes = 0;
+    for ( int r = 0; r < REPEAT; ++r ) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream( 2 * LINES * POINTS * 13 );
+      DataOutputStream dos = new DataOutputStream( bos );
+      long t0 = System.nanoTime();
+      for ( DrawingLinePath line : lines ) line.pointsToDataStream( dos );
+      dos.flush();
+      long t1 = System.nanoTime();
+      bytes = bos.size();
+      if ( t1 - t0 < write ) write = t1 - t0;
+    }
+
+    Selection selection = new Selection();
+    long t0 = System.nanoTime();
+    for ( DrawingLinePath line : lines ) selection.insertPath( line );
+    long insert = System.nanoTime() - t0;
+    int selection_points = selection.mPoints.size();
+    selection.selectAt( new SelectionSet(), lines[0].getX(), lines[0].getY(), 10, DrawingPath.DRAWING_PATH_LINE );
+    int query_points = selection.mPoints.size();
+    int nr_packed = 0;
+    for ( DrawingLinePath line : lines ) if ( line.isPacked() ) ++ nr_packed;
+
+    int vertices = LINES * POINTS;
+    return String.format( Locale.US,
+      "lines %s vertices %d memory %.1f bytes/vertex make %.2f ms traverse %.2f ms shift %.2f ms write %.2f ms (%d bytes) selection insert %.2f ms points %d after query %d packed lines %d (%.0f)",
+      ( packed ? "packed" : "linked" ), vertices, memory / (float)vertices, make / 1.0e6, traverse / 1.0e6, shift / 1.0e6,
+      write / 1.0e6, bytes, insert / 1.0e6, selection_points, query_points, nr_packed, sum );
+  }
+
+  // lines along a zigzag, one point in three with control-points
+  private static DrawingLinePath[] makeLines( boolean packed )
+  {
+    DrawingLinePath[] lines = new DrawingLinePath[ LINES ];
+    for ( int n = 0; n < LINES; ++n ) {
+      DrawingLinePath line = new DrawingLinePath( 0 );
+      float x0 = 100 * ( n % 50 );
+      float y0 = 100 * ( n / 50 );
+      line.addStartPointNoPath( x0, y0, POINTS );
+      for ( int k = 1; k < POINTS; ++k ) {
+        float x = x0 + 2 * k;
+        float y = y0 + ( ( k % 2 == 0 )? 0 : 3 );
+        if ( k % 3 == 0 ) {
+          line.addPoint3NoPath( x - 1.5f, y + 1, x - 0.5f, y - 1, x, y );
+        } else {
+          line.addPointNoPath( x, y );
+        }
+      }
+      if ( ! packed ) line.first(); // unpack
+      lines[n] = line;
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,114 @@
+/* @file LoopClosureBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid data reduction: loop closure times on synthetic grid mazes
+ *
+ * A grid maze of N x N stations, with legs between neighbor stations and small random errors,
+ * has (N-1)^2 loops. The data reduction is done without loop closure, with the cycle compensation
+ * and with the least squares compensation. On a grid every leg is a branch and the legs have
+ * about the same length, so the two compensations should give nearly the same stations:
+ * the report lists the largest difference of the stations coords too.
+ * The cycle compensation is not run on the largest maze: its dense matrices would take 400 MB.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.ArrayList;
+
+class LoopClosureBenchmark
+{
+  private static final int[] SIZES = { 11, 33, 101 }; // stations on a side: 100, 1024, 10000 loops
+  private static final int MAX_CYCLES_LOOPS = 1024;   // largest maze for the cycle compensation
+  private static final int REPEAT = 3;                 // reductions of each maze
+  private static final float LEG = 5.0f;               // leg length [m]
+
+  /** reduce the grid mazes with the loop closure modes
+   * @return the report
+   */
+  static String run()
+  {
+    StringBuilder sb = new StringBuilder();
+    for ( int n : SIZES ) {
+      ArrayList< DBlock > data = makeMaze( n );
+      int loops = ( n - 1 ) * ( n - 1 );
+      long none = reduce( data, TDSetting.LOOP_NONE, null );
+      float[] coords_w = new float[ 3 * n * n ];
+      long weighted = reduce( data, TDSetting.LOOP_WEIGHTED, coords_w );
+      String line;
+      if ( loops <= MAX_CYCLES_LOOPS ) {
+        float[] coords_c = new float[ 3 * n * n ];
+        long cycles = reduce( data, TDSetting.LOOP_CYCLES, coords_c );
+        float diff = 0;
+        for ( int k = 0; k < coords_w.length; ++k ) diff = Math.max( diff, Math.abs( coords_w[k] - coords_c[k] ) );
+        line = String.format( Locale.US, "loops %d legs %d none %.1f ms cycles %.1f ms least squares %.1f ms difference %.4f m",
+          loops, data.size(), none / 1.0e6, cycles / 1.0e6, weighted / 1.0e6, diff );
+      } else {
+        line = String.format( Locale.US, "loops %d legs %d none %.1f ms cycles skipped least squares %.1f ms",
+          loops, data.size(), none / 1.0e6, weighted / 1.0e6 );
+      }
+      TDLog.Log( TDLog.LOG_NUM, line );
+      sb.append( line ).append( "\n" );
+    }
+    return sb.toString();
+  }
+
+  // @return the best reduction time [ns]
+  // @param loop_closure loop closure mode of the reduction
+  // @param coords   stations coords after the reduction (or null)
+  private static long reduce( ArrayList< DBlock > data, int loop_closure, float[] coords )
+  {
+    long best = Long.MAX_VALUE;
+    DistoXNum num = null;
+    for ( int r = 0; r < REPEAT; ++r ) {
+      long t0 = System.nanoTime();
+      num = new DistoXNum( data, "0", null, null, 0.0f, null, loop_closure );
+      long t1 = System.nanoTime();
+      if ( t1 - t0 < best ) best = t1 - t0;
+    }
+    if ( coords != null ) {
+      for ( int k = 0; 3 * k < coords.length; ++k ) {
+        NumStation st = num.getStation( Integer.toString( k ) );
+        if ( st == null ) continue;
+        coords[3*k  ] = st.e;
+        coords[3*k+1] = st.s;
+        coords[3*k+2] = st.v;
+      }
+    }
+    return best;
+  }
+
+  // maze of n x n stations, named row*n+col, with legs east and south of each station
+  private static ArrayList< DBlock > makeMaze( int n )
+  {
+    Random rand = new Random( 3 );
+    ArrayList< DBlock > data = new ArrayList<>();
+    long id = 0;
+    for ( int r = 0; r < n; ++r ) {
+      for ( int c = 0; c < n; ++c ) {
+        String from = Integer.toString( r * n + c );
+        if ( c + 1 < n ) data.add( makeLeg( ++id, from, Integer.toString( r * n + c + 1 ), 90, rand ) );
+        if ( r + 1 < n ) data.add( makeLeg( ++id, from, Integer.toString( ( r + 1 ) * n + c ), 180, rand ) );
+      }
+    }
+    return data;
+  }
+
+  // leg with errors of a few centimeters and a fraction of a degree
+  private static DBlock makeLeg( long id, String from, String to, float bearing, Random rand )
+  {
+    DBlock blk = new DBlock();
+    blk.setId( id, 0 );
+    blk.setBlockName( from, to );
+    blk.mLength  = LEG + 0.05f * (float)rand.nextGaussian();
+    blk.mBearing = bearing + 0.5f * (float)rand.nextGaussian();
+    blk.mClino   = 0.5f * (float)rand.nextGaussian();
+    return blk;
+  }
+}
@@ -0,0 +1,151 @@
+/* @file ParserBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid import parsers: throughput on synthetic files
+ *
+ * Synthetic Therion, Survex and Compass files with the same shots are written in the tmp folder
+ * and imported with the parsers. The report lists, for each file, the size, the number of shots,
+ * the best parse time and the throughput.
+ * The fast number parsing of the scanline is checked against Float.parseFloat on random decimals.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+import java.util.Random;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.io.IOException;
+
+class ParserBenchmark
+{
+  private static final int LINES  = 50000;  // data lines of each file
+  private static final int REPEAT = 3;      // parses of each file
+  private static final int CHECKS = 200000; // random decimals of the number parsing check
+
+  private static final int TYPE_TH  = 0;
+  private static final int TYPE_SVX = 1;
+  private static final int TYPE_DAT = 2;
+  private static final String[] EXT = { "th", "svx", "dat" };
+
+  /** write the synthetic files and parse them
+   * @return the report
+   */
+  static String run()
+  {
+    StringBuilder sb = new StringBuilder();
+    String[] filenames = new String[ EXT.length ];
+    for ( int type = 0; type < EXT.length; ++type ) filenames[type] = TDPath.getTmpFileWithExt( "bench_" + EXT[type] );
+    try {
+      writeFiles( filenames );
+      for ( int type = 0; type < EXT.length; ++type ) {
+        long best = Long.MAX_VALUE;
+        int shots = 0;
+        for ( int r = 0; r < REPEAT; ++r ) {
+          long t0 = System.nanoTime();
+          ImportParser parser = parse( type, filenames[type] );
+          long t1 = System.nanoTime();
+          shots = parser.getShotNumber();
+          if ( t1 - t0 < best ) best = t1 - t0;
+        }
+        long size = new File( filenames[type] ).length();
+        String line = String.format( Locale.US, "parse %s size %d shots %d time %.1f ms %.1f MB/s",
+          EXT[type], size, shots, best / 1.0e6, size * 1.0e3 / best );
+        TDLog.Log( TDLog.LOG_IO, line );
+        sb.append( line ).append( "\n" );
+      }
+    } catch ( IOException e ) {
+      TDLog.Error( "parser benchmark I/O error " + e.getMessage() );
+    } catch ( ParserException e ) {
+      TDLog.Error( "parser benchmark parse error " + e.getMessage() );
+    } finally {
+      for ( String filename : filenames ) TDUtil.deleteFile( filename );
+    }
+    String line = String.format( Locale.US, "parse numbers %d mismatch %d", CHECKS, checkNumbers() );
+    TDLog.Log( TDLog.LOG_IO, line );
+    sb.append( line ).append( "\n" );
+    return sb.toString();
+  }
+
+  private static ImportParser parse( int type, String filename ) throws ParserException
+  {
+    switch ( type ) {
+      case TYPE_TH:  return new ParserTherion( filename, true );
+      case TYPE_SVX: return new ParserSurvex( filename, true );
+    }
+    return new ParserCompass( filename, true );
+  }
+
+  // the three files have the same shots: one splay every three legs
+  private static void writeFiles( String[] filenames ) throws IOException
+  {
+    Random rand = new Random( 5 );
+    PrintWriter th  = new PrintWriter( new FileWriter( filenames[TYPE_TH] ) );
+    PrintWriter svx = new PrintWriter( new FileWriter( filenames[TYPE_SVX] ) );
+    PrintWriter dat = new PrintWriter( new FileWriter( filenames[TYPE_DAT] ) );
+    try {
+      th.format( "survey bench -title \"Benchmark\"\n" );
+      th.format( "centerline\n" );
+      th.format( "date 2019.11.01\n" );
+      th.format( "data normal from to length compass clino left right up down\n" );
+      svx.format( "*begin bench\n" );
+      svx.format( "*data normal from to tape compass clino\n" );
+      dat.format( "Benchmark\n" );
+      dat.format( "SURVEY NAME: bench\n" );
+      dat.format( "SURVEY DATE: 11 1 2019  COMMENT:synthetic\n" );
+      dat.format( "SURVEY TEAM:\n\n" );
+      dat.format( "DECLINATION: 1.50  FORMAT: DDDDLUDRLADN  CORRECTIONS:  0.00 0.00 0.00\n\n" );
+      dat.format( "FROM TO LENGTH BEARING INC LEFT UP DOWN RIGHT FLAGS COMMENTS\n\n" );
+      for ( int k = 0; k < LINES; ++k ) {
+        String len = String.format( Locale.US, "%.2f", 0.5 + rand.nextDouble() * 30 );
+        String ber = String.format( Locale.US, "%.1f", rand.nextDouble() * 360 );
+        String cln = String.format( Locale.US, "%.1f", ( rand.nextDouble() - 0.5 ) * 180 );
+        String to  = ( k % 4 == 3 )? "-" : Integer.toString( k + 1 );
+        th.format(  "  %d\t%s  %s %s %s 1.2 0.8 2.5 0.4   # shot %d\n", k, to, len, ber, cln, k );
+        svx.format( "%d %s %s %s %s ; shot\n", k, to, len, ber, cln );
+        dat.format( "  A%d  A%d  %s  %s  %s  1.00  2.00  3.00  4.00 #|L# shot %d\n", k, k+1, len, ber, cln, k );
+      }
+      th.format( "endcenterline\n" );
+      th.format( "endsurvey\n" );
+      svx.format( "*end bench\n" );
+    } finally {
+      th.close();
+      svx.close();
+      dat.close();
+    }
+  }
+
+  // @return the number of random decimals that the scanline parses differently from Float.parseFloat
+  private static int checkNumbers()
+  {
+    Random rand = new Random( 1 );
+    ParserScanline scanline = new ParserScanline();
+    StringBuilder sb = new StringBuilder();
+    int mismatch = 0;
+    for ( int k = 0; k < CHECKS; ++k ) {
+      int decimals = rand.nextInt( 11 );
+      String digits = Long.toString( (long)( rand.nextDouble() * Math.pow( 10, 1 + rand.nextInt( 9 ) ) ) );
+      sb.setLength( 0 );
+      if ( rand.nextBoolean() ) sb.append( '-' );
+      if ( decimals > 0 ) {
+        for ( int j = digits.length(); j <= decimals; ++j ) sb.append( '0' );
+        int pos = sb.length() + digits.length() - decimals; // position of the point
+        sb.append( digits );
+        sb.insert( pos, '.' );
+      } else {
+        sb.append( digits );
+      }
+      String str = sb.toString();
+      scanline.set( str );
+      if ( Float.floatToIntBits( scanline.floatValue( 0 ) ) != Float.floatToIntBits( Float.parseFloat( str ) ) ) ++ mismatch;
+    }
+    return mismatch;
+  }
+}
@@ -0,0 +1,129 @@
+/* @file PocketTopoBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid PocketTopo: write and read times of the .top files
+ *
+ * A synthetic PocketTopo file, with shots and outline and sideview drawings, is written
+ * in the tmp folder and imported with the PocketTopo parser, as in ImportPocketTopoTask.
+ * The current survey is exported as PocketTopo (TDExporter.exportSurveyAsTop) in the tmp folder,
+ * and the file is imported back.
+ * The import writes the drawings as tdr files of a benchmark survey, which are deleted at the end
+ * with their journal, index and backups.
+ * The report lists the sizes, the best write and read times, and the shots written and read.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+import java.util.Random;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+class PocketTopoBenchmark
+{
+  private static final int SHOTS    = 10000; // shots of the synthetic file
+  private static final int ELEMENTS = 1000;  // polygons of each drawing of the synthetic file
+  private static final int POINTS   = 100;   // points of each polygon
+  private static final int REPEAT   = 3;     // writes and reads of each file
+  private static final String SURVEY = "pocket_topo_benchmark"; // name of the survey of the imports
+
+  /** write and read the PocketTopo files
+   * @param data   database helper
+   * @param sid    id of the survey to export (negative for none)
+   * @return the report
+   */
+  static String run( DataHelper data, long sid )
+  {
+    StringBuilder sb = new StringBuilder();
+    if ( data == null || data.hasSurveyName( SURVEY ) ) return sb.toString(); // do not overwrite the drawings of a survey
+    String filename = TDPath.getTmpFileWithExt( SURVEY );
+    try {
+      // synthetic file
+      PTFile ptfile = makeFile();
+      long best_write = Long.MAX_VALUE;
+      for ( int r = 0; r < REPEAT; ++r ) {
+        long t0 = System.nanoTime();
+        FileOutputStream fos = new FileOutputStream( filename );
+        ptfile.write( fos );
+        fos.close();
+        long t1 = System.nanoTime();
+        if ( t1 - t0 < best_write ) best_write = t1 - t0;
+      }
+      appendRead( sb, "synthetic", filename, ptfile.shotCount(), best_write );
+
+      // current survey: export and import back
+      SurveyInfo info = ( sid < 0 )? null : data.selectSurveyInfo( sid );
+      if ( info != null ) {
+        int shots = data.selectAllExportShots( sid, TDStatus.NORMAL ).size();
+        best_write = Long.MAX_VALUE;
+        for ( int r = 0; r < REPEAT; ++r ) {
+          long t0 = System.nanoTime();
+          TDExporter.exportSurveyAsTop( sid, data, info, null, null, filename );
+          long t1 = System.nanoTime();
+          if ( t1 - t0 < best_write ) best_write = t1 - t0;
+        }
+        appendRead( sb, info.name, filename, shots, best_write );
+      }
+    } catch ( IOException e ) {
+      TDLog.Error( "PocketTopo benchmark I/O error " + e.getMessage() );
+    } catch ( ParserException e ) {
+      TDLog.Error( "PocketTopo benchmark parse error " + e.getMessage() );
+    } finally {
+      TDUtil.deleteFile( filename );
+      TDPath.deletePlotFileWithBackups( TDPath.getTdrFileWithExt( SURVEY + "-1p" ) );
+      TDPath.deletePlotFileWithBackups( TDPath.getTdrFileWithExt( SURVEY + "-1s" ) );
+    }
+    return sb.toString();
+  }
+
+  // import the file and append the report line
+  private static void appendRead( StringBuilder sb, String name, String filename, int shots, long best_write ) throws ParserException
+  {
+    long best_read = Long.MAX_VALUE;
+    ParserPocketTopo parser = null;
+    for ( int r = 0; r < REPEAT; ++r ) {
+      long t0 = System.nanoTime();
+      parser = new ParserPocketTopo( filename, SURVEY, true );
+      long t1 = System.nanoTime();
+      if ( t1 - t0 < best_read ) best_read = t1 - t0;
+    }
+    String line = String.format( Locale.US, "top %s size %d shots %d write %.1f ms read %.1f ms shots %d splays %d",
+      name, new File( filename ).length(), shots, best_write / 1.0e6, best_read / 1.0e6,
+      parser.getShots().size(), parser.getSplays().size() );
+    TDLog.Log( TDLog.LOG_PTOPO, line );
+    sb.append( line ).append( "\n" );
+  }
+
+  // synthetic file: a leg every four shots, the others splays
+  private static PTFile makeFile()
+  {
+    Random rand = new Random( 42 );
+    PTFile ptfile = new PTFile();
+    ptfile.addTrip( 2019, 11, 1, 1.5f, "benchmark" );
+    int station = 0;
+    for ( int k = 0; k < SHOTS; ++k ) {
+      String from = Integer.toString( station );
+      String to   = TDString.EMPTY;
+      if ( k % 4 == 0 ) to = Integer.toString( ++station );
+      ptfile.addShot( (short)0, from, to, rand.nextFloat() * 20, rand.nextFloat() * 360, rand.nextFloat() * 180 - 90, 0, 1,
+                      ( k % 10 == 0 )? "shot " + k : null );
+    }
+    PTDrawing[] drawings = { ptfile.getOutline(), ptfile.getSideview() };
+    for ( PTDrawing drawing : drawings ) {
+      for ( int e = 0; e < ELEMENTS; ++e ) {
+        PTPolygonElement polygon = new PTPolygonElement();
+        polygon.setColor( (byte)( 1 + e % 6 ) );
+        for ( int p = 0; p < POINTS; ++p ) polygon.insertPoint( rand.nextFloat() * 100, rand.nextFloat() * 100 );
+        drawing.insertElement( polygon );
+      }
+    }
+    return ptfile;
+  }
+}
@@ -0,0 +1,122 @@
+/* @file SelectionBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: selection times with many line points
+ *
+ * Random lines, with a point about every 20 units, are inserted in a selection.
+ * Random taps are selected (selectAt) and compared with a scan of all the selection points,
+ * random points are snapped (getNearestPoint), moved and re-bucketed (checkBucket).
+ * The report lists, for 10k, 50k and 200k points, the insert time, the total time of each kind
+ * of query, and the hits of the selection and of the scan, which must be the same.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+import java.util.Random;
+
+class SelectionBenchmark
+{
+  private static final int[] SIZES = { 10000, 50000, 200000 }; // selection points
+  private static final int POINTS  = 50;    // points of each line
+  private static final int QUERIES = 2000;  // queries of each kind
+  private static final float STEP  = 20;    // distance of the line points
+  private static final float RADIUS  = 30;  // select radius
+  private static final float NEAREST = 10;  // snap distance
+
+  /** insert the lines in a selection and query it
+   * @return the report
+   */
+  static String run()
+  {
+    StringBuilder sb = new StringBuilder();
+    for ( int size : SIZES ) {
+      String line = measure( size );
+      TDLog.Log( TDLog.LOG_PATH, line );
+      sb.append( line ).append( "\n" );
+    }
+    return sb.toString();
+  }
+
+  private static String measure( int size )
+  {
+    Random rand = new Random( 7 );
+    float side = STEP * (float)Math.sqrt( size );
+    DrawingLinePath[] lines = makeLines( size / POINTS, side, rand );
+
+    Selection selection = new Selection();
+    long t0 = System.nanoTime();
+    for ( DrawingLinePath line : lines ) selection.insertPath( line );
+    long insert = System.nanoTime() - t0;
+
+    // taps: selection and scan of all the points
+    float[] xy = new float[ 2 * QUERIES ];
+    for ( int k = 0; k < 2 * QUERIES; ++k ) xy[k] = rand.nextFloat() * side;
+    int hits = 0;
+    t0 = System.nanoTime();
+    for ( int k = 0; k < QUERIES; ++k ) {
+      SelectionSet sel = new SelectionSet();
+      selection.selectAt( sel, xy[2*k], xy[2*k+1], RADIUS, DrawingPath.DRAWING_PATH_LINE );
+      hits += sel.size();
+    }
+    long select = System.nanoTime() - t0;
+    int scan_hits = 0;
+    t0 = System.nanoTime();
+    for ( int k = 0; k < QUERIES; ++k ) {
+      for ( SelectionPoint sp : selection.mPoints ) {
+        if ( sp.distance( xy[2*k], xy[2*k+1] ) < RADIUS ) ++ scan_hits;
+      }
+    }
+    long scan = System.nanoTime() - t0;
+
+    // snap random points to their nearest point
+    int nr = selection.mPoints.size();
+    int snaps = 0;
+    t0 = System.nanoTime();
+    for ( int k = 0; k < QUERIES; ++k ) {
+      SelectionPoint sp = selection.mPoints.get( rand.nextInt( nr ) );
+      if ( selection.getNearestPoint( sp, sp.X(), sp.Y(), NEAREST ) != null ) ++ snaps;
+    }
+    long nearest = System.nanoTime() - t0;
+
+    // move random points and re-bucket them
+    t0 = System.nanoTime();
+    for ( int k = 0; k < QUERIES; ++k ) {
+      SelectionPoint sp = selection.mPoints.get( rand.nextInt( nr ) );
+      sp.mPoint.shiftBy( ( rand.nextFloat() - 0.5f ) * 4 * STEP, ( rand.nextFloat() - 0.5f ) * 4 * STEP );
+      selection.checkBucket( sp );
+    }
+    long move = System.nanoTime() - t0;
+
+    return String.format( Locale.US,
+      "selection points %d buckets %d insert %.1f ms select %.1f ms scan %.1f ms hits %d/%d nearest %.1f ms snaps %d move %.1f ms",
+      nr, selection.mBuckets.size(), insert / 1.0e6, select / 1.0e6, scan / 1.0e6, hits, scan_hits,
+      nearest / 1.0e6, snaps, move / 1.0e6 );
+  }
+
+  // random walks with linked points
+  private static DrawingLinePath[] makeLines( int nr, float side, Random rand )
+  {
+    DrawingLinePath[] lines = new DrawingLinePath[ nr ];
+    for ( int n = 0; n < nr; ++n ) {
+      DrawingLinePath line = new DrawingLinePath( 0 );
+      float x = rand.nextFloat() * side;
+      float y = rand.nextFloat() * side;
+      line.addStartPointNoPath( x, y, POINTS );
+      for ( int k = 1; k < POINTS; ++k ) {
+        double a = rand.nextDouble() * 2 * Math.PI;
+        x += STEP * (float)Math.cos( a );
+        y += STEP * (float)Math.sin( a );
+        line.addPointNoPath( x, y );
+      }
+      line.first(); // unpack: the lines enter the buckets when they are inserted
+      lines[n] = line;
+    }
+    return lines;
+  }
+}
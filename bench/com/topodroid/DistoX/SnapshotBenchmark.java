@@ -0,0 +1,88 @@
+/* @file SnapshotBenchmark.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: lock hold time of the sketch save
+ *
+ * A sketch of lines is saved to a tmp file in two ways: writing the items to the file
+ * holding the lock of the items, as the save did before the snapshot, and serializing them
+ * to a snapshot holding the lock, then writing the file without the lock.
+ * The report lists the best lock hold time of each way, and the file write time of the snapshot.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.Locale;
+import java.util.ArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+class SnapshotBenchmark
+{
+  private static final int LINES  = 2000; // lines of the sketch
+  private static final int POINTS = 25;   // points of each line
+  private static final int REPEAT = 5;    // saves of each way
+
+  /** save a sketch of lines with and without the snapshot
+   * @return the report
+   */
+  static String run()
+  {
+    StringBuilder sb = new StringBuilder();
+    if ( BrushManager.mLineLib == null ) return sb.toString(); // the lines need the symbols to be saved
+    ArrayList< ICanvasCommand > cstack = new ArrayList<>();
+    for ( int n = 0; n < LINES; ++n ) {
+      DrawingLinePath line = new DrawingLinePath( 0 );
+      float x0 = 50 * ( n % 40 );
+      float y0 = 50 * ( n / 40 );
+      line.addStartPointNoPath( x0, y0, POINTS );
+      for ( int k = 1; k < POINTS; ++k ) line.addPointNoPath( x0 + 2 * k, y0 + ( k % 2 ) * 3 );
+      cstack.add( line );
+    }
+    ArrayList< DrawingStationPath > userstations = new ArrayList<>();
+    String filename = TDPath.getTmpFileWithExt( "snapshot_benchmark" );
+    try {
+      long old_hold = Long.MAX_VALUE;
+      for ( int r = 0; r < REPEAT; ++r ) {
+        DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( filename ) ) );
+        long t0 = System.nanoTime();
+        synchronized( cstack ) {
+          for ( ICanvasCommand cmd : cstack ) ((DrawingPath)cmd).toDataStream( dos );
+        }
+        long t1 = System.nanoTime();
+        dos.close();
+        if ( t1 - t0 < old_hold ) old_hold = t1 - t0;
+      }
+
+      long new_hold = Long.MAX_VALUE;
+      long write = Long.MAX_VALUE;
+      for ( int r = 0; r < REPEAT; ++r ) {
+        DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( filename ) ) );
+        DrawingSnapshot snapshot = new DrawingSnapshot( cstack, userstations );
+        long t0 = System.nanoTime();
+        for ( int k = 0; k < snapshot.size(); ++k ) dos.write( snapshot.getData( k ) );
+        dos.close();
+        long t1 = System.nanoTime();
+        if ( snapshot.getPathHold() < new_hold ) new_hold = snapshot.getPathHold();
+        if ( t1 - t0 < write ) write = t1 - t0;
+      }
+
+      String line = String.format( Locale.US, "save lines %d points %d lock: items to file %.2f ms, snapshot %.2f ms; snapshot to file %.2f ms",
+        LINES, LINES * POINTS, old_hold / 1.0e6, new_hold / 1.0e6, write / 1.0e6 );
+      TDLog.Log( TDLog.LOG_IO, line );
+      sb.append( line ).append( "\n" );
+    } catch ( IOException e ) {
+      TDLog.Error( "snapshot benchmark I/O error " + e.getMessage() );
+    } finally {
+      TDUtil.deleteFile( filename );
+    }
+    return sb.toString();
+  }
+}
@@ -44,9 +44,11 @@ class BrushManager
   static SymbolPoint mStationSymbol = null;
 
   // -----------------------------------------------------------
-  static boolean tryLoadMissingPoint( String thname ) { return mPointLib != null && mPointLib.tryLoadMissingPoint( thname ); }
-  static boolean tryLoadMissingLine( String thname ) { return mLineLib != null && mLineLib.tryLoadMissingLine( thname ); }
-  static boolean tryLoadMissingArea( String thname ) { return mAreaLib != null && mAreaLib.tryLoadMissingArea( thname ); }
+  // the symbol lookups of the tdr loaders are synchronized: the overview load task reads the tdr items
+  // on worker threads, and the deferred items are read holding the BrushManager lock (see OverviewLoadTask)
+  synchronized static boolean tryLoadMissingPoint( String thname ) { return mPointLib != null && mPointLib.tryLoadMissingPoint( thname ); }
+  synchronized static boolean tryLoadMissingLine( String thname ) { return mLineLib != null && mLineLib.tryLoadMissingLine( thname ); }
+  synchronized static boolean tryLoadMissingArea( String thname ) { return mAreaLib != null && mAreaLib.tryLoadMissingArea( thname ); }
 
   static int getPointIndex( Symbol point ) { return (mPointLib == null)? -1 : mPointLib.getSymbolIndex( point ); }
   static int getLineIndex( Symbol line ) { return (mLineLib == null)? -1 : mLineLib.getSymbolIndex( line ); }
@@ -64,9 +66,9 @@ class BrushManager
   static boolean hasLineByThName( String thname ) { return (mLineLib == null) && mLineLib.hasSymbolByThName( thname ); }
   static boolean hasAreaByThName( String thname ) { return (mAreaLib == null) && mAreaLib.hasSymbolByThName( thname ); }
 
-  static int getPointIndexByThNameOrGroup( String thname, String group ) { return (mPointLib == null)? -1 : mPointLib.getSymbolIndexByThNameOrGroup( thname, group ); }
-  static int getLineIndexByThNameOrGroup( String thname, String group ) { return (mLineLib == null)? -1 : mLineLib.getSymbolIndexByThNameOrGroup( thname, group ); }
-  static int getAreaIndexByThNameOrGroup( String thname, String group ) { return (mAreaLib == null)? -1 : mAreaLib.getSymbolIndexByThNameOrGroup( thname, group ); }
+  synchronized static int getPointIndexByThNameOrGroup( String thname, String group ) { return (mPointLib == null)? -1 : mPointLib.getSymbolIndexByThNameOrGroup( thname, group ); }
+  synchronized static int getLineIndexByThNameOrGroup( String thname, String group ) { return (mLineLib == null)? -1 : mLineLib.getSymbolIndexByThNameOrGroup( thname, group ); }
+  synchronized static int getAreaIndexByThNameOrGroup( String thname, String group ) { return (mAreaLib == null)? -1 : mAreaLib.getSymbolIndexByThNameOrGroup( thname, group ); }
 
   static void setRecentPoints( Symbol[] points ) { if (mPointLib == null) mPointLib.setRecentSymbols( points ); }
   static void setRecentLines( Symbol[] lines )   { if (mLineLib == null)  mLineLib.setRecentSymbols( lines ); }
@@ -282,6 +284,7 @@ class BrushManager
     if ( paintSplayXBdot   != null ) paintSplayXBdot.setAlpha( alpha );  // dot splay
     if ( paintSplayXVdash  != null ) paintSplayXVdash.setAlpha( alpha );  // blue dash splay
     if ( paintSplayXVdot   != null ) paintSplayXVdot.setAlpha( alpha );  // blue dot splay
+    DrawingPath.paintChanged();
   }
 
   static void doMakePaths()
@@ -361,6 +364,7 @@ class BrushManager
     if (deepBluePaint != null)     deepBluePaint.setStrokeWidth( WIDTH_FIXED * TDSetting.mFixedThickness );
     if (paintSplayXB != null)      paintSplayXB.setStrokeWidth( WIDTH_FIXED * TDSetting.mFixedThickness );
     if (paintSplayXViewed != null) paintSplayXViewed.setStrokeWidth( WIDTH_FIXED * TDSetting.mFixedThickness );
+    DrawingPath.paintChanged();
   }
 
   static void setTextSizes()
@@ -373,6 +377,7 @@ class BrushManager
     if ( fixedStationHiddenPaint != null )  fixedStationHiddenPaint.setTextSize( TDSetting.mStationSize );
     if ( duplicateStationPaint != null )    duplicateStationPaint.setTextSize( TDSetting.mStationSize );
     if ( referencePaint != null )           referencePaint.setTextSize( TDSetting.mStationSize );
+    DrawingPath.paintChanged();
   }
 
   static SymbolsPalette preparePalette()
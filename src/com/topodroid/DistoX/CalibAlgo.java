@@ -50,7 +50,7 @@ class CalibAlgo
 
   static protected Vector scaledVector( Vector v ) { return scaledVector( v.x, v.y, v.z ); }
 
-  static private Vector scaledVector( float x, float y, float z )
+  static Vector scaledVector( float x, float y, float z )
   {
     return new Vector( x/TDUtil.FV, y/TDUtil.FV, z/TDUtil.FV );
   }
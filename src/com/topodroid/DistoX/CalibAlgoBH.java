@@ -75,6 +75,14 @@ class CalibAlgoBH extends CalibAlgo
     return Optimize( idx, g, m );
   }
 
+  // calibrate with the single-precision implementation (reference for CalibBenchmark)
+  int CalibrateFloat()
+  {
+    mDelta = 0.0f;
+    if ( idx < 16 ) return -1;
+    return OptimizeFloat( idx, g, m );
+  }
+
   // ------------------------------------------------------------
   // private methods
 
@@ -117,7 +125,49 @@ class CalibAlgoBH extends CalibAlgo
 
 /* ============================================================ */
 
+  private CalibKernelBH mKernel = null;
+
+  // optimization with the double-precision kernel
   private int Optimize( int nn, Vector[] g, Vector [] m )
+  {
+    if ( mKernel == null ) mKernel = new CalibKernelBH();
+    int it = mKernel.optimize( nn, g, m, group, mNonLinear, TDSetting.mCalibMaxIt, TDSetting.mCalibEps );
+    if ( it == 0 ) return 0;
+
+    aG = toMatrix( mKernel.aG );
+    aM = toMatrix( mKernel.aM );
+    bG = toVector( mKernel.bG );
+    bM = toVector( mKernel.bM );
+    nL = toVector( mKernel.nL );
+    checkOverflow( bG, aG );
+    checkOverflow( bM, aM );
+    mDeltaBH = (float)mKernel.mDeltaBH;
+
+    Vector[] ga = g; // G data used with the coefficients
+    if ( mNonLinear ) { // linearized g values
+      ga = new Vector[nn];
+      for ( int i=0; i<nn; ++i ) {
+        if ( group[i] > 0 ) {
+          Vector gi = g[i];
+          ga[i] = new Vector( gi.x + (gi.x * gi.x - 0.5f) * nL.x, gi.y + (gi.y * gi.y - 0.5f) * nL.y, gi.z + (gi.z * gi.z - 0.5f) * nL.z );
+        }
+      }
+    }
+    computeErrors( nn, ga, (float)mKernel.mSin, (float)mKernel.mCos );
+    return it;
+  }
+
+  private static Matrix toMatrix( double[] a )
+  {
+    return new Matrix( new Vector( (float)a[0], (float)a[1], (float)a[2] ),
+                       new Vector( (float)a[3], (float)a[4], (float)a[5] ),
+                       new Vector( (float)a[6], (float)a[7], (float)a[8] ) );
+  }
+
+  private static Vector toVector( double[] v ) { return new Vector( (float)v[0], (float)v[1], (float)v[2] ); }
+
+  // single-precision optimization
+  private int OptimizeFloat( int nn, Vector[] g, Vector [] m )
   {
     int max_it = TDSetting.mCalibMaxIt;
     float eps  = TDSetting.mCalibEps;
@@ -336,13 +386,23 @@ class CalibAlgoBH extends CalibAlgo
       // Log.v("DistoXAlgoBH", "delta BH " + mDeltaBH + " cnt " + cnt_bh );
     }
 
+    computeErrors( nn, ( mNonLinear ? gl : g ), s, c );
+    return it;
+  }
+
+  /** compute the errors of the data with the final coefficients
+   * @param nn   number of data
+   * @param ga   G data (linearized, for the non-linear algo)
+   * @param s    sine of the magnetic dip
+   * @param c    cosine of the magnetic dip
+   */
+  private void computeErrors( int nn, Vector[] ga, float s, float c )
+  {
+    Vector[] gr = new Vector[nn];
+    Vector[] mr = new Vector[nn];
     for ( int i=0; i<nn; ++i ) {
       if ( group[i] > 0 ) {
-        if ( mNonLinear ) { 
-          gr[i] = bG.plus( aG.timesV(gl[i]) );
-        } else {
-          gr[i] = bG.plus( aG.timesV(g[i]) );
-        }
+        gr[i] = bG.plus( aG.timesV(ga[i]) );
         mr[i] = bM.plus( aM.timesV(m[i]) );
       }
     }
@@ -419,7 +479,6 @@ class CalibAlgoBH extends CalibAlgo
     //   }
     // }
     // mDelta = 100 * (float)Math.sqrt( mDelta*invNum );
-    return it;
   }
 
   // -----------------------------------------------------------------------
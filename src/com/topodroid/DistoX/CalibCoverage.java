@@ -21,6 +21,7 @@ class CalibCoverage
   {
     final float mCompass;
     final float mClino;
+    final double mX, mY, mZ; // unit vector of the direction
     float mValue;
 
     Direction( float cm, float cl, float v )
@@ -28,6 +29,10 @@ class CalibCoverage
       mCompass = cm;
       mClino = cl;
       mValue = v;
+      double h = Math.cos( cl );
+      mX = h * Math.cos( cm );
+      mY = h * Math.sin( cm );
+      mZ = Math.sin( cl );
     }
   }
 
@@ -40,21 +45,34 @@ class CalibCoverage
   private final int[] t_size;
   private final int[] t_offset;
   private int t_dim;
+  private final double[] row_cos; // cosine and sine of the clino of the rows of directions
+  private final double[] row_sin;
 
   private Direction[] angles;
   private float mCoverage;
+  private double mSum;     // running sum of the direction values
 
   CalibCoverage( )
   {
     clino_angles = new int[ DIM_Y ];
     t_size       = new int[ DIM_Y ];
     t_offset     = new int[ DIM_Y ];
+    row_cos      = new double[ DIM_Y ];
+    row_sin      = new double[ DIM_Y ];
     setup();
     // mCoverage = evalCoverage( list,  null );
     mCoverage = 0; // do not compute immediately
   }
 
   float getCoverage() { return mCoverage; }
+
+  // reset the direction values for a new (incremental) coverage
+  void reset()
+  {
+    for (int j=0; j<t_dim; ++j ) angles[j].mValue = 1.0f;
+    mSum = t_dim;
+    mCoverage = 0.0f;
+  }
   Direction[] getDirections() { return angles; }
   int[] getTSize() { return t_size; }
   int[] getTOffset() { return t_offset; }
@@ -82,6 +100,8 @@ class CalibCoverage
     angles = new Direction [ t_dim ];
     for (int k = 0; k<DIM_Y; ++k ){
       float clino = clino_angles[k] * TDMath.DEG2RAD;
+      row_cos[k] = Math.cos( clino );
+      row_sin[k] = Math.sin( clino );
       for (int j=t_offset[k]; j<t_offset[k]+t_size[k]; ++j ) {
         angles[j] = new Direction(
                       TDMath.M_PI + ( TDMath.M_2PI * (j - t_offset[k]) ) / t_size[k],
@@ -91,32 +111,86 @@ class CalibCoverage
     }
   }
 
-  // compass and clino in radians
-  private float cosine( float compass1, float clino1, float compass2, float clino2 )
+  // the direction vectors are precomputed: the cosine is their dot product
+  // only the directions with positive cosine are visited: the cosine of the direction (compass A,
+  // clino C) with the direction at compass Q in the row at clino P is
+  //   cos(C) cos(P) cos(A - Q) + sin(C) sin(P)
+  // which is positive on an interval of Q around A
+  private void updateDirections( float compass, float clino, int cnt )
   {
-    double h1 = Math.cos( clino1 );
-    double z1 = Math.sin( clino1 );
-    double x1 = h1 * Math.cos( compass1 );
-    double y1 = h1 * Math.sin( compass1 );
-    double h2 = Math.cos( clino2 );
-    double z2 = Math.sin( clino2 );
-    double x2 = h2 * Math.cos( compass2 );
-    double y2 = h2 * Math.sin( compass2 );
-    return (float)(x1*x2 + y1*y2 + z1*z2); // cosine of the angle
+    double h = Math.cos( clino );
+    double s = Math.sin( clino );
+    double x = h * Math.cos( compass );
+    double y = h * Math.sin( compass );
+    double z = s;
+    float f = (cnt >= 4)? 1.0f : cnt * 0.25f;
+    for ( int k=0; k<DIM_Y; ++k ) {
+      double ca = h * row_cos[k];
+      double cb = s * row_sin[k];
+      if ( ca + cb <= 0 ) continue; // no direction of the row with positive cosine
+      int size = t_size[k];
+      int off  = t_offset[k];
+      if ( cb - ca > 0 ) { // all the row
+        updateRange( x, y, z, f, off, off + size );
+        continue;
+      }
+      // directions of the row are at compass PI + 2 PI i / size
+      double w  = Math.acos( - cb / ca ); // half-width of the interval
+      double di = size / TDMath.M_2PI;
+      int i1 = (int)Math.floor( ( compass - TDMath.M_PI - w ) * di ) - 1; // one more on each side for the rounding
+      int n  = (int)Math.ceil(  ( compass - TDMath.M_PI + w ) * di ) + 2 - i1;
+      if ( n >= size ) {
+        updateRange( x, y, z, f, off, off + size );
+      } else { // the interval may wrap around the end of the row
+        i1 = i1 % size; if ( i1 < 0 ) i1 += size;
+        updateRange( x, y, z, f, off + i1, off + Math.min( size, i1 + n ) );
+        if ( i1 + n > size ) updateRange( x, y, z, f, off, off + i1 + n - size );
+      }
+    }
   }
 
-  private void updateDirections( float compass, float clino, int cnt )
+  // update the directions from j1 (inclusive) to j2 (exclusive)
+  private void updateRange( double x, double y, double z, float f, int j1, int j2 )
   {
-    for (int j=0; j<t_dim; ++j ) {
-      float c = cosine( compass, clino, angles[j].mCompass, angles[j].mClino );
+    for (int j=j1; j<j2; ++j ) {
+      Direction a = angles[j];
+      if ( a.mValue == 0.0f ) continue; // nothing to subtract
+      float c = (float)( x * a.mX + y * a.mY + z * a.mZ );
       if ( c > 0.0 ) {
         c = c * c;
-        angles[j].mValue -= (cnt >= 4)? c*c : c*c * cnt * 0.25f;
-        if ( angles[j].mValue < 0.0f ) angles[j].mValue = 0.0f;
+        float v = a.mValue - c*c * f;
+        if ( v < 0.0f ) v = 0.0f;
+        mSum += v - a.mValue;
+        a.mValue = v;
       }
     }
   }
 
+  // update the coverage with a G or M vector
+  // @param x,y,z  vector (any scale)
+  private void updateVector( double x, double y, double z )
+  {
+    float compass = (float)Math.atan2( x, y ); if ( compass < 0 ) compass += TDMath.M_2PI;
+    float clino   = (float)Math.atan2( z, Math.sqrt( x * x + y * y ) );
+    updateDirections( compass, clino, 1 );
+  }
+
+  /** add a calib shot to the coverage (the coverage must have been reset)
+   * @param b     calib shot
+   * @param mode  0: G,  1: M
+   * @return the updated coverage
+   */
+  float addGM( CalibCBlock b, int mode )
+  {
+    if ( mode == 0 ) {
+      updateVector( b.gx, b.gy, b.gz );
+    } else {
+      updateVector( b.mx, b.my, b.mz );
+    }
+    mCoverage = (float)( 100.0 * ( 1.0 - mSum/t_dim ) );
+    return mCoverage;
+  }
+
   // @param clist    list of calib shots
   // @pre shots bearing and clino must have been precomputed
   // @return array distribution of between shots errors
@@ -198,8 +272,7 @@ class CalibCoverage
 
   float evalCoverage( List<CalibCBlock> clist, CalibAlgo transform )
   {
-
-    for (int j=0; j<t_dim; ++j ) angles[j].mValue = 1.0f;
+    reset();
 
     long old_grp = 0;
     float compass_avg = 0.0f;
@@ -255,26 +328,11 @@ class CalibCoverage
   // @param mode   0: G,  1: M
   float evalCoverageGM( List<CalibCBlock> clist, int mode ) 
   {
-    for (int j=0; j<t_dim; ++j ) angles[j].mValue = 1.0f;
-
-    long old_grp = 0;
-    float compass_avg = 0.0f;
-    float clino_avg   = 0.0f;
-    int cnt_avg = 0;
-
-    float f = TDUtil.FV;
+    reset();
     for ( CalibCBlock b : clist ) {
       if ( b.mGroup <= 0 ) continue;
-      Vector v = ( mode == 0 )? new Vector( b.gx/f, b.gy/f, b.gz/f ) : new Vector( b.mx/f, b.my/f, b.mz/f );
-      float compass = TDMath.atan2( v.x, v.y ); if ( compass < 0 ) compass += TDMath.M_2PI;
-      float clino   = TDMath.atan2( v.z, TDMath.sqrt( v.x * v.x + v.y * v.y ) );
-      updateDirections( compass, clino, 1 );
-    }
-    mCoverage = 0.0f;
-    for (int j=0; j<t_dim; ++j ) {
-      mCoverage += angles[j].mValue;
+      addGM( b, mode );
     }
-    mCoverage = 100.0f * ( 1.0f - mCoverage/t_dim );
     return mCoverage;
   }
 
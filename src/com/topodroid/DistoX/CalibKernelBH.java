@@ -0,0 +1,487 @@
+/* @file CalibKernelBH.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid DistoX Beat Heeb's calibration algorithm: iteration kernel
+ *
+ * This is the optimization of CalibAlgoBH in double precision, on arrays of doubles.
+ * The vectors are stored as triples, the matrices as 3x3 row-major arrays.
+ * The buffers are allocated once and reused by all the iterations (and by the following
+ * calibrations with no more data).
+ * With warm start the iterations begin from the coefficients of the previous optimization,
+ * which are close to the solution when the data differ by a few shots (streaming calibration).
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.lang.Math;
+
+class CalibKernelBH
+{
+  // data buffers: one triple per datum
+  private int mCapacity = 0;
+  private double[] g;   // G data
+  private double[] m;   // M data
+  private double[] gl;  // linearized G data (non-linear)
+  private double[] gs;  // diagonal of Diag(g^2 - 1/2) (non-linear)
+  private double[] gr;  // calibrated G data
+  private double[] mr;  // calibrated M data
+  private double[] gx;  // optimal G data
+  private double[] mx;  // optimal M data
+
+  // coefficients
+  final double[] aG = new double[9];
+  final double[] aM = new double[9];
+  final double[] bG = new double[3];
+  final double[] bM = new double[3];
+  final double[] nL = new double[3];
+
+  double mSin, mCos;  // final sine and cosine of the magnetic dip
+  double mDeltaBH;    // original delta BH algo
+
+  private boolean mSolved = false;     // whether the coefficients are the result of an optimization
+  private boolean mSolvedNonLinear;    // algorithm of the coefficients
+
+  // scratch
+  private final double[] aG0 = new double[9];
+  private final double[] aM0 = new double[9];
+  private final double[] invG = new double[9];
+  private final double[] invM = new double[9];
+  private final double[] sumG  = new double[3];
+  private final double[] sumM  = new double[3];
+  private final double[] sumG2 = new double[9];
+  private final double[] sumM2 = new double[9];
+  private final double[] avG   = new double[3];
+  private final double[] avM   = new double[3];
+  private final double[] avGx  = new double[3];
+  private final double[] avMx  = new double[3];
+  private final double[] sumGxG = new double[9];
+  private final double[] sumMxM = new double[9];
+  private final double[] psum  = new double[9];
+  private final double[] qsum  = new double[3];
+  private final double[] pm    = new double[9];
+  private final double[] qv    = new double[3];
+  private final double[] tmp   = new double[9];
+  private final double[] grp   = new double[3]; // group sums
+  private final double[] mrp   = new double[3];
+  private final double[] gxp   = new double[3]; // opt vectors
+  private final double[] mxp   = new double[3];
+  private final double[] gxt   = new double[3]; // turn vectors
+  private final double[] mxt   = new double[3];
+  private final double[] no    = new double[3];
+  private final double[] w     = new double[3];
+
+  private void ensureCapacity( int nn )
+  {
+    if ( nn <= mCapacity ) return;
+    mCapacity = nn;
+    g  = new double[ 3*nn ];
+    m  = new double[ 3*nn ];
+    gl = new double[ 3*nn ];
+    gs = new double[ 3*nn ];
+    gr = new double[ 3*nn ];
+    mr = new double[ 3*nn ];
+    gx = new double[ 3*nn ];
+    mx = new double[ 3*nn ];
+  }
+
+  /** run the optimization
+   * @param nn        number of data
+   * @param g0        G data
+   * @param m0        M data
+   * @param group     data groups (non-positive to skip)
+   * @param nonLinear whether to use the non-linear algorithm
+   * @param max_it    max number of iterations
+   * @param eps       convergence threshold on the coefficients
+   * @return number of iterations (0 if no data)
+   */
+  int optimize( int nn, Vector[] g0, Vector[] m0, long[] group, boolean nonLinear, int max_it, double eps )
+  {
+    return optimize( nn, g0, m0, group, nonLinear, max_it, eps, false );
+  }
+
+  /** run the optimization
+   * @param warm      whether to start from the coefficients of the previous optimization (if any, with the same algorithm)
+   */
+  int optimize( int nn, Vector[] g0, Vector[] m0, long[] group, boolean nonLinear, int max_it, double eps, boolean warm )
+  {
+    warm = warm && mSolved && mSolvedNonLinear == nonLinear;
+    mSolved = false;
+    ensureCapacity( nn );
+    double[] ga = nonLinear ? gl : g; // G data used for the coefficients
+
+    zero( sumG );
+    zero( sumM );
+    zero( sumG2 );
+    zero( sumM2 );
+    double sa = 0;
+    double ca = 0;
+    double invNum = 0;
+    for ( int i=0; i<nn; ++i ) {
+      if ( group[i] <= 0 ) continue;
+      int k = 3*i;
+      g[k] = g0[i].x;  g[k+1] = g0[i].y;  g[k+2] = g0[i].z;
+      m[k] = m0[i].x;  m[k+1] = m0[i].y;  m[k+2] = m0[i].z;
+      invNum += 1;
+      cross( g, k, m, k, w, 0 );
+      sa += length( w, 0 );
+      ca += dot( g, k, m, k );
+      add( sumG, 0, g, k );
+      add( sumM, 0, m, k );
+      addOuter( sumG2, g, k, g, k );
+      addOuter( sumM2, m, k, m, k );
+      if ( nonLinear ) {
+        gl[k] = g[k];  gl[k+1] = g[k+1];  gl[k+2] = g[k+2];
+        gs[k]   = g[k]   * g[k]   - 0.5;
+        gs[k+1] = g[k+1] * g[k+1] - 0.5;
+        gs[k+2] = g[k+2] * g[k+2] - 0.5;
+      }
+    }
+    if ( invNum < 0.5 ) return 0;
+    invNum = 1 / invNum;
+
+    if ( warm && nonLinear ) linearize( nn, group );
+
+    scale( avG, sumG, invNum );
+    scale( avM, sumM, invNum );
+    centeredInverse( invG, sumG2, sumG, avG );
+    centeredInverse( invM, sumM2, sumM, avM );
+
+    if ( ! warm ) {
+      identity( aG );
+      identity( aM );
+      if ( nonLinear ) {
+        scale( bG, avG, -1 );
+        scale( bM, avM, -1 );
+      } else {
+        zero( bG );
+        zero( bM );
+      }
+      zero( nL );
+    }
+
+    int it = 0;
+    double da = Math.sqrt( ca*ca + sa*sa );
+    double s = sa / da;
+    double c = ca / da;
+
+    do {
+      for ( int i=0; i<nn; ++i ) {
+        if ( group[i] <= 0 ) continue;
+        int k = 3*i;
+        affine( gr, k, aG, bG, ga, k );
+        affine( mr, k, aM, bM, m, k );
+      }
+      sa = 0;
+      ca = 0;
+      long group0 = -1;
+      for ( int i=0; i<nn; ) {
+        if ( group[i] <= 0 ) {
+          ++i;
+        } else if ( group[i] != group0 ) {
+          group0 = group[i];
+          zero( grp );
+          zero( mrp );
+          int first = i;
+          while ( i < nn && (group[i] <= 0 || group[i] == group0) ) {
+            if ( group[i] > 0 ) {
+              turnVectors( gr, 3*i, mr, 3*i, gr, 3*first, mr, 3*first, gxt, 0, mxt, 0 );
+              add( grp, 0, gxt, 0 );
+              add( mrp, 0, mxt, 0 );
+            }
+            ++ i;
+          }
+          optVectors( grp, mrp, s, c ); // output ==> gxp, mxp
+          cross( mrp, 0, gxp, 0, w, 0 );
+          sa += length( w, 0 );
+          ca += dot( mrp, 0, gxp, 0 );
+          for ( int j = first; j < i; ++j ) {
+            if ( group[j] > 0 ) turnVectors( gxp, 0, mxp, 0, gr, 3*j, mr, 3*j, gx, 3*j, mx, 3*j );
+          }
+        }
+      }
+      da = Math.sqrt( ca*ca + sa*sa );
+      s = sa / da;
+      c = ca / da;
+
+      zero( avGx );
+      zero( avMx );
+      zero( sumGxG );
+      zero( sumMxM );
+      for ( int i=0; i<nn; ++i ) {
+        if ( group[i] <= 0 ) continue;
+        int k = 3*i;
+        add( avGx, 0, gx, k );
+        add( avMx, 0, mx, k );
+        addOuter( sumGxG, gx, k, ga, k );
+        addOuter( sumMxM, mx, k, m, k );
+      }
+      System.arraycopy( aG, 0, aG0, 0, 9 );
+      System.arraycopy( aM, 0, aM0, 0, 9 );
+      scale( avGx, avGx, invNum );
+      scale( avMx, avMx, invNum );
+
+      // aG = ( sumGxG - avGx & sumG ) * invG^t
+      subOuter( sumGxG, avGx, sumG );
+      timesT( aG, sumGxG, invG );
+      subOuter( sumMxM, avMx, sumM );
+      timesT( aM, sumMxM, invM );
+
+      aG[7] = (aG[5] + aG[7]) * 0.5; // enforce symmetric aG(y,z)
+      aG[5] = aG[7];
+
+      affine( bG, 0, aG, null, avG, 0 ); // get new bG and bM
+      sub( bG, avGx, bG );
+      affine( bM, 0, aM, null, avM, 0 );
+      sub( bM, avMx, bM );
+
+      if ( nonLinear ) { // get new non-linearity coefficients
+        zero( psum );
+        zero( qsum );
+        for ( int i=0; i<nn; ++i ) {
+          if ( group[i] <= 0 ) continue;
+          int k = 3*i;
+          for ( int r=0; r<3; ++r ) for ( int q=0; q<3; ++q ) pm[3*r+q] = aG[3*r+q] * gs[k+q]; // P = aG * gs
+          affine( qv, 0, aG, bG, g, k ); // Q = gx - aG * g - bG
+          qv[0] = gx[k] - qv[0];
+          qv[1] = gx[k+1] - qv[1];
+          qv[2] = gx[k+2] - qv[2];
+          for ( int a=0; a<3; ++a ) {
+            for ( int b=0; b<3; ++b ) {
+              psum[3*a+b] += pm[a] * pm[b] + pm[3+a] * pm[3+b] + pm[6+a] * pm[6+b]; // P^t * P
+            }
+            qsum[a] += pm[a] * qv[0] + pm[3+a] * qv[1] + pm[6+a] * qv[2];         // P^t * Q
+          }
+        }
+        inverse( tmp, psum );
+        affine( nL, 0, tmp, null, qsum, 0 );
+        nL[0] = saturate( nL[0] );
+        nL[1] = saturate( nL[1] );
+        nL[2] = saturate( nL[2] );
+
+        linearize( nn, group ); // recalculate linearized g values
+        scale( avG, sumG, invNum );
+        centeredInverse( invG, sumG2, sumG, avG );
+      }
+      ++ it;
+      if ( Thread.currentThread().isInterrupted() ) return -1; // stopped (streaming calibration)
+    } while ( it < max_it && ( maxDiff( aG, aG0 ) > eps || maxDiff( aM, aM0 ) > eps ) );
+
+    mSin = s;
+    mCos = c;
+
+    // beat's delta
+    int cnt = 0;
+    double delta = 0;
+    for ( int i=0; i<nn; ++i ) {
+      if ( group[i] <= 0 ) continue;
+      int k = 3*i;
+      for ( int q=k; q<k+3; ++q ) {
+        double dg = gx[q] - gr[q];
+        double dm = mx[q] - mr[q];
+        delta += dg*dg + dm*dm;
+      }
+      ++ cnt;
+    }
+    mDeltaBH = ( cnt > 0 )? Math.sqrt( delta / cnt ) * 100 : 0;
+    mSolved = true;
+    mSolvedNonLinear = nonLinear;
+    return it;
+  }
+
+  // linearized g values with the current non-linearity coefficients, and their sums
+  private void linearize( int nn, long[] group )
+  {
+    zero( sumG );
+    zero( sumG2 );
+    for ( int i=0; i<nn; ++i ) {
+      if ( group[i] <= 0 ) continue;
+      int k = 3*i;
+      gl[k]   = g[k]   + gs[k]   * nL[0];
+      gl[k+1] = g[k+1] + gs[k+1] * nL[1];
+      gl[k+2] = g[k+2] + gs[k+2] * nL[2];
+      add( sumG, 0, gl, k );
+      addOuter( sumG2, gl, k, gl, k );
+    }
+  }
+
+  // -----------------------------------------------------------------------
+
+  // compute (gxp, mxp)
+  private void optVectors( double[] gr0, double[] mr0, double s, double c )
+  {
+    cross( gr0, 0, mr0, 0, no, 0 );
+    normalize( no );
+    cross( mr0, 0, no, 0, w, 0 );
+    for ( int q=0; q<3; ++q ) gxp[q] = mr0[q] * c + w[q] * s + gr0[q];
+    normalize( gxp );
+    cross( no, 0, gxp, 0, w, 0 );
+    for ( int q=0; q<3; ++q ) mxp[q] = gxp[q] * c + w[q] * s;
+  }
+
+  // compute (gt, mt), the turn of (gf, mf) around X towards (g0, m0)
+  private static void turnVectors( double[] gf, int kgf, double[] mf, int kmf, double[] g0, int kg, double[] m0, int km,
+                                   double[] gt, int kgt, double[] mt, int kmt )
+  {
+    double s1 = g0[kg+2] * gf[kgf+1] - g0[kg+1] * gf[kgf+2] + m0[km+2] * mf[kmf+1] - m0[km+1] * mf[kmf+2];
+    double c1 = g0[kg+1] * gf[kgf+1] + g0[kg+2] * gf[kgf+2] + m0[km+1] * mf[kmf+1] + m0[km+2] * mf[kmf+2];
+    double d1 = Math.sqrt( c1*c1 + s1*s1 );
+    s1 /= d1;
+    c1 /= d1;
+    double y = gf[kgf+1];
+    double z = gf[kgf+2];
+    gt[kgt]   = gf[kgf];
+    gt[kgt+1] = c1*y - s1*z;
+    gt[kgt+2] = c1*z + s1*y;
+    y = mf[kmf+1];
+    z = mf[kmf+2];
+    mt[kmt]   = mf[kmf];
+    mt[kmt+1] = c1*y - s1*z;
+    mt[kmt+2] = c1*z + s1*y;
+  }
+
+  // invert ( s2 - s & av ), the centered sum of the outer products
+  private void centeredInverse( double[] inv, double[] s2, double[] s, double[] av )
+  {
+    for ( int r=0; r<3; ++r ) for ( int q=0; q<3; ++q ) tmp[3*r+q] = s2[3*r+q] - s[r] * av[q];
+    inverse( inv, tmp );
+  }
+
+  private static double saturate( double x )
+  {
+    int ix = (int)(x * TDUtil.FN);
+    if ( ix > 127 ) { ix = 127; } else if ( ix < -127 ) { ix = -127; }
+    return ix / (double)TDUtil.FN;
+  }
+
+  // -----------------------------------------------------------------------
+  // small vector and matrix algebra
+
+  private static void zero( double[] a ) { for ( int k=0; k<a.length; ++k ) a[k] = 0; }
+
+  private static void identity( double[] a )
+  {
+    zero( a );
+    a[0] = a[4] = a[8] = 1;
+  }
+
+  private static void scale( double[] r, double[] a, double f )
+  {
+    r[0] = a[0] * f;
+    r[1] = a[1] * f;
+    r[2] = a[2] * f;
+  }
+
+  private static void add( double[] r, int kr, double[] a, int ka )
+  {
+    r[kr]   += a[ka];
+    r[kr+1] += a[ka+1];
+    r[kr+2] += a[ka+2];
+  }
+
+  // r = a - b
+  private static void sub( double[] r, double[] a, double[] b )
+  {
+    r[0] = a[0] - b[0];
+    r[1] = a[1] - b[1];
+    r[2] = a[2] - b[2];
+  }
+
+  private static double dot( double[] a, int ka, double[] b, int kb )
+  {
+    return a[ka] * b[kb] + a[ka+1] * b[kb+1] + a[ka+2] * b[kb+2];
+  }
+
+  private static void cross( double[] a, int ka, double[] b, int kb, double[] r, int kr )
+  {
+    double x = a[ka+1] * b[kb+2] - a[ka+2] * b[kb+1];
+    double y = a[ka+2] * b[kb]   - a[ka]   * b[kb+2];
+    double z = a[ka]   * b[kb+1] - a[ka+1] * b[kb];
+    r[kr]   = x;
+    r[kr+1] = y;
+    r[kr+2] = z;
+  }
+
+  private static double length( double[] a, int ka ) { return Math.sqrt( dot( a, ka, a, ka ) ); }
+
+  private static void normalize( double[] a )
+  {
+    double len = length( a, 0 );
+    if ( len > 0 ) scale( a, a, 1 / len );
+  }
+
+  // r += a & b (outer product)
+  private static void addOuter( double[] r, double[] a, int ka, double[] b, int kb )
+  {
+    for ( int i=0; i<3; ++i ) {
+      double ai = a[ka+i];
+      r[3*i]   += ai * b[kb];
+      r[3*i+1] += ai * b[kb+1];
+      r[3*i+2] += ai * b[kb+2];
+    }
+  }
+
+  // r -= a & b (outer product)
+  private static void subOuter( double[] r, double[] a, double[] b )
+  {
+    for ( int i=0; i<3; ++i ) for ( int j=0; j<3; ++j ) r[3*i+j] -= a[i] * b[j];
+  }
+
+  // r = A * v + b (b can be null)
+  private static void affine( double[] r, int kr, double[] a, double[] b, double[] v, int kv )
+  {
+    double x = v[kv];
+    double y = v[kv+1];
+    double z = v[kv+2];
+    r[kr]   = a[0] * x + a[1] * y + a[2] * z;
+    r[kr+1] = a[3] * x + a[4] * y + a[5] * z;
+    r[kr+2] = a[6] * x + a[7] * y + a[8] * z;
+    if ( b != null ) {
+      r[kr]   += b[0];
+      r[kr+1] += b[1];
+      r[kr+2] += b[2];
+    }
+  }
+
+  // r = A * B^t
+  private static void timesT( double[] r, double[] a, double[] b )
+  {
+    for ( int i=0; i<3; ++i ) {
+      for ( int j=0; j<3; ++j ) {
+        r[3*i+j] = a[3*i] * b[3*j] + a[3*i+1] * b[3*j+1] + a[3*i+2] * b[3*j+2];
+      }
+    }
+  }
+
+  // r = A^-1 (adjugate over determinant)
+  private static void inverse( double[] r, double[] a )
+  {
+    double c0 = a[4] * a[8] - a[5] * a[7];
+    double c1 = a[5] * a[6] - a[3] * a[8];
+    double c2 = a[3] * a[7] - a[4] * a[6];
+    double inv_det = 1 / ( a[0] * c0 + a[1] * c1 + a[2] * c2 );
+    double r1 = ( a[2] * a[7] - a[1] * a[8] ) * inv_det;
+    double r2 = ( a[1] * a[5] - a[2] * a[4] ) * inv_det;
+    double r4 = ( a[0] * a[8] - a[2] * a[6] ) * inv_det;
+    double r5 = ( a[2] * a[3] - a[0] * a[5] ) * inv_det;
+    double r7 = ( a[1] * a[6] - a[0] * a[7] ) * inv_det;
+    double r8 = ( a[0] * a[4] - a[1] * a[3] ) * inv_det;
+    r[0] = c0 * inv_det;  r[1] = r1;  r[2] = r2;
+    r[3] = c1 * inv_det;  r[4] = r4;  r[5] = r5;
+    r[6] = c2 * inv_det;  r[7] = r7;  r[8] = r8;
+  }
+
+  private static double maxDiff( double[] a, double[] b )
+  {
+    double ret = 0;
+    for ( int k=0; k<a.length; ++k ) {
+      double d = Math.abs( a[k] - b[k] );
+      if ( d > ret ) ret = d;
+    }
+    return ret;
+  }
+}
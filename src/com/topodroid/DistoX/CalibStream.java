@@ -0,0 +1,194 @@
+/* @file CalibStream.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid DistoX streaming calibration during the GM acquisition
+ *
+ * The G and M coverages are updated with each incoming calib shot, and a calibration
+ * estimate is refreshed in the background with the double-precision kernel, starting
+ * from the coefficients of the previous estimate.
+ * The shots that have not been grouped yet get provisional groups of four, therefore the
+ * estimate is only an indication of the quality of the data: the calibration must still
+ * be computed after the shots have been grouped.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.List;
+
+// import android.util.Log;
+
+class CalibStream
+{
+  private static final int MIN_DATA = 16; // min nr. of data for the calibration estimate
+
+  private final GMActivity mParent;
+  private final boolean mNonLinear;
+  private final CalibCoverage mCoverG = new CalibCoverage();
+  private final CalibCoverage mCoverM = new CalibCoverage();
+
+  // data (guarded by this)
+  private Vector[] mG = new Vector[ 64 ];
+  private Vector[] mM = new Vector[ 64 ];
+  private long[] mGroup = new long[ 64 ];
+  private int mCount = 0;
+  private long mLastGroup = 0;  // last group
+  private int mGroupCount = 0;  // nr. of shots in the last provisional group
+
+  private boolean mPending = false; // whether the estimate must be refreshed
+  private volatile boolean mRunning = false;
+  private Thread mWorker = null;
+
+  // worker data
+  private final CalibKernelBH mKernel = new CalibKernelBH();
+  private Vector[] wG = new Vector[ 0 ];
+  private Vector[] wM = new Vector[ 0 ];
+  private long[] wGroup = new long[ 0 ];
+
+  CalibStream( GMActivity parent, boolean non_linear )
+  {
+    mParent    = parent;
+    mNonLinear = non_linear;
+    mCoverG.reset();
+    mCoverM.reset();
+  }
+
+  float getCoverageG() { return mCoverG.getCoverage(); }
+  float getCoverageM() { return mCoverM.getCoverage(); }
+
+  /** restart the stream with the calib shots
+   * @param list   calib shots
+   * @note called on the UI thread
+   */
+  synchronized void reset( List< CalibCBlock > list )
+  {
+    mCoverG.reset();
+    mCoverM.reset();
+    mCount = 0;
+    mLastGroup  = 0;
+    mGroupCount = 0;
+    for ( CalibCBlock b : list ) addData( b );
+    request();
+  }
+
+  /** add an incoming calib shot
+   * @param b   calib shot
+   * @note called on the UI thread
+   */
+  synchronized void add( CalibCBlock b )
+  {
+    if ( addData( b ) ) request();
+  }
+
+  private boolean addData( CalibCBlock b )
+  {
+    long grp = b.mGroup;
+    if ( grp < 0 ) return false;
+    if ( grp == 0 ) { // provisional group, as GROUP_BY_FOUR
+      if ( b.isGZero() ) return false;
+      if ( mGroupCount == 0 ) ++ mLastGroup;
+      grp = mLastGroup;
+      mGroupCount = ( mGroupCount + 1 ) % 4;
+    } else {
+      if ( grp > mLastGroup ) mLastGroup = grp;
+      mGroupCount = 0;
+    }
+    if ( mCount == mGroup.length ) {
+      int n = 2 * mCount;
+      Vector[] g = new Vector[ n ];
+      Vector[] m = new Vector[ n ];
+      long[] group = new long[ n ];
+      System.arraycopy( mG, 0, g, 0, mCount );
+      System.arraycopy( mM, 0, m, 0, mCount );
+      System.arraycopy( mGroup, 0, group, 0, mCount );
+      mG = g;
+      mM = m;
+      mGroup = group;
+    }
+    mG[ mCount ] = CalibAlgo.scaledVector( b.gx, b.gy, b.gz );
+    mM[ mCount ] = CalibAlgo.scaledVector( b.mx, b.my, b.mz );
+    mGroup[ mCount ] = grp;
+    ++ mCount;
+    mCoverG.addGM( b, 0 );
+    mCoverM.addGM( b, 1 );
+    return true;
+  }
+
+  // request a new estimate: the requests that arrive while the worker is busy are coalesced
+  private void request()
+  {
+    if ( mCount < MIN_DATA ) return;
+    mPending = true;
+    if ( mWorker == null ) {
+      startWorker();
+    } else {
+      notify();
+    }
+  }
+
+  /** stop the worker
+   * @note the worker is interrupted, not joined: the caller (UI thread) does not wait for a running optimization,
+   *       which is aborted at the end of the current iteration
+   */
+  synchronized void stop()
+  {
+    mRunning = false;
+    if ( mWorker != null ) {
+      mWorker.interrupt();
+      mWorker = null;
+    }
+    notify();
+  }
+
+  private void startWorker()
+  {
+    mRunning = true;
+    mWorker = new Thread() {
+      public void run()
+      {
+        while ( estimate() ) { }
+      }
+    };
+    mWorker.start();
+  }
+
+  // compute an estimate
+  // @return false when the worker must stop
+  private boolean estimate()
+  {
+    int nn;
+    synchronized( this ) {
+      try {
+        while ( mRunning && ! mPending ) wait();
+      } catch ( InterruptedException e ) {
+        mRunning = false;
+      }
+      if ( ! mRunning ) return false;
+      mPending = false;
+      nn = mCount;
+      if ( wG.length < nn ) {
+        wG = new Vector[ mG.length ];
+        wM = new Vector[ mG.length ];
+        wGroup = new long[ mG.length ];
+      }
+      System.arraycopy( mG, 0, wG, 0, nn );
+      System.arraycopy( mM, 0, wM, 0, nn );
+      System.arraycopy( mGroup, 0, wGroup, 0, nn );
+    }
+    long millis = System.currentTimeMillis();
+    final int iter = mKernel.optimize( nn, wG, wM, wGroup, mNonLinear, TDSetting.mCalibMaxIt, TDSetting.mCalibEps, true );
+    final int nr = nn;
+    final float delta = (float)mKernel.mDeltaBH;
+    TDLog.Log( TDLog.LOG_CALIB, "calib stream: data " + nn + " iter " + iter + " delta " + delta + " msec " + (System.currentTimeMillis() - millis) );
+    if ( iter <= 0 ) return mRunning;
+    if ( ! mRunning ) return false;
+    mParent.runOnUiThread( new Runnable() {
+      public void run() { mParent.setStreamEstimate( nr, iter, delta ); }
+    } );
+    return true;
+  }
+}
@@ -259,11 +259,13 @@ class DBlock
   void clearPaint() { 
     // Log.v("DistoX", "Block " + mId + " clear paint");
     mPaint = null;
+    DrawingPath.paintChanged();
   }
 
   void setPaintColor( int color )
   {
     // Log.v("DistoX", "Block " + mId + " set paint color " + color );
+    DrawingPath.paintChanged(); // the splays are drawn with the block paint
     if ( color == 0 ) { mPaint = null; return; }
     if ( mPaint == null ) { 
       mPaint = BrushManager.makePaint( color );
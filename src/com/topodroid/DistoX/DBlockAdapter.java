@@ -231,24 +231,6 @@ class DBlockAdapter extends ArrayAdapter< DBlock >
     }
   }
 
-  // return the list of blocks to assign station names
-  // called only by ShotWindow.updateDBlockList
-  List< DBlock > getItemsForAssign()
-  {
-    int size = mItems.size();
-    int k = size-1;
-    for ( ; k > 0; --k ) { // scan from last backword until a leg is found
-      DBlock blk = mItems.get(k);
-      if ( blk.mFrom.length() > 0 && blk.mTo.length() > 0 ) break;
-    }
-    // List< DBlock > ret = new ArrayList<>();
-    // for ( ; k < size; ++k ) { // insert into return from the leg onward
-    //   ret.add( mItems.get(k) );
-    // }
-    // return ret; // REPLACED 20191002
-    return mItems.subList( k, size );
-  }
-
   // return the block at the given position
   public DBlock get( int pos ) 
   { 
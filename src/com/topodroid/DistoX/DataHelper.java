@@ -78,6 +78,8 @@ class DataHelper extends DataSetObservable
 
   private SQLiteDatabase myDB = null;
   private long           myNextId;   // id of next shot
+  private final Object   mShotIdLock = new Object(); // the shot ids are assigned and committed in order
+  private volatile ShotBatch mPendingBatch = null;   // batch of queued downloaded shots
   private long           myNextCId;  // id of next calib-data
 
   // private SQLiteStatement updateConfig = null;
@@ -1347,6 +1349,53 @@ class DataHelper extends DataSetObservable
     return doInsertShot( sid, id, System.currentTimeMillis()/1000, 0L, "", "",  d, b, c, r, extend, 0.0, DBlock.FLAG_SURVEY, 0L, status, 0L, "", addr );
   }
 
+  // set the batch of the queued downloaded shots
+  void setPendingBatch( ShotBatch batch ) { mPendingBatch = batch; }
+
+  void clearPendingBatch( ShotBatch batch ) { if ( mPendingBatch == batch ) mPendingBatch = null; }
+
+  // insert the queued downloaded shots, before another shot is inserted or the shots are read
+  private void flushPendingShots()
+  {
+    ShotBatch batch = mPendingBatch;
+    if ( batch != null ) batch.flush();
+  }
+
+  /** insert a batch of DistoX shots in a single transaction, and set their ids
+   * @param shots   shots
+   * @return true if all the shots have been inserted
+   */
+  boolean insertDistoXShots( List< ShotBatch.Shot > shots )
+  {
+    if ( myDB == null ) return false;
+    boolean ret = false;
+    synchronized( mShotIdLock ) {
+      long id = myNextId;
+      try {
+        myDB.beginTransaction();
+        for ( ShotBatch.Shot shot : shots ) {
+          ++ id;
+          ContentValues cv = makeShotContentValues( shot.sid, id, shot.millis, 0L, "", "", shot.d, shot.b, shot.c, shot.r,
+                               shot.acc, shot.mag, shot.dip, DBlock.EXTEND_IGNORE, 0.0, DBlock.FLAG_SURVEY, 0L, shot.status, 0L, "",
+                               ( shot.addr == null )? "" : shot.addr );
+          if ( myDB.insert( SHOT_TABLE, null, cv ) < 0 ) {
+            TDLog.Error( "insert batch: failed shot " + id );
+            return false; // the transaction is rolled back
+          }
+        }
+        myDB.setTransactionSuccessful();
+        ret = true;
+      } catch ( SQLiteDiskIOException e )  { handleDiskIOError( e );
+      } catch ( SQLiteException e1 )       { logError("insert batch", e1 );
+      } catch ( IllegalStateException e2 ) { logError("insert batch", e2 );
+      } finally { myDB.endTransaction(); }
+      if ( ret ) {
+        for ( ShotBatch.Shot shot : shots ) shot.id = ++ myNextId;
+      }
+    }
+    return ret;
+  }
+
   long insertShot( long sid, long id, long millis, long color, double d, double b, double c, double r,
 		   long extend, double stretch, long leg,
                    long shot_type, String addr )
@@ -1466,8 +1515,11 @@ class DataHelper extends DataSetObservable
       renamePlotFile( TDPath.getTh2File( old_survey_name + "-" + plot.name + ".th2" ),
                       TDPath.getTh2File( new_survey_name + "-" + plot.name + ".th2" ) );
 
-      renamePlotFile( TDPath.getTdrFile( old_survey_name + "-" + plot.name + ".tdr" ),
-                      TDPath.getTdrFile( new_survey_name + "-" + plot.name + ".tdr" ) );
+      String old_tdr = TDPath.getTdrFile( old_survey_name + "-" + plot.name + ".tdr" );
+      String new_tdr = TDPath.getTdrFile( new_survey_name + "-" + plot.name + ".tdr" );
+      renamePlotFile( old_tdr, new_tdr );
+      renamePlotFile( old_tdr + TDPath.JRN_SUFFIX, new_tdr + TDPath.JRN_SUFFIX );
+      renamePlotFile( old_tdr + TDPath.TDX_SUFFIX, new_tdr + TDPath.TDX_SUFFIX );
     }
   }
 
@@ -1591,32 +1643,35 @@ class DataHelper extends DataSetObservable
   {
     if ( myDB == null ) return -1L;
     // Log.v("DistoXX", "A4 insert sht at " + at + " leg " + leg );
-    shiftShotsId( sid, at );
-    ++ myNextId;
-    ContentValues cv = new ContentValues();
-    cv.put( "surveyId", sid );
-    cv.put( "id",       at );
-    cv.put( "fStation", "" ); // from );
-    cv.put( "tStation", "" ); // to );
-    cv.put( "distance", d );
-    cv.put( "bearing",  b );
-    cv.put( "clino",    c );
-    cv.put( "roll",     r );
-    cv.put( "acceleration", 0.0 );
-    cv.put( "magnetic", 0.0 );
-    cv.put( "dip",      0.0 );
-    cv.put( "extend",   extend );
-    cv.put( "flag",     DBlock.FLAG_SURVEY ); // flag );
-    cv.put( "leg",      leg ); // LegType.NORMAL ); // leg );
-    cv.put( "status",   TDStatus.NORMAL ); // status );
-    cv.put( "comment",  "" ); // comment );
-    cv.put( "type",     type ); 
-    cv.put( "millis",   millis );
-    cv.put( "color",    color );
-    cv.put( "stretch",  stretch );
-    cv.put( "address",  "" );
-
-    doInsert( SHOT_TABLE, cv, "insert at" );
+    flushPendingShots();
+    synchronized( mShotIdLock ) {
+      shiftShotsId( sid, at );
+      ++ myNextId;
+      ContentValues cv = new ContentValues();
+      cv.put( "surveyId", sid );
+      cv.put( "id",       at );
+      cv.put( "fStation", "" ); // from );
+      cv.put( "tStation", "" ); // to );
+      cv.put( "distance", d );
+      cv.put( "bearing",  b );
+      cv.put( "clino",    c );
+      cv.put( "roll",     r );
+      cv.put( "acceleration", 0.0 );
+      cv.put( "magnetic", 0.0 );
+      cv.put( "dip",      0.0 );
+      cv.put( "extend",   extend );
+      cv.put( "flag",     DBlock.FLAG_SURVEY ); // flag );
+      cv.put( "leg",      leg ); // LegType.NORMAL ); // leg );
+      cv.put( "status",   TDStatus.NORMAL ); // status );
+      cv.put( "comment",  "" ); // comment );
+      cv.put( "type",     type ); 
+      cv.put( "millis",   millis );
+      cv.put( "color",    color );
+      cv.put( "stretch",  stretch );
+      cv.put( "address",  "" );
+
+      doInsert( SHOT_TABLE, cv, "insert at" );
+    }
     return at;
   }
 
@@ -1660,16 +1715,19 @@ class DataHelper extends DataSetObservable
     // TDLog.Log( TDLog.LOG_DB, "insert shot <" + id + "> " + from + "-" + to + " extend " + extend );
     // Log.v("DistoX-SHOT", "do insert shot id " + id + " d " + d + " b " + b + " c " + c );
     if ( myDB == null ) return -1L;
-    if ( id == -1L ) {
-      ++ myNextId;
-      id = myNextId;
-    } else {
-      myNextId = id;
-    }
+    flushPendingShots();
     if (addr == null) addr = "";
-    ContentValues cv = makeShotContentValues( sid, id, millis, color, from, to, d, b, c, r, 0.0, 0.0, 0.0,
-		    extend, stretch, flag, leg, status, shot_type, comment, addr );
-    doInsert( SHOT_TABLE, cv, "insert" );
+    synchronized( mShotIdLock ) {
+      if ( id == -1L ) {
+        ++ myNextId;
+        id = myNextId;
+      } else {
+        myNextId = id;
+      }
+      ContentValues cv = makeShotContentValues( sid, id, millis, color, from, to, d, b, c, r, 0.0, 0.0, 0.0,
+		      extend, stretch, flag, leg, status, shot_type, comment, addr );
+      doInsert( SHOT_TABLE, cv, "insert" );
+    }
     return id;
   }
 
@@ -2867,6 +2925,7 @@ class DataHelper extends DataSetObservable
     // Log.v("DistoXX", "B2 select shots after id " + id );
     List< DBlock > list = new ArrayList<>();
     if ( myDB == null ) return list;
+    flushPendingShots();
     Cursor cursor = myDB.query(SHOT_TABLE, mShotFields,
                     "id>=? and surveyId=? and status=?",
                     new String[] { Long.toString(id), Long.toString(sid), Long.toString(status) },
@@ -2932,6 +2991,7 @@ class DataHelper extends DataSetObservable
     // Log.v("DistoXX", "B3 select shots all");
     List< DBlock > list = new ArrayList<>();
     if ( myDB == null ) return list;
+    flushPendingShots();
     Cursor cursor = myDB.query(SHOT_TABLE, mShotFields,
                     WHERE_SID_STATUS, new String[]{ Long.toString(sid), Long.toString(status) },
                     null, null, "id" );
@@ -2952,6 +3012,7 @@ class DataHelper extends DataSetObservable
     // Log.v("DistoXX", "B3 select shots all");
     List< DBlock > list = new ArrayList<>();
     if ( myDB == null ) return list;
+    flushPendingShots();
     Cursor cursor = myDB.query(SHOT_TABLE, mFullShotFields,
                     WHERE_SID_STATUS, new String[]{ Long.toString(sid), Long.toString(status) },
                     null, null, "id" );
@@ -2999,6 +3060,7 @@ class DataHelper extends DataSetObservable
     // Log.v("DistoXX", "B4 select shots all leg");
     List< DBlock > list = new ArrayList<>();
     if ( myDB == null ) return list;
+    flushPendingShots();
     Cursor cursor = myDB.query(SHOT_TABLE, mShotFields,
                     WHERE_SID_STATUS, new String[]{ Long.toString(sid), Long.toString(status) },
                     null, null, "id" );
@@ -3905,6 +3967,7 @@ class DataHelper extends DataSetObservable
    //         0 or -1 failure
    long setSurvey( String name, int datamode )
    {
+     flushPendingShots();
      myNextId = 0;
      if ( myDB == null ) return 0L;
      long sid = setName( SURVEY_TABLE, name, datamode );
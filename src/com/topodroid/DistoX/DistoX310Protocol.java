@@ -196,7 +196,7 @@ class DistoX310Protocol extends DistoXProtocol
           mOut.write( mBuffer, 0, 3 );
           // if ( TDSetting.mPacketLog ) logPacket3( 1L, mBuffer );
 
-          mIn.readFully( mBuffer, 0, 8 );
+          mReader.readFully( mBuffer, 0, 8 );
           // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
         } catch ( IOException e ) {
@@ -221,7 +221,7 @@ class DistoX310Protocol extends DistoXProtocol
           mOut.write( mBuffer, 0, 3 );
           // if ( TDSetting.mPacketLog ) logPacket3( 1L, mBuffer );
 
-          mIn.readFully( mBuffer, 0, 8 );
+          mReader.readFully( mBuffer, 0, 8 );
           // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
         } catch ( IOException e ) {
@@ -336,7 +336,7 @@ class DistoX310Protocol extends DistoXProtocol
             mOut.write( buf, 0, 259 );
             // if ( TDSetting.mPacketLog ) logPacket8( 1L, buf );
 
-            mIn.readFully( mBuffer, 0, 8 );
+            mReader.readFully( mBuffer, 0, 8 );
             // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
             int reply_addr = ( ((int)(mBuffer[2]))<<8 ) + ((int)(mBuffer[1]));
@@ -389,7 +389,7 @@ class DistoX310Protocol extends DistoXProtocol
           mOut.write( buf, 0, 3 );
           // if ( TDSetting.mPacketLog ) logPacket3( 1L, buf );
 
-          mIn.readFully( mBuffer, 0, 8 );
+          mReader.readFully( mBuffer, 0, 8 );
           // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
           int reply_addr = ( ((int)(mBuffer[2]))<<8 ) + ((int)(mBuffer[1]));
@@ -401,7 +401,7 @@ class DistoX310Protocol extends DistoXProtocol
             TDLog.LogFile( "Firmware dump: reply addr ok");
           }
 
-          mIn.readFully( buf, 0, 256 );
+          mReader.readFully( buf, 0, 256 );
           // if ( TDSetting.mPacketLog ) logPacket8( 0L, buf );
 
           boolean last = true;
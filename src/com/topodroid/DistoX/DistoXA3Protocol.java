@@ -61,7 +61,7 @@ class DistoXA3Protocol extends DistoXProtocol
       mOut.write( mBuffer, 0, 3 );
       // if ( TDSetting.mPacketLog ) logPacket3( 1L, mBuffer );
 
-      mIn.readFully( mBuffer, 0, 8 );
+      mReader.readFully( mBuffer, 0, 8 );
       // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
       if ( mBuffer[0] != (byte)0x38 ) { 
@@ -87,7 +87,7 @@ class DistoXA3Protocol extends DistoXProtocol
       mOut.write( mBuffer, 0, 7 );
       // if ( TDSetting.mPacketLog ) logPacket7( 1L, mBuffer );
 
-      mIn.readFully( mBuffer, 0, 8 );
+      mReader.readFully( mBuffer, 0, 8 );
       // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
       if ( mBuffer[0] != (byte)0x38 ) {
@@ -129,7 +129,7 @@ class DistoXA3Protocol extends DistoXProtocol
       mOut.write( command, 0, 3 );
       // if ( TDSetting.mPacketLog ) logPacket3( 1L, command );
 
-      mIn.readFully( mBuffer, 0, 8 );
+      mReader.readFully( mBuffer, 0, 8 );
       // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
       if ( mBuffer[0] != (byte)( 0x38 ) ) { return null; }
@@ -233,6 +233,13 @@ class DistoXComm extends TopoDroidComm
    */
   protected DistoXProtocol createProtocol( DataInputStream in, DataOutputStream out ) { return null; }
 
+  @Override
+  protected void closeProtocol()
+  {
+    if ( mProtocol != null ) ((DistoXProtocol)mProtocol).stopReader();
+    super.closeProtocol();
+  }
+
   /** create a socket (not connected)
    *  and a connection protocol on it
    */
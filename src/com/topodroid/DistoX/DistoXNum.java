@@ -16,6 +16,8 @@ import java.util.List;
 import java.util.Stack;
 import java.util.Locale;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 // import android.util.Log;
 
@@ -31,6 +33,7 @@ class DistoXNum
   private float mHmin; // horizontal
   private float mHmax;
   private float mDecl;
+  private int mLoopClosure; // loop closure mode
 
   /* statistics - not including survey shots */
   private float mVmin;    // Z vertical (downwards)
@@ -44,9 +47,11 @@ class DistoXNum
   private int mDupNr;  // number of duplicate shots
   private int mSurfNr; // number of surface shots
 
-  private float mErr0; // angular error distribution
+  private float mErr0; // angular error distribution: number, sum and sum of squares
   private float mErr1;
   private float mErr2;
+  private float mErrMean;
+  private float mErrStddev;
   private int mLenCnt;
 
   private void resetStats()
@@ -59,6 +64,15 @@ class DistoXNum
     mDupNr   = 0;
     mSurfNr  = 0;
     mErr0 = mErr1 = mErr2 = 0;
+    mErrMean = mErrStddev = 0;
+  }
+
+  private void setErrorStats()
+  {
+    if ( mErr0 > 0 ) {
+      mErrMean   = mErr1 / mErr0;
+      mErrStddev = (float)Math.sqrt( mErr2/mErr0 - mErrMean*mErrMean );
+    }
   }
 
   private void addToStats( TriShot ts )
@@ -114,6 +128,17 @@ class DistoXNum
   private ArrayList<NumNode>    mNodes;
   private ArrayList<DBlock>     mUnattachedShots;
 
+  // incremental reduction
+  private long   mTailId;       // id of the first block that must be (re)examined by appendData
+  private DBlock mLastLegBlock; // first block of the last leg (null if followed by a splay)
+  private ArrayList<TriSplay>   mPendingSplays; // splays with a station that is not (yet) in the reduction
+  private boolean mHideBarrier; // whether there are hidden or barrier stations
+  private HashMap< NumStation, ArrayList<Integer> > mStationSplays = null; // indices of the splays of each station (null: not built)
+  private ArrayList<NumStation> mNewStations = new ArrayList<>(); // stations added by the last appendData
+  private ArrayList<NumShot>    mNewShots    = new ArrayList<>(); // shots added by the last appendData
+  private ArrayList<NumSplay>   mNewSplays   = new ArrayList<>(); // splays added or recomputed by the last appendData
+  private HashSet<DBlock>       mOldSplays   = new HashSet<>();   // blocks of the splays recomputed by the last appendData
+
   int stationsNr()  { return mStations.size(); }
   int shotsNr()     { return mShots.size(); }
   int duplicateNr() { return mDupNr; }
@@ -129,8 +154,8 @@ class DistoXNum
   float surveyBottom()  { return mTdown; } // bottom must be negative
   float unattachedLength() { return mUnattachedLength; }
 
-  float angleErrorMean()   { return mErr1; } // radians
-  float angleErrorStddev() { return mErr2; } // radians
+  float angleErrorMean()   { return mErrMean; } // radians
+  float angleErrorStddev() { return mErrStddev; } // radians
 
   boolean surveyAttached; //!< whether the survey is attached
   boolean surveyExtend;
@@ -271,12 +296,298 @@ class DistoXNum
    * @param hide     hiding list
    */
   DistoXNum( List<DBlock> data, String start, String view, String hide, float decl, String format )
+  {
+    this( data, start, view, hide, decl, format, TDSetting.mLoopClosure );
+  }
+
+  /** create the numerical centerline
+   * @param data     list of survey data
+   * @param start    start station
+   * @param view     barriers list
+   * @param hide     hiding list
+   * @param loop_closure loop closure mode
+   */
+  DistoXNum( List<DBlock> data, String start, String view, String hide, float decl, String format, int loop_closure )
   {
     mDecl = decl;
+    mLoopClosure = loop_closure;
     surveyExtend   = true;
     surveyAttached = computeNum( data, start, format );
     setStationsHide( hide );
     setStationsBarr( view );
+    mHideBarrier = ( hide != null && hide.trim().length() > 0 ) || ( view != null && view.trim().length() > 0 );
+  }
+
+  /** @return a copy of the reduction, translated so that a station is at the origin
+   * @param origin   station of this reduction (or a closure station)
+   * @note the copy is meant for the exports: it has the stations, the closure stations, the shots,
+   *       the splays and the statistics, but not the reduction graph, and it cannot be extended by appendData
+   */
+  DistoXNum translatedCopy( NumStation origin ) { return new DistoXNum( this, origin ); }
+
+  private DistoXNum( DistoXNum num, NumStation origin )
+  {
+    float e0 = origin.e;
+    float s0 = origin.s;
+    float v0 = origin.v;
+    float h0 = origin.h;
+    mDecl  = num.mDecl;
+    mLoopClosure = num.mLoopClosure;
+    mSmin  = num.mSmin - s0;
+    mSmax  = num.mSmax - s0;
+    mEmin  = num.mEmin - e0;
+    mEmax  = num.mEmax - e0;
+    mHmin  = num.mHmin - h0;
+    mHmax  = num.mHmax - h0;
+    mVmin  = num.mVmin - v0;
+    mVmax  = num.mVmax - v0;
+    mTup   = num.mTup   + v0; // depths are positive upwards
+    mTdown = num.mTdown + v0;
+    mLength  = num.mLength;
+    mExtLen  = num.mExtLen;
+    mProjLen = num.mProjLen;
+    mUnattachedLength = num.mUnattachedLength;
+    mDupNr  = num.mDupNr;
+    mSurfNr = num.mSurfNr;
+    mErr0 = num.mErr0;
+    mErr1 = num.mErr1;
+    mErr2 = num.mErr2;
+    mErrMean   = num.mErrMean;
+    mErrStddev = num.mErrStddev;
+    mLenCnt    = num.mLenCnt;
+    surveyAttached = num.surveyAttached;
+    surveyExtend   = num.surveyExtend;
+    mHideBarrier   = true; // appendData must not extend the copy
+
+    HashMap< NumStation, NumStation > copies = new HashMap<>(); // NumStation has identity equality
+    mStations = new NumStationSet();
+    for ( NumStation st : num.getStations() ) {
+      NumStation st1 = new NumStation( st, e0, s0, v0, h0 );
+      copies.put( st, st1 );
+      mStations.addStation( st1 );
+    }
+    mClosureStations = new ArrayList<>();
+    for ( NumStation st : num.mClosureStations ) {
+      NumStation st1 = new NumStation( st, e0, s0, v0, h0 );
+      copies.put( st, st1 );
+      mClosureStations.add( st1 );
+    }
+    for ( NumStation st : copies.keySet() ) {
+      if ( st.mParent != null ) copies.get( st ).mParent = copies.get( st.mParent );
+    }
+    mStartStation = ( num.mStartStation == null )? null : copies.get( num.mStartStation );
+    mShots = new ArrayList<>();
+    for ( NumShot sh : num.mShots ) {
+      mShots.add( new NumShot( sh, copies.get( sh.from ), copies.get( sh.to ) ) );
+    }
+    mSplays = new ArrayList<>();
+    for ( NumSplay sp : num.mSplays ) {
+      mSplays.add( new NumSplay( sp, copies.get( sp.from ), e0, s0, v0, h0 ) );
+    }
+    mClosures        = num.mClosures;
+    mNodes           = new ArrayList<>();
+    mUnattachedShots = num.mUnattachedShots;
+    mPendingSplays   = new ArrayList<>();
+    mTailId          = num.mTailId;
+    mLastLegBlock    = null;
+  }
+
+  /** @return the id of the first block that must be passed to appendData
+   */
+  long getTailId() { return mTailId; }
+
+  // results of the last appendData: the new stations, shots and splays, and the splays that have been recomputed
+  List<NumStation> getNewStations() { return mNewStations; }
+  List<NumShot>    getNewShots()    { return mNewShots; }
+  List<NumSplay>   getNewSplays()   { return mNewSplays; }
+  Set<DBlock>      getOldSplays()   { return mOldSplays; }
+
+  /** incremental reduction: add the blocks appended to the survey data
+   * @param data   survey blocks with id not less than getTailId(), ordered by id
+   * @return false if the blocks cannot be added incrementally: the caller must make a new DistoXNum
+   *
+   * New legs must add a new station to the reduction.
+   * Loop closures, siblings, new secondary blocks of an old leg, magnetic anomaly, diving mode,
+   * trilateration, hidden/barrier stations and unattached legs require the full reduction.
+   */
+  boolean appendData( List<DBlock> data )
+  {
+    if ( TDInstance.datamode == SurveyInfo.DATAMODE_DIVING ) return false;
+    if ( mLoopClosure == TDSetting.LOOP_TRIANGLES ) return false;
+    if ( StationPolicy.doMagAnomaly() ) return false;
+    if ( mHideBarrier || mUnattachedShots.size() > 0 ) return false;
+    mNewStations.clear();
+    mNewShots.clear();
+    mNewSplays.clear();
+    mOldSplays.clear();
+
+    // temp-shots and temp-splays as in computeNum
+    TriShot lastLeg = null;
+    DBlock  oldLeg  = mLastLegBlock; // last leg of the reduction, if not followed by a splay
+    List<TriShot> tmpshots   = new ArrayList<>();
+    List<TriSplay> tmpsplays = new ArrayList<>();
+    long tail_id = -1;
+    long last_id = mTailId - 1;
+    for ( DBlock blk : data ) {
+      if ( blk.mId < mTailId ) continue;
+      last_id = blk.mId;
+      DBlock lastBlock = ( lastLeg != null )? lastLeg.getFirstBlock() : oldLeg;
+      if ( blk.isTypeBlank() && ( lastBlock == null || ! blk.isRelativeDistance( lastBlock ) ) ) {
+        if ( tail_id < 0 ) tail_id = blk.mId;
+      } else {
+        tail_id = -1;
+      }
+      if ( blk.isSplay() ) {
+        lastLeg = null;
+        oldLeg  = null;
+        if ( blk.mFrom != null && blk.mFrom.length() > 0 ) { // normal splay
+          tmpsplays.add( new TriSplay( blk, blk.mFrom, blk.getIntExtend(), +1 ) );
+        } else if ( blk.mTo != null && blk.mTo.length() > 0 ) { // reversed splay
+          tmpsplays.add( new TriSplay( blk, blk.mTo, blk.getIntExtend(), -1 ) );
+        }
+      } else if ( blk.isMainLeg() || blk.isBackLeg() ) {
+        lastLeg = new TriShot( blk, blk.mFrom, blk.mTo, blk.getIntExtend(), blk.getStretch(), +1 );
+        lastLeg.duplicate = blk.isBackLeg() || blk.isDuplicate();
+        lastLeg.surface   = blk.isSurface();
+        lastLeg.commented = blk.isMainLeg() && blk.isCommented();
+        oldLeg = null;
+        tmpshots.add( lastLeg );
+      } else if ( blk.isSecLeg() ) {
+        if ( lastLeg != null ) {
+          lastLeg.addBlock( blk );
+        } else if ( oldLeg != null ) {
+          return false; // new block of an old leg
+        }
+      } else if ( blk.isTypeBlank() ) {
+        if ( lastLeg != null ) {
+          if ( blk.isRelativeDistance( lastLeg.getFirstBlock() ) ) lastLeg.addBlock( blk );
+        } else if ( oldLeg != null && blk.isRelativeDistance( oldLeg ) ) {
+          return false; // new block of an old leg
+        }
+      }
+    }
+
+    // check that every leg adds a new station, before changing the reduction
+    HashMap< String, TriShot > new_stations = new HashMap< String, TriShot >();
+    for ( TriShot ts : tmpshots ) {
+      if ( ts.from == null || ts.to == null ) return false;
+      boolean has_from = ( getStation( ts.from ) != null || new_stations.containsKey( ts.from ) );
+      boolean has_to   = ( getStation( ts.to ) != null   || new_stations.containsKey( ts.to ) );
+      if ( has_from == has_to ) return false; // loop closure (or sibling), or unattached leg
+      new_stations.put( has_from ? ts.to : ts.from, ts );
+    }
+
+    HashSet< NumStation > changed = new HashSet<>(); // stations with new legs
+    for ( TriShot ts : tmpshots ) {
+      if ( ts.getIntExtend() > 1 ) surveyExtend = false;
+      addToStats( ts );
+      int  iext = DBlock.getIntExtend( ts.extend );
+      boolean has_coords = (iext <= 1);
+      float ext = DBlock.getReducedExtend( ts.extend, ts.stretch );
+      NumStation sf = getStation( ts.from );
+      NumStation st = getStation( ts.to );
+      NumShot sh;
+      if ( sf != null ) { // forward shot: from --> to
+        sf.addAzimuth( ts.b(), iext );
+        float bearing = ts.b() - sf.mAnomaly;
+        st = new NumStation( ts.to, sf, ts.d(), bearing, ts.c(), ext, has_coords );
+        if ( ! mStations.addStation( st ) ) mClosureStations.add( st );
+        st.addAzimuth( (ts.b()+180)%360, -iext );
+        st.mAnomaly = sf.mAnomaly;
+        updateBBox( st );
+        addToStats( ts.duplicate, ts.surface, ts.d(), ((iext == 0)? Math.abs(ts.v()) : ts.d()), ts.h(), st.v );
+        sh = makeShotFromTmp( sf, st, ts, 1, sf.mAnomaly, mDecl );
+        addShotToStations( sh, st, sf );
+        changed.add( sf );
+        changed.add( st );
+        mNewStations.add( st );
+      } else { // reversed shot: the new station is sf
+        st.addAzimuth( (ts.b()+180)%360, -iext );
+        float bearing = ts.b() - st.mAnomaly;
+        sf = new NumStation( ts.from, st, - ts.d(), bearing, ts.c(), ext, has_coords );
+        if ( ! mStations.addStation( sf ) ) mClosureStations.add( sf );
+        sf.addAzimuth( ts.b(), iext );
+        sf.mAnomaly = st.mAnomaly;
+        updateBBox( sf );
+        addToStats( ts.duplicate, ts.surface, Math.abs(ts.d() ), Math.abs( (iext == 0)? ts.v() : ts.d() ), Math.abs(ts.h()), sf.v );
+        sh = makeShotFromTmp( sf, st, ts, -1, st.mAnomaly, mDecl );
+        addShotToStations( sh, sf, st );
+        changed.add( st );
+        changed.add( sf );
+        mNewStations.add( sf );
+      }
+      if ( mLoopClosure == TDSetting.LOOP_CYCLES ) { // as the recomputation after the loop compensation
+        NumStation ns = ( sf.mParent == st )? sf : st; // new station
+        ns.mHasCoords = false;
+        sh.mUsed = resetCoordsFromShot( sh );
+      }
+      mNewShots.add( sh );
+    }
+    setErrorStats();
+
+    // stations with new legs: reset the azimuths and the splays already there
+    if ( mStationSplays == null ) {
+      mStationSplays = new HashMap<>();
+      for ( int k = 0; k < mSplays.size(); ++k ) indexSplay( mSplays.get( k ), k );
+    }
+    for ( NumStation st : changed ) {
+      st.setAzimuths();
+      ArrayList<Integer> indices = mStationSplays.get( st );
+      if ( indices == null ) continue;
+      for ( int k : indices ) {
+        DBlock blk = mSplays.get( k ).getBlock();
+        TriSplay ts = ( blk.mFrom != null && blk.mFrom.length() > 0 ) ?
+                      new TriSplay( blk, blk.mFrom, blk.getIntExtend(), +1 )
+                    : new TriSplay( blk, blk.mTo, blk.getIntExtend(), -1 );
+        NumSplay splay = makeSplay( st, ts );
+        mSplays.set( k, splay );
+        mOldSplays.add( blk );
+        mNewSplays.add( splay );
+      }
+    }
+    // splays that could not be attached
+    if ( tmpshots.size() > 0 ) {
+      for ( int k = 0; k < mPendingSplays.size(); ) {
+        TriSplay ts = mPendingSplays.get( k );
+        NumStation st = getStation( ts.from );
+        if ( st != null ) {
+          appendSplay( makeSplay( st, ts ) );
+          mPendingSplays.remove( k );
+        } else {
+          ++ k;
+        }
+      }
+    }
+    for ( TriSplay ts : tmpsplays ) {
+      NumStation st = getStation( ts.from );
+      if ( st != null ) {
+        appendSplay( makeSplay( st, ts ) );
+      } else {
+        mPendingSplays.add( ts );
+      }
+    }
+
+    mTailId = ( tail_id >= 0 )? tail_id : last_id + 1;
+    mLastLegBlock = ( lastLeg != null )? lastLeg.getFirstBlock() : oldLeg;
+    return true;
+  }
+
+  // add a splay of appendData
+  private void appendSplay( NumSplay splay )
+  {
+    indexSplay( splay, mSplays.size() );
+    mSplays.add( splay );
+    mNewSplays.add( splay );
+  }
+
+  private void indexSplay( NumSplay splay, int k )
+  {
+    ArrayList<Integer> indices = mStationSplays.get( splay.from );
+    if ( indices == null ) {
+      indices = new ArrayList<>();
+      mStationSplays.put( splay.from, indices );
+    }
+    indices.add( k );
   }
 
   // public void dump()
@@ -291,59 +602,42 @@ class DistoXNum
   //   }
   // } 
 
-  /** shortest-path algo
-   * @param s1  first station
-   * @param s2  second station
-   *
-   * FIXME this can take too long:
-   * <init>:268 -- computeNum:1008 -- shortestPath:308, for ( NymShot e : mShots )
+  /** loop closure, the closure error is computed when all the closures have been found
    */
-  private NumShortpath shortestPath( NumStation s1, NumStation s2 )
+  class NumClosure
   {
-    // Log.v("DistoX-LOOP", "shortest path " + s1.name + " " + s2.name );
-    Stack<NumStation> stack = new Stack<NumStation>();
-    mStations.initShortestPath( 100000.0f );
-    // for ( NumStation s : mStations ) {
-    //   s.mShortpathDist = new NumShortpath( 100000.0f, 0 );
-    //   // s.path = null;
-    // }
+    NumStation sf; // closure from station
+    NumStation st; // closure to station
+    float d, b, c; // closing shot
+    int max_shot;  // number of legs at the time of the closure
 
-    s1.mShortpathDist.resetShortpath( 0, 0, 0 ); // clear 
-    stack.push( s1 );
-    while ( ! stack.empty() ) {
-      NumStation s = stack.pop();
-      NumShortpath sp = s.mShortpathDist;
-
-      for ( NumShot e : mShots ) {
-        if ( e.from == s1 && e.to == s2 ) continue;
-        if ( e.from == s2 && e.to == s1 ) continue;
-        float len = e.length();
-        if ( e.from == s && e.to != null ) {
-          NumShortpath etp = e.to.mShortpathDist;
-          if ( etp != null ) {
-            float d = sp.mDist + len;
-            if ( d < etp.mDist ) {
-	      // Log.v("DistoX-LOOP", "set short dist T " + e.to.name + " : " + d );
-              etp.resetShortpath( sp.mNr+1, d, sp.mDist2 + len*len );
-              // e.to.path = from;
-              stack.push( e.to );
-            }
-	  }
-        } else if ( e.to == s && e.from != null ) {
-          NumShortpath efp = e.from.mShortpathDist;
-	  if ( efp != null ) {
-            float d = sp.mDist + len;
-            if ( d < efp.mDist ) {
-	      // Log.v("DistoX-LOOP", "set short dist F " + e.from.name + " : " + d );
-              efp.resetShortpath( sp.mNr+1, d, sp.mDist2 + len*len );
-              // e.from.path = from;
-              stack.push( e.from );
-            }
-	  }
-        }
-      }
+    NumClosure( NumStation f, NumStation t, float d0, float b0, float c0, int max )
+    {
+      sf = f;
+      st = t;
+      d  = d0;
+      b  = b0;
+      c  = c0;
+      max_shot = max;
+    }
+  }
+
+  /** compute the closure errors of all the loop closures in one pass
+   * @param closures  loop closures, in the order they have been found
+   * @param format    closure error format
+   *
+   * each shortest-path uses only the legs that had been reduced when the loop was closed,
+   * station coordinates do not change until the loop compensation
+   */
+  private void computeClosures( List<NumClosure> closures, String format )
+  {
+    if ( closures.size() == 0 ) return;
+    NumShortpathSearch search = new NumShortpathSearch( mStations );
+    for ( NumClosure cl : closures ) {
+      NumShortpath short_path = search.shortestPath( cl.sf, cl.st, cl.max_shot );
+      // Log.v("DistoX-LOOP", "loop length " + short_path.mDist + " closure " + cl.d + " " + cl.b + " " + cl.c );
+      mClosures.add( getClosureError( format, cl.st, cl.sf, cl.d, cl.b, cl.c, short_path, Math.abs( cl.d ) ) );
     }
-    return s2.mShortpathDist;
   }
 
   // FIXME use hashmap
@@ -453,7 +747,10 @@ class DistoXNum
   {
     addShotToStation( sh, st1 );
     addShotToStation( sh, st2 );
+    sh.mIndex = mShots.size();
     mShots.add( sh );
+    sh.from.mLinks.add( sh );
+    sh.to.mLinks.add( sh );
   }
 
   // ==========================================================================
@@ -729,6 +1026,54 @@ class DistoXNum
     return sh;
   }
 
+  private NumSplay makeSplay( NumStation st, TriSplay ts )
+  {
+    float cosine = st.computeExtend( ts.b( mDecl ), ts.extend ); // FIXME_EXTEND
+    return new NumSplay( st, ts.d(), ts.b( mDecl ), ts.c(), cosine, ts.block, mDecl );
+  }
+
+  /** after the loop compensation: set the coords of a station of the shot from the other station
+   * @param sh2   shot
+   * @return true if the coords of a station have been set
+   */
+  private boolean resetCoordsFromShot( NumShot sh2 )
+  {
+    NumStation s1 = sh2.from;
+    NumStation s2 = sh2.to;
+    float c2 = sh2.clino();
+    float b2 = sh2.bearing() + mDecl;
+    if ( s1.mHasCoords && ! s2.mHasCoords ) {
+      // reset s2 values from the shot
+      // float d = sh2.length() * sh2.mDirection; // FIXME DIRECTION
+      float d = sh2.length();
+      float v = - d * TDMath.sind( c2 );
+      float h =   d * TDMath.cosd( c2 );
+      float e =   h * TDMath.sind( b2 );
+      float s = - h * TDMath.cosd( b2 );
+      s2.e = s1.e + e;
+      s2.s = s1.s + s;
+      s2.v = s1.v + v;
+      s2.mHasCoords = true;
+      // if ( TDLog.LOG_DEBUG )  Log.v( "DistoX-NUM", "reset " + s1.name + "->" + s2.name + " " + e + " " + s + " " + v );
+      return true;
+    } else if ( s2.mHasCoords && ! s1.mHasCoords ) {
+      // reset s1 values from the shot
+      // float d = - sh2.length() * sh2.mDirection; // FIXME DIRECTION
+      float d = - sh2.length();
+      float v = - d * TDMath.sind( c2 );
+      float h =   d * TDMath.cosd( c2 );
+      float e =   h * TDMath.sind( b2 );
+      float s = - h * TDMath.cosd( b2 );
+      s1.e = s2.e + e;
+      s1.s = s2.s + s;
+      s1.v = s2.v + v;
+      s1.mHasCoords = true;
+      // if ( TDLog.LOG_DEBUG )  Log.v( "DistoX-NUM", "reset " + s1.name + "<-" + s2.name + " " + e + " " + s + " " + v );
+      return true;
+    }
+    return false;
+  }
+
   /** survey data reduction 
    * return true if all shots are attached
    */
@@ -774,13 +1119,24 @@ class DistoXNum
     mClosures = new ArrayList<>();
     mNodes    = new ArrayList<>();
     mUnattachedShots = new ArrayList<>();
+    mPendingSplays   = new ArrayList<>();
+    mStationSplays   = null;
 
     TriShot lastLeg = null;
     List<TriShot> tmpshots   = new ArrayList<>();
+    List<NumClosure> closures = new ArrayList<>();
     List<TriSplay> tmpsplays = new ArrayList<>();
 
+    long tail_id = -1; // first of the trailing blocks that have no effect on the reduction
+    long last_id = -1;
     for ( DBlock blk : data ) {
       // Log.v("DistoX", "NUM blk type " + blk.mType );
+      last_id = blk.mId;
+      if ( blk.isTypeBlank() && ( lastLeg == null || ! blk.isRelativeDistance( lastLeg.getFirstBlock() ) ) ) {
+        if ( tail_id < 0 ) tail_id = blk.mId;
+      } else {
+        tail_id = -1;
+      }
       if ( blk.isSplay() ) {
         lastLeg = null;  // clear last-leg
         if ( blk.mFrom != null && blk.mFrom.length() > 0 ) { // normal splay
@@ -815,8 +1171,10 @@ class DistoXNum
       }
     }
     // Log.v("DistoX", "data " + data.size() + " shots " + tmpshots.size() + " splays " + tmpsplays.size() );
+    mTailId = ( tail_id >= 0 )? tail_id : last_id + 1;
+    mLastLegBlock = ( lastLeg == null )? null : lastLeg.getFirstBlock();
 
-    if ( TDSetting.mLoopClosure == TDSetting.LOOP_TRIANGLES ) {
+    if ( mLoopClosure == TDSetting.LOOP_TRIANGLES ) {
       makeTrilateration( tmpshots );
     }
 
@@ -824,18 +1182,30 @@ class DistoXNum
     //   Log.v( "DistoX-NUM", "DistoXNum::compute tmp-shots " + tmpshots.size() + " tmp-splays " + tmpsplays.size() );
     //   for ( TriShot ts : tmpshots ) ts.Dump();
     // }
+    // index of the temp-shots by station pair (regardless of direction), in list order
+    HashMap< String, ArrayList<TriShot> > pairs = new HashMap< String, ArrayList<TriShot> >();
     for ( TriShot tsh : tmpshots ) { // clear backshot, sibling, and multibad
       tsh.backshot = 0;
       tsh.sibling  = null;
+      tsh.removed  = false;
       tsh.getFirstBlock().mMultiBad = false;
+      String key = tsh.pairKey();
+      if ( key == null ) continue;
+      ArrayList<TriShot> pair = pairs.get( key );
+      if ( pair == null ) {
+        pair = new ArrayList<>();
+        pairs.put( key, pair );
+      }
+      pair.add( tsh );
     }
 
     // dump tmpshots
     // Log.v("DistoXL", "tmp shots " + tmpshots.size() );
     // for ( TriShot tr : tmpshots ) tr.dump();
 
-    for ( int i = 0; i < tmpshots.size(); ++i ) {
-      TriShot ts0 = tmpshots.get( i );
+    boolean has_removed = false;
+    for ( TriShot ts0 : tmpshots ) {
+      if ( ts0.removed ) continue; // skip removed siblings
       addToStats( ts0 );
       if ( ts0.backshot != 0 ) continue; // skip siblings
 
@@ -846,8 +1216,10 @@ class DistoXNum
       // Log.v("DistoXL", "working shot " + from + "-" + to );
       // if ( from == null || to == null ) continue; // FIXME
       TriShot ts1 = ts0; // last sibling (head = the shot itself)
-      for ( int j=i+1; j < tmpshots.size(); ++j ) {
-        TriShot ts2 = tmpshots.get( j );
+      ArrayList<TriShot> pair = pairs.get( ts0.pairKey() );
+      // ts0 is the first unclaimed shot of its pair: the following ones are its siblings
+      for ( int j = ( pair == null )? 0 : pair.indexOf( ts0 ) + 1; pair != null && j < pair.size(); ++j ) {
+        TriShot ts2 = pair.get( j );
         if ( from.equals( ts2.from ) && to.equals( ts2.to ) ) { // chain a positive sibling
           ts1.sibling = ts2;
           ts1 = ts2;
@@ -886,13 +1258,14 @@ class DistoXNum
         }
         // Log.v( "DistoX", "DMAX " + from + "-" + to + " " + dmax );
         
-        if ( ! StationPolicy.doMagAnomaly() ) { // (3) remove siblings
+        if ( ! StationPolicy.doMagAnomaly() ) { // (3) remove siblings: mark now, compact the list afterwards
           ts1 = ts0.sibling;
           while ( ts1 != null ) {
             -- nrSiblings;
             // Log.v( "DistoXL", "removing sibling " + ts1.from + "-" + ts1.to + " : " + nrSiblings );
             TriShot ts2 = ts1.sibling;
-            tmpshots.remove( ts1 );
+            ts1.removed = true;
+            has_removed = true;
             ts1 = ts2;
           }
           ts0.sibling = null;
@@ -904,12 +1277,14 @@ class DistoXNum
         }
       }
     }
-
-    if ( mErr0 > 0 ) {
-      mErr1 /= mErr0;
-      mErr2 = (float)Math.sqrt( mErr2/mErr0 - mErr1*mErr1 );
+    if ( has_removed ) { // single pass compaction of the temp-shot list
+      List<TriShot> kept = new ArrayList<>( tmpshots.size() );
+      for ( TriShot ts : tmpshots ) if ( ! ts.removed ) kept.add( ts );
+      tmpshots = kept;
     }
 
+    setErrorStats();
+
     // if ( TDLog.LOG_DEBUG ) {
     //   Log.v( "DistoX-NUM", "DistoXNum::compute tmp-shots " + tmpshots.size() + " tmp-splays " + tmpsplays.size() );
     //   for ( TriShot ts : tmpshots ) ts.Dump();
@@ -1011,15 +1386,13 @@ class DistoXNum
               // Log.v("DistoX-LOOP", "loop closure at " + ts.from + "-" + ts.to + " TO " + st.name );
 	     
               // do close loop also on duplicate shots
-              // need the loop length to compute the fractional closure error
-              NumShortpath short_path = shortestPath( sf, st); 
-              // Log.v("DistoX-LOOP", "loop length " + short_path.mDist + " closure " + ts.d() + " " + ts.b() + " " + ts.c() );
+              // need the loop length to compute the fractional closure error: this is done in batch later
 	      if ( format != null ) {
-                mClosures.add( getClosureError( format, st, sf, ts.d(), ts.b(), ts.c(), short_path, Math.abs( ts.d() ) ) );
+                closures.add( new NumClosure( sf, st, ts.d(), ts.b(), ts.c(), mShots.size() ) );
 	      }
 	      // Log.v("DistoXL", "add closure " + sf.name + " " + st.name + " len " + short_path.mDist + " " + short_path.mDist2 );
               
-              if ( /* TDSetting.mAutoStations || */ TDSetting.mLoopClosure == TDSetting.LOOP_NONE ) { // do not close loop
+              if ( /* TDSetting.mAutoStations || */ mLoopClosure == TDSetting.LOOP_NONE ) { // do not close loop
                 // if ( TDLog.LOG_DEBUG ) Log.v( TDLog.TAG, "do not close loop");
                 // keep loop open: new station( id=ts.to, from=sf, ... )
                 float bearing = ts.b() - sf.mAnomaly;
@@ -1102,8 +1475,10 @@ class DistoXNum
     }
     // if ( TDLog.LOG_DEBUG ) Log.v( TDLog.TAG, "DistoXNum::compute done leg shots, stations  " + mStations.size() );
 
+    computeClosures( closures, format );
+
     // Log.v("DistoXL", "shots " + mShots.size() + " loops " + mClosures.size() + " siblings " + nrSiblings + " tmp " + tmpshots.size() );
-    if ( TDSetting.mLoopClosure == TDSetting.LOOP_CYCLES ) {
+    if ( mLoopClosure == TDSetting.LOOP_CYCLES ) {
       // TDLog.Log( TDLog.LOG_NUM, "loop compensation");
       doLoopCompensation( mNodes, mShots );
   
@@ -1122,44 +1497,15 @@ class DistoXNum
         repeat = false;
         for ( NumShot sh2 : mShots ) {
           if ( sh2.mUsed ) continue;
-          NumStation s1 = sh2.from;
-          NumStation s2 = sh2.to;
-          float c2 = sh2.clino();
-          float b2 = sh2.bearing() + mDecl;
-          if ( s1.mHasCoords && ! s2.mHasCoords ) {
-            // reset s2 values from the shot
-            // float d = sh2.length() * sh2.mDirection; // FIXME DIRECTION
-            float d = sh2.length();
-            float v = - d * TDMath.sind( c2 );
-            float h =   d * TDMath.cosd( c2 );
-            float e =   h * TDMath.sind( b2 );
-            float s = - h * TDMath.cosd( b2 );
-            s2.e = s1.e + e;
-            s2.s = s1.s + s;
-            s2.v = s1.v + v;
-            s2.mHasCoords = true;
-            sh2.mUsed = true;
-            repeat = true;
-            // if ( TDLog.LOG_DEBUG )  Log.v( "DistoX-NUM", "reset " + s1.name + "->" + s2.name + " " + e + " " + s + " " + v );
-          } else if ( s2.mHasCoords && ! s1.mHasCoords ) {
-            // reset s1 values from the shot
-            // float d = - sh2.length() * sh2.mDirection; // FIXME DIRECTION
-            float d = - sh2.length();
-            float v = - d * TDMath.sind( c2 );
-            float h =   d * TDMath.cosd( c2 );
-            float e =   h * TDMath.sind( b2 );
-            float s = - h * TDMath.cosd( b2 );
-            s1.e = s2.e + e;
-            s1.s = s2.s + s;
-            s1.v = s2.v + v;
-            s1.mHasCoords = true;
+          if ( resetCoordsFromShot( sh2 ) ) {
             sh2.mUsed = true;
             repeat = true;
-            // if ( TDLog.LOG_DEBUG )  Log.v( "DistoX-NUM", "reset " + s1.name + "<-" + s2.name + " " + e + " " + s + " " + v );
           }
-          
         }
       }
+    } else if ( mLoopClosure == TDSetting.LOOP_WEIGHTED ) {
+      // TDLog.Log( TDLog.LOG_NUM, "least squares compensation");
+      doLeastSquaresCompensation( mShots );
     }
 
     mStations.setAzimuths();
@@ -1169,8 +1515,9 @@ class DistoXNum
     for ( TriSplay ts : tmpsplays ) {
       NumStation st = getStation( ts.from );
       if ( st != null ) {
-        float cosine = st.computeExtend( ts.b( mDecl ), ts.extend ); // FIXME_EXTEND
-        mSplays.add( new NumSplay( st, ts.d(), ts.b( mDecl ), ts.c(), cosine, ts.block, mDecl ) );
+        mSplays.add( makeSplay( st, ts ) );
+      } else {
+        mPendingSplays.add( ts );
       }
     }
 
@@ -1619,6 +1966,65 @@ class DistoXNum
   }
 
 
+  /** least squares network adjustment of the station coords
+   * each leg is weighted with the inverse of its length, the start station is fixed.
+   * The normal equations (same matrix for the three coordinates) are solved with a
+   * sparse double-precision Cholesky: cost grows with the stations, not the loops.
+   * The legs keep their measured values, only the stations coords are changed.
+   */
+  private void doLeastSquaresCompensation( ArrayList< NumShot > shots )
+  {
+    // long millis_start = System.currentTimeMillis();
+    int ns = mStations.size();
+    int[] unknown = new int[ ns ]; // station index -> unknown index (-1 start station)
+    int nu = 0;
+    for ( int k = 0; k < ns; ++k ) {
+      unknown[k] = ( mStations.getStation( k ) == mStartStation )? -1 : nu++;
+    }
+    NumSparseCholesky solver = new NumSparseCholesky( nu );
+    double[] be = new double[ nu ];
+    double[] bs = new double[ nu ];
+    double[] bv = new double[ nu ];
+    double[] d  = new double[ 3 ];
+    for ( NumShot sh : shots ) {
+      if ( sh.from.mIndex < 0 || sh.to.mIndex < 0 || sh.from == sh.to ) continue;
+      int i = unknown[ sh.from.mIndex ];
+      int j = unknown[ sh.to.mIndex ];
+      double w = 1.0 / Math.max( sh.length(), 0.01f );
+      sh.getDisplacement( d );
+      // observation: to - from = d
+      if ( j >= 0 ) {
+        be[j] += w * d[0];
+        bs[j] += w * d[1];
+        bv[j] += w * d[2];
+      } 
+      if ( i >= 0 ) {
+        be[i] -= w * d[0];
+        bs[i] -= w * d[1];
+        bv[i] -= w * d[2];
+      }
+      solver.addEdge( i, j, w ); // the start station is at the origin: no fixed term
+    }
+    if ( ! solver.factor() ) {
+      TDLog.Error( "least squares compensation: singular network" );
+      return;
+    }
+    solver.solve( be );
+    solver.solve( bs );
+    solver.solve( bv );
+    for ( int k = 0; k < ns; ++k ) {
+      int u = unknown[k];
+      if ( u < 0 ) continue;
+      NumStation st = mStations.getStation( k );
+      st.e = (float)( mStartStation.e + be[u] );
+      st.s = (float)( mStartStation.s + bs[u] );
+      st.v = (float)( mStartStation.v + bv[u] );
+      st.mHasCoords = true;
+    }
+    // long millis_end = System.currentTimeMillis() - millis_start;
+    // Log.v("DistoX", "least squares " + nu + " stations " + shots.size() + " legs: " + millis_end + " msec" );
+  }
+
   /** get the string description of the loop closure error(s)
    * need the loop length to compute the percent error
    *
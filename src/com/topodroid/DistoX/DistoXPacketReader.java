@@ -0,0 +1,192 @@
+/* @file DistoXPacketReader.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid DistoX input: long-lived reader of the DistoX data
+ *
+ * A single thread reads the input stream of the DistoX connection into a ring buffer.
+ * The protocol takes the packets from the ring, blocking or with a deadline, so that
+ * a read with timeout does not need a reader thread and an interruptor thread for each packet.
+ * The bytes are kept in order in the ring: a packet that is not complete at the deadline
+ * is left in the ring and it is completed by the next read.
+ * A blocking read waits for all the bytes it needs, so that the reader thread wakes the
+ * protocol once per packet, not once per stream read.
+ * The reader thread is started by the first read, because the protocol is created before
+ * the socket is connected, and a read on the unconnected socket would fail the reader.
+ * The reader is a daemon thread: it is stopped when the protocol is closed, and it exits
+ * as soon as the blocking read of the stream returns (at the latest when the socket is closed).
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.io.IOException;
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.io.DataInputStream;
+
+// import android.util.Log;
+
+class DistoXPacketReader
+{
+  private static final int SIZE  = 1024; // ring size [bytes]: 128 packets
+  private static final int CHUNK = 256;  // max nr. of bytes of a stream read
+
+  private final DataInputStream mIn;
+  private final byte[] mRing = new byte[ SIZE ];
+  private int mHead  = 0;     // index of the first byte in the ring
+  private int mCount = 0;     // nr. of bytes in the ring
+  private IOException mException = null; // failure of the input stream (EOFException at the end of the stream)
+  private boolean mClosed = false;
+  private boolean mStarted = false;
+  private Thread mThread = null;
+
+  DistoXPacketReader( DataInputStream in )
+  {
+    mIn = in;
+  }
+
+  /** start the reader thread, if it has not been started yet
+   */
+  synchronized void start()
+  {
+    if ( mStarted || mClosed ) return;
+    mStarted = true;
+    if ( mIn == null ) { // no connection: the reads fail
+      mException = new EOFException();
+      return;
+    }
+    mThread = new Thread( "DistoX packet reader" ) {
+      public void run()
+      {
+        byte[] chunk = new byte[ CHUNK ];
+        while ( ! isClosed() ) {
+          int n;
+          try {
+            n = mIn.read( chunk, 0, CHUNK );
+          } catch ( IOException e ) {
+            fail( e );
+            break;
+          }
+          if ( n < 0 ) {
+            fail( new EOFException() );
+            break;
+          }
+          if ( ! put( chunk, n ) ) break;
+        }
+        TDLog.Log( TDLog.LOG_PROTO, "packet reader done" );
+      }
+    };
+    mThread.setDaemon( true );
+    mThread.start();
+  }
+
+  /** stop the reader
+   * @note the reader thread does not wait: if it is blocked on the input stream it exits when the stream is closed
+   */
+  synchronized void close()
+  {
+    mClosed = true;
+    if ( mThread != null ) {
+      mThread.interrupt();
+      mThread = null;
+    }
+    notifyAll();
+  }
+
+  private synchronized boolean isClosed() { return mClosed; }
+
+  private synchronized void fail( IOException e )
+  {
+    TDLog.Log( TDLog.LOG_PROTO, "packet reader stream failed: " + e.toString() );
+    mException = e;
+    notifyAll();
+  }
+
+  // store bytes in the ring, waiting for room
+  // @return false if the reader has been closed
+  private synchronized boolean put( byte[] b, int n )
+  {
+    int off = 0;
+    while ( n > 0 ) {
+      while ( mCount == SIZE && ! mClosed ) {
+        try {
+          wait();
+        } catch ( InterruptedException e ) {
+          return false;
+        }
+      }
+      if ( mClosed ) return false;
+      int tail = ( mHead + mCount ) % SIZE;
+      int k = Math.min( n, Math.min( SIZE - mCount, SIZE - tail ) );
+      System.arraycopy( b, off, mRing, tail, k );
+      mCount += k;
+      off += k;
+      n   -= k;
+      if ( n > 0 ) notifyAll(); // let the consumer make room
+    }
+    notifyAll();
+    return true;
+  }
+
+  // @return true if n bytes are in the ring, false if they are not and no more can arrive
+  private boolean hasData( int n ) throws IOException
+  {
+    if ( mCount >= n ) return true;
+    if ( mException != null ) throw mException;
+    if ( mClosed ) throw new EOFException();
+    return false;
+  }
+
+  /** wait for data
+   * @param n        number of bytes (at most the ring size)
+   * @param timeout  max wait time [ms]
+   * @return true if n bytes are available, false at the deadline
+   * @throws IOException if the stream failed before n bytes have arrived
+   */
+  synchronized boolean waitAvailable( int n, long timeout ) throws IOException
+  {
+    start();
+    long deadline = System.currentTimeMillis() + timeout;
+    while ( ! hasData( n ) ) {
+      long wait = deadline - System.currentTimeMillis();
+      if ( wait <= 0 ) return false;
+      try {
+        wait( wait );
+      } catch ( InterruptedException e ) {
+        throw new InterruptedIOException();
+      }
+    }
+    return true;
+  }
+
+  /** read bytes, blocking until all have arrived
+   * @param b    byte array
+   * @param off  offset in the array
+   * @param len  number of bytes to read
+   * @throws IOException if the stream failed (EOFException if it ended) before len bytes have arrived
+   */
+  synchronized void readFully( byte[] b, int off, int len ) throws IOException
+  {
+    start();
+    while ( len > 0 ) {
+      while ( ! hasData( Math.min( len, SIZE ) ) ) {
+        try {
+          wait();
+        } catch ( InterruptedException e ) {
+          throw new InterruptedIOException();
+        }
+      }
+      int k = Math.min( len, Math.min( mCount, SIZE - mHead ) );
+      System.arraycopy( mRing, mHead, b, off, k );
+      mHead = ( mHead + k ) % SIZE;
+      mCount -= k;
+      off += k;
+      len -= k;
+      notifyAll();
+    }
+  }
+}
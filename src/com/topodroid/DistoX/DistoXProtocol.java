@@ -43,6 +43,7 @@ class DistoXProtocol extends TopoDroidProtocol
   // protected Socket  mSocket = null;
   protected DataInputStream  mIn;
   protected DataOutputStream mOut;
+  protected DistoXPacketReader mReader; // reader of the input stream
 
   // protected byte[] mHeadTailA3;  // head/tail for Protocol A3
   protected byte[] mAddr8000;     // cpuld be used by DistoXA3Protocol.read8000 
@@ -88,11 +89,21 @@ class DistoXProtocol extends TopoDroidProtocol
     // }
     mIn  = in;
     mOut = out;
+    mReader = new DistoXPacketReader( in ); // started by the first read, after the socket has been connected
+  }
+
+  /** stop the reader of the input stream
+   * @note the streams are closed with the socket
+   */
+  void stopReader()
+  {
+    mReader.close();
   }
 
   @Override
   void closeIOstreams()
   {
+    stopReader();
     if ( mIn != null ) {
       try { mIn.close(); } catch ( IOException e ) { }
       mIn = null;
@@ -169,115 +180,28 @@ class DistoXProtocol extends TopoDroidProtocol
 
   // PACKETS I/O ------------------------------------------------------------------------
 
-  /** try to read 8 bytes - return the number of read bytes
-   * @param timeout    joining timeout
-   * @param maxtimeout max number of join attempts
-   * @return number of data to read
-   */
-  private int getAvailable( long timeout, int maxtimeout ) throws IOException
-  {
-    mMaxTimeout = maxtimeout;
-    final int[] dataRead = { 0 };
-    final int[] toRead   = { 8 }; // 8 bytes to read
-    final int[] count    = { 0 };
-    final IOException[] maybeException = { null };
-    final Thread reader = new Thread() {
-      public void run() {
-        TDLog.Log( TDLog.LOG_PROTO, "reader thread run " + dataRead[0] + "/" + toRead[0] );
-        try {
-          // synchronized( dataRead ) 
-          {
-            count[0] = mIn.read( mBuffer, dataRead[0], toRead[0] );
-            // if ( TDSetting.mPacketLog ) LogPacket( 0L );
-
-            toRead[0]   -= count[0];
-            dataRead[0] += count[0];
-          }
-        } catch ( ClosedByInterruptException e ) {
-          TDLog.Error( "reader closed by interrupt");
-        } catch ( IOException e ) {
-          maybeException[0] = e;
-        }
-        TDLog.Log( TDLog.LOG_PROTO, "reader thread done " + dataRead[0] + "/" + toRead[0] );
-      }
-    };
-    reader.start();
-
-    for ( int k=0; k<mMaxTimeout; ++k) {
-      // Log.v("DistoX", "interrupt loop " + k + " " + dataRead[0] + "/" + toRead[0] );
-      try {
-        reader.join( timeout );
-      } catch ( InterruptedException e ) { TDLog.Log(TDLog.LOG_DEBUG, "reader join-1 interrupted"); }
-      if ( ! reader.isAlive() ) break;
-      {
-        Thread interruptor = new Thread() { public void run() {
-          // Log.v("DistoX", "interruptor run " + dataRead[0] );
-          for ( ; ; ) {
-            // synchronized ( dataRead ) 
-            {
-              if ( dataRead[0] > 0 && toRead[0] > 0 ) { // FIXME
-                try { wait( 100 ); } catch ( InterruptedException e ) { }
-              } else {
-                if ( reader.isAlive() ) reader.interrupt(); 
-                break;
-              }
-            }
-          }
-          // Log.v("DistoX", "interruptor done " + dataRead[0] );
-        } };
-        interruptor.start();
-
-        try {
-          interruptor.join( 200 );
-        } catch ( InterruptedException e ) { TDLog.Log(TDLog.LOG_DEBUG, "interruptor join interrupted"); }
-      }
-      try {
-        reader.join( 200 );
-      } catch ( InterruptedException e ) { TDLog.Log(TDLog.LOG_DEBUG, "reader join-2 interrupted"); }
-      if ( ! reader.isAlive() ) break; 
-    }
-    if ( maybeException[0] != null ) throw maybeException[0];
-    return dataRead[0];
-  }
-
   /**
    * @return packet type (if successful)
    */
   @Override
   int readPacket( boolean no_timeout )
   {
-    // int min_available = ( mDeviceType == Device.DISTO_X000)? 8 : 1; // FIXME 8 should work in every case // FIXME VirtualDistoX
-    int min_available = 1; // FIXME 8 should work in every case
-
     TDLog.Log( TDLog.LOG_PROTO, "Protocol read packet no-timeout " + (no_timeout?"no":"yes") );
     // Log.v( "DistoX", "VD Proto read packet no-timeout " + (no_timeout?"no":"yes") );
     try {
-      final int maxtimeout = 8;
-      int timeout = 0;
-      int available = 0;
-
-      if ( no_timeout ) {
-        available = 8;
-      } else { // do timeout
-        if ( TDSetting.mZ6Workaround ) {
-          available = getAvailable( 200, 2*maxtimeout );
-        } else {
-          // while ( ( available = mIn.available() ) == 0 && timeout < maxtimeout ) 
-          while ( ( available = mIn.available() ) < min_available && timeout < maxtimeout ) {
-            ++ timeout;
-            // TDLog.Log( TDLog.LOG_PROTO, "Proto read packet sleep " + timeout + "/" + maxtimeout );
-            TDUtil.slowDown( 100, "Proto read packet InterruptedException" );
-          }
+      boolean available = no_timeout;
+      if ( ! no_timeout ) { // wait for a whole packet in time slices, until the timeout or the work is cancelled
+        mMaxTimeout = TDSetting.mZ6Workaround ? 16 : 8;
+        long slice  = TDSetting.mZ6Workaround ? 200 : 100; // [ms]
+        for ( int timeout = 0; timeout < mMaxTimeout && ! available; ++timeout ) {
+          available = mReader.waitAvailable( 8, slice );
         }
       }
       TDLog.Log( TDLog.LOG_PROTO, "Protocol read packet available " + available );
       // Log.v( "DistoX", "VD Proto read packet available " + available );
-      // if ( available > 0 ) 
-      if ( available >= min_available ) {
-        if ( no_timeout || ! TDSetting.mZ6Workaround ) {
-          mIn.readFully( mBuffer, 0, 8 );
-          if ( TDSetting.mPacketLog ) logPacket( 0L );
-        }
+      if ( available ) {
+        mReader.readFully( mBuffer, 0, 8 );
+        if ( TDSetting.mPacketLog ) logPacket( 0L );
 
         // DistoX packets have a sequence bit that flips between 0 and 1
         byte seq  = (byte)(mBuffer[0] & 0x80); 
@@ -346,7 +270,7 @@ class DistoXProtocol extends TopoDroidProtocol
       mOut.write( command, 0, 3 );
       // if ( TDSetting.mPacketLog ) logPacket3( 1L, command );
 
-      mIn.readFully( mBuffer, 0, 8 );
+      mReader.readFully( mBuffer, 0, 8 );
       if ( TDSetting.mPacketLog ) logPacket( 0L );
 
       if ( ( mBuffer[0] != (byte)( 0x38 ) ) || ( mBuffer[1] != command[1] ) || ( mBuffer[2] != command[2] ) ) {
@@ -423,7 +347,7 @@ class DistoXProtocol extends TopoDroidProtocol
       mOut.write( mBuffer, 0, 3 );
       // if ( TDSetting.mPacketLog ) logPacket3( 1L, mBuffer );
 
-      mIn.readFully( mBuffer, 0, 8 );
+      mReader.readFully( mBuffer, 0, 8 );
       // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
     } catch ( IOException e ) {
@@ -470,7 +394,7 @@ class DistoXProtocol extends TopoDroidProtocol
           mOut.write( mBuffer, 0, 3 );
           // if ( TDSetting.mPacketLog ) logPacket3( 1L, mBuffer );
 
-          mIn.readFully( mBuffer, 0, 8 );
+          mReader.readFully( mBuffer, 0, 8 );
           // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
         } catch ( IOException e ) {
@@ -522,7 +446,7 @@ class DistoXProtocol extends TopoDroidProtocol
         mOut.write( mBuffer, 0, 7 );
         if ( TDSetting.mPacketLog ) logPacket7( 1L, mBuffer );
 
-        mIn.readFully( mBuffer, 0, 8 );
+        mReader.readFully( mBuffer, 0, 8 );
         if ( TDSetting.mPacketLog ) logPacket( 0L );
 
         // TDLog.Log( TDLog.LOG_PROTO, "writeCalibration " + 
@@ -566,7 +490,7 @@ class DistoXProtocol extends TopoDroidProtocol
         mOut.write( mBuffer, 0, 3 );
         // if ( TDSetting.mPacketLog ) logPacket3( 1L, mBuffer );
 
-        mIn.readFully( mBuffer, 0, 8 );
+        mReader.readFully( mBuffer, 0, 8 );
         // if ( TDSetting.mPacketLog ) logPacket( 0L );
 
         if ( mBuffer[0] != 0x38 ) { return false; }
@@ -23,6 +23,13 @@ class DrawThread extends  Thread
 
   private final IDrawingSurface mParent;
 
+  // invalidation: the scene is repainted only when it has been marked dirty
+  private boolean mDirty = true;   // guarded by this
+  private int mFramesRendered = 0; // frames painted
+  private int mFramesSkipped  = 0; // invalidations merged into a pending frame
+
+  private static final long SAFETY_REFRESH = 1000; // [ms] low-rate repaint in case an invalidation was missed
+
   DrawThread( IDrawingSurface parent, SurfaceHolder holder)
   {
     // TDLog.Log( TDLog.LOG_PLOT, "draw thread cstr");
@@ -34,12 +41,33 @@ class DrawThread extends  Thread
   {
     // TDLog.Log( TDLog.LOG_PLOT, "draw thread set holder " + ( ( holder == null )? "null" : "non-null" ) );
     mHolder = holder;
+    invalidate();
   }
 
-  public void setRunning( boolean run ) { mRunning = run; }
+  public synchronized void setRunning( boolean run ) 
+  { 
+    mRunning = run;
+    notify();
+  }
 
   public boolean isRunning() { return mRunning; }
 
+  /** mark the scene dirty and wake up the thread
+   * @note this must be called after the scene has been changed
+   */
+  synchronized void invalidate()
+  {
+    if ( mDirty ) {
+      ++ mFramesSkipped;
+    } else {
+      mDirty = true;
+      notify();
+    }
+  }
+
+  int getFramesRendered() { return mFramesRendered; }
+  int getFramesSkipped()  { return mFramesSkipped; }
+
   @Override
   public void run() 
   {
@@ -47,14 +75,25 @@ class DrawThread extends  Thread
     mRunning = true;
     while ( mRunning ) {
       if ( mHolder != null && mParent.isDrawing() ) {
+        synchronized( this ) {
+          if ( ! mDirty && mRunning ) { // sleep until an invalidation, the refresh delay of a timed scene, or the safety refresh
+            long delay = mParent.refreshDelay();
+            try {
+              wait( ( delay > 0 )? delay : SAFETY_REFRESH );
+            } catch ( InterruptedException e ) { }
+          }
+          mDirty = false;
+        }
+        if ( ! mRunning ) break;
         mParent.refresh( mHolder );
+        ++ mFramesRendered;
         Thread.yield();
         TDUtil.slowDown( 1 ); // NECESSARY
       } else {
+        synchronized( this ) { mDirty = true; } // repaint as soon as the surface is back
         TDUtil.slowDown( 100 );
       }
     }
-    // TDLog.Log( TDLog.LOG_PLOT, "draw thread exit");
+    TDLog.Log( TDLog.LOG_PLOT, "draw thread exit: frames rendered " + mFramesRendered + " skipped " + mFramesSkipped );
   }
 }
-
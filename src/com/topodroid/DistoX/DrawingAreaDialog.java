@@ -173,6 +173,7 @@ class DrawingAreaDialog extends MyDialog
       }
 
       if ( TDSetting.mWithLevels > 1 ) setLevel();
+      mParent.itemEdited();
      
     } else if ( b == mBtnReduce ) {
       int reduce = ( mBtnReduce.getState() + 1 ) % 3;
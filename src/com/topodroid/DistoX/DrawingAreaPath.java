@@ -150,7 +150,7 @@ class DrawingAreaPath extends DrawingPointLinePath
         /* x2 = x + */ dis.readFloat();
         /* y2 = y + */ dis.readFloat();
       }
-      ret.addStartPoint( x0, y0 );
+      ret.addStartPointNoPath( x0, y0, npt );
       // Log.v("DistoX", "A start " + x + " " + y );
       for ( int k=1; k<npt; ++k ) {
         x0 = x + dis.readFloat();
@@ -162,9 +162,15 @@ class DrawingAreaPath extends DrawingPointLinePath
           float y1 = y + dis.readFloat();
           float x2 = x + dis.readFloat();
           float y2 = y + dis.readFloat();
-          ret.addPoint3( x1, y1, x2, y2, x0, y0 );
+          if ( Float.isNaN(x0) || Float.isNaN(y0) ) continue;
+          if ( Float.isNaN( x1 ) || Float.isNaN( y1 ) || Float.isNaN( x2 ) || Float.isNaN( y2 ) ) {
+            ret.addPointNoPath( x0, y0 );
+          } else {
+            ret.addPoint3NoPath( x1, y1, x2, y2, x0, y0 );
+          }
         } else {
-          ret.addPoint( x0, y0 );
+          if ( Float.isNaN(x0) || Float.isNaN(y0) ) continue;
+          ret.addPointNoPath( x0, y0 );
         }
       }
       ret.retracePath();
@@ -257,7 +263,7 @@ class DrawingAreaPath extends DrawingPointLinePath
   @Override
   String toTherion( )
   {
-    if ( mLast == null || mFirst == null ) return null;
+    if ( last() == null || first() == null ) return null;
     StringWriter sw = new StringWriter();
     PrintWriter pw  = new PrintWriter(sw);
     pw.format("line border -id %s%d -close on", mPrefix, mAreaCnt );
@@ -310,7 +316,7 @@ class DrawingAreaPath extends DrawingPointLinePath
     pw.format("            <points data=\"");
     boolean b = true;
     // for ( LinePoint pt : mPoints ) 
-    for ( LinePoint pt = mFirst; pt != null; pt = pt.mNext ) 
+    for ( LinePoint pt = first(); pt != null; pt = pt.mNext ) 
     {
       float x = DrawingUtil.sceneToWorldX( pt.x, pt.y );
       float y = DrawingUtil.sceneToWorldY( pt.x, pt.y );
@@ -325,7 +331,7 @@ class DrawingAreaPath extends DrawingPointLinePath
   LinePoint next( LinePoint lp )
   {
     if ( lp == null ) return null;
-    if ( lp.mNext == null ) return mFirst;
+    if ( lp.mNext == null ) return first();
     return lp.mNext;
   }
 
@@ -333,7 +339,7 @@ class DrawingAreaPath extends DrawingPointLinePath
   LinePoint prev( LinePoint lp )
   {
     if ( lp == null ) return null;
-    if ( lp.mPrev == null ) return mLast;
+    if ( lp.mPrev == null ) return last();
     return lp.mPrev;
   }
 
@@ -357,9 +363,7 @@ class DrawingAreaPath extends DrawingPointLinePath
       int npt = size(); // number of line points
       dos.writeInt( npt );
       // Log.v("DistoX", "A to stream: " + name + " " + mAreaCnt + " " + isVisible() + " " + mOrientation + " np " + npt );
-      for ( LinePoint pt = mFirst; pt != null; pt = pt.mNext ) {
-        pt.toDataStream( dos );
-      }
+      pointsToDataStream( dos );
       // TDLog.Log( TDLog.LOG_PLOT, "A " + name + " " + npt );
     } catch ( IOException e ) {
       TDLog.Error( "AREA out error " + e.toString() );
@@ -31,12 +31,14 @@ import android.graphics.RectF;
 import android.view.Display;
 // import android.view.Surface;
 
-// import java.util.Iterator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 // import java.util.Map;
 // import java.util.concurrent.ConcurrentHashMap;
 // import java.util.Locale;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.ArrayList;
 import java.io.BufferedWriter;
 // import java.io.StringWriter;
@@ -72,6 +74,11 @@ class DrawingCommandManager
 
   final private List<DrawingPath>        mLegsStack;
   final private List<DrawingPath>        mSplaysStack;
+  final private List<DrawingPath>        mRecentLegs = new ArrayList<>(); // legs with the recent-shot paint (synchronized on mLegsStack)
+  // positions of the splays in mSplaysStack by block (synchronized on mSplaysStack)
+  // the index is not used when a splay has no block or two splays have the same block
+  final private HashMap<DBlock, Integer> mSplayPos = new HashMap<>();
+  private boolean mSplayPosValid = true;
   final private List<ICanvasCommand>     mCurrentStack;
   final private List<DrawingStationPath> mUserStations;  // user-inserted stations
   final private List<ICanvasCommand>     mRedoStack;
@@ -84,6 +91,7 @@ class DrawingCommandManager
   private Selection mSelection;
   private SelectionSet mSelected;
   private boolean mDisplayPoints;
+  private boolean mSelectable = true; // whether the items are inserted in the selection (the lines stay packed if not)
 
   // the current station is displayed green
   private DrawingStationName mCurrentStationName = null;
@@ -92,6 +100,70 @@ class DrawingCommandManager
   private float  mScale; // current zoom: value of 1 pl in scene space
   private boolean mLandscape = false;
 
+  // offscreen layer of the reference geometry, shared among the command managers
+  static final private DrawingLayer mLayer = new DrawingLayer();
+  private volatile int mLayerStamp = 0; // increased when the reference geometry changes
+  private Matrix mLayerMatrix = new Matrix();
+  private RectF  mLayerBBox   = new RectF();
+
+  private void referencesChanged() { ++ mLayerStamp; }
+
+  // legs and splays packed by paint
+  private DrawingSegmentBatch mLegsBatch   = new DrawingSegmentBatch();
+  private DrawingSegmentBatch mSplaysBatch = new DrawingSegmentBatch();
+
+  // grid index of the path bounding boxes, for the viewport culling
+  private DrawingIndex< ICanvasCommand > mSketchIndex = new DrawingIndex<>();
+  private volatile int mSketchStamp = 0; // increased when the sketch items change
+
+  /** mark the sketch items changed: the sketch index is rebuilt at the next frame
+   * @note called by DrawingSurface after each change of the sketch items,
+   *       also after the in-place changes of the edit dialogs (DrawingWindow.itemEdited)
+   */
+  void sketchChanged() { ++ mSketchStamp; }
+
+  private volatile int mSavedStamp = 0; // sketch stamp at the last save (or load)
+
+  // mark the sketch as saved (it is in sync with its tdr file)
+  void setSaved() { mSavedStamp = mSketchStamp; }
+
+  // whether the sketch has been changed since it was last saved
+  boolean isModified() { return mSavedStamp != mSketchStamp; }
+
+  // rough memory cost of the items, used by the managers cache
+  private static final int PATH_BYTES  = 256;  // path object, its android Path and bounding box
+  private static final int POINT_BYTES = 128;  // line point, its selection point and path segment
+
+  /** estimate the memory used by the manager
+   * @return estimated number of bytes
+   */
+  long estimatedBytes()
+  {
+    long bytes = 0;
+    synchronized( mCurrentStack ) {
+      for ( ICanvasCommand cmd : mCurrentStack ) bytes += estimatedBytes( cmd );
+    }
+    synchronized( mRedoStack ) {
+      for ( ICanvasCommand cmd : mRedoStack ) bytes += estimatedBytes( cmd );
+    }
+    synchronized( mLegsStack )   { bytes += (long)mLegsStack.size() * PATH_BYTES; }
+    synchronized( mSplaysStack ) { bytes += (long)mSplaysStack.size() * PATH_BYTES; }
+    synchronized( mStations )    { bytes += (long)mStations.size() * PATH_BYTES; }
+    synchronized( mGridStack1 )  { bytes += (long)( mGridStack1.size() + mGridStack10.size() + mGridStack100.size() ) * PATH_BYTES; }
+    return bytes;
+  }
+
+  private static long estimatedBytes( ICanvasCommand cmd )
+  {
+    if ( cmd.commandType() == 0 && cmd instanceof DrawingPointLinePath ) {
+      return PATH_BYTES + (long)((DrawingPointLinePath)cmd).size() * POINT_BYTES;
+    }
+    return PATH_BYTES;
+  }
+
+  // release the layer bitmap (called when the drawing surface is destroyed)
+  static void releaseLayer() { synchronized( mLayer ) { mLayer.release(); } }
+
   // PATH_MULTISELECT
   private int mMultiselectionType = -1;  // current multiselection type (DRAWING_PATH_POINT / LINE / AREA
   private List< DrawingPath > mMultiselected;
@@ -184,28 +256,28 @@ class DrawingCommandManager
           float d9 = dmin;
           for ( int k2=k1+1; k2<k0; ++k2 ) {
             DrawingPointLinePath l2 = (DrawingPointLinePath)( mMultiselected.get(k2) );
-            float d1 = l1.mFirst.distance( l2.mFirst ); // distance from first
-            float d2 = l1.mFirst.distance( l2.mLast );  // distance from last
+            float d1 = l1.first().distance( l2.first() ); // distance from first
+            float d2 = l1.first().distance( l2.last() );  // distance from last
 	    if ( d1 < d2 ) {
-              if ( d1 < d0 ) { d0 = d1; lp0 = l2.mFirst; }
+              if ( d1 < d0 ) { d0 = d1; lp0 = l2.first(); }
 	    } else {
-              if ( d2 < d0 ) { d0 = d2; lp0 = l2.mLast; }
+              if ( d2 < d0 ) { d0 = d2; lp0 = l2.last(); }
             }
-            d1 = l1.mLast.distance( l2.mFirst );
-            d2 = l1.mLast.distance( l2.mLast );
+            d1 = l1.last().distance( l2.first() );
+            d2 = l1.last().distance( l2.last() );
 	    if ( d1 < d2 ) {
-              if ( d1 < d9 ) { d9 = d1; lp9 = l2.mFirst; }
+              if ( d1 < d9 ) { d9 = d1; lp9 = l2.first(); }
 	    } else {
-              if ( d2 < d9 ) { d9 = d2; lp9 = l2.mLast; }
+              if ( d2 < d9 ) { d9 = d2; lp9 = l2.last(); }
             }
 	  }
 	  boolean retrace = false;
 	  if ( lp0 != null ) {
-            l1.mFirst.shiftBy( lp0.x - l1.mFirst.x, lp0.y - l1.mFirst.y );
+            l1.first().shiftBy( lp0.x - l1.first().x, lp0.y - l1.first().y );
 	    retrace = true;
 	  }
 	  if ( lp9 != null ) {
-            l1.mLast.shiftBy( lp9.x - l1.mLast.x, lp9.y - l1.mLast.y );
+            l1.last().shiftBy( lp9.x - l1.last().x, lp9.y - l1.last().y );
 	    retrace = true;
 	  }
 	  if ( retrace ) {
@@ -217,7 +289,7 @@ class DrawingCommandManager
   }
   // end PATH_MULTISELECT
 
-  void setCurrentStationName( DrawingStationName st ) { mCurrentStationName = st; }
+  void setCurrentStationName( DrawingStationName st ) { mCurrentStationName = st; referencesChanged(); }
   DrawingStationName getCurrentStationName( ) { return mCurrentStationName; }
 
   // DrawingPath              getNorth()        { return mNorthLine;    }
@@ -290,6 +362,7 @@ class DrawingCommandManager
     for ( DrawingPath p : mSplaysStack ) {
       if ( p.getCosine() > TDSetting.mSectionSplay || p.getCosine() < -TDSetting.mSectionSplay ) p.setPaintAlpha( on );
     }
+    referencesChanged();
   }
 
   /* Check if any line overlaps another of the same type
@@ -369,6 +442,7 @@ class DrawingCommandManager
         st.flipXAxis(z);
       }
     }
+    referencesChanged();
     if ( mCurrentStack != null ) {
       Selection selection = new Selection();
       synchronized( mCurrentStack ) {
@@ -537,11 +611,12 @@ class DrawingCommandManager
       mScaleRef = null;
     }
 
-    synchronized( mLegsStack )   { mLegsStack.clear(); }
-    synchronized( mSplaysStack ) { mSplaysStack.clear(); }
+    synchronized( mLegsStack )   { mLegsStack.clear(); mRecentLegs.clear(); }
+    synchronized( mSplaysStack ) { mSplaysStack.clear(); reindexSplays(); }
     synchronized( mScrap       ) { mScrap.clear(); }
     synchronized( TDPath.mXSectionsLock   ) { mXSectionOutlines.clear(); }
     synchronized( mStations )    { mStations.clear(); }
+    referencesChanged();
     synchronized( TDPath.mSelectionLock ) {
       clearSelected();
       mSelection.clearReferencePoints();
@@ -554,9 +629,11 @@ class DrawingCommandManager
     synchronized( TDPath.mSelectionLock ) { mSelection.clearSelectionPoints(); }
     synchronized( mCurrentStack ) { mCurrentStack.clear(); }
     synchronized( mUserStations ) { mUserStations.clear(); }
+    synchronized( mDeferred ) { mDeferred.clear(); }
     mRedoStack.clear();
     syncClearSelected();
     mDisplayPoints = false;
+    sketchChanged();
   }
 
   void clearDrawing()
@@ -626,7 +703,9 @@ class DrawingCommandManager
 
   void setDisplayPoints( boolean display ) { mDisplayPoints = display; }
 
-  boolean isSelectable() { return mSelection != null; }
+  boolean isSelectable() { return mSelectable && mSelection != null; }
+
+  void setSelectable( boolean selectable ) { mSelectable = selectable; }
 
   // public void clearHighlight()
   // {
@@ -802,8 +881,8 @@ class DrawingCommandManager
 		// deleteSectionLine( line );
                 continue;
               }
-              LinePoint first = line.mFirst;
-              LinePoint last  = line.mLast;
+              LinePoint first = line.first();
+              LinePoint last  = line.last();
               int size = line.size();
               if ( size <= 2 || ( size == 3 && pt.mPoint == first.mNext ) ) // 2-point line OR erase midpoint of a 3-point line 
               {
@@ -956,7 +1035,7 @@ class DrawingCommandManager
   void splitLine( DrawingLinePath line, LinePoint lp )
   {
     if ( lp == null ) return;
-    if ( lp == line.mFirst || lp == line.mLast ) return; // cannot split at first and last point
+    if ( lp == line.first() || lp == line.last() ) return; // cannot split at first and last point
     int size = line.size();
     if ( size == 2 ) return;
     syncClearSelected();
@@ -996,7 +1075,7 @@ class DrawingCommandManager
     int size = line.size();
     if ( size <= 2 ) return false;
     syncClearSelected();
-    for ( LinePoint lp = line.mFirst; lp != null; lp = lp.mNext ) 
+    for ( LinePoint lp = line.first(); lp != null; lp = lp.mNext ) 
     {
       if ( lp == point ) {
         synchronized( mCurrentStack ) {
@@ -1074,8 +1153,15 @@ class DrawingCommandManager
   void deleteSplay( DrawingPath p, SelectionPoint sp )
   {
     synchronized( mSplaysStack ) {
-      mSplaysStack.remove( p );
+      Integer k = mSplayPosValid ? mSplayPos.get( p.mBlock ) : null;
+      if ( k != null && mSplaysStack.get( k ) == p ) {
+        removeSplayAt( k );
+      } else {
+        mSplaysStack.remove( p );
+        reindexSplays();
+      }
     }
+    referencesChanged();
     synchronized( TDPath.mSelectionLock ) {
       mSelection.removePoint( sp );
       clearSelected();
@@ -1158,7 +1244,7 @@ class DrawingCommandManager
   void closePointLine( DrawingPointLinePath line )
   {
     synchronized( mCurrentStack ) {
-      SelectionPoint sp = mSelection.getSelectionPoint( line.mLast );
+      SelectionPoint sp = mSelection.getSelectionPoint( line.last() );
       line.makeClose( );
       // re-bucket last line point
       synchronized ( TDPath.mSelectionLock ) {
@@ -1218,6 +1304,7 @@ class DrawingCommandManager
 	// highlightsSplays( app ); // FIXME_HIGHLIGHT
       }
     }
+    referencesChanged();
   }
 
   void addLegPath( DrawingPath path, boolean selectable )
@@ -1225,6 +1312,8 @@ class DrawingCommandManager
     if ( mLegsStack == null ) return;
     synchronized( mLegsStack ) {
       mLegsStack.add( path );
+      if ( path.mPaint == BrushManager.fixedBluePaint ) mRecentLegs.add( path );
+      referencesChanged();
       if ( selectable ) {
         synchronized( TDPath.mSelectionLock ) {
           // if ( path.mBlock != null ) {
@@ -1240,7 +1329,9 @@ class DrawingCommandManager
   {
     if ( mSplaysStack == null ) return;
     synchronized( mSplaysStack ) {
+      indexSplay( path, mSplaysStack.size() );
       mSplaysStack.add( path );
+      referencesChanged();
       if ( selectable ) {
         synchronized( TDPath.mSelectionLock ) {
           // if ( path.mBlock != null ) {
@@ -1252,8 +1343,80 @@ class DrawingCommandManager
     }
   }  
   
+  // synchronized on mSplaysStack
+  private void indexSplay( DrawingPath path, int pos )
+  {
+    if ( path.mBlock == null || mSplayPos.put( path.mBlock, pos ) != null ) mSplayPosValid = false;
+  }
+
+  // synchronized on mSplaysStack
+  private void reindexSplays()
+  {
+    mSplayPos.clear();
+    mSplayPosValid = true;
+    for ( int k = 0; k < mSplaysStack.size(); ++k ) indexSplay( mSplaysStack.get( k ), k );
+  }
+
+  // the last splay is moved into the slot of the removed splay: the order of the splays does not matter
+  // synchronized on mSplaysStack, with a valid index
+  private void removeSplayAt( int k )
+  {
+    int last = mSplaysStack.size() - 1;
+    DrawingPath moved = mSplaysStack.remove( last );
+    if ( k < last ) {
+      mSplayPos.remove( mSplaysStack.set( k, moved ).mBlock );
+      mSplayPos.put( moved.mBlock, k );
+    } else {
+      mSplayPos.remove( moved.mBlock );
+    }
+  }
+
+  /** drop the splays of the given blocks, before they are added again with the recomputed splays
+   * @param blocks   blocks of the splays
+   * @note the work is proportional to the number of blocks, not to the number of splays
+   */
+  void dropSplayPaths( Set<DBlock> blocks )
+  {
+    if ( mSplaysStack == null || blocks.isEmpty() ) return;
+    synchronized( mSplaysStack ) {
+      if ( mSplayPosValid ) {
+        for ( DBlock blk : blocks ) {
+          Integer k = mSplayPos.get( blk );
+          if ( k != null ) removeSplayAt( k );
+        }
+      } else {
+        for ( Iterator<DrawingPath> it = mSplaysStack.iterator(); it.hasNext(); ) {
+          if ( blocks.contains( it.next().mBlock ) ) it.remove();
+        }
+        reindexSplays();
+      }
+      referencesChanged();
+      synchronized( TDPath.mSelectionLock ) {
+        mSelection.removeSplays( blocks );
+      }
+    }
+  }
+
+  /** reset the paint of the legs that are no longer recent
+   * @param paint   leg paint
+   */
+  void resetRecentLegs( Paint paint )
+  {
+    if ( mLegsStack == null ) return;
+    synchronized( mLegsStack ) {
+      for ( Iterator<DrawingPath> it = mRecentLegs.iterator(); it.hasNext(); ) {
+        DrawingPath path = it.next();
+        if ( ! path.mBlock.isRecent() ) {
+          if ( path.mPaint == BrushManager.fixedBluePaint ) path.setPathPaint( paint );
+          it.remove();
+          referencesChanged();
+        }
+      }
+    }
+  }
+
   // used by H-Sections
-  void setNorthLine( DrawingPath path ) { mNorthLine = path; }
+  void setNorthLine( DrawingPath path ) { mNorthLine = path; referencesChanged(); }
 
   void addGrid( DrawingPath path, int k )
   { 
@@ -1264,6 +1427,7 @@ class DrawingCommandManager
         case 10:  mGridStack10.add( path );  break;
         case 100: mGridStack100.add( path ); break;
       }
+      referencesChanged();
     }
   }
 
@@ -1330,16 +1494,25 @@ class DrawingCommandManager
     //   Log.v("DistoX-CMD", "add path. size " + line.size() + " start " + lp.x + " " + lp.y );
     // }
     
+    insertCommand( path, -1 );
+    // checkLines();
+  }
+
+  // @param index   position of the path in the stack (-1 to append it)
+  private void insertCommand( DrawingPath path, int index )
+  {
     synchronized( mCurrentStack ) {
-      mCurrentStack.add( path );
+      if ( index < 0 || index >= mCurrentStack.size() ) {
+        mCurrentStack.add( path );
+      } else {
+        mCurrentStack.add( index, path );
+      }
     }
-    if ( path.mType != DrawingPath.DRAWING_PATH_NORTH ) {
+    if ( mSelectable && path.mType != DrawingPath.DRAWING_PATH_NORTH ) {
       synchronized( TDPath.mSelectionLock ) {
         mSelection.insertPath( path );
       }
     }
-    
-    // checkLines();
   }
 
   void deleteSectionPoint( String scrap_name, EraseCommand cmd )
@@ -1627,7 +1800,7 @@ class DrawingCommandManager
           // if ( linePath.mLineType == type ) 
           if ( group.equals( BrushManager.getLineGroup( linePath.mLineType ) ) )
           {
-            if ( linePath.mFirst.distance( lp ) < delta || linePath.mLast.distance( lp ) < delta ) {
+            if ( linePath.first().distance( lp ) < delta || linePath.last().distance( lp ) < delta ) {
               if ( ret != null ) return null; // ambiguity
               ret = linePath;
             }
@@ -1647,18 +1820,18 @@ class DrawingCommandManager
   // @param size  selection size
   boolean modifyLine( DrawingLinePath line, DrawingLinePath line2, float zoom, float size )
   {
-    LinePoint lp1 = line.mFirst; 
+    LinePoint lp1 = line.first(); 
     if ( lp1 == null ) return false; // sanity check
     if ( line2 == null || line2.size() < 3 ) return false;
     float delta = size / zoom;
-    LinePoint first = line2.mFirst;
-    LinePoint last  = line2.mLast;
+    LinePoint first = line2.first();
+    LinePoint last  = line2.last();
     for ( ; lp1 != null; lp1 = lp1.mNext ) {
       if ( lp1.distance( first ) < delta ) {
         LinePoint lp2 = null;
         LinePoint lp1n = lp1.mNext;
         if ( lp1n != null ) {
-          lp2 = line.mLast;
+          lp2 = line.last();
           // int toDrop = 0; // number of points to drop
           for ( ; lp2 != lp1 && lp2 != null; lp2 = lp2.mPrev ) { // FIXME 20190512 check lp2 != null
             if ( lp2.distance( last ) < delta ) {
@@ -1703,7 +1876,7 @@ class DrawingCommandManager
       mSelection.removePath( line0 );
     }
     synchronized( mCurrentStack ) {
-      boolean reverse = line0.mFirst.distance( line.mFirst ) < line0.mLast.distance( line.mFirst );
+      boolean reverse = line0.first().distance( line.first() ) < line0.last().distance( line.first() );
       if ( reverse ) line0.reversePath();
       line0.append( line );
       if ( reverse ) {
@@ -1731,6 +1904,73 @@ class DrawingCommandManager
   }
 
   // N.B. doneHandler is not used
+  /** draw the reference geometry: grid, legs, splays, and stations
+   * @param canvas   canvas (or layer canvas)
+   * @param matrix   scene-to-canvas matrix
+   * @param bbox     scene bounding box
+   */
+  private void drawReferences( Canvas canvas, Matrix matrix, RectF bbox, boolean grids, boolean legs, boolean splays, boolean latest,
+                               boolean stations, DrawingStationSplay station_splay )
+  {
+    if( grids && mGridStack1 != null ) {
+      synchronized( mGridStack1 ) {
+        if ( mScale < 1 ) {
+          for ( DrawingPath p1 : mGridStack1 ) {
+            p1.draw( canvas, matrix, mScale, bbox );
+          }
+        }
+        if ( mScale < 10 ) {
+          for ( DrawingPath p10 : mGridStack10 ) {
+            p10.draw( canvas, matrix, mScale, bbox );
+          }
+        }
+        for ( DrawingPath p100 : mGridStack100 ) {
+          p100.draw( canvas, matrix, mScale, bbox );
+        }
+        if ( mNorthLine != null ) {
+          mNorthLine.draw( canvas, matrix, mScale, bbox );
+        }
+      }
+    }
+
+    // the batches are rebuilt at every frame when the recent shots depend on the time
+    int stamp = mLayerStamp + DrawingPath.mPaintStamp + station_splay.getStamp();
+    boolean timed = TDSetting.mShotRecent && TDSetting.isConnectionModeContinuous();
+    if ( legs && mLegsStack != null ) {
+      synchronized( mLegsStack ) {
+        if ( timed || ! mLegsBatch.isValid( stamp, mLegsStack.size(), DrawingSegmentBatch.FILTER_ALL ) ) {
+          mLegsBatch.build( mLegsStack, stamp, DrawingSegmentBatch.FILTER_ALL, station_splay );
+        }
+        mLegsBatch.draw( canvas, matrix );
+      }
+    }
+
+    if ( mSplaysStack != null ) {
+      int filter = -1;
+      if ( splays ) { // draw all splays except the splays-off
+        filter = DrawingSegmentBatch.FILTER_NO_OFF;
+      } else if ( latest || station_splay.hasSplaysON() ) { // draw the splays-on and/or the lastest
+        filter = DrawingSegmentBatch.FILTER_ON;
+      }
+      if ( filter >= 0 ) {
+        synchronized( mSplaysStack ) {
+          if ( timed || ! mSplaysBatch.isValid( stamp, mSplaysStack.size(), filter ) ) {
+            mSplaysBatch.build( mSplaysStack, stamp, filter, station_splay );
+          }
+          mSplaysBatch.draw( canvas, matrix );
+        }
+      }
+    }
+
+    if ( stations && mStations != null ) {  
+      synchronized( mStations ) {
+        for ( DrawingStationName st : mStations ) {
+          st.draw( canvas, matrix, mScale, bbox );
+        }
+      }
+    }
+  }
+
   void executeAll( Canvas canvas, float zoom, DrawingStationSplay station_splay )
   {
     if ( canvas == null ) {
@@ -1775,51 +2015,38 @@ class DrawingCommandManager
         break;
     }
 
-    if( grids && mGridStack1 != null ) {
-      synchronized( mGridStack1 ) {
-        if ( mScale < 1 ) {
-          for ( DrawingPath p1 : mGridStack1 ) {
-            p1.draw( canvas, mMatrix, mScale, mBBox );
-          }
-        }
-        if ( mScale < 10 ) {
-          for ( DrawingPath p10 : mGridStack10 ) {
-            p10.draw( canvas, mMatrix, mScale, mBBox );
+    // reference geometry: from the offscreen layer, if possible
+    // the layer is not used when the recent splays depend on the time
+    boolean cached = false;
+    if ( ! ( TDSetting.mShotRecent && TDSetting.isConnectionModeContinuous() ) ) {
+      synchronized( mLayer ) {
+        if ( ! mLayer.isDisabled() ) {
+          int width  = canvas.getWidth();
+          int height = canvas.getHeight();
+          int stamp  = mLayerStamp + DrawingPath.mPaintStamp + station_splay.getStamp();
+          if ( mLayer.isValid( this, mMatrix, width, height, mDisplayMode, stamp ) ) {
+            cached = true;
+          } else if ( ! mLayer.isZooming() ) {
+            mLayerBBox.set( mBBox );
+            Canvas layer_canvas = mLayer.begin( this, mMatrix, width, height, mDisplayMode, stamp, mLayerMatrix, mLayerBBox, mScale );
+            if ( layer_canvas != null ) {
+              drawReferences( layer_canvas, mLayerMatrix, mLayerBBox, grids, legs, splays, latest, stations, station_splay );
+              cached = true;
+            }
           }
-        }
-        for ( DrawingPath p100 : mGridStack100 ) {
-          p100.draw( canvas, mMatrix, mScale, mBBox );
-        }
-        if ( mNorthLine != null ) {
-          mNorthLine.draw( canvas, mMatrix, mScale, mBBox );
-        }
-        if(scaleRef && (mScaleRef != null)) {
-          mScaleRef.draw(canvas, zoom, mLandscape);
+          if ( cached ) mLayer.draw( canvas );
         }
       }
     }
-
-    if ( legs && mLegsStack != null ) {
-      synchronized( mLegsStack ) {
-        for ( DrawingPath leg: mLegsStack ) {
-          leg.draw( canvas, mMatrix, mScale, mBBox );
-        }
-      }
+    if ( ! cached ) {
+      drawReferences( canvas, mMatrix, mBBox, grids, legs, splays, latest, stations, station_splay );
     }
-
-    if ( mSplaysStack != null ) {
-      synchronized( mSplaysStack ) {
-        if ( splays ) { // draw all splays except the splays-off
-          for ( DrawingPath path : mSplaysStack ) {
-	        if ( ! station_splay.isStationOFF( path ) ) path.draw( canvas, mMatrix, mScale, mBBox );
-	      }
-        } else if ( latest || station_splay.hasSplaysON() ) { // draw the splays-on and/or the lastest
-          for ( DrawingPath path : mSplaysStack ) {
-            if ( station_splay.isStationON( path ) || path.isBlockRecent() ) path.draw( canvas, mMatrix, mScale, mBBox );
-	      }
-	    }
+    if ( grids && scaleRef && mScaleRef != null ) {
+      synchronized( mGridStack1 ) {
+        mScaleRef.draw(canvas, zoom, mLandscape);
       }
     }
+
     if ( mScrap != null && mScrap.size() > 0 ) {
       synchronized( mScrap )  {
         for (DrawingLinePath path : mScrap ) {
@@ -1834,19 +2061,14 @@ class DrawingCommandManager
         }
       }
     }
- 
-    if ( stations && mStations != null ) {  
-      synchronized( mStations ) {
-        for ( DrawingStationName st : mStations ) {
-          st.draw( canvas, mMatrix, mScale, mBBox );
-        }
-      }
-    }
 
+    materialize( mBBox );
     if ( mCurrentStack != null ){
       synchronized( mCurrentStack ) {
+        mSketchIndex.update( mCurrentStack, mSketchStamp );
+        List< ICanvasCommand > visible = mSketchIndex.query( mBBox );
         if ( outline ) {
-          for ( ICanvasCommand cmd : mCurrentStack  ) {
+          for ( ICanvasCommand cmd : visible ) {
             if ( cmd.commandType() == 0 ) {
               DrawingPath path = (DrawingPath)cmd;
               if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
@@ -1859,14 +2081,14 @@ class DrawingCommandManager
           }
         } else {
           if ( TDSetting.mWithLevels == 0 ) { // treat no-levels case by itself
-            for ( ICanvasCommand cmd : mCurrentStack  ) {
+            for ( ICanvasCommand cmd : visible ) {
               if ( cmd.commandType() == 0 ) {
                 DrawingPath path = (DrawingPath)cmd;
                 cmd.draw( canvas, mMatrix, mScale, mBBox );
                 if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
                   DrawingLinePath line = (DrawingLinePath)path;
                   if ( line.mLineType == BrushManager.mLineLib.mLineSectionIndex ) { // add direction-tick to section-lines
-                    LinePoint lp = line.mFirst;
+                    LinePoint lp = line.first();
                     Path path1 = new Path();
                     path1.moveTo( lp.x, lp.y );
                     path1.lineTo( lp.x+line.mDx*TDSetting.mArrowLength, lp.y+line.mDy*TDSetting.mArrowLength );
@@ -1877,7 +2099,7 @@ class DrawingCommandManager
               }
             }
           } else {
-            for ( ICanvasCommand cmd : mCurrentStack  ) {
+            for ( ICanvasCommand cmd : visible ) {
               if ( cmd.commandType() == 0 ) {
                 DrawingPath path = (DrawingPath)cmd;
                 if ( DrawingLevel.isLevelVisible( (DrawingPath)cmd ) ) {
@@ -1885,7 +2107,7 @@ class DrawingCommandManager
                   if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
                     DrawingLinePath line = (DrawingLinePath)path;
                     if ( line.mLineType == BrushManager.mLineLib.mLineSectionIndex ) { // add direction-tick to section-lines
-                      LinePoint lp = line.mFirst;
+                      LinePoint lp = line.first();
                       Path path1 = new Path();
                       path1.moveTo( lp.x, lp.y );
                       path1.lineTo( lp.x+line.mDx*TDSetting.mArrowLength, lp.y+line.mDy*TDSetting.mArrowLength );
@@ -1999,7 +2221,7 @@ class DrawingCommandManager
 	  } else { // if ( mMultiselectionType == DrawingPath.DRAWING_PATH_LINE || mMultiselectionType == DrawingPath.DRAWING_PATH_LINE ) 
 	    for ( DrawingPath item : mMultiselected ) {
 	      DrawingPointLinePath line = (DrawingPointLinePath) item;
-              LinePoint lp = line.mFirst;
+              LinePoint lp = line.first();
               path.moveTo( lp.x, lp.y );
               for ( lp = lp.mNext; lp != null; lp = lp.mNext ) {
                 if ( lp.has_cp ) {
@@ -2048,7 +2270,7 @@ class DrawingCommandManager
 	    if ( item.mType == DrawingPath.DRAWING_PATH_LINE ) {
               Paint paint = BrushManager.fixedYellowPaint;
               DrawingLinePath line = (DrawingLinePath) item;
-              lp = line.mFirst;
+              lp = line.first();
               LinePoint lpn = lp1;
               if ( lp == lp1 ) {
                 paint = BrushManager.fixedOrangePaint;
@@ -2308,6 +2530,7 @@ class DrawingCommandManager
     boolean splays = (mDisplayMode & DisplayMode.DISPLAY_SPLAY ) != 0;
     // boolean latest = (mDisplayMode & DisplayMode.DISPLAY_LATEST ) != 0;
     boolean stations = (mDisplayMode & DisplayMode.DISPLAY_STATION ) != 0;
+    materialize( new RectF( x-radius, y-radius, x+radius, y+radius ) ); // the deferred items near the point must be selectable
     // synchronized ( TDPath.mSelectedLock ) {
     synchronized ( TDPath.mSelectionLock ) {
       mSelected.clear();
@@ -2434,7 +2657,7 @@ class DrawingCommandManager
     if ( BrushManager.isLineSection( sp.type() ) ) return false; // NOT for "section" lines
     LinePoint pt1 = sp.mPoint;
     DrawingLinePath line1 = (DrawingLinePath)sp.mItem;
-    if ( pt1 != line1.mFirst && pt1 != line1.mLast ) return false;
+    if ( pt1 != line1.first() && pt1 != line1.last() ) return false;
 
     int linetype = line1.mLineType;
 
@@ -2453,12 +2676,12 @@ class DrawingCommandManager
       mSelection.removePath( line1 );
     }
 
-    boolean reverse1 = ( pt1 == line1.mLast );
-    boolean reverse2 = ( pt2 == line2.mFirst );
+    boolean reverse1 = ( pt1 == line1.last() );
+    boolean reverse2 = ( pt2 == line2.first() );
     synchronized( mCurrentStack ) {
       if ( reverse2 ) line2.reversePath();
       if ( reverse1 ) line1.reversePath();
-      LinePoint pt = line1.mFirst; // append to end
+      LinePoint pt = line1.first(); // append to end
       while ( pt != null ) {
         if ( pt.has_cp ) {
           line2.addPoint3( pt.x1, pt.y1, pt.x2, pt.y2, pt.x, pt.y );
@@ -2524,7 +2747,7 @@ class DrawingCommandManager
       float y = fxd.y2;
       float dmin = dthr;
       LinePoint lpmin = null;
-      for ( LinePoint lp2 = line.mFirst; lp2 != null; lp2=lp2.mNext ) {
+      for ( LinePoint lp2 = line.first(); lp2 != null; lp2=lp2.mNext ) {
         float d = lp2.distance( x, y );
         if ( d < dmin ) {
           dmin = d;
@@ -2566,11 +2789,11 @@ class DrawingCommandManager
     // and order nearby_splays following the line path
     int k = 0; // partition of unity
     float len = 0.001f;
-    LinePoint lp1 = line.mFirst;
+    LinePoint lp1 = line.first();
     int size = line.size();
     float[] dist = new float[ size ];
     int k0 = 0;
-    for ( LinePoint lp2 = line.mFirst; lp2 != null; lp2 = lp2.mNext ) {
+    for ( LinePoint lp2 = line.first(); lp2 != null; lp2 = lp2.mNext ) {
       dist[k0] = lp1.distance( lp2 );
       len += dist[k0];
       ++k0;
@@ -2602,7 +2825,7 @@ class DrawingCommandManager
     int kl = -1;
     int kr = 0;
     len = 0;
-    LinePoint lp2 = line.mFirst;
+    LinePoint lp2 = line.first();
     NearbySplay spr = null; // right splay
     for ( NearbySplay spl : nearby_splays ) { // left splay
       while ( lp2 != spl.pt /* && lp2 != null && k0 < size */ ) { // N.B. lp2 must be non-null and k0 must be < size
@@ -2681,7 +2904,7 @@ class DrawingCommandManager
            p.mType != DrawingPath.DRAWING_PATH_AREA ) continue;
       DrawingPointLinePath lp = (DrawingPointLinePath)p;
       int ks = lp.size();
-      for ( LinePoint pt = lp.mFirst; pt != null && ks > 0; pt = pt.mNext )
+      for ( LinePoint pt = lp.first(); pt != null && ks > 0; pt = pt.mNext )
       {
         -- ks;
         // float d = pts.get(k).distance( x, y );
@@ -3108,6 +3331,7 @@ class DrawingCommandManager
 
   private RectF computeBBox() 
   {
+    materializeAll();
     float xmin=1000000f, xmax=-1000000f, 
           ymin=1000000f, ymax=-1000000f;
     synchronized( mCurrentStack ) {
@@ -3140,10 +3364,107 @@ class DrawingCommandManager
     }
   }
    
-  void exportDataStream( int type, DataOutputStream dos, String scrap_name, int proj_dir )
+  /** write the sketch to a data stream
+   * @param tdr_save  whether the stream is the tdr file of the sketch: only then the journal and the index
+   *                  record the snapshot, and the sketch is marked saved
+   */
+  void exportDataStream( int type, DataOutputStream dos, String scrap_name, int proj_dir, boolean tdr_save )
   {
+    if ( tdr_save ) mSavedStamp = mSketchStamp;
     RectF bbox = computeBBox();
-    DrawingIO.exportDataStream( type, dos, scrap_name, proj_dir, bbox, mNorthLine, mCurrentStack, mUserStations, mStations );
+    DrawingIO.exportDataStream( type, dos, scrap_name, proj_dir, bbox, mNorthLine, mCurrentStack, mUserStations, mStations,
+                                ( tdr_save ? mJournal : null ), ( tdr_save ? mTdrIndex : null ) );
+  }
+
+  // journal of the changes since the last tdr snapshot
+  private DrawingJournal mJournal = new DrawingJournal();
+
+  /** save the changes of the sketch to the journal of its tdr file
+   * @param tdrname   tdr file
+   * @return true if the changes have been saved, false if a full snapshot must be written
+   */
+  boolean appendJournal( String tdrname )
+  {
+    int stamp = mSketchStamp;
+    if ( ! mJournal.append( tdrname, mCurrentStack, mUserStations ) ) return false;
+    mSavedStamp = stamp;
+    return true;
+  }
+
+  // index of the items of the tdr snapshot
+  private DrawingTdrIndex mTdrIndex = new DrawingTdrIndex();
+
+  /** the snapshot written by exportDataStream has been moved to the tdr file
+   * @param tdrname   tdr file
+   */
+  void commitSnapshot( String tdrname )
+  {
+    mJournal.commitSnapshot( tdrname );
+    mTdrIndex.commitSnapshot( tdrname );
+  }
+
+  // items of the tdr files loaded with their index (overview), not read yet, in stack order
+  // an item is read into the stack slot it would have had if it had been read when it was added,
+  // so that the stack order does not depend on the order in which the items become visible
+  private final ArrayList< DrawingTdrIndex.Item > mDeferred = new ArrayList<>();
+
+  void addDeferredItems( List< DrawingTdrIndex.Item > items )
+  {
+    synchronized( mDeferred ) {
+      synchronized( mCurrentStack ) {
+        int slot = mCurrentStack.size();
+        for ( DrawingTdrIndex.Item item : mDeferred ) if ( ! item.isUserStation() ) ++ slot;
+        for ( DrawingTdrIndex.Item item : items ) {
+          item.mSlot = item.isUserStation() ? -1 : slot ++;
+          mDeferred.add( item );
+        }
+      }
+    }
+  }
+
+  /** read all the deferred items, eg, before an export
+   */
+  void materializeAll() { materialize( null ); }
+
+  /** read the deferred items that are visible
+   * @param bbox   scene rectangle, null for all the items
+   */
+  private void materialize( RectF bbox )
+  {
+    synchronized( mDeferred ) {
+      if ( mDeferred.isEmpty() ) return;
+      int kept = 0;
+      int pending = 0; // deferred stack items before the current item that are not read
+      int dropped = 0; // deferred items that could not be read: the slots of the following items shift down
+      int nr = 0;
+      for ( DrawingTdrIndex.Item item : mDeferred ) {
+        if ( dropped > 0 && item.mSlot >= 0 ) item.mSlot -= dropped;
+        if ( bbox != null ) {
+          if ( ! item.intersects( bbox.left, bbox.top, bbox.right, bbox.bottom )
+            || ! ( item.isUserStation() || DrawingLevel.isLevelVisible( item.mSymbolLevel, item.mLevel ) ) ) {
+            mDeferred.set( kept ++, item );
+            if ( ! item.isUserStation() ) ++ pending;
+            continue;
+          }
+        }
+        DrawingPath path = item.materialize();
+        if ( path == null ) {
+          if ( ! item.isUserStation() ) ++ dropped;
+          continue;
+        }
+        if ( item.isUserStation() ) {
+          addUserStation( (DrawingStationPath)path );
+        } else {
+          insertCommand( path, item.mSlot - pending );
+        }
+        ++ nr;
+      }
+      mDeferred.subList( kept, mDeferred.size() ).clear();
+      if ( nr > 0 ) {
+        ++ mSketchStamp;
+        // Log.v("DistoX", "materialized " + nr + " deferred " + kept );
+      }
+    }
   }
 
   void exportAsCsx( PrintWriter pw, String survey, String cave, String branch, /* String session, */
@@ -3183,6 +3504,7 @@ class DrawingCommandManager
     // Log.v("DistoX", "add station " + st.getName() + " scene " + st.cx + " " + st.cy + " XSection " + st.mXSectionType );
     synchronized( mStations ) {
       mStations.add( st );
+      referencesChanged();
       if ( selectable ) {
         synchronized( TDPath.mSelectionLock ) {
           // Log.v( "DistoX", "selection add station " + st.getName() );
@@ -3206,6 +3528,7 @@ class DrawingCommandManager
         }
       }
     }
+    referencesChanged();
   }
 
   float computeSectionArea()
@@ -3217,8 +3540,8 @@ class DrawingCommandManager
       if ( p.mType != DrawingPath.DRAWING_PATH_LINE ) continue;
       DrawingLinePath lp = (DrawingLinePath)p;
       if ( lp.mLineType != BrushManager.mLineLib.mLineWallIndex ) continue;
-      LinePoint pt = lp.mFirst;
-      while ( pt != lp.mLast ) {
+      LinePoint pt = lp.first();
+      while ( pt != lp.last() ) {
         LinePoint pn = pt.mNext;
         ret += pt.y * pn.x - pt.x * pn.y;
         pt = pn;
@@ -3336,6 +3659,7 @@ class DrawingCommandManager
 
   RectF getBoundingBox( )
   {
+    materializeAll();
     RectF bbox = new RectF( 0, 0, 0, 0 );
     for ( ICanvasCommand cmd : getCommands() ) {
       if ( cmd.commandType() != 0 ) continue;
@@ -14,17 +14,13 @@ package com.topodroid.DistoX;
 
 import java.util.Locale;
 
-// import java.util.ArrayList;
+import java.util.ArrayList;
 // import java.util.HashMap;
 
 // import java.io.FileWriter;
 import java.io.StringWriter;
 import java.io.PrintWriter;
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import android.graphics.RectF;
@@ -273,7 +269,7 @@ class DrawingDxf
     printInt( pw, 66, 1 ); // group 1
     printInt( pw, 70, 8 + close ); // polyline flag 8 = 3D polyline, 1 = closed 
     printInt( pw, 75, 0 ); // 6 cubic spline, 5 quad spline, 0
-    LinePoint p = line.mFirst;
+    LinePoint p = line.first();
     float x0 = xoff + p.x;
     float y0 = yoff + p.y;
     handle = printLinePoint( pw, scale, handle, layer, x0, y0 );
@@ -302,7 +298,7 @@ class DrawingDxf
       y0 = y3;
     }
     if ( closed ) {
-      p = line.mFirst;
+      p = line.first();
       handle = printLinePoint( pw, scale, handle, layer, xoff+p.x, yoff+p.y );
     }
     pw.printf("  0%sSEQEND%s", EOL, EOL );
@@ -335,7 +331,7 @@ class DrawingDxf
   static private boolean checkSpline( DrawingPointLinePath line )
   {
     if ( mVersion13 ) {
-      for ( LinePoint p = line.mFirst; p != null; p = p.mNext ) {
+      for ( LinePoint p = line.first(); p != null; p = p.mNext ) {
         if ( p.has_cp ) {
           return true;
         }
@@ -360,7 +356,7 @@ class DrawingDxf
 
     float xt=0, yt=0;
     int np = 2;
-    LinePoint p = line.mFirst; 
+    LinePoint p = line.first(); 
     LinePoint pn = p.mNext;
     if ( pn != null ) {
       if ( pn.has_cp ) {
@@ -405,7 +401,7 @@ class DrawingDxf
     }
     printInt( pw, 40, np-1 );
 
-    p = line.mFirst; 
+    p = line.first(); 
     xt = p.x;
     yt = p.y;
     printXYZ( pw, (p.x+xoff) * scale, -(p.y+yoff) * scale, 0.0f, 0 );         // control points: 1 + 3 * (NP - 1) = 3 NP - 2
@@ -421,7 +417,7 @@ class DrawingDxf
       xt = p.x;
       yt = p.y;
     }
-    for ( p = line.mFirst; p != null; p = p.mNext ) { 
+    for ( p = line.first(); p != null; p = p.mNext ) { 
       printXYZ( pw, (p.x+xoff) * scale, -(p.y+yoff) * scale, 0.0f, 1 );  // fit points: NP
     }
     return handle;
@@ -1229,7 +1225,7 @@ class DrawingDxf
                                          // polyline: has-bulge
         printInt( pw, 73, 1 );          // is-closed flag
         printInt( pw, 93, area.size() ); // nr. of points (not polyline) vertices (polyline)
-        for (LinePoint p = area.mFirst; p != null; p = p.mNext ) { 
+        for (LinePoint p = area.first(); p != null; p = p.mNext ) { 
           printXY( pw, (p.x+xoff)*scale, -(p.y+yoff)*scale, 0 );
         }
         // printXY( pw, area.mFirst.x * scale, -area.mFirst.y * scale, 0 );
@@ -1270,61 +1266,18 @@ class DrawingDxf
   static private int tdrToDxf( PrintWriter pw, int handle, String scrapfile,
                                float scale, float dx, float dy, float xoff, float yoff )
   {
-    try {
-      // TDLog.Log( TDLog.LOG_IO, "tdr to dxf. scrapfile " + scrapfile );
-      FileInputStream fis = new FileInputStream( TDPath.getTdrFile( scrapfile ) );
-      BufferedInputStream bfis = new BufferedInputStream( fis );
-      DataInputStream dis = new DataInputStream( bfis );
-      int version = DrawingIO.skipTdrHeader( dis );
-      // Log.v("DistoX", "tdr to svg delta " + dx + " " + dy + " Offset " + xoff + " " + yoff );
-
-      DrawingPath path = null;
-      boolean done = false;
-      while ( ! done ) {
-        int what = dis.read();
-        switch ( what ) {
-          case 'P':
-            path = DrawingPointPath.loadDataStream( version, dis, dx, dy /*, null */ );
-            handle = toDxf( pw, handle, (DrawingPointPath)path, scale, xoff, yoff );
-            break;
-          case 'T':
-            path = DrawingLabelPath.loadDataStream( version, dis, dx, dy );
-            handle = toDxf( pw, handle, (DrawingLabelPath)path, scale, xoff, yoff );
-            break;
-          case 'L':
-            path = DrawingLinePath.loadDataStream( version, dis, dx, dy /*, null */ );
-            handle = toDxf( pw, handle, (DrawingLinePath)path, scale, xoff, yoff );
-            break;
-          case 'A':
-            path = DrawingAreaPath.loadDataStream( version, dis, dx, dy /*, null */ );
-            handle = toDxf( pw, handle, (DrawingAreaPath)path, scale, xoff, yoff );
-            break;
-          case 'U':
-            path = DrawingStationPath.loadDataStream( version, dis ); // consume DrawingStationName data
-            break;
-          case 'X':
-            path = DrawingStationName.loadDataStream( version, dis ); // consume DrawingStationName data
-            break;
-          case 'Y':
-            path = DrawingPhotoPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'Z':
-            path = DrawingAudioPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'J':
-            path = DrawingSpecialPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'F':
-            done = true;
-            break;
-	  default:
-	    TDLog.Error("TDR2DXF Error. unexpected code=" + what );
-	    return handle;
-        }
+    // TDLog.Log( TDLog.LOG_IO, "tdr to dxf. scrapfile " + scrapfile );
+    ArrayList< DrawingPath > items = DrawingIO.readScrapItems( scrapfile, dx, dy );
+    if ( items == null ) return handle;
+    for ( DrawingPath path : items ) {
+      if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
+        handle = toDxf( pw, handle, (DrawingLinePath)path, scale, xoff, yoff );
+      } else if ( path.mType == DrawingPath.DRAWING_PATH_AREA ) {
+        handle = toDxf( pw, handle, (DrawingAreaPath)path, scale, xoff, yoff );
+      } else if ( path.mType == DrawingPath.DRAWING_PATH_POINT ) {
+        if ( path instanceof DrawingPhotoPath || path instanceof DrawingAudioPath ) continue;
+        handle = toDxf( pw, handle, (DrawingPointPath)path, scale, xoff, yoff );
       }
-    } catch ( FileNotFoundException e ) { // this is OK
-    } catch ( IOException e ) {
-      e.printStackTrace();
     }
     return handle;
   }
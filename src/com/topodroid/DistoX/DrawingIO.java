@@ -508,7 +508,8 @@ class DrawingIO
     }
   }
 
-  static void exportDataStream( DrawingCommandManager manager, int type, File file, String fullname, int proj_dir )
+  // @param tdr_save  whether the file is the tdr of the sketch
+  static void exportDataStream( DrawingCommandManager manager, int type, File file, String fullname, int proj_dir, boolean tdr_save )
   {
     try {
       FileOutputStream fos = new FileOutputStream( file );
@@ -516,7 +517,7 @@ class DrawingIO
       // ByteArrayOutputStream bos = new ByteArrayOutputStream( 4096 );
       BufferedOutputStream bfos = new BufferedOutputStream( fos );
       DataOutputStream dos = new DataOutputStream( bfos );
-      manager.exportDataStream( type, dos, fullname, proj_dir );
+      manager.exportDataStream( type, dos, fullname, proj_dir, tdr_save );
       dos.close();
 
       // CACHE add filename/bos.toByteArray to cache
@@ -639,33 +640,55 @@ class DrawingIO
   {
     // Log.v("DistoXX", "load data stream file " + filename );
     // if ( plotName != null ) Log.v("DistoXX", "load data stream plot-name " + plotName );
+    // BrushManager.makePaths( );
+    BrushManager.resetPointOrientations();
+    ArrayList< DrawingPath > items = readDataStream( filename, dx, dy, localPalette, bbox, complete, plotName );
+    if ( items == null ) return false;
+    for ( DrawingPath item : items ) {
+      if ( item.mType == DrawingPath.DRAWING_PATH_STATION ) {
+        surface.addDrawingStationPath( (DrawingStationPath)item );
+      } else {
+        surface.addDrawingPath( item );
+      }
+    }
+    return true;
+  }
 
+  /** read the items of a tdr file, and of its journal
+   * @param filename     tdr file
+   * @param dx           X offset
+   * @param dy           Y offset
+   * @param localPalette palette
+   * @param bbox         [output] bounding box (can be null)
+   * @param complete     whether to read the final stations
+   * @param plotName     plot name of the items (can be null)
+   * @return the items, or null if the file does not exist
+   * @note this does not touch the surface, and it can run on a worker thread
+   */
+  static ArrayList< DrawingPath > readDataStream( String filename,
+                                   float dx, float dy,
+                                   SymbolsPalette localPalette,
+                                   RectF bbox,
+				   boolean complete,
+				   String plotName )
+  {
     int version = 0;
     boolean in_scrap = false;
-    // BrushManager.makePaths( );
-    BrushManager.resetPointOrientations();
+    boolean in_final = false; // whether the final stations are being read
+    ArrayList< DrawingPath > items = new ArrayList<>();       // scrap items
+    ArrayList< DrawingPath > final_items = new ArrayList<>(); // final stations
     DrawingPath path = null;
     int project_dir = 0;
     float north_x1, north_y1, north_x2, north_y2;
 
     File file = new File( filename );
-    if ( ! file.exists() ) return false;
+    if ( ! file.exists() ) return null;
 
     FileInputStream fis = null;
     DataInputStream dis = null;
 
     // FIXME SECTION_RENAME
-    int pos = filename.lastIndexOf('/');
-    String survey_name = null;
-    if ( pos >= 0 ) {
-      survey_name = filename.substring(pos+1);
-    } else {
-      survey_name = filename;
-    }
-    if ( survey_name != null ) {
-      pos = survey_name.indexOf('-');
-      if ( pos > 0 ) survey_name = survey_name.substring(0, pos);
-    }
+    String survey_name = getSurveyName( filename );
 
     // Log.v("DistoX", "drawing I/O load stream " + filename );
     // synchronized( TDPath.mTherionLock ) // FIXME-THREAD_SAFE
@@ -734,36 +757,19 @@ class DrawingIO
               }
               break;
             case 'P':
-	      // FIXME SECTION_RENAME
-              path = DrawingPointPath.loadDataStream( version, dis, dx, dy /*, missingSymbols */ ).fixScrap( survey_name );
-              break;
             case 'T':
-              path = DrawingLabelPath.loadDataStream( version, dis, dx, dy );
-              break;
             case 'Y':
-              path = DrawingPhotoPath.loadDataStream( version, dis, dx, dy );
-              break;
             case 'Z':
-              path = DrawingAudioPath.loadDataStream( version, dis, dx, dy );
-              break;
             case 'L':
-              path = DrawingLinePath.loadDataStream( version, dis, dx, dy /*, missingSymbols */ );
-              // Log.v("DistoX0", "add path ... " + ((DrawingLinePath)path).mFirst.mX + " " + ((DrawingLinePath)path).mFirst.mY );
-              break;
             case 'A':
-              path = DrawingAreaPath.loadDataStream( version, dis, dx, dy /*, missingSymbols */ );
-              break;
             case 'J':
-              path = DrawingSpecialPath.loadDataStream( version, dis, dx, dy );
-              break;
             case 'U':
-              path = DrawingStationPath.loadDataStream( version, dis ); // consume DrawingStationPath data
-              break;
             case 'X':
-              path = DrawingStationName.loadDataStream( version, dis ); // consume DrawingStationName data
+              path = loadPathDataStream( what, version, dis, dx, dy, survey_name );
               break;
             case 'F':
               // TDLog.Log( TDLog.LOG_PLOT, "<F>" );
+              in_final = true;
               if ( complete ) break; // continue parsing stations
             case 'E':
               todo = false;
@@ -774,12 +780,10 @@ class DrawingIO
               break;
           } 
           if ( path != null && in_scrap ) {
-            // if ( plotName != null ) 
-	      path.mPlotName = plotName;
-            if ( what == 'U' ) {
-              surface.addDrawingStationPath( (DrawingStationPath)path );
+            if ( in_final ) { 
+              final_items.add( path );
             } else {
-              surface.addDrawingPath( path );
+              items.add( path );
             }
           }
         }
@@ -790,10 +794,82 @@ class DrawingIO
       } catch ( IOException e ) {
         e.printStackTrace();
       }
+      // apply the changes saved in the journal after the tdr
+      DrawingJournal.replay( filename, items, dx, dy, survey_name, localPalette );
+      items.addAll( final_items );
+      for ( DrawingPath item : items ) {
+        // if ( plotName != null ) 
+	  item.mPlotName = plotName;
+      }
       // Log.v("DistoX", "read: " + sb.toString() );
     }
-    // FIXME-MISSING return (missingSymbols == null ) || missingSymbols.isOK();
-    return true;
+    return items;
+  }
+
+  /** read the items of a scrap for an export
+   * @param scrapfile  tdr file name
+   * @param dx         X offset
+   * @param dy         Y offset
+   * @return the items, with the changes of the journal, or null if the file does not exist
+   */
+  static ArrayList< DrawingPath > readScrapItems( String scrapfile, float dx, float dy )
+  {
+    return readDataStream( TDPath.getTdrFile( scrapfile ), dx, dy, new SymbolsPalette(), null, false, null );
+  }
+
+  /** @return the survey name of a tdr file
+   * @param filename   tdr file
+   */
+  static String getSurveyName( String filename )
+  {
+    int pos = filename.lastIndexOf('/');
+    String survey_name = null;
+    if ( pos >= 0 ) {
+      survey_name = filename.substring(pos+1);
+    } else {
+      survey_name = filename;
+    }
+    if ( survey_name != null ) {
+      pos = survey_name.indexOf('-');
+      if ( pos > 0 ) survey_name = survey_name.substring(0, pos);
+    }
+    return survey_name;
+  }
+
+  /** read an item from a data stream
+   * @param what          item type code
+   * @param version       data stream version
+   * @param dis           data stream
+   * @param dx            X offset
+   * @param dy            Y offset
+   * @param survey_name   survey name (for the section points)
+   * @return the item, or null if the type code is not an item
+   */
+  static DrawingPath loadPathDataStream( int what, int version, DataInputStream dis, float dx, float dy, String survey_name )
+  {
+    switch ( what ) {
+      case 'P':
+        // FIXME SECTION_RENAME
+        return DrawingPointPath.loadDataStream( version, dis, dx, dy /*, missingSymbols */ ).fixScrap( survey_name );
+      case 'T':
+        return DrawingLabelPath.loadDataStream( version, dis, dx, dy );
+      case 'Y':
+        return DrawingPhotoPath.loadDataStream( version, dis, dx, dy );
+      case 'Z':
+        return DrawingAudioPath.loadDataStream( version, dis, dx, dy );
+      case 'L':
+        // Log.v("DistoX0", "add path ... " + ((DrawingLinePath)path).mFirst.mX + " " + ((DrawingLinePath)path).mFirst.mY );
+        return DrawingLinePath.loadDataStream( version, dis, dx, dy /*, missingSymbols */ );
+      case 'A':
+        return DrawingAreaPath.loadDataStream( version, dis, dx, dy /*, missingSymbols */ );
+      case 'J':
+        return DrawingSpecialPath.loadDataStream( version, dis, dx, dy );
+      case 'U':
+        return DrawingStationPath.loadDataStream( version, dis ); // consume DrawingStationPath data
+      case 'X':
+        return DrawingStationName.loadDataStream( version, dis ); // consume DrawingStationName data
+    }
+    return null;
   }
 
   static void doLoadOutlineDataStream( DrawingSurface surface,
@@ -971,7 +1047,9 @@ class DrawingIO
       DrawingPath north,
       final List<ICanvasCommand> cstack,
       final List<DrawingStationPath> userstations,
-      final List<DrawingStationName> stations )
+      final List<DrawingStationName> stations,
+      DrawingJournal journal,
+      DrawingTdrIndex index )
   {
     // Log.v("DistoX", "cstack size " + cstack.size() );
     try { 
@@ -1000,19 +1078,18 @@ class DrawingIO
         dos.writeInt( 0 );
       }
 
-      synchronized( cstack ) {
-        for ( ICanvasCommand cmd : cstack ) {
-          if ( cmd.commandType() != 0 ) continue;
-          DrawingPath p = (DrawingPath) cmd;
-          if ( p.mType == DrawingPath.DRAWING_PATH_STATION ) continue; // safety check: should not happen
-          p.toDataStream( dos );
-        }
-      }
-      synchronized( userstations ) { // user stations are always exported to data stream
-        for ( DrawingStationPath sp : userstations ) {
-          sp.toDataStream( dos );
-        }
+      // the items are serialized to a snapshot holding the lock of the stacks, and written without the lock
+      DrawingSnapshot snapshot = new DrawingSnapshot( cstack, userstations ); // user stations are always exported to data stream
+      if ( journal != null ) journal.startSnapshot(); // the journal records the saved items
+      if ( index != null ) index.startSnapshot();     // the index records the offsets of the items
+      for ( int k = 0; k < snapshot.size(); ++k ) {
+        byte[] data = snapshot.getData( k );
+        int offset = dos.size();
+        dos.write( data );
+        if ( journal != null ) journal.addSnapshotItem( snapshot.get( k ), data );
+        if ( index != null ) index.addSnapshotItem( snapshot.get( k ), offset, data );
       }
+      TDLog.Log( TDLog.LOG_IO, "export data stream " + scrap_name + " " + snapshot.getLockStats() );
       dos.write('F'); // final: bbox and autostations (reading can skip all that follows)
 
       if ( TDSetting.mAutoStations ) {
@@ -1537,38 +1614,15 @@ class DrawingIO
               }
               break;
             case 'P':
-              th_str = DrawingPointPath.loadDataStream( version, dis, xoff, yoff /*, null */ ).toTherion();
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'T':
-              th_str = DrawingLabelPath.loadDataStream( version, dis, xoff, yoff ).toTherion();
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'L':
-              th_str = DrawingLinePath.loadDataStream( version, dis, xoff, yoff /*, null */ ).toTherion();
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'A':
-              th_str = DrawingAreaPath.loadDataStream( version, dis, xoff, yoff /*, null */ ).toTherion();
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'J':
-              th_str = DrawingSpecialPath.loadDataStream( version, dis, xoff, yoff ).toTherion(); // empty string anyways
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'U':
-              th_str = DrawingStationPath.loadDataStream( version, dis ).toTherion();
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'X':
-              // NOTE need to check XSection ??? STATION_XSECTION
-              th_str = DrawingStationName.loadDataStream( version, dis ).toTherion();
-	      if ( th_str != null ) out.write( th_str );
-              break;
             case 'F':
-              break; // continue parsing stations
             case 'E':
-              todo = false;
+              todo = false; // the items are read with the changes of the journal
               break;
             default:
               todo = false;
@@ -1576,9 +1630,17 @@ class DrawingIO
               break;
           } 
         }
-        if (endscrap ) exportTherionClose( out );
         dis.close();
         fis.close();
+        if ( in_scrap ) {
+          ArrayList< DrawingPath > items = readDataStream( file.getPath(), xoff, yoff, new SymbolsPalette(), null, true, null );
+          if ( items != null ) for ( DrawingPath item : items ) {
+            if ( item instanceof DrawingPhotoPath || item instanceof DrawingAudioPath ) continue;
+            th_str = item.toTherion();
+	    if ( th_str != null ) out.write( th_str );
+          }
+        }
+        if (endscrap ) exportTherionClose( out );
       } catch ( FileNotFoundException e ) {
         // this is OK
       } catch ( IOException e ) {
@@ -1650,30 +1712,15 @@ class DrawingIO
               }
               break;
             case 'P':
-              paths.add( DrawingPointPath.loadDataStream( version, dis, 0, 0 /*, null */ ) );
-              break;
             case 'T':
-              paths.add( DrawingLabelPath.loadDataStream( version, dis, 0, 0 ) );
-              break;
             case 'L':
-              paths.add( DrawingLinePath.loadDataStream( version, dis, 0, 0 /*, null */ ) );
-              break;
             case 'A':
-              paths.add( DrawingAreaPath.loadDataStream( version, dis, 0, 0 /*, null */ ) );
-              break;
 	    case 'J':
-              paths.add( DrawingSpecialPath.loadDataStream( version, dis, 0, 0 ) );
-              break;
             case 'U':
-              DrawingStationPath.loadDataStream( version, dis );
-              break;
             case 'X':
-              // NOTE need to check XSection ??? STATION_XSECTION
-              DrawingStationName.loadDataStream( version, dis );
-              break;
             case 'F':
             case 'E':
-              todo = false;
+              todo = false; // the items are read with the changes of the journal
               break;
             default:
               todo = false;
@@ -1683,6 +1730,14 @@ class DrawingIO
         }
         dis.close();
         fis.close();
+        if ( in_scrap ) {
+          ArrayList< DrawingPath > items = readDataStream( filename, 0, 0, new SymbolsPalette(), null, false, null );
+          if ( items != null ) for ( DrawingPath item : items ) {
+            if ( item.mType == DrawingPath.DRAWING_PATH_STATION || item.mType == DrawingPath.DRAWING_PATH_NAME ) continue;
+            if ( item instanceof DrawingPhotoPath || item instanceof DrawingAudioPath ) continue;
+            paths.add( item );
+          }
+        }
       } catch ( FileNotFoundException e ) {
         // this is OK
       } catch ( IOException e ) {
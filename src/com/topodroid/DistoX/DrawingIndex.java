@@ -0,0 +1,355 @@
+/* @file DrawingIndex.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: uniform grid index of the bounding boxes of a list of paths
+ *
+ * The index is updated when the data stamp of the list changes: the items that have been
+ * inserted, removed, or whose bounding box has changed are moved in the cells, the others
+ * are left where they are. The grid is rebuilt only when too many items stick out of it.
+ * The arrays of the index are kept between the updates, and they grow with the list.
+ * A query returns the items whose cells intersect a rectangle, in the order of the list.
+ * Items that are not paths, or span too many cells, are always returned.
+ * The query rectangle is clamped to the grid: the items on the border cells are returned also
+ * for a rectangle outside the grid.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import android.graphics.RectF;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+// import android.util.Log;
+
+class DrawingIndex< T extends ICanvasCommand >
+{
+  private static final int MAX_CELLS = 64;  // max number of cells on each side of the grid
+  private static final int MAX_SPAN  = 64;  // max number of cells of an item
+  private static final int MIN_SLOTS = 64;  // initial size of the slot arrays
+
+  private ArrayList< T > mItems;   // indexed items, in list order
+  private ArrayList< T > mResult;  // query result
+  private int mStamp = -1;         // data stamp of the index
+
+  // slots of the items
+  private IdentityHashMap< T, Integer > mSlot; // slot of each item
+  private ArrayList< T > mSlotItem;            // item of each slot (null if the slot is free)
+  private int   mNSlot = 0;                    // number of slots
+  private int[] mFree;                         // free slots
+  private int   mNFree = 0;
+  private float[] mBox;                        // indexed bounding box of each slot: left, top, right, bottom
+  private int[] mOrder;                        // list position of each slot
+  private int[] mSeen;                         // update stamp of each slot
+  private int[] mLargePos;                     // position of each slot in the large slots (-1 if in the cells)
+  private int   mUpdate = 0;
+  private int   mOutside = 0;                  // number of the items that stick out of the grid
+
+  // grid
+  private float mX0, mY0, mX1, mY1; // grid bounds
+  private float mCell;              // cell size
+  private int mNx = 0, mNy = 0;     // number of cells
+  private int[][] mCells;           // slots of each cell
+  private int[] mCellSize;          // number of slots of each cell
+  private int[] mLarge;             // slots not in the cells
+  private int mNLarge = 0;
+
+  // query
+  private int[] mMark;              // query stamp of the slots
+  private int   mQuery = 0;
+  private int[] mFound;             // list positions of the query result
+
+  DrawingIndex()
+  {
+    mItems    = new ArrayList<>();
+    mResult   = new ArrayList<>();
+    mSlot     = new IdentityHashMap<>();
+    mSlotItem = new ArrayList<>();
+    mFree     = new int[ MIN_SLOTS ];
+    mBox      = new float[ 4 * MIN_SLOTS ];
+    mOrder    = new int[ MIN_SLOTS ];
+    mSeen     = new int[ MIN_SLOTS ];
+    mLargePos = new int[ MIN_SLOTS ];
+    mLarge    = new int[ MIN_SLOTS ];
+    mMark     = new int[ MIN_SLOTS ];
+    mFound    = new int[ MIN_SLOTS ];
+    mCells    = new int[ MAX_CELLS * MAX_CELLS ][];
+    mCellSize = new int[ MAX_CELLS * MAX_CELLS ];
+  }
+
+  /** update the index
+   * @param list    list of items
+   * @param stamp   data stamp of the list
+   * @note the list must be locked by the caller
+   */
+  void update( List< T > list, int stamp )
+  {
+    if ( stamp == mStamp && list.size() == mItems.size() ) return;
+    mStamp = stamp;
+    mItems.clear();
+    mItems.addAll( list );
+    int n = mItems.size();
+    if ( ++mUpdate == Integer.MAX_VALUE ) { // update stamp overflow
+      Arrays.fill( mSeen, 0 );
+      mUpdate = 1;
+    }
+    boolean regrid = ( mNx == 0 ); // no grid: the cells are filled by the regrid
+
+    // inserted and changed items
+    for ( int k = 0; k < n; ++k ) {
+      T item = mItems.get( k );
+      Integer s = mSlot.get( item );
+      int slot;
+      if ( s == null ) {
+        slot = newSlot( item );
+        setBox( slot, item );
+        if ( ! regrid ) insertCells( slot );
+      } else {
+        slot = s;
+        if ( hasBoxChanged( slot, item ) ) {
+          if ( ! regrid ) removeCells( slot );
+          setBox( slot, item );
+          if ( ! regrid ) insertCells( slot );
+        }
+      }
+      mOrder[ slot ] = k;
+      mSeen[ slot ]  = mUpdate;
+    }
+    // removed items
+    for ( int slot = 0; slot < mNSlot; ++slot ) {
+      if ( mSlotItem.get( slot ) != null && mSeen[ slot ] != mUpdate ) {
+        if ( ! regrid ) removeCells( slot );
+        freeSlot( slot );
+      }
+    }
+    if ( regrid || mOutside > n / 8 + 16 ) regrid();
+  }
+
+  /** get the items that may intersect a rectangle
+   * @param bbox   rectangle (scene coords), null for all the items
+   * @return list of the items, in list order
+   * @note the returned list is reused by the next query
+   */
+  List< T > query( RectF bbox )
+  {
+    if ( bbox == null || mNx == 0
+      || ( bbox.left <= mX0 && bbox.right >= mX1 && bbox.top <= mY0 && bbox.bottom >= mY1 ) ) {
+      return mItems;
+    }
+    mResult.clear();
+    if ( ++mQuery == Integer.MAX_VALUE ) { // query stamp overflow
+      Arrays.fill( mMark, 0 );
+      mQuery = 1;
+    }
+    int nf = 0;
+    int i0 = cellX( bbox.left ), i1 = cellX( bbox.right );
+    int j0 = cellY( bbox.top ),  j1 = cellY( bbox.bottom );
+    for ( int j = j0; j <= j1; ++j ) {
+      for ( int i = i0; i <= i1; ++i ) {
+        int c = j*mNx + i;
+        int[] cell = mCells[c];
+        for ( int p = 0; p < mCellSize[c]; ++p ) {
+          int slot = cell[p];
+          if ( mMark[slot] != mQuery ) {
+            mMark[slot] = mQuery;
+            mFound[ nf++ ] = mOrder[slot];
+          }
+        }
+      }
+    }
+    for ( int k = 0; k < mNLarge; ++k ) mFound[ nf++ ] = mOrder[ mLarge[k] ];
+    Arrays.sort( mFound, 0, nf );
+    for ( int k = 0; k < nf; ++k ) mResult.add( mItems.get( mFound[k] ) );
+    return mResult;
+  }
+
+  // ------------------------------------------------------------------
+  // SLOTS
+
+  private int newSlot( T item )
+  {
+    int slot;
+    if ( mNFree > 0 ) {
+      slot = mFree[ --mNFree ];
+      mSlotItem.set( slot, item );
+    } else {
+      slot = mNSlot ++;
+      if ( mNSlot > mOrder.length ) growSlots( 2 * mOrder.length );
+      mSlotItem.add( item );
+    }
+    mSlot.put( item, slot );
+    mLargePos[ slot ] = -1;
+    return slot;
+  }
+
+  private void freeSlot( int slot )
+  {
+    mSlot.remove( mSlotItem.get( slot ) );
+    mSlotItem.set( slot, null );
+    mFree[ mNFree++ ] = slot;
+  }
+
+  private void growSlots( int size )
+  {
+    mFree     = Arrays.copyOf( mFree,     size );
+    mBox      = Arrays.copyOf( mBox,  4 * size );
+    mOrder    = Arrays.copyOf( mOrder,    size );
+    mSeen     = Arrays.copyOf( mSeen,     size );
+    mLargePos = Arrays.copyOf( mLargePos, size );
+    mLarge    = Arrays.copyOf( mLarge,    size );
+    mMark     = Arrays.copyOf( mMark,     size );
+    mFound    = Arrays.copyOf( mFound,    size );
+  }
+
+  // store the bounding box of the item of a slot
+  private void setBox( int slot, T item )
+  {
+    if ( item.commandType() != 0 ) return;
+    DrawingPath path = (DrawingPath)item;
+    int k = 4 * slot;
+    mBox[k  ] = path.left;
+    mBox[k+1] = path.top;
+    mBox[k+2] = path.right;
+    mBox[k+3] = path.bottom;
+  }
+
+  private boolean hasBoxChanged( int slot, T item )
+  {
+    if ( item.commandType() != 0 ) return false;
+    DrawingPath path = (DrawingPath)item;
+    int k = 4 * slot;
+    return mBox[k] != path.left || mBox[k+1] != path.top || mBox[k+2] != path.right || mBox[k+3] != path.bottom;
+  }
+
+  // ------------------------------------------------------------------
+  // CELLS
+
+  // rebuild the grid on the bounds of the paths, and put the slots in the cells
+  private void regrid()
+  {
+    for ( int c = 0; c < mNx * mNy; ++c ) mCellSize[c] = 0;
+    Arrays.fill( mLargePos, 0, mNSlot, -1 );
+    mNLarge  = 0;
+    mOutside = 0;
+
+    // bounds of the paths
+    boolean has_path = false;
+    for ( int slot = 0; slot < mNSlot; ++slot ) {
+      T item = mSlotItem.get( slot );
+      if ( item == null || item.commandType() != 0 ) continue;
+      int k = 4 * slot;
+      if ( ! has_path ) {
+        mX0 = mBox[k];    mX1 = mBox[k+2];
+        mY0 = mBox[k+1];  mY1 = mBox[k+3];
+        has_path = true;
+      } else {
+        if ( mBox[k  ] < mX0 ) mX0 = mBox[k  ];
+        if ( mBox[k+2] > mX1 ) mX1 = mBox[k+2];
+        if ( mBox[k+1] < mY0 ) mY0 = mBox[k+1];
+        if ( mBox[k+3] > mY1 ) mY1 = mBox[k+3];
+      }
+    }
+    if ( ! has_path ) {
+      mNx = mNy = 0;
+      for ( int slot = 0; slot < mNSlot; ++slot ) {
+        if ( mSlotItem.get( slot ) != null ) addLarge( slot );
+      }
+      return;
+    }
+    mCell = Math.max( mX1 - mX0, mY1 - mY0 ) / MAX_CELLS;
+    if ( mCell < 1 ) mCell = 1;
+    mNx = Math.min( MAX_CELLS, (int)( (mX1 - mX0) / mCell ) + 1 );
+    mNy = Math.min( MAX_CELLS, (int)( (mY1 - mY0) / mCell ) + 1 );
+    for ( int slot = 0; slot < mNSlot; ++slot ) {
+      if ( mSlotItem.get( slot ) != null ) insertCells( slot );
+    }
+  }
+
+  // put a slot in the cells of its bounding box
+  private void insertCells( int slot )
+  {
+    if ( mSlotItem.get( slot ).commandType() != 0 ) {
+      addLarge( slot );
+      return;
+    }
+    int k = 4 * slot;
+    if ( mBox[k] < mX0 || mBox[k+1] < mY0 || mBox[k+2] > mX1 || mBox[k+3] > mY1 ) ++ mOutside;
+    int i0 = cellX( mBox[k] ),   i1 = cellX( mBox[k+2] );
+    int j0 = cellY( mBox[k+1] ), j1 = cellY( mBox[k+3] );
+    if ( (i1-i0+1)*(j1-j0+1) > MAX_SPAN ) {
+      addLarge( slot );
+      return;
+    }
+    for ( int j = j0; j <= j1; ++j ) for ( int i = i0; i <= i1; ++i ) addToCell( j*mNx + i, slot );
+  }
+
+  // take a slot out of the cells of its bounding box
+  private void removeCells( int slot )
+  {
+    int k = 4 * slot;
+    if ( mSlotItem.get( slot ).commandType() == 0 ) {
+      if ( mBox[k] < mX0 || mBox[k+1] < mY0 || mBox[k+2] > mX1 || mBox[k+3] > mY1 ) -- mOutside;
+    }
+    int pos = mLargePos[ slot ];
+    if ( pos >= 0 ) {
+      int last = mLarge[ --mNLarge ];
+      mLarge[ pos ] = last;
+      mLargePos[ last ] = pos;
+      mLargePos[ slot ] = -1;
+      return;
+    }
+    int i0 = cellX( mBox[k] ),   i1 = cellX( mBox[k+2] );
+    int j0 = cellY( mBox[k+1] ), j1 = cellY( mBox[k+3] );
+    for ( int j = j0; j <= j1; ++j ) for ( int i = i0; i <= i1; ++i ) removeFromCell( j*mNx + i, slot );
+  }
+
+  private void addLarge( int slot )
+  {
+    mLargePos[ slot ] = mNLarge;
+    mLarge[ mNLarge++ ] = slot;
+  }
+
+  private void addToCell( int c, int slot )
+  {
+    int[] cell = mCells[c];
+    if ( cell == null ) {
+      cell = mCells[c] = new int[ 8 ];
+    } else if ( mCellSize[c] == cell.length ) {
+      cell = mCells[c] = Arrays.copyOf( cell, 2 * cell.length );
+    }
+    cell[ mCellSize[c]++ ] = slot;
+  }
+
+  // the order of the slots in a cell does not matter: the query sorts the result
+  private void removeFromCell( int c, int slot )
+  {
+    int[] cell = mCells[c];
+    int size = mCellSize[c];
+    for ( int p = 0; p < size; ++p ) {
+      if ( cell[p] == slot ) {
+        cell[p] = cell[ size-1 ];
+        mCellSize[c] = size - 1;
+        return;
+      }
+    }
+  }
+
+  private int cellX( float x )
+  {
+    int i = (int)( (x - mX0) / mCell );
+    return ( i < 0 )? 0 : ( i >= mNx )? mNx-1 : i;
+  }
+
+  private int cellY( float y )
+  {
+    int j = (int)( (y - mY0) / mCell );
+    return ( j < 0 )? 0 : ( j >= mNy )? mNy-1 : j;
+  }
+}
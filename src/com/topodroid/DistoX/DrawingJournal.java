@@ -0,0 +1,380 @@
+/* @file DrawingJournal.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: append-only journal of the changes of a sketch since its last tdr snapshot
+ *
+ * The journal file is next to the tdr file, with suffix JRN_SUFFIX.
+ * It begins with a header that binds it to the snapshot (length and time of the tdr file,
+ * and number of items), followed by batches of records, each batch ending with a commit:
+ *   'S' points lines areas   palette (written when it changes)
+ *   'D' index type           delete the item at index
+ *   'N' index item           insert the item at index
+ *   'R' index type item      replace the item at index
+ *   'C' size                 commit, with the number of items after the batch
+ * The indices refer to the list of the items of the snapshot ( paths, then user stations ),
+ * as modified by the previous records. An incomplete batch (eg, crash while appending) is ignored.
+ * The replay checks the number of items, and the type of the deleted and replaced items:
+ * if the items loaded from the tdr file do not match the journal, the batch and those that follow
+ * are not applied.
+ *
+ * The journal keeps the items last saved, and the CRC of their data, so that a save
+ * writes only the items that have been added, removed, or modified.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.zip.CRC32;
+
+// import android.util.Log;
+
+class DrawingJournal
+{
+  private static final long MIN_COMPACT_SIZE = 65536; // journal size [bytes] that always allows appending
+
+  // items of the last save, and CRC of their data
+  private ArrayList< DrawingPath > mSaved = new ArrayList<>();
+  private ArrayList< Long >        mCrc   = new ArrayList<>();
+  // items of the snapshot being written
+  private ArrayList< DrawingPath > mSnapshot    = new ArrayList<>();
+  private ArrayList< Long >        mSnapshotCrc = new ArrayList<>();
+
+  private boolean mValid = false; // whether the saved items are those of the tdr file plus journal
+  private long mTdrLength = 0;    // tdr file length and time
+  private long mTdrTime   = 0;
+  private long mSize      = 0;    // journal file size
+  private String mPalette = null; // palette last written
+
+  private ByteArrayOutputStream mBos = new ByteArrayOutputStream( 4096 );
+  private DataOutputStream      mDos = new DataOutputStream( mBos );
+  private CRC32                 mCrc32 = new CRC32();
+
+  static String getJournalFile( String tdrname ) { return tdrname + TDPath.JRN_SUFFIX; }
+
+  // -----------------------------------------------------------------
+  // SNAPSHOT
+
+  /** start writing a tdr snapshot: the journal is not valid until the snapshot is committed
+   */
+  synchronized void startSnapshot()
+  {
+    mValid = false;
+    mSnapshot.clear();
+    mSnapshotCrc.clear();
+  }
+
+  /** add an item to the snapshot
+   * @param path   item
+   * @param data   data of the item written to the snapshot
+   */
+  synchronized void addSnapshotItem( DrawingPath path, byte[] data )
+  {
+    mSnapshot.add( path );
+    mSnapshotCrc.add( Long.valueOf( crc( data ) ) );
+  }
+
+  /** the snapshot has been written to the tdr file: the journal is reset
+   * @param tdrname   tdr file
+   */
+  synchronized void commitSnapshot( String tdrname )
+  {
+    ArrayList< DrawingPath > saved = mSaved;
+    ArrayList< Long > crc = mCrc;
+    mSaved = mSnapshot;
+    mCrc   = mSnapshotCrc;
+    mSnapshot    = saved;
+    mSnapshotCrc = crc;
+    mSnapshot.clear();
+    mSnapshotCrc.clear();
+    File tdr = new File( tdrname );
+    mTdrLength = tdr.length();
+    mTdrTime   = tdr.lastModified();
+    mSize    = 0;
+    mPalette = null;
+    TDUtil.deleteFile( getJournalFile( tdrname ) );
+    mValid = true;
+  }
+
+  // -----------------------------------------------------------------
+  // APPEND
+
+  /** append the changes of the items to the journal
+   * @param tdrname       tdr file
+   * @param cstack        sketch items
+   * @param userstations  user stations
+   * @return true if the changes have been saved, false if a snapshot must be written
+   */
+  synchronized boolean append( String tdrname, List< ICanvasCommand > cstack, List< DrawingStationPath > userstations )
+  {
+    if ( ! mValid ) return false;
+    File tdr = new File( tdrname );
+    if ( tdr.length() != mTdrLength || tdr.lastModified() != mTdrTime ) { // the tdr has been written by someone else
+      mValid = false;
+      return false;
+    }
+
+    // current items, and their data
+    DrawingSnapshot snapshot;
+    try {
+      snapshot = new DrawingSnapshot( cstack, userstations );
+    } catch ( IOException e ) {
+      mValid = false;
+      return false;
+    }
+    ArrayList< DrawingPath > items = snapshot.getItems();
+    int n = items.size();
+    byte[][] data = new byte[ n ][];
+    ArrayList< Long > crcs = new ArrayList<>( n );
+    for ( int k = 0; k < n; ++k ) {
+      data[k] = snapshot.getData( k );
+      crcs.add( Long.valueOf( crc( data[k] ) ) );
+    }
+
+    // position of the saved items
+    IdentityHashMap< DrawingPath, Integer > saved_pos = new IdentityHashMap<>();
+    for ( int k = 0; k < mSaved.size(); ++k ) saved_pos.put( mSaved.get( k ), Integer.valueOf( k ) );
+
+    // the kept items must be in the same order: otherwise write a snapshot
+    int last = -1;
+    boolean[] kept = new boolean[ mSaved.size() ];
+    for ( DrawingPath p : items ) {
+      Integer pos = saved_pos.get( p );
+      if ( pos == null ) continue;
+      if ( pos.intValue() <= last ) {
+        mValid = false;
+        return false;
+      }
+      last = pos.intValue();
+      kept[ last ] = true;
+    }
+
+    // records: deletions (backwards), then insertions and replacements (forwards)
+    ByteArrayOutputStream bos = new ByteArrayOutputStream( 4096 );
+    DataOutputStream dos = new DataOutputStream( bos );
+    int nr_records = 0;
+    try {
+      String palette = getPalette();
+      if ( ! palette.equals( mPalette ) ) {
+        dos.write( 'S' );
+        BrushManager.mPointLib.toDataStream( dos );
+        BrushManager.mLineLib.toDataStream( dos );
+        BrushManager.mAreaLib.toDataStream( dos );
+      }
+      for ( int k = mSaved.size() - 1; k >= 0; --k ) {
+        if ( kept[k] ) continue;
+        dos.write( 'D' );
+        dos.writeInt( k );
+        dos.writeInt( mSaved.get( k ).mType );
+        ++ nr_records;
+      }
+      for ( int k = 0; k < n; ++k ) {
+        Integer pos = saved_pos.get( items.get( k ) );
+        if ( pos == null ) {
+          dos.write( 'N' );
+          dos.writeInt( k );
+        } else if ( mCrc.get( pos.intValue() ).longValue() != crcs.get( k ).longValue() ) {
+          dos.write( 'R' );
+          dos.writeInt( k );
+          dos.writeInt( mSaved.get( pos.intValue() ).mType );
+        } else {
+          continue;
+        }
+        dos.write( data[k] );
+        ++ nr_records;
+      }
+      if ( nr_records == 0 ) return true; // nothing to save
+      dos.write( 'C' );
+      dos.writeInt( n );
+      mPalette = palette;
+    } catch ( IOException e ) {
+      mValid = false;
+      return false;
+    }
+
+    // compact when the journal grows larger than half the snapshot
+    if ( mSize + bos.size() > Math.max( MIN_COMPACT_SIZE, mTdrLength / 2 ) ) {
+      mValid = false;
+      return false;
+    }
+
+    FileOutputStream fos = null;
+    try {
+      fos = new FileOutputStream( getJournalFile( tdrname ), true ); // append
+      if ( mSize == 0 ) {
+        DataOutputStream hdr = new DataOutputStream( fos );
+        hdr.write( 'V' );
+        hdr.writeInt( TopoDroidApp.VERSION_CODE );
+        hdr.write( 'K' );
+        hdr.writeLong( mTdrLength );
+        hdr.writeLong( mTdrTime );
+        hdr.writeInt( mSaved.size() );
+        mSize += 1 + 4 + 1 + 8 + 8 + 4;
+      }
+      bos.writeTo( fos );
+      fos.flush();
+      fos.getFD().sync();
+      fos.close();
+    } catch ( IOException e ) {
+      TDLog.Error( "journal append error " + e.getMessage() );
+      mValid = false;
+      return false;
+    }
+    mSize += bos.size();
+    mSaved = items;
+    mCrc   = crcs;
+    TDLog.Log( TDLog.LOG_IO, "journal append " + tdrname + " records " + nr_records + " bytes " + bos.size() + " size " + mSize
+               + " " + snapshot.getLockStats() );
+    return true;
+  }
+
+  // -----------------------------------------------------------------
+  // REPLAY
+
+  /** apply the journal of a tdr file to the items loaded from the tdr file
+   * the batches are applied only as long as the items match those recorded in the journal
+   * @param tdrname       tdr file
+   * @param items         [input/output] items of the tdr file (paths and user stations)
+   * @param dx            X offset
+   * @param dy            Y offset
+   * @param survey_name   survey name
+   * @param localPalette  palette
+   */
+  static void replay( String tdrname, List< DrawingPath > items, float dx, float dy, String survey_name, SymbolsPalette localPalette )
+  {
+    File jrn = new File( getJournalFile( tdrname ) );
+    if ( ! jrn.exists() ) return;
+    File tdr = new File( tdrname );
+    int nr_batches = 0;
+    DataInputStream dis = null;
+    try {
+      dis = new DataInputStream( new BufferedInputStream( new FileInputStream( jrn ) ) );
+      if ( dis.read() != 'V' ) throw new IOException( "bad journal header" );
+      int version = dis.readInt();
+      if ( dis.read() != 'K' ) throw new IOException( "bad journal header" );
+      long length = dis.readLong();
+      long time   = dis.readLong();
+      int size    = dis.readInt();
+      if ( length != tdr.length() || time != tdr.lastModified() ) {
+        TDLog.Log( TDLog.LOG_IO, "journal " + tdrname + " does not match the tdr" );
+        dis.close();
+        return;
+      }
+      if ( size != items.size() ) { // the tdr items have not been loaded as they were saved
+        TDLog.Error( "journal " + tdrname + " items " + size + " tdr items " + items.size() );
+        dis.close();
+        return;
+      }
+      // the records of a batch are applied to a copy of the items, which is kept at the commit
+      ArrayList< DrawingPath > batch = new ArrayList<>( items );
+      boolean todo = true;
+      while ( todo ) {
+        int what = dis.read();
+        switch ( what ) {
+          case 'S':
+            addPalette( dis.readUTF(), dis.readUTF(), dis.readUTF(), localPalette );
+            break;
+          case 'D':
+            {
+              int index = checkIndex( dis.readInt(), batch.size() - 1 );
+              checkType( batch.get( index ), dis.readInt() );
+              batch.remove( index );
+            }
+            break;
+          case 'N':
+            {
+              int index = checkIndex( dis.readInt(), batch.size() );
+              batch.add( index, readItem( version, dis, dx, dy, survey_name ) );
+            }
+            break;
+          case 'R':
+            {
+              int index = checkIndex( dis.readInt(), batch.size() - 1 );
+              checkType( batch.get( index ), dis.readInt() );
+              batch.set( index, readItem( version, dis, dx, dy, survey_name ) );
+            }
+            break;
+          case 'C':
+            if ( dis.readInt() != batch.size() ) throw new IOException( "bad journal size " + batch.size() );
+            items.clear();
+            items.addAll( batch );
+            ++ nr_batches;
+            break;
+          case -1: // end of file
+            todo = false;
+            break;
+          default:
+            throw new IOException( "bad journal record " + what );
+        }
+      }
+    } catch ( EOFException e ) { // incomplete batch
+      TDLog.Error( "journal " + tdrname + " incomplete batch" );
+    } catch ( IOException e ) {
+      TDLog.Error( "journal " + tdrname + " error " + e.getMessage() );
+    } finally {
+      if ( dis != null ) try { dis.close(); } catch ( IOException e ) { }
+    }
+    TDLog.Log( TDLog.LOG_IO, "journal " + tdrname + " replayed batches " + nr_batches );
+  }
+
+  private static int checkIndex( int index, int max ) throws IOException
+  {
+    if ( index < 0 || index > max ) throw new IOException( "bad journal index " + index );
+    return index;
+  }
+
+  private static void checkType( DrawingPath path, int type ) throws IOException
+  {
+    if ( path.mType != type ) throw new IOException( "bad journal item type " + path.mType + " expected " + type );
+  }
+
+  private static DrawingPath readItem( int version, DataInputStream dis, float dx, float dy, String survey_name ) throws IOException
+  {
+    int what = dis.read();
+    DrawingPath path = DrawingIO.loadPathDataStream( what, version, dis, dx, dy, survey_name );
+    if ( path == null ) throw new IOException( "bad journal item " + what );
+    return path;
+  }
+
+  static void addPalette( String points, String lines, String areas, SymbolsPalette palette )
+  {
+    for ( String val : points.split(",") ) if ( val.length() > 0 ) palette.addPointFilename( val );
+    for ( String val : lines.split(",") )  if ( val.length() > 0 ) palette.addLineFilename( val );
+    for ( String val : areas.split(",") )  if ( val.length() > 0 ) palette.addAreaFilename( val );
+  }
+
+  // -----------------------------------------------------------------
+
+  private long crc( byte[] data )
+  {
+    mCrc32.reset();
+    mCrc32.update( data, 0, data.length );
+    return mCrc32.getValue();
+  }
+
+  private String getPalette() throws IOException
+  {
+    mBos.reset();
+    BrushManager.mPointLib.toDataStream( mDos );
+    BrushManager.mLineLib.toDataStream( mDos );
+    BrushManager.mAreaLib.toDataStream( mDos );
+    mDos.flush();
+    return mBos.toString( "UTF-8" );
+  }
+}
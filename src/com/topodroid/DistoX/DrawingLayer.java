@@ -0,0 +1,142 @@
+/* @file DrawingLayer.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: offscreen layer of the reference geometry (grid, legs, splays, stations)
+ *
+ * The layer is larger than the canvas by a margin on each side, so that it can be
+ * reused, shifted, while the drawing is panned. It is rebuilt when the data change,
+ * the zoom changes, or the pan goes beyond the margin.
+ * The layer is opaque, RGB_565 on the black background of the drawing surface, and the margin
+ * is an eighth of the smaller side: at 2560x1440 it takes about 10 MB.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+// import android.util.Log;
+
+class DrawingLayer
+{
+  private Bitmap mBitmap = null;
+  private Canvas mCanvas = null;
+  private int mWidth  = 0;    // canvas size
+  private int mHeight = 0;
+  private int mMargin = 0;    // layer margin [pxl]
+  private boolean mDisabled = false; // whether the layer bitmap could not be allocated
+
+  // layer content
+  private Object mOwner = null;      // command manager of the content
+  private int mMode  = 0;            // display mode of the content
+  private int mStamp = -1;           // data stamp of the content
+  private final float[] mValues = new float[9]; // matrix of the content
+  private float mDx, mDy;            // offset of the current matrix from the content matrix
+
+  private final float[] mCurrent = new float[9]; // current matrix
+  private final float[] mPrev    = new float[9]; // matrix of the previous frame
+  private boolean mZooming = false;              // whether the scale changed since the previous frame
+
+  boolean isDisabled() { return mDisabled; }
+
+  void invalidate() { mOwner = null; }
+
+  /** check if the layer can be reused for the current frame
+   * @param owner    command manager
+   * @param matrix   current scene-to-canvas matrix
+   * @param width    canvas width
+   * @param height   canvas height
+   * @param mode     display mode
+   * @param stamp    data stamp
+   */
+  boolean isValid( Object owner, Matrix matrix, int width, int height, int mode, int stamp )
+  {
+    matrix.getValues( mCurrent );
+    mZooming = ! sameScale( mCurrent, mPrev );
+    System.arraycopy( mCurrent, 0, mPrev, 0, 9 );
+    if ( owner != mOwner || mBitmap == null || width != mWidth || height != mHeight || mode != mMode || stamp != mStamp ) return false;
+    if ( ! sameScale( mCurrent, mValues ) ) return false;
+    mDx = mCurrent[ Matrix.MTRANS_X ] - mValues[ Matrix.MTRANS_X ];
+    mDy = mCurrent[ Matrix.MTRANS_Y ] - mValues[ Matrix.MTRANS_Y ];
+    if ( Math.abs( mDx ) > mMargin || Math.abs( mDy ) > mMargin ) return false;
+    return true;
+  }
+
+  /** check if the zoom is changing: the layer is not rebuilt while zooming
+   * @note must be called after isValid()
+   */
+  boolean isZooming() { return mZooming; }
+
+  /** start the rebuild of the layer
+   * @param owner        command manager
+   * @param matrix       current scene-to-canvas matrix
+   * @param width        canvas width
+   * @param height       canvas height
+   * @param mode         display mode
+   * @param stamp        data stamp
+   * @param layer_matrix [output] scene-to-layer matrix
+   * @param bbox         [input/output] scene bounding box, enlarged by the margin
+   * @param scale        scene units per canvas pixel
+   * @return the canvas of the layer (null on failure)
+   */
+  Canvas begin( Object owner, Matrix matrix, int width, int height, int mode, int stamp, Matrix layer_matrix, RectF bbox, float scale )
+  {
+    if ( mBitmap == null || width != mWidth || height != mHeight ) {
+      release();
+      mMargin = Math.min( width, height ) / 8;
+      try {
+        mBitmap = Bitmap.createBitmap( width + 2*mMargin, height + 2*mMargin, Bitmap.Config.RGB_565 );
+      } catch ( OutOfMemoryError e ) {
+        TDLog.Error( "drawing layer: out of memory " + width + "x" + height );
+        mDisabled = true;
+        return null;
+      }
+      mCanvas = new Canvas( mBitmap );
+      mWidth  = width;
+      mHeight = height;
+    }
+    mBitmap.eraseColor( 0xff000000 ); // the background of the drawing surface
+    matrix.getValues( mValues );
+    mOwner = owner;
+    mMode  = mode;
+    mStamp = stamp;
+    mDx = 0;
+    mDy = 0;
+    layer_matrix.set( matrix );
+    layer_matrix.postTranslate( mMargin, mMargin );
+    float d = mMargin * scale;
+    bbox.set( bbox.left - d, bbox.top - d, bbox.right + d, bbox.bottom + d );
+    return mCanvas;
+  }
+
+  /** draw the layer on the canvas
+   * @param canvas   canvas
+   */
+  void draw( Canvas canvas )
+  {
+    canvas.drawBitmap( mBitmap, mDx - mMargin, mDy - mMargin, null );
+  }
+
+  void release()
+  {
+    if ( mBitmap != null ) {
+      mBitmap.recycle();
+      mBitmap = null;
+      mCanvas = null;
+    }
+    mOwner = null;
+  }
+
+  private static boolean sameScale( float[] v1, float[] v2 )
+  {
+    return v1[ Matrix.MSCALE_X ] == v2[ Matrix.MSCALE_X ] && v1[ Matrix.MSKEW_X ] == v2[ Matrix.MSKEW_X ]
+        && v1[ Matrix.MSCALE_Y ] == v2[ Matrix.MSCALE_Y ] && v1[ Matrix.MSKEW_Y ] == v2[ Matrix.MSKEW_Y ];
+  }
+}
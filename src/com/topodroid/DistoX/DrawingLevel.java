@@ -43,18 +43,32 @@ class DrawingLevel
   {
     if ( TDSetting.mWithLevels == 0 || path == null ) return true; // visibility is filtered only if path is non-null
     if ( TDSetting.mWithLevels == 1 ) {
-      int level = 0xff;
-      if ( path.mType == DrawingPath.DRAWING_PATH_POINT ) {
-        level = BrushManager.getPointLevel( ((DrawingPointPath)path).mPointType );
-      } else if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
-        level = BrushManager.getLineLevel( ((DrawingLinePath)path).mLineType );
-      } else if ( path.mType == DrawingPath.DRAWING_PATH_AREA ) {
-        level = BrushManager.getAreaLevel( ((DrawingAreaPath)path).mAreaType );
-      }
-      return isVisible( level ); 
+      return isVisible( getSymbolLevel( path ) ); 
     }
     // TDSetting.mWithLevels == 2
     return isVisible( path.mLevel ); 
   }
+
+  // visibility of an item that has not been loaded yet
+  // @param symbol_level   level of the item symbol
+  // @param level          level of the item
+  static boolean isLevelVisible( int symbol_level, int level )
+  {
+    if ( TDSetting.mWithLevels == 0 ) return true;
+    if ( TDSetting.mWithLevels == 1 ) return isVisible( symbol_level );
+    return isVisible( level );
+  }
+
+  static int getSymbolLevel( DrawingPath path )
+  {
+    if ( path.mType == DrawingPath.DRAWING_PATH_POINT ) {
+      return BrushManager.getPointLevel( ((DrawingPointPath)path).mPointType );
+    } else if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
+      return BrushManager.getLineLevel( ((DrawingLinePath)path).mLineType );
+    } else if ( path.mType == DrawingPath.DRAWING_PATH_AREA ) {
+      return BrushManager.getAreaLevel( ((DrawingAreaPath)path).mAreaType );
+    }
+    return 0xff;
+  }
 }
 
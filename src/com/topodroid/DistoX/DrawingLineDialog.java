@@ -278,6 +278,7 @@ class DrawingLineDialog extends MyDialog
       }
 
       if ( TDSetting.mWithLevels  > 0 ) setLevel();
+      mParent.itemEdited();
  
     // } else if ( b == mBtnCancel ) {
     //   /* nothing */
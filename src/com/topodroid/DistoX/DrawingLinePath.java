@@ -120,7 +120,7 @@ class DrawingLinePath extends DrawingPointLinePath
         y2 = y + dis.readFloat();
       }
       // Log.v("DistoX", "line add start pt " + x0 + " " + y0 );
-      ret.addStartPointNoPath( x0, y0 );
+      ret.addStartPointNoPath( x0, y0, npt );
       for ( int k=1; k<npt; ++k ) {
         x0 = x + dis.readFloat();
         y0 = y + dis.readFloat();
@@ -154,10 +154,14 @@ class DrawingLinePath extends DrawingPointLinePath
   void computeUnitNormal()
   {
     mDx = mDy = 0;
-    if ( mFirst != null && mFirst.mNext != null ) {
-      LinePoint second = mFirst.mNext;
-      mDx =   second.y - mFirst.y;
-      mDy = - second.x + mFirst.x;
+    if ( size() > 1 ) {
+      PointIterator it = pointIterator();
+      it.next();
+      float x0 = it.x;
+      float y0 = it.y;
+      it.next();
+      mDx =   it.y - y0;
+      mDy = - it.x + x0;
       float d = ( mDx*mDx + mDy*mDy );
       if ( d > 0 ) {
         d = 1 / (float)Math.sqrt( d );
@@ -182,6 +186,7 @@ class DrawingLinePath extends DrawingPointLinePath
     // int k0 = mPoints.indexOf( lp0 );
     // int kmax = mPoints.size() - 1;
     // if ( k0 <= 0 || k0 >= kmax ) return false;
+    unpack();
     if ( lp0 == mFirst || lp0 == mLast ) return false;
     if ( exclude ) {
       // if ( k0 <= 1 || k0 >= kmax-1 ) return false;
@@ -289,7 +294,7 @@ class DrawingLinePath extends DrawingPointLinePath
     if ( ! mReversed ) {
       // NOTE do not skip tick-point if want to save section with tick
       // if ( mLineType == BrushManager.mLineLib.mLineSectionIndex && size() > 2 ) pt = pt.mNext; // skip first point (tick)
-      LinePoint pt = mFirst; 
+      LinePoint pt = first(); 
       x0 = DrawingUtil.sceneToWorldX( pt.x, pt.y );
       y0 = DrawingUtil.sceneToWorldY( pt.x, pt.y );
       pw.format(Locale.US, "%.2f %.2f ", x0, y0 );
@@ -326,7 +331,7 @@ class DrawingLinePath extends DrawingPointLinePath
 	y0 = y3;
       }
     } else {
-      LinePoint pt = mLast;
+      LinePoint pt = last();
       x0 = DrawingUtil.sceneToWorldX( pt.x, pt.y );
       y0 = DrawingUtil.sceneToWorldY( pt.x, pt.y );
       pw.format(Locale.US, "%.2f %.2f ", x0, y0 );
@@ -370,7 +375,7 @@ class DrawingLinePath extends DrawingPointLinePath
   @Override
   String toTherion( )
   {
-    if ( mFirst == null ) return null;
+    if ( first() == null ) return null;
     StringWriter sw = new StringWriter();
     PrintWriter pw  = new PrintWriter(sw);
     pw.format("line %s", BrushManager.mLineLib.getSymbolThName(mLineType) );
@@ -436,9 +441,7 @@ class DrawingLinePath extends DrawingPointLinePath
       
       int npt = size(); // number of line points
       dos.writeInt( npt );
-      for ( LinePoint pt = mFirst; pt != null; pt = pt.mNext ) {
-        pt.toDataStream( dos );
-      }
+      pointsToDataStream( dos );
       // TDLog.Log( TDLog.LOG_PLOT, "L " + name + " " + npt );
     } catch ( IOException e ) {
       TDLog.Error( "LINE out error " + e.toString() );
@@ -168,7 +168,10 @@ class DrawingModeDialog extends MyDialog
             mParent.scrapOutlineDialog();
           }
 
-          if ( TDSetting.mWithLevels > 0 ) setLevels();
+          if ( TDSetting.mWithLevels > 0 ) {
+            setLevels();
+            mSurface.invalidateScene(); // the levels change what is drawn
+          }
 
           break;
         case R.id.button_back:
@@ -52,6 +52,12 @@ class DrawingPath extends RectF
   Path mPath;
   Path mTransformedPath;
   Paint mPaint;          // drawing path paint
+
+  // increased when the paint of a path is replaced, or a shared paint is changed in place:
+  // used to invalidate the drawing layer
+  static volatile int mPaintStamp = 0;
+
+  static void paintChanged() { ++ mPaintStamp; }
   int mType;             // path type
   String mOptions;
   float x1, y1, x2, y2; // endpoint scene coords  (not private just to write the scrap scale using mNorthLine )
@@ -123,7 +129,7 @@ class DrawingPath extends RectF
   //   return mType >= DRAWING_PATH_STATION && mType <= DRAWING_PATH_AREA; 
   // }
 
-  void setPaintAlpha( boolean on ) { mPaint.setAlpha( (on ? 0xff : 0) ); }
+  void setPaintAlpha( boolean on ) { mPaint.setAlpha( (on ? 0xff : 0) ); paintChanged(); }
 
   static boolean isReferenceType( int type ) 
   {
@@ -252,7 +258,7 @@ class DrawingPath extends RectF
     mPath.offset( off_x, off_y );
   }
 
-  void setPathPaint( Paint paint ) { mPaint = paint; }
+  void setPathPaint( Paint paint ) { mPaint = paint; paintChanged(); }
 
   // x10, y10 first endpoint scene coords
   // x20, y20 second endpoint scene coords
@@ -398,6 +404,7 @@ class DrawingPath extends RectF
   // called by DrawingCommandManager
   void setSplayPaintPlan( DBlock blk, float cosine, Paint h_paint, Paint v_paint )
   {
+    paintChanged();
     if ( blk == null ) {
       mPaint = BrushManager.paintSplayXB;
       return;
@@ -440,6 +447,7 @@ class DrawingPath extends RectF
   // setSplayClino is used for the profile view
   void setSplayPaintProfile( DBlock blk, Paint h_paint, Paint v_paint )
   {
+    paintChanged();
     if ( blk == null ) {
       mPaint= BrushManager.paintSplayXB;
       return;
@@ -485,24 +493,27 @@ class DrawingPath extends RectF
    * NOTE DrawingAreaPath overrides this
    */
   void drawPath( Path path, Canvas canvas )
+  {
+    Paint paint = getDrawPaint();
+    if ( paint != null ) canvas.drawPath( path, paint );
+  }
+
+  // @return the paint to draw the path (null if the path is not drawn)
+  Paint getDrawPaint()
   {
     if (    mType == DRAWING_PATH_SPLAY  // FIXME_X_SPLAY
          && mBlock != null ) {
       if ( TDSetting.mSplayColor ) {
         if ( mBlock.isRecent( ) ) { 
-          canvas.drawPath( path, BrushManager.lightBluePaint );
-          return;
+          return BrushManager.lightBluePaint;
         }
         if ( TDLevel.overExpert ) { // splay user-color only at tester level
           Paint paint = mBlock.getPaint();
-          if ( paint != null ) {
-            canvas.drawPath( path, paint );
-            return;
-          }
+          if ( paint != null ) return paint;
         }
       }
     } 
-    if ( mPaint != null ) canvas.drawPath( path, mPaint );
+    return mPaint;
   }
 
 
@@ -34,7 +34,7 @@ class DrawingPhotoEditDialog extends MyDialog
                              implements View.OnClickListener
 {
   // private final TopoDroidApp  mApp;
-  // private final DrawingWindow mParent;
+  private final DrawingWindow mParent;
   private DrawingPhotoPath mPhoto;
   private String mFilename = null;
 
@@ -53,10 +53,10 @@ class DrawingPhotoEditDialog extends MyDialog
   /**
    * @param context   context
    */
-  DrawingPhotoEditDialog( Context context, /* DrawingWindow parent, TopoDroidApp app, */ DrawingPhotoPath photo )
+  DrawingPhotoEditDialog( Context context, DrawingWindow parent, /* TopoDroidApp app, */ DrawingPhotoPath photo )
   {
     super( context, R.string.DrawingPhotoEditDialog );
-    // mParent = parent;
+    mParent = parent;
     // mApp    = app;
     mPhoto  = photo;
     mFilename = TDPath.getSurveyJpgFile( TDInstance.survey, Long.toString(mPhoto.mId) );
@@ -109,6 +109,7 @@ class DrawingPhotoEditDialog extends MyDialog
         String comment = ( mETcomment.getText() == null )? "" : mETcomment.getText().toString();
         mPhoto.setPointText( comment );
         TopoDroidApp.mData.updatePhoto( TDInstance.sid, mPhoto.mId, comment );
+        mParent.itemEdited();
         break;
       // case R.id.photo_delete:
       //   mParent.dropPhoto( mPhoto );
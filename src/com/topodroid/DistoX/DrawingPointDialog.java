@@ -234,6 +234,7 @@ class DrawingPointDialog extends MyDialog
       }
 
       if ( TDSetting.mWithLevels > 1 ) setLevel();
+      mParent.itemEdited();
 
     } else if ( b == mBTdraw ) {
       mParent.openSectionDraw( mXSectionName );
@@ -7,6 +7,10 @@
  *
  * The area border (line) path id DrawingPath.mPath
  *
+ * The points of a line read from file are kept packed (LinePointArray) until the
+ * line-points are needed: first(), last() and the editing methods unpack them.
+ * The point iterator reads the coords of the points without unpacking them.
+ *
  * --------------------------------------------------------
  *  Copyright This software is distributed under GPL-3.0 or later
  *  See the file COPYING.
@@ -26,6 +30,8 @@ import android.graphics.Path;
 // import java.util.List;
 import java.util.ArrayList;
 import java.io.PrintWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  */
@@ -39,15 +45,70 @@ class DrawingPointLinePath extends DrawingPath
   protected LinePoint mFirst;
   protected LinePoint mLast;
   private int mSize;  // number of points
+  private volatile LinePointArray mPoints = null; // packed points (null if the points are linked)
 
   float mDx, mDy; // unit vector in the direction of this line
 
   int size() { return mSize; }
 
-  // access to mFirst mLast is used only by Selection
-  LinePoint first() { return mFirst; }
-  LinePoint last()  { return mLast; }
-  boolean isNotEndpoint( LinePoint lp ) { return lp != mFirst && lp != mLast; }
+  LinePoint first() { unpack(); return mFirst; }
+  LinePoint last()  { unpack(); return mLast; }
+  boolean isNotEndpoint( LinePoint lp ) { unpack(); return lp != mFirst && lp != mLast; }
+
+  /** make the linked line-points from the packed points
+   */
+  protected synchronized void unpack()
+  {
+    if ( mPoints == null ) return;
+    mFirst = mPoints.toLinePoints();
+    for ( mLast = mFirst; mLast != null && mLast.mNext != null; mLast = mLast.mNext ) { }
+    mPoints = null;
+  }
+
+  /** @return true if the points are packed
+   */
+  boolean isPacked() { return mPoints != null; }
+
+  /** iterator on the coords of the points, packed or linked
+   */
+  static class PointIterator
+  {
+    private final LinePointArray mArray; // packed points (null if the points are linked)
+    private int mIndex = -1;
+    private LinePoint mNext;             // next linked point
+    float x, y;                          // coords of the current point
+
+    private PointIterator( LinePointArray array, LinePoint first )
+    {
+      mArray = array;
+      mNext  = first;
+    }
+
+    boolean hasNext() { return ( mArray != null )? ( mIndex + 1 < mArray.size() ) : ( mNext != null ); }
+
+    /** move to the next point
+     */
+    void next()
+    {
+      if ( mArray != null ) {
+        ++ mIndex;
+        x = mArray.x( mIndex );
+        y = mArray.y( mIndex );
+      } else {
+        x = mNext.x;
+        y = mNext.y;
+        mNext = mNext.mNext;
+      }
+    }
+  }
+
+  /** @return an iterator on the points - it does not unpack the points
+   */
+  PointIterator pointIterator()
+  {
+    LinePointArray pts = mPoints;
+    return ( pts != null )? new PointIterator( pts, null ) : new PointIterator( null, mFirst );
+  }
 
   // FIXME-COPYPATH
   // @Override
@@ -71,6 +132,8 @@ class DrawingPointLinePath extends DrawingPath
    */
   int overlap( DrawingPointLinePath other ) 
   {
+    unpack();
+    other.unpack();
     int ret = 0;
     for (LinePoint l1 = mFirst; l1 != null; l1=l1.mNext ) {
       for ( LinePoint l2 = other.mFirst; l2 != null; l2 = l2.mNext ) {
@@ -84,8 +147,8 @@ class DrawingPointLinePath extends DrawingPath
   }
 
   // @implements IDrawingLink
-  public float getLinkX( ) { return mLast.x; }
-  public float getLinkY( ) { return mLast.y; }
+  public float getLinkX( ) { LinePointArray pts = mPoints; return ( pts != null )? pts.x( mSize-1 ) : mLast.x; }
+  public float getLinkY( ) { LinePointArray pts = mPoints; return ( pts != null )? pts.y( mSize-1 ) : mLast.y; }
   // public Point2D getLink() { return mLast; }
 
   @Override
@@ -118,12 +181,17 @@ class DrawingPointLinePath extends DrawingPath
     y2 += dy;
     cx += dx;
     cy += dy;
-    for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) lp.shiftBy( dx, dy );
+    if ( mPoints != null ) {
+      mPoints.shiftBy( dx, dy );
+    } else {
+      for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) lp.shiftBy( dx, dy );
+    }
     retracePath();
   }
 
   void moveFirstTo( float x, float y )
   {
+    unpack();
     mFirst.x = x;
     mFirst.y = y;
     retracePath();
@@ -131,6 +199,7 @@ class DrawingPointLinePath extends DrawingPath
     
   void moveLastTo( float x, float y )
   {
+    unpack();
     mLast.x = x;
     mLast.y = y;
     retracePath();
@@ -141,12 +210,17 @@ class DrawingPointLinePath extends DrawingPath
   public void flipXAxis( float z )
   {
     super.flipXAxis(z);
-    for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) lp.flipXAxis(z);
+    if ( mPoints != null ) {
+      mPoints.flipXAxis( 2 * DrawingUtil.CENTER_X );
+    } else {
+      for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) lp.flipXAxis(z);
+    }
     retracePath();
   }
 
   void recount() // throws Exception
   {
+    unpack();
     if ( mFirst == null ) {
       mSize = 0;
       mLast = null;
@@ -189,7 +263,11 @@ class DrawingPointLinePath extends DrawingPath
 
   void landscapeToPortrait()
   {
-    for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) lp.landscapeToPortrait();
+    if ( mPoints != null ) {
+      mPoints.landscapeToPortrait();
+    } else {
+      for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) lp.landscapeToPortrait();
+    }
     retracePath();
   }
 
@@ -212,8 +290,10 @@ class DrawingPointLinePath extends DrawingPath
   boolean isPathClosed() 
   {
     if ( mSize < 2 ) return false;
-    float dx = (mFirst.x - mLast.x)/3;
-    float dy = (mFirst.y - mLast.y)/3;
+    PointIterator it = pointIterator();
+    it.next();
+    float dx = (it.x - getLinkX())/3;
+    float dy = (it.y - getLinkY())/3;
     return ( dx*dx + dy*dy < 1.0e-7 );
   }
 
@@ -226,6 +306,7 @@ class DrawingPointLinePath extends DrawingPath
    */
   void remove( LinePoint lp )
   {
+    unpack();
     if ( lp == mFirst ) {
       mFirst = lp.mNext;
     } else if ( lp.mPrev != null ) {
@@ -245,20 +326,26 @@ class DrawingPointLinePath extends DrawingPath
   LinePoint next( LinePoint lp )
   {
     if ( lp == null ) return null;
+    unpack();
     return lp.mNext;
   }
 
   LinePoint prev( LinePoint lp )
   {
     if ( lp == null ) return null;
+    unpack();
     return lp.mPrev;
   }
 
   void makeSharp( )
   {
     // FIXME this was here: retracePath();
-    for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) {
-      lp.has_cp = false;
+    if ( mPoints != null ) {
+      mPoints.clearCP();
+    } else {
+      for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) {
+        lp.has_cp = false;
+      }
     }
     retracePath();
   }
@@ -269,6 +356,7 @@ class DrawingPointLinePath extends DrawingPath
   // @param min_size     2: line, 3: area
   void makeReduce( int decimation, int min_size )
   {
+    unpack();
     while ( decimation > 0 ) {
       if ( mSize > min_size ) {
         int size = 1;  // keep first point 
@@ -292,6 +380,7 @@ class DrawingPointLinePath extends DrawingPath
 
   void makeRock()
   {
+    unpack();
     if ( mSize > 2 ) {
       int size = 1;
       LinePoint prev = mFirst;
@@ -320,6 +409,7 @@ class DrawingPointLinePath extends DrawingPath
 
   void makeClose( )
   {
+    unpack();
     if ( mSize > 2 ) {
       float dx = (mFirst.x - mLast.x)/3;
       float dy = (mFirst.y - mLast.y)/3;
@@ -341,6 +431,7 @@ class DrawingPointLinePath extends DrawingPath
   {
     mFirst = null;
     mLast  = null;
+    mPoints = null;
     mPath = new Path();
     mSize = 0;
     left   = 0;
@@ -358,6 +449,7 @@ class DrawingPointLinePath extends DrawingPath
     // LinePoint first = mPoints.get( 0 );
     // LinePoint last  = mPoints.get( mPoints.size() - 1 );
     if ( mSize < 2 ) return;
+    unpack();
     LinePoint first = mFirst;
     LinePoint last  = mLast;
 
@@ -370,6 +462,7 @@ class DrawingPointLinePath extends DrawingPath
     
   void addStartPoint( float x, float y ) 
   {
+    mPoints = null;
     // mPrevPoint = new LinePoint(x,y, null);
     // mPoints.add( mPrevPoint );
     mLast = new LinePoint(x,y, null);
@@ -383,6 +476,7 @@ class DrawingPointLinePath extends DrawingPath
   void addPoint( float x, float y ) 
   {
     if ( Float.isNaN(x) || Float.isNaN(y) ) return;
+    if ( mPoints != null ) unpack();
     if ( mFirst == null ) {
       addStartPoint( x, y );
     } else {
@@ -399,6 +493,7 @@ class DrawingPointLinePath extends DrawingPath
   void addPoint3( float x1, float y1, float x2, float y2, float x, float y ) 
   {
     if ( Float.isNaN(x) || Float.isNaN(y) ) return;
+    if ( mPoints != null ) unpack();
     if ( mFirst == null ) {
       addStartPoint( x, y );
     } else {
@@ -419,17 +514,27 @@ class DrawingPointLinePath extends DrawingPath
   }
 
   // ----------------------------------------------
-  void addStartPointNoPath( float x, float y ) 
+  // the NoPath methods are used to read the line from file: the points are packed
+  // @param capacity   expected number of points
+  void addStartPointNoPath( float x, float y, int capacity ) 
   {
-    mFirst = mLast = new LinePoint(x,y, null);
+    mFirst = mLast = null;
+    mPoints = new LinePointArray( capacity );
+    mPoints.add( x, y );
     ++ mSize;
     left = right  = x;
     top  = bottom = y;
   }
 
+  void addStartPointNoPath( float x, float y ) { addStartPointNoPath( x, y, 0 ); }
+
   void addPointNoPath( float x, float y ) 
   {
-    mLast = new LinePoint(x, y, mLast);
+    if ( mPoints != null ) {
+      mPoints.add( x, y );
+    } else {
+      mLast = new LinePoint(x, y, mLast);
+    }
     ++ mSize;
     if ( x < left ) { left = x; } else if ( x > right  ) { right  = x; }
     if ( y < top  ) { top  = y; } else if ( y > bottom ) { bottom = y; }
@@ -437,7 +542,11 @@ class DrawingPointLinePath extends DrawingPath
 
   void addPoint3NoPath( float x1, float y1, float x2, float y2, float x, float y ) 
   {
-    mLast = new LinePoint( x1,y1, x2,y2, x,y, mLast );
+    if ( mPoints != null ) {
+      mPoints.add( x1,y1, x2,y2, x,y );
+    } else {
+      mLast = new LinePoint( x1,y1, x2,y2, x,y, mLast );
+    }
     ++mSize;
     if ( x < left ) { left = x; } else if ( x > right  ) { right  = x; }
     if ( y < top  ) { top  = y; } else if ( y > bottom ) { bottom = y; }
@@ -447,6 +556,8 @@ class DrawingPointLinePath extends DrawingPath
   void append( DrawingPointLinePath line )
   {
     if ( line.mSize ==  0 ) return;
+    unpack();
+    line.unpack();
     LinePoint lp = line.mFirst;
     addPoint( lp.x, lp.y );
     for ( lp = lp.mNext; lp != null; lp = lp.mNext ) {
@@ -482,6 +593,7 @@ class DrawingPointLinePath extends DrawingPath
   LinePoint insertPointAfter( float x, float y, LinePoint lp )
   {
     if ( Float.isNaN(x) || Float.isNaN(y) ) return null;
+    unpack();
     // int index = mPoints.indexOf(lp);
     // if ( index < mPoints.size() ) ++index; // insert before next point
     LinePoint next = lp.mNext;
@@ -496,6 +608,7 @@ class DrawingPointLinePath extends DrawingPath
 
   void recomputeSize()
   {
+    unpack();
     mSize = 0;
     for ( LinePoint lp = mFirst; lp != null; lp = lp.mNext ) ++ mSize;
   }
@@ -517,6 +630,10 @@ class DrawingPointLinePath extends DrawingPath
     // }
     if ( mSize == 0 ) return;
     mPath = new Path();
+    if ( mPoints != null ) {
+      retracePackedPath();
+      return;
+    }
     LinePoint lp  = mFirst;
     left = right  = lp.x;
     top  = bottom = lp.y;
@@ -535,9 +652,35 @@ class DrawingPointLinePath extends DrawingPath
     computeUnitNormal();
   }
 
+  // retrace the path of the packed points - same as retracePath()
+  private void retracePackedPath()
+  {
+    LinePointArray pts = mPoints;
+    float x = pts.x( 0 );
+    float y = pts.y( 0 );
+    left = right  = x;
+    top  = bottom = y;
+    mPath.moveTo( x, y );
+    int size = pts.size();
+    for ( int k = 1; k < size; ++k ) {
+      x = pts.x( k );
+      y = pts.y( k );
+      if ( pts.hasCP( k ) ) {
+        mPath.cubicTo( pts.x1(k), pts.y1(k), pts.x2(k), pts.y2(k), x, y );
+      } else {
+        mPath.lineTo( x, y );
+      }
+      if ( x < left ) { left = x; } else if ( x > right  ) { right  = x; }
+      if ( y < top  ) { top  = y; } else if ( y > bottom ) { bottom = y; }
+    }
+    if ( mClosed ) mPath.close();
+    computeUnitNormal();
+  }
+
   void reversePath()
   {
     if ( mSize == 0 ) return;
+    unpack();
     LinePoint lf = mFirst;
     LinePoint ll = mLast;
     clear();
@@ -565,6 +708,15 @@ class DrawingPointLinePath extends DrawingPath
   {
     if ( Float.isNaN(x) || Float.isNaN(y) ) return Float.NaN;
     float dist = 10000000f; // FIXME
+    if ( mPoints != null ) {
+      for ( int k = 0; k < mSize; ++k ) {
+        float dx = x - mPoints.x( k );
+        float dy = y - mPoints.y( k );
+        float d2 = dx*dx + dy*dy;
+        if ( d2 < dist ) dist = d2;
+      }
+      return (dist > 0 )? TDMath.sqrt(dist) : 0;
+    }
     // for ( LinePoint pt : mPoints ) 
     for ( LinePoint pt=mFirst; pt != null; pt = pt.mNext ) 
     {
@@ -576,6 +728,30 @@ class DrawingPointLinePath extends DrawingPath
     return (dist > 0 )? TDMath.sqrt(dist) : 0;
   }
 
+  // write the points to the data stream (same as LinePoint.toDataStream)
+  protected void pointsToDataStream( DataOutputStream dos ) throws IOException
+  {
+    LinePointArray pts = mPoints;
+    if ( pts == null ) {
+      for ( LinePoint pt = mFirst; pt != null; pt = pt.mNext ) pt.toDataStream( dos );
+      return;
+    }
+    int size = pts.size();
+    for ( int k = 0; k < size; ++k ) {
+      dos.writeFloat( pts.x( k ) );
+      dos.writeFloat( pts.y( k ) );
+      if ( pts.hasCP( k ) ) {
+        dos.write( 1 );
+        dos.writeFloat( pts.x1( k ) );
+        dos.writeFloat( pts.y1( k ) );
+        dos.writeFloat( pts.x2( k ) );
+        dos.writeFloat( pts.y2( k ) );
+      } else {
+        dos.write( 0 );
+      }
+    }
+  }
+
   void closePath() 
   {
     mPath.close();
@@ -616,6 +792,7 @@ class DrawingPointLinePath extends DrawingPath
   protected void toTherionPoints( PrintWriter pw, boolean close )
   {
     // for ( LinePoint pt : mPoints ) 
+    unpack();
     LinePoint pt = mFirst; 
     pt.toTherion( pw );
     float x0 = DrawingUtil.sceneToWorldX( pt );
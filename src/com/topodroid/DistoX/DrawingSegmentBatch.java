@@ -0,0 +1,206 @@
+/* @file DrawingSegmentBatch.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: legs or splays of a plot packed by paint for bulk drawing
+ *
+ * The segment endpoints (scene coords) are stored in float arrays, one array for each group,
+ * and each array is drawn with a single drawLines: a frame does not allocate objects.
+ * The segments are grouped by the paint color, stroke width and path-effect, not by the paint object,
+ * so that the paths with equal but distinct paints share a group. The groups are found with a hash table.
+ * The segments of a group with a path-effect (dashed splays) are collected in a path,
+ * because drawLines does not apply the path-effect.
+ * The batch is rebuilt when the data, the paints, or the splays filter change.
+ *
+ * The legs and the splays are still DrawingPath's, because the shot dialogs, the exports and the
+ * splays on/off use them. The selection of the splays works on an index (see Selection),
+ * without a selection point for each splay.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Matrix;
+
+import java.util.List;
+import java.util.Arrays;
+
+// import android.util.Log;
+
+class DrawingSegmentBatch
+{
+  static final int FILTER_ALL    = 0; // all the segments
+  static final int FILTER_NO_OFF = 1; // all the splays except those of the stations with splays off
+  static final int FILTER_ON     = 2; // the splays of the stations with splays on, and the recent splays
+
+  private int mStamp  = -1;  // data stamp of the batch
+  private int mSize   = -1;  // number of paths of the batch
+  private int mFilter = -1;  // filter of the batch
+
+  // segments by group
+  private int mGroups = 0;
+  private Paint[]   mPaint  = new Paint[ 8 ];    // paint of the group (the first paint of the group)
+  private float[][] mPts    = new float[ 8 ][];  // endpoints x1 y1 x2 y2 ... (scene coords)
+  private int[]     mLen    = new int[ 8 ];      // number of floats of the group
+  private Path[]    mDashed = new Path[ 8 ];     // path of the group, if the paint has a path-effect
+  private int[]     mTable  = new int[ 32 ];     // hash table of the groups: group index + 1 (0: empty slot)
+
+  // canvas coords
+  private float[] mCanvasPts = new float[ 256 ];
+  private final Path mCanvasPath = new Path();
+
+  /** check if the batch is up to date
+   * @param stamp   data stamp (data, paints and splays on/off)
+   * @param size    number of paths
+   * @param filter  splays filter
+   */
+  boolean isValid( int stamp, int size, int filter ) { return stamp == mStamp && size == mSize && filter == mFilter; }
+
+  /** rebuild the batch
+   * @param paths          legs or splays
+   * @param stamp          data stamp
+   * @param filter         splays filter
+   * @param station_splay  stations with splays on/off
+   */
+  void build( List< DrawingPath > paths, int stamp, int filter, DrawingStationSplay station_splay )
+  {
+    for ( int g = 0; g < mGroups; ++g ) {
+      mPaint[g] = null;
+      mLen[g] = 0;
+    }
+    mGroups = 0;
+    Arrays.fill( mTable, 0 );
+    for ( DrawingPath path : paths ) {
+      if ( filter == FILTER_NO_OFF ) {
+        if ( station_splay.isStationOFF( path ) ) continue;
+      } else if ( filter == FILTER_ON ) {
+        if ( ! ( station_splay.isStationON( path ) || path.isBlockRecent() ) ) continue;
+      }
+      Paint paint = path.getDrawPaint();
+      if ( paint == null ) continue;
+      add( group( paint ), path.x1, path.y1, path.x2, path.y2 );
+    }
+    for ( int g = 0; g < mGroups; ++g ) {
+      if ( mPaint[g].getPathEffect() == null ) continue;
+      if ( mDashed[g] == null ) {
+        mDashed[g] = new Path();
+      } else {
+        mDashed[g].reset();
+      }
+      float[] pts = mPts[g];
+      for ( int k = 0; k < mLen[g]; k += 4 ) {
+        mDashed[g].moveTo( pts[k],   pts[k+1] );
+        mDashed[g].lineTo( pts[k+2], pts[k+3] );
+      }
+    }
+    mStamp  = stamp;
+    mSize   = paths.size();
+    mFilter = filter;
+  }
+
+  void invalidate() { mStamp = -1; }
+
+  private static int hash( Paint paint )
+  {
+    int h = paint.getColor() * 31 + Float.floatToIntBits( paint.getStrokeWidth() );
+    h = h * 31 + System.identityHashCode( paint.getPathEffect() );
+    return h ^ ( h >>> 16 );
+  }
+
+  // @return true if two paints draw the segments alike
+  private static boolean sameGroup( Paint p1, Paint p2 )
+  {
+    return p1 == p2
+        || ( p1.getColor() == p2.getColor()
+          && p1.getStrokeWidth() == p2.getStrokeWidth()
+          && p1.getPathEffect() == p2.getPathEffect() );
+  }
+
+  // @return the index of the group of a paint
+  private int group( Paint paint )
+  {
+    int mask = mTable.length - 1;
+    int slot = hash( paint ) & mask;
+    for ( int g1 = mTable[ slot ]; g1 != 0; g1 = mTable[ slot ] ) {
+      if ( sameGroup( mPaint[ g1-1 ], paint ) ) return g1 - 1;
+      slot = ( slot + 1 ) & mask;
+    }
+    if ( mGroups == mPaint.length ) {
+      int n = 2 * mGroups;
+      Paint[] paints = new Paint[ n ];
+      float[][] pts  = new float[ n ][];
+      int[] len      = new int[ n ];
+      Path[] dashed  = new Path[ n ];
+      System.arraycopy( mPaint,  0, paints, 0, mGroups );
+      System.arraycopy( mPts,    0, pts,    0, mGroups );
+      System.arraycopy( mLen,    0, len,    0, mGroups );
+      System.arraycopy( mDashed, 0, dashed, 0, mGroups );
+      mPaint  = paints;
+      mPts    = pts;
+      mLen    = len;
+      mDashed = dashed;
+    }
+    mPaint[ mGroups ] = paint;
+    mLen[ mGroups ] = 0;
+    if ( mPts[ mGroups ] == null ) mPts[ mGroups ] = new float[ 256 ];
+    mTable[ slot ] = mGroups + 1;
+    ++ mGroups;
+    if ( 2 * mGroups > mTable.length ) rehash();
+    return mGroups - 1;
+  }
+
+  // double the hash table, to keep it at most half full
+  private void rehash()
+  {
+    mTable = new int[ 2 * mTable.length ];
+    int mask = mTable.length - 1;
+    for ( int g = 0; g < mGroups; ++g ) {
+      int slot = hash( mPaint[g] ) & mask;
+      while ( mTable[ slot ] != 0 ) slot = ( slot + 1 ) & mask;
+      mTable[ slot ] = g + 1;
+    }
+  }
+
+  private void add( int g, float x1, float y1, float x2, float y2 )
+  {
+    int len = mLen[g];
+    float[] pts = mPts[g];
+    if ( len + 4 > pts.length ) {
+      float[] tmp = new float[ 2 * pts.length ];
+      System.arraycopy( pts, 0, tmp, 0, len );
+      mPts[g] = pts = tmp;
+    }
+    pts[ len   ] = x1;
+    pts[ len+1 ] = y1;
+    pts[ len+2 ] = x2;
+    pts[ len+3 ] = y2;
+    mLen[g] = len + 4;
+  }
+
+  /** draw the segments
+   * @param canvas   canvas
+   * @param matrix   scene-to-canvas transform
+   */
+  void draw( Canvas canvas, Matrix matrix )
+  {
+    for ( int g = 0; g < mGroups; ++g ) {
+      int len = mLen[g];
+      if ( len == 0 ) continue;
+      if ( mDashed[g] != null && mPaint[g].getPathEffect() != null ) {
+        mCanvasPath.set( mDashed[g] );
+        mCanvasPath.transform( matrix );
+        canvas.drawPath( mCanvasPath, mPaint[g] );
+      } else {
+        if ( mCanvasPts.length < len ) mCanvasPts = new float[ mPts[g].length ];
+        matrix.mapPoints( mCanvasPts, 0, mPts[g], 0, len/2 );
+        canvas.drawLines( mCanvasPts, 0, len, mPaint[g] );
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/* @file DrawingSnapshot.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: snapshot of the items of a sketch, for the serialization
+ *
+ * Each list of items is locked while its items are serialized to memory buffers, so that
+ * the snapshot has the items as they are at one time, and an item removed or edited
+ * afterwards is saved as it was. The drawing and the edits are not blocked by the file writes,
+ * which are done from the buffers outside the locks.
+ * The lock hold times are collected for the log.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.ArrayList;
+
+// import android.util.Log;
+
+class DrawingSnapshot
+{
+  private final ArrayList< DrawingPath > mItems; // paths, then user stations
+  private final ArrayList< byte[] > mData;       // data of the items
+
+  private ByteArrayOutputStream mBos = new ByteArrayOutputStream( 4096 );
+  private DataOutputStream      mDos = new DataOutputStream( mBos );
+
+  // lock hold times [nsec]
+  private long mPathHold    = 0;
+  private long mStationHold = 0;
+
+  /** cstr
+   * @param cstack        sketch items
+   * @param userstations  user stations
+   */
+  DrawingSnapshot( List< ICanvasCommand > cstack, List< DrawingStationPath > userstations ) throws IOException
+  {
+    long t0 = System.nanoTime();
+    synchronized( cstack ) {
+      int size = cstack.size() + userstations.size();
+      mItems = new ArrayList<>( size );
+      mData  = new ArrayList<>( size );
+      for ( ICanvasCommand cmd : cstack ) {
+        if ( cmd.commandType() != 0 ) continue;
+        DrawingPath p = (DrawingPath) cmd;
+        if ( p.mType == DrawingPath.DRAWING_PATH_STATION ) continue; // safety check: should not happen
+        add( p );
+      }
+    }
+    long t1 = System.nanoTime();
+    synchronized( userstations ) {
+      for ( DrawingStationPath p : userstations ) add( p );
+    }
+    long t2 = System.nanoTime();
+    mPathHold    = t1 - t0;
+    mStationHold = t2 - t1;
+  }
+
+  private void add( DrawingPath path ) throws IOException
+  {
+    mBos.reset();
+    path.toDataStream( mDos );
+    mDos.flush();
+    mItems.add( path );
+    mData.add( mBos.toByteArray() );
+  }
+
+  int size() { return mItems.size(); }
+
+  DrawingPath get( int k ) { return mItems.get( k ); }
+
+  ArrayList< DrawingPath > getItems() { return mItems; }
+
+  /** @return the data of an item
+   * @param k   item index
+   */
+  byte[] getData( int k ) { return mData.get( k ); }
+
+  /** @return the lock hold time of the sketch items [nsec]
+   */
+  long getPathHold() { return mPathHold; }
+
+  /** @return the lock hold times, for the log
+   */
+  String getLockStats()
+  {
+    return "items " + mItems.size() + " lock paths " + (mPathHold/1000) + " stations " + (mStationHold/1000) + " usec";
+  }
+}
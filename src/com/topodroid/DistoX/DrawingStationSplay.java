@@ -18,6 +18,7 @@ class DrawingStationSplay
 {
   private ArrayList< String > mSplaysOn;  // stations where to show splays
   private ArrayList< String > mSplaysOff; // stations where not to show splays
+  private int mStamp = 0;                 // increased at every change
 
   DrawingStationSplay()
   {
@@ -29,8 +30,11 @@ class DrawingStationSplay
   {
     mSplaysOn.clear();
     mSplaysOff.clear();
+    ++ mStamp;
   }
 
+  int getStamp() { return mStamp; }
+
   boolean hasSplaysON()  { return mSplaysOn.size() > 0; }
   // boolean hasSplaysOFF() { return mSplaysOff.size() > 0; }
 
@@ -67,6 +71,7 @@ class DrawingStationSplay
     if ( station == null ) return;
     setStationSplays( mSplaysOn,  station, on );
     setStationSplays( mSplaysOff, station, off );
+    ++ mStamp;
   }
 
   private void setStationSplays( ArrayList<String> splayStations, String station, boolean on )
@@ -83,6 +88,7 @@ class DrawingStationSplay
     if ( station == null ) return;
     /* if ( mSplaysOn.contains( station ) ) */ mSplaysOn.remove( station );
     if ( ! mSplaysOff.contains( station ) ) mSplaysOff.add( station );
+    ++ mStamp;
   }
 
   void showStationSplays( String station )
@@ -90,6 +96,7 @@ class DrawingStationSplay
     if ( station == null ) return;
     /* if ( mSplaysOff.contains( station ) ) */ mSplaysOff.remove( station );
     if ( ! mSplaysOn.contains( station ) ) mSplaysOn.add( station );
+    ++ mStamp;
   }
 
 }
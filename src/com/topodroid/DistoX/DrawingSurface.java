@@ -14,11 +14,12 @@ package com.topodroid.DistoX;
 import android.content.Context;
 
 import android.app.Activity;
-// import android.os.Handler;
-// import android.os.Message;
+import android.os.Handler;
+import android.os.Message;
 import android.util.AttributeSet;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.MotionEvent;
 // import android.view.View;
 
 // import android.view.MotionEvent;
@@ -36,7 +37,12 @@ import java.util.ArrayList;
 // import java.util.Collections;
 // import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.LinkedHashMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 // import java.io.BufferedWriter;
 import java.io.File;
@@ -91,14 +97,72 @@ class DrawingSurface extends SurfaceView
 
   public boolean isDrawing() { return isDrawing; }
 
+  /** mark the scene dirty: the draw thread repaints only after an invalidation
+   * @note this must be called after the scene has been changed
+   */
+  void invalidateScene()
+  {
+    DrawThread thread = mDrawThread;
+    if ( thread != null ) thread.invalidate();
+  }
+
+  // the sketch items of the current manager have changed
+  private void sketchChanged()
+  {
+    if ( commandManager != null ) commandManager.sketchChanged();
+    invalidateScene();
+  }
+
+  // an item of the current manager has been modified in place (by an edit dialog)
+  void itemEdited() { sketchChanged(); }
+
+  // touch events change the scene (zoom/pan, sketch, select, edit): repaint after the listener
+  @Override
+  public boolean dispatchTouchEvent( MotionEvent event )
+  {
+    boolean ret = super.dispatchTouchEvent( event );
+    invalidateScene();
+    return ret;
+  }
+
   // -----------------------------------------------------
   // MANAGER CACHE
 
-  static private HashMap<String, DrawingCommandManager> mCache = new HashMap<String, DrawingCommandManager>();
+  // managers of the recently opened plots, least recently used first
+  // the cache is bounded by the number of plots and by the estimated memory of the managers
+  // (TDSetting.mPlotCacheSize, mPlotCacheKB): the managers in excess are dropped, after saving
+  // them to their tdr file if they have been modified since the last save
+  static private class CacheEntry
+  {
+    final DrawingCommandManager manager;
+    final int type;      // plot type
+    final int proj_dir;  // projected profile azimuth
+    long bytes;          // estimated memory
+
+    CacheEntry( DrawingCommandManager m, int t, int d )
+    {
+      manager  = m;
+      type     = t;
+      proj_dir = d;
+      bytes    = 0;
+    }
+  }
+
+  static private LinkedHashMap<String, CacheEntry> mCache = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true ); // access order
+  static private HashMap<String, CacheEntry> mEvicted = new HashMap<>(); // evicted managers that are being saved
+
+  static private int mCacheHits      = 0;
+  static private int mCacheMisses    = 0;
+  static private int mCacheEvictions = 0;
+
+  static int getCacheHits()      { return mCacheHits; }
+  static int getCacheMisses()    { return mCacheMisses; }
+  static int getCacheEvictions() { return mCacheEvictions; }
 
   static void clearCache()
   {
     mCache.clear();
+    mEvicted.clear();
     // TDLog.Log( TDLog.LOG_IO, "clear managers cache");
   }
 
@@ -107,7 +171,14 @@ class DrawingSurface extends SurfaceView
   //   for ( String key : mCache.keySet() ) TDLog.Log( TDLog.LOG_IO, "Key: " + key );
   // }
 
-  static void addManagerToCache( String fullname ) 
+  /** add the current manager to the cache
+   * @param parent     drawing window
+   * @param fullname   plot fullname (cache key)
+   * @param type       plot type
+   * @param proj_dir   projected profile azimuth (0 for the other plots)
+   * @note the manager has just been loaded from its tdr file
+   */
+  static void addManagerToCache( DrawingWindow parent, String fullname, long type, int proj_dir ) 
   { 
     if ( commandManager != null ) {
       // if ( mCache.get( fullname ) != null ) {
@@ -115,11 +186,77 @@ class DrawingSurface extends SurfaceView
       // } else {
       //   TDLog.Log( TDLog.LOG_IO, "add manager to cache " + fullname );
       // }
-      mCache.put( fullname, commandManager );
+      commandManager.setSaved();
+      mCache.put( fullname, new CacheEntry( commandManager, (int)type, proj_dir ) );
+      trimCache( parent );
       // if ( TDLog.LOG_IO ) dumpCacheKeys();
     }
   }
 
+  // drop the least recently used managers in excess, except those in use
+  static private void trimCache( DrawingWindow parent )
+  {
+    int size = mCache.size();
+    long bytes = 0;
+    for ( CacheEntry entry : mCache.values() ) { // values() does not change the access order
+      entry.bytes = entry.manager.estimatedBytes();
+      bytes += entry.bytes;
+    }
+    long max_bytes = TDSetting.mPlotCacheKB * 1024L;
+    Iterator< Map.Entry<String, CacheEntry> > it = mCache.entrySet().iterator();
+    while ( it.hasNext() && ( size > TDSetting.mPlotCacheSize || bytes > max_bytes ) ) {
+      Map.Entry<String, CacheEntry> e = it.next();
+      CacheEntry entry = e.getValue();
+      if ( entry.manager == mCommandManager1 || entry.manager == mCommandManager2 ) continue; // in use
+      it.remove();
+      saveEvictedManager( parent, e.getKey(), entry );
+      -- size;
+      bytes -= entry.bytes;
+      ++ mCacheEvictions;
+    }
+    TDLog.Log( TDLog.LOG_IO, "managers cache: size " + size + " kB " + (bytes/1024)
+               + " hit " + mCacheHits + " miss " + mCacheMisses + " evict " + mCacheEvictions );
+  }
+
+  // save a modified evicted manager to its tdr file, so that it can be reloaded
+  // the save is a full tdr save, not a journal append, because the journal base is dropped with the manager
+  // the save task runs in background, with the backup rotation of the intermediate saves:
+  // until it has finished the manager is kept, and it is taken back if the plot is opened again
+  static private void saveEvictedManager( DrawingWindow parent, final String fullname, CacheEntry entry )
+  {
+    if ( ! entry.manager.isModified() ) return;
+    TDLog.Log( TDLog.LOG_IO, "save evicted manager " + fullname );
+    mEvicted.put( fullname, entry );
+    Handler handler = new Handler() {
+      @Override
+      public void handleMessage( Message msg ) { mEvicted.remove( fullname ); }
+    };
+    try {
+      (new SavePlotFileTask( parent, parent, handler, null, entry.manager, fullname, entry.type, entry.proj_dir,
+                             PlotSave.EVICT, TDSetting.mBackupNumber )).execute();
+    } catch ( RejectedExecutionException e ) {
+      TDLog.Error( "rejected exec save evicted plot " + fullname );
+      mEvicted.remove( fullname );
+    }
+  }
+
+  // get a manager from the cache, and move it to the most recently used
+  // an evicted manager that is being saved is put back in the cache
+  static private DrawingCommandManager getCachedManager( String fullname )
+  {
+    CacheEntry entry = mCache.get( fullname );
+    if ( entry == null ) {
+      entry = mEvicted.remove( fullname );
+      if ( entry == null ) {
+        ++ mCacheMisses;
+        return null;
+      }
+      mCache.put( fullname, entry );
+    }
+    ++ mCacheHits;
+    return entry.manager;
+  }
+
   // return true if saved manager can be used
   boolean resetManager( int mode, String fullname, boolean is_extended )
   {
@@ -129,7 +266,7 @@ class DrawingSurface extends SurfaceView
     // Log.v("DistoX", "cache size " + mCache.size() );
 
     if ( mode == DRAWING_PLAN ) {
-      if ( fullname != null ) manager = mCache.get( fullname );
+      if ( fullname != null ) manager = getCachedManager( fullname );
       TDLog.Log( TDLog.LOG_IO, "check out PLAN from cache " + fullname + " found: " + (manager!=null) );
       if ( manager == null ) {
         mCommandManager1 = new DrawingCommandManager();
@@ -140,7 +277,7 @@ class DrawingSurface extends SurfaceView
       }
       commandManager = mCommandManager1;
     } else if ( mode == DRAWING_PROFILE ) {
-      if ( fullname != null ) manager = mCache.get( fullname );
+      if ( fullname != null ) manager = getCachedManager( fullname );
       TDLog.Log( TDLog.LOG_IO, "check out PROFILE from cache " + fullname + " found: " + (manager!=null) );
       if ( manager == null ) {
         mCommandManager2 = new DrawingCommandManager();
@@ -157,8 +294,10 @@ class DrawingSurface extends SurfaceView
       } else {
         mCommandManager3.clearDrawing();
       }
+      mCommandManager3.setSelectable( mode != DRAWING_OVERVIEW ); // the overview items are not edited
       commandManager = mCommandManager3;
     }
+    invalidateScene(); // a manager taken from the cache is not modified
     return ret;
   }
 
@@ -167,6 +306,7 @@ class DrawingSurface extends SurfaceView
   void setSelectMode( int mode )
   { 
     if ( commandManager != null ) commandManager.setSelectMode( mode );
+    invalidateScene();
   }
 
   void setManager( int mode, int type )
@@ -180,6 +320,7 @@ class DrawingSurface extends SurfaceView
     } else {
       commandManager = mCommandManager3;
     }
+    invalidateScene();
   }
 
 
@@ -222,6 +363,7 @@ class DrawingSurface extends SurfaceView
     } else {
       commandManager.syncClearSelected();
     }
+    invalidateScene();
   }
 
   int getNextAreaIndex() { return commandManager.getNextAreaIndex(); }
@@ -248,7 +390,7 @@ class DrawingSurface extends SurfaceView
 
   // -----------------------------------------------------------
 
-  public void setDisplayMode( int mode ) { DrawingCommandManager.setDisplayMode(mode); }
+  public void setDisplayMode( int mode ) { DrawingCommandManager.setDisplayMode(mode); invalidateScene(); }
 
   public int getDisplayMode( ) { return DrawingCommandManager.getDisplayMode(); }
 
@@ -260,12 +402,17 @@ class DrawingSurface extends SurfaceView
   {
     if ( commandManager != null ) // test for Xiaomi readmi note
       commandManager.setTransform( act, dx, dy, s, landscape );
+    invalidateScene();
   }
 
-  void splitLine( DrawingLinePath line, LinePoint lp ) { commandManager.splitLine( line, lp ); }
+  void splitLine( DrawingLinePath line, LinePoint lp ) { commandManager.splitLine( line, lp ); sketchChanged(); }
 
   boolean removeLinePoint( DrawingPointLinePath line, LinePoint point, SelectionPoint sp ) 
-  { return commandManager.removeLinePoint(line, point, sp); }
+  {
+    boolean ret = commandManager.removeLinePoint(line, point, sp);
+    sketchChanged();
+    return ret;
+  }
 
   // N.B. this must be called only by plan or profile
   // p is the path of sp
@@ -275,6 +422,7 @@ class DrawingSurface extends SurfaceView
     if ( mCommandManager2 != null ) {
       mCommandManager2.deleteSplay( p, sp );
     }
+    invalidateScene();
   }
 
   void deletePath( DrawingPath path ) 
@@ -283,34 +431,36 @@ class DrawingSurface extends SurfaceView
     EraseCommand cmd = new EraseCommand();
     commandManager.deletePath( path, cmd );
     commandManager.addEraseCommand( cmd );
+    sketchChanged();
   }
 
   // PATH_MULTISELECTION
   boolean isMultiselection()  { return commandManager.isMultiselection; }
   int getMultiselectionType() { return commandManager.getMultiselectionType(); }
-  void startMultiselection()  { commandManager.startMultiselection(); }
+  void startMultiselection()  { commandManager.startMultiselection(); invalidateScene(); }
 
-  void resetMultiselection() { commandManager.resetMultiselection(); }
-  void joinMultiselection( float dmin ) { commandManager.joinMultiselection( dmin ); }
-  void deleteMultiselection() { commandManager.deleteMultiselection(); }
-  void decimateMultiselection() { commandManager.decimateMultiselection(); }
+  void resetMultiselection() { commandManager.resetMultiselection(); invalidateScene(); }
+  void joinMultiselection( float dmin ) { commandManager.joinMultiselection( dmin ); sketchChanged(); }
+  void deleteMultiselection() { commandManager.deleteMultiselection(); sketchChanged(); }
+  void decimateMultiselection() { commandManager.decimateMultiselection(); sketchChanged(); }
   // end PATH_MULTISELECTION
 
-  void sharpenPointLine( DrawingPointLinePath line ) { commandManager.sharpenPointLine( line ); }
-  void reducePointLine( DrawingPointLinePath line, int decimation ) { commandManager.reducePointLine( line, decimation ); }
-  void rockPointLine( DrawingPointLinePath line ) { commandManager.rockPointLine( line ); }
-  void closePointLine( DrawingPointLinePath line ) { commandManager.closePointLine( line ); }
+  void sharpenPointLine( DrawingPointLinePath line ) { commandManager.sharpenPointLine( line ); sketchChanged(); }
+  void reducePointLine( DrawingPointLinePath line, int decimation ) { commandManager.reducePointLine( line, decimation ); sketchChanged(); }
+  void rockPointLine( DrawingPointLinePath line ) { commandManager.rockPointLine( line ); sketchChanged(); }
+  void closePointLine( DrawingPointLinePath line ) { commandManager.closePointLine( line ); sketchChanged(); }
 
-  void endEraser() { commandManager.endEraser(); }
-  void setEraser( float x, float y, float r ) { commandManager.setEraser(x, y, r); } // canvas x,y, r
+  void endEraser() { commandManager.endEraser(); invalidateScene(); }
+  void setEraser( float x, float y, float r ) { commandManager.setEraser(x, y, r); invalidateScene(); } // canvas x,y, r
 
   void eraseAt( float x, float y, float zoom, EraseCommand cmd, int erase_mode, float erase_size ) 
-  { commandManager.eraseAt( x, y, zoom, cmd, erase_mode, erase_size ); }
+  { commandManager.eraseAt( x, y, zoom, cmd, erase_mode, erase_size ); sketchChanged(); }
   
   void addEraseCommand( EraseCommand cmd )
   {
     isDrawing = true;
     commandManager.addEraseCommand( cmd );
+    sketchChanged();
   }
 
   /**
@@ -346,6 +496,8 @@ class DrawingSurface extends SurfaceView
   {
     if ( mCommandManager2 == null ) return;
     mCommandManager2.flipXAxis( z );
+    mCommandManager2.sketchChanged();
+    invalidateScene();
   }
 
   // static Handler previewDoneHandler = new Handler()
@@ -371,6 +523,12 @@ class DrawingSurface extends SurfaceView
   Path getPreviewPath() { return (mPreviewPath != null)? mPreviewPath.mPath : null; }
 
  
+  // the recent shots are highlighted for a time in continuous mode: the scene must be repainted when they expire
+  public long refreshDelay()
+  {
+    return ( TDSetting.mShotRecent && TDSetting.isConnectionModeContinuous() )? 1000 : 0;
+  }
+
   public void refresh( SurfaceHolder holder )
   {
     // if ( mZoomer != null ) mZoomer.checkZoomBtnsCtrl();
@@ -395,7 +553,9 @@ class DrawingSurface extends SurfaceView
 
   List<DrawingPath> splitPlot( ArrayList< PointF > border, boolean remove )
   {
-    return commandManager.splitPlot( border, remove );
+    List<DrawingPath> ret = commandManager.splitPlot( border, remove );
+    sketchChanged();
+    return ret;
   }
 
   // void clearDrawing() { commandManager.clearDrawing(); }
@@ -448,6 +608,7 @@ class DrawingSurface extends SurfaceView
       st0 = mCommandManager1.getStation( st.getName() );
       setStationPaint( st0, saved, mCommandManager1 );
     }
+    invalidateScene();
   }
 
   // called by DrawingWindow::computeReference
@@ -477,6 +638,7 @@ class DrawingSurface extends SurfaceView
       }
     }
     commandManager.addStation( st, selectable ); // NOTE make this always true if you want station selectable on all sections
+    invalidateScene();
     return st;
   }
 
@@ -489,6 +651,7 @@ class DrawingSurface extends SurfaceView
     DrawingStationName st = new DrawingStationName( name, x, y );
     st.setPathPaint( BrushManager.fixedStationPaint );
     commandManager.addStation( st, false ); // NOTE make this true for selectable station in all sections
+    invalidateScene();
     return st;
   }
 
@@ -496,6 +659,16 @@ class DrawingSurface extends SurfaceView
   {
     mCommandManager1.resetFixedPaint( app, false, paint );
     mCommandManager2.resetFixedPaint( app, true,  paint ); 
+    invalidateScene();
+  }
+
+  // called by DrawingWindow::appendReferences, before the references of the new shots are added
+  // @param splays   blocks of the splays that have been recomputed
+  void updateReferences( Set<DBlock> splays )
+  {
+    commandManager.dropSplayPaths( splays );
+    commandManager.resetRecentLegs( BrushManager.fixedShotPaint );
+    invalidateScene();
   }
 
   // called by DarwingActivity::addFixedLine
@@ -507,31 +680,33 @@ class DrawingSurface extends SurfaceView
       commandManager.addLegPath( path, selectable );
     }
     // commandManager.addFixedPath( path, selectable );
+    invalidateScene();
   }
 
   // used only by H-Sections
-  public void setNorthPath( DrawingPath path ) { commandManager.setNorthLine( path ); }
+  public void setNorthPath( DrawingPath path ) { commandManager.setNorthLine( path ); invalidateScene(); }
 
-  public void setFirstReference( DrawingPath path ) { commandManager.setFirstReference( path ); }
+  public void setFirstReference( DrawingPath path ) { commandManager.setFirstReference( path ); invalidateScene(); }
 
-  public void setSecondReference( DrawingPath path ) { commandManager.setSecondReference( path ); }
+  public void setSecondReference( DrawingPath path ) { commandManager.setSecondReference( path ); invalidateScene(); }
 
-  public void addSecondReference( float x, float y ) { commandManager.addSecondReference( x, y ); }
+  public void addSecondReference( float x, float y ) { commandManager.addSecondReference( x, y ); invalidateScene(); }
 
   // k : grid type 1, 10, 100
-  public void addGridPath( DrawingPath path, int k ) { commandManager.addGrid( path, k ); }
+  public void addGridPath( DrawingPath path, int k ) { commandManager.addGrid( path, k ); invalidateScene(); }
 
-  public void addDrawingPath (DrawingPath drawingPath) { commandManager.addCommand(drawingPath); }
+  public void addDrawingPath (DrawingPath drawingPath) { commandManager.addCommand(drawingPath); sketchChanged(); }
 
-  public void addScrapOutlinePath( DrawingLinePath path ) { commandManager.addScrapOutlinePath( path ); }
+  public void addScrapOutlinePath( DrawingLinePath path ) { commandManager.addScrapOutlinePath( path ); sketchChanged(); }
 
   public void addXSectionOutlinePath( DrawingOutlinePath path )
-  { commandManager.addXSectionOutlinePath( path ); }
+  { commandManager.addXSectionOutlinePath( path ); sketchChanged(); }
 
   // return true if point has been deleted
   void deleteSectionPoint( String scrap_name )
   {
     commandManager.deleteSectionPoint( scrap_name, null ); // null eraseCommand
+    sketchChanged();
   }
   
   // void setBounds( float x1, float x2, float y1, float y2 ) { commandManager.setBounds( x1, x2, y1, y2 ); }
@@ -540,12 +715,14 @@ class DrawingSurface extends SurfaceView
   {
     isDrawing = true;
     commandManager.redo();
+    sketchChanged();
   }
 
   void undo()
   {
     isDrawing = true;
     commandManager.undo();
+    sketchChanged();
   }
 
   boolean hasMoreRedo()
@@ -566,12 +743,14 @@ class DrawingSurface extends SurfaceView
   {
     if ( commandManager == null ) return;
     commandManager.addUserStation( path );
+    invalidateScene();
   }
  
   void removeDrawingStationPath( DrawingStationPath path )
   {
     if ( commandManager == null ) return;
     commandManager.removeUserStation( path );
+    invalidateScene();
   }
 
   RectF getBitmapBounds( )
@@ -590,12 +769,14 @@ class DrawingSurface extends SurfaceView
 
   boolean modifyLine( DrawingLinePath line, DrawingLinePath lp2, float zoom, float size )
   {
-    return commandManager.modifyLine( line, lp2, zoom, size );
+    boolean ret = commandManager.modifyLine( line, lp2, zoom, size );
+    sketchChanged();
+    return ret;
   }
  
   /** add the points of the first line to the second line
    */
-  void addLineToLine( DrawingLinePath line, DrawingLinePath line0 ) { commandManager.addLineToLine( line, line0 ); }
+  void addLineToLine( DrawingLinePath line, DrawingLinePath line0 ) { commandManager.addLineToLine( line, line0 ); sketchChanged(); }
 
   // ---------------------------------------------------------------------
   // SELECT - EDIT
@@ -612,51 +793,86 @@ class DrawingSurface extends SurfaceView
 
   SelectionSet getItemsAt( float x, float y, float zoom, int mode, float size ) 
   { 
-    return commandManager.getItemsAt( x, y, zoom, mode, size, mStationSplay /* mSplayStationsOn, mSplayStationsOff */ );
+    SelectionSet ret = commandManager.getItemsAt( x, y, zoom, mode, size, mStationSplay /* mSplayStationsOn, mSplayStationsOff */ );
+    invalidateScene();
+    return ret;
   }
 
   // add item to multiselection
   void addItemAt( float x, float y, float zoom, float size ) 
   { 
     commandManager.addItemAt( x, y, zoom, size );
+    invalidateScene();
   }
 
   // set line range at the hot-item
   // type = range type
   boolean setRangeAt( float x, float y, float zoom, int type, float size )
   {
-    return commandManager.setRangeAt( x, y, zoom, type, size );
+    boolean ret = commandManager.setRangeAt( x, y, zoom, type, size );
+    invalidateScene();
+    return ret;
   }
 
   DrawingAudioPath getAudioPoint( long bid ) { return commandManager.getAudioPoint( bid ); }
 
-  boolean moveHotItemToNearestPoint( float dmin ) { return commandManager.moveHotItemToNearestPoint( dmin ); }
-  boolean appendHotItemToNearestLine() { return commandManager.appendHotItemToNearestLine(); }
+  boolean moveHotItemToNearestPoint( float dmin )
+  {
+    boolean ret = commandManager.moveHotItemToNearestPoint( dmin );
+    sketchChanged();
+    return ret;
+  }
+  boolean appendHotItemToNearestLine()
+  {
+    boolean ret = commandManager.appendHotItemToNearestLine();
+    sketchChanged();
+    return ret;
+  }
   
-  int snapHotItemToNearestLine() { return commandManager.snapHotItemToNearestLine(); }
-  int snapHotItemToNearestSplays( float dthr ) { return commandManager.snapHotItemToNearestSplays( dthr, mStationSplay /* mSplayStationsOn, mSplayStationsOff */ ); }
+  int snapHotItemToNearestLine()
+  {
+    int ret = commandManager.snapHotItemToNearestLine();
+    sketchChanged();
+    return ret;
+  }
+  int snapHotItemToNearestSplays( float dthr )
+  {
+    int ret = commandManager.snapHotItemToNearestSplays( dthr, mStationSplay /* mSplayStationsOn, mSplayStationsOff */ );
+    sketchChanged();
+    return ret;
+  }
 
-  void splitPointHotItem() { commandManager.splitPointHotItem(); }
-  void insertPointsHotItem() { commandManager.insertPointsHotItem(); }
+  void splitPointHotItem() { commandManager.splitPointHotItem(); sketchChanged(); }
+  void insertPointsHotItem() { commandManager.insertPointsHotItem(); sketchChanged(); }
   
   SelectionPoint hotItem() { return commandManager.hotItem(); }
 
   boolean hasSelected() { return commandManager.hasSelected(); }
 
   // void shiftHotItem( float dx, float dy, float range ) { commandManager.shiftHotItem( dx, dy, range ); }
-  void shiftHotItem( float dx, float dy ) { commandManager.shiftHotItem( dx, dy ); }
+  void shiftHotItem( float dx, float dy ) { commandManager.shiftHotItem( dx, dy ); sketchChanged(); }
 
-  void rotateHotItem( float dy ) { commandManager.rotateHotItem( dy ); }
+  void rotateHotItem( float dy ) { commandManager.rotateHotItem( dy ); sketchChanged(); }
 
-  SelectionPoint nextHotItem() { return commandManager.nextHotItem(); }
+  SelectionPoint nextHotItem()
+  {
+    SelectionPoint ret = commandManager.nextHotItem();
+    invalidateScene();
+    return ret;
+  }
 
-  SelectionPoint prevHotItem() { return commandManager.prevHotItem(); }
+  SelectionPoint prevHotItem()
+  {
+    SelectionPoint ret = commandManager.prevHotItem();
+    invalidateScene();
+    return ret;
+  }
 
-  void clearSelected() { commandManager.syncClearSelected(); }
+  void clearSelected() { commandManager.syncClearSelected(); invalidateScene(); }
 
-  void shiftDrawing( float x, float y ) { commandManager.shiftDrawing( x, y ); }
+  void shiftDrawing( float x, float y ) { commandManager.shiftDrawing( x, y ); sketchChanged(); }
 
-  void scaleDrawing( float z ) { commandManager.scaleDrawing( z ); }
+  void scaleDrawing( float z ) { commandManager.scaleDrawing( z ); sketchChanged(); }
 
   // ---------------------------------------------------------------------
 
@@ -698,6 +914,7 @@ class DrawingSurface extends SurfaceView
       }
     }
     mDrawThread = null;
+    DrawingCommandManager.releaseLayer();
   }
 
   DrawingCommandManager getManager( long type )
@@ -729,7 +946,7 @@ class DrawingSurface extends SurfaceView
   //   return DrawingIO.doLoadTherion( this, th21, 0, 0, missingSymbols, localPalette );
   // }
 
-  // called by OverviewWindow
+  // called by DrawingWindow and PlotReloadWindow (OverviewWindow uses OverviewLoadTask)
   // @pre tdr != null
   boolean addLoadDataStream( String tdr, float xdelta, float ydelta,
     /* SymbolsPalette missingSymbols, */ String plotName )
@@ -737,11 +954,25 @@ class DrawingSurface extends SurfaceView
     boolean ret = false;
     SymbolsPalette localPalette = BrushManager.preparePalette();
     if ( (new File(tdr)).exists() ) {
+      // with the tdr index, the items are read when they are displayed
+      ArrayList< DrawingTdrIndex.Item > items = new ArrayList<>();
+      BrushManager.resetPointOrientations();
+      if ( DrawingTdrIndex.load( tdr, xdelta, ydelta, plotName, localPalette, items ) ) {
+        addDeferredItems( items );
+        return true;
+      }
       ret = DrawingIO.doLoadDataStream( this, tdr, xdelta, ydelta, /* missingSymbols, */ localPalette, null, false, plotName );
     }
     return ret;
   }
 
+  // called by OverviewLoadTask
+  void addDeferredItems( List< DrawingTdrIndex.Item > items )
+  {
+    commandManager.addDeferredItems( items );
+    invalidateScene();
+  }
+
   // called only by DrawingWindow
   boolean modeloadDataStream( String tdr1 /*, SymbolsPalette missingSymbols */ )
   {
@@ -759,11 +990,12 @@ class DrawingSurface extends SurfaceView
     return ret;
   }
 
-  void linkSections() { commandManager.linkSections(); }
+  void linkSections() { commandManager.linkSections(); invalidateScene(); }
   void linkAllSections() 
   {
     mCommandManager1.linkSections();
     mCommandManager2.linkSections();
+    invalidateScene();
   }
 
   // -----------------------------------------------------------------------------
@@ -821,20 +1053,21 @@ class DrawingSurface extends SurfaceView
     }
   }
 
-  void setSplayAlpha( boolean on ) { if ( mCommandManager3 != null ) mCommandManager3.setSplayAlpha(on); }
+  void setSplayAlpha( boolean on ) { if ( mCommandManager3 != null ) mCommandManager3.setSplayAlpha(on); invalidateScene(); }
   
   // ----------------------------------------------------------------
   // station splays
-  void toggleStationSplays( String st_name, boolean on, boolean off ) { mStationSplay.toggleStationSplays( st_name, on, off ); }
+  void toggleStationSplays( String st_name, boolean on, boolean off ) { mStationSplay.toggleStationSplays( st_name, on, off ); invalidateScene(); }
   boolean isStationSplaysOn( String st_name ) { return mStationSplay.isStationSplaysOn( st_name ); }
   boolean isStationSplaysOff( String st_name ) { return mStationSplay.isStationSplaysOff( st_name ); }
-  void showStationSplays( String station ) { mStationSplay.showStationSplays( station ); }
-  void hideStationSplays( String station ) { mStationSplay.hideStationSplays( station ); }
+  void showStationSplays( String station ) { mStationSplay.showStationSplays( station ); invalidateScene(); }
+  void hideStationSplays( String station ) { mStationSplay.hideStationSplays( station ); invalidateScene(); }
   
   void setStationXSections( List<PlotInfo> xsection_plan, List<PlotInfo> xsection_ext, long type2 )
   {
     mCommandManager1.setStationXSections( xsection_plan, PlotInfo.PLOT_PLAN );
     mCommandManager2.setStationXSections( xsection_ext,  type2 );
+    invalidateScene();
   }
 
   // only for sections
@@ -850,14 +1083,16 @@ class DrawingSurface extends SurfaceView
     commandManager.deleteSectionLine( line, scrap, cmd );
     commandManager.deleteSectionPoint( scrap, cmd );
     commandManager.addEraseCommand( cmd );
+    sketchChanged();
   }
   
-  void clearScrapOutline() { commandManager.clearScrapOutline(); }
+  void clearScrapOutline() { commandManager.clearScrapOutline(); invalidateScene(); }
 
   void addScrapDataStream( String tdr, float xdelta, float ydelta )
   {
     commandManager.clearScrapOutline( );
     DrawingIO.doLoadOutlineDataStream( this, tdr, xdelta, ydelta, null );
+    invalidateScene();
   }
 
   // @param name xsection scrap name ( survey_name + "-" + xsection_id )
@@ -868,12 +1103,14 @@ class DrawingSurface extends SurfaceView
   void setXSectionOutline( String name, String tdr, float xdelta, float ydelta )
   {
     DrawingIO.doLoadOutlineDataStream( this, tdr, xdelta, ydelta, name );
+    invalidateScene();
   }
 
   // @param name xsection scrap name ( survey_name + "-" + xsection_id )
   void clearXSectionOutline( String name )
   {
     commandManager.clearXSectionOutline( name );
+    invalidateScene();
   }
 
 }
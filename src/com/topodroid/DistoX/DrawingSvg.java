@@ -24,10 +24,6 @@ import java.util.ArrayList;
 import java.io.StringWriter;
 import java.io.PrintWriter;
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import android.graphics.RectF;
@@ -359,7 +355,7 @@ class DrawingSvg
   {
     float bezier_step = TDSetting.getBezierStep();
     pw.format(" d=\"");
-    LinePoint p = lp.mFirst;
+    LinePoint p = lp.first();
     float x0 = xoff+p.x;
     float y0 = yoff+p.y;
     pw.format(Locale.US, "M %.2f %.2f", xoff+p.x, yoff+p.y );
@@ -456,61 +452,19 @@ class DrawingSvg
 
   static private void tdrToSvg( PrintWriter pw, String scrapfile, float dx, float dy, float xoff, float yoff )
   {
-    try {
-      // TDLog.Log( TDLog.LOG_IO, "trd to svg. scrap file " + scrapfile );
-      FileInputStream fis = new FileInputStream( TDPath.getTdrFile( scrapfile ) );
-      BufferedInputStream bfis = new BufferedInputStream( fis );
-      DataInputStream dis = new DataInputStream( bfis );
-      int version = DrawingIO.skipTdrHeader( dis );
-      // Log.v("DistoXsvg", "tdr to svg " + scrapfile + " delta " + dx + " " + dy + " Offset " + xoff + " " + yoff );
-
-      DrawingPath path = null;
-      boolean done = false;
-      while ( ! done ) {
-        int what = dis.read();
-        switch ( what ) {
-          case 'P':
-            path = DrawingPointPath.loadDataStream( version, dis, dx, dy /*, null */ );
-            if ( path != null) toSvg( pw, (DrawingPointPath)path, pathToColor(path), xoff, yoff );
-            break;
-          case 'T':
-            path = DrawingLabelPath.loadDataStream( version, dis, dx, dy );
-            if ( path != null) toSvg( pw, (DrawingLabelPath)path, pathToColor(path), xoff, yoff );
-            break;
-          case 'L':
-            path = DrawingLinePath.loadDataStream( version, dis, dx, dy /*, null */ );
-            if ( path != null) toSvg( pw, (DrawingLinePath)path, pathToColor(path), xoff, yoff );
-            break;
-          case 'A':
-            path = DrawingAreaPath.loadDataStream( version, dis, dx, dy /*, null */ );
-            if ( path != null) toSvg( pw, (DrawingAreaPath)path, pathToColor(path), xoff, yoff );
-            break;
-          case 'U':
-            path = DrawingStationPath.loadDataStream( version, dis ); // consume DrawingStationName data
-            break;
-          case 'X':
-            path = DrawingStationName.loadDataStream( version, dis ); // consume DrawingStationName data
-            break;
-          case 'Y':
-            path = DrawingPhotoPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'Z':
-            path = DrawingAudioPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'J':
-            path = DrawingSpecialPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'F':
-            done = true;
-            break;
-	  default:
-	    TDLog.Error("TDR2SVG Error. unexpected code=" + what );
-	    return;
-        }
+    // TDLog.Log( TDLog.LOG_IO, "trd to svg. scrap file " + scrapfile );
+    // Log.v("DistoXsvg", "tdr to svg " + scrapfile + " delta " + dx + " " + dy + " Offset " + xoff + " " + yoff );
+    ArrayList< DrawingPath > items = DrawingIO.readScrapItems( scrapfile, dx, dy );
+    if ( items == null ) return;
+    for ( DrawingPath path : items ) {
+      if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
+        toSvg( pw, (DrawingLinePath)path, pathToColor(path), xoff, yoff );
+      } else if ( path.mType == DrawingPath.DRAWING_PATH_AREA ) {
+        toSvg( pw, (DrawingAreaPath)path, pathToColor(path), xoff, yoff );
+      } else if ( path.mType == DrawingPath.DRAWING_PATH_POINT ) {
+        if ( path instanceof DrawingPhotoPath || path instanceof DrawingAudioPath ) continue;
+        toSvg( pw, (DrawingPointPath)path, pathToColor(path), xoff, yoff );
       }
-    } catch ( FileNotFoundException e ) { // this is OK
-    } catch ( IOException e ) {
-      e.printStackTrace();
     }
   }
 
@@ -0,0 +1,313 @@
+/* @file DrawingTdrIndex.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: index of the items of a tdr file
+ *
+ * The index file is next to the tdr file, with suffix TDX_SUFFIX.
+ * It begins with a header that binds it to the tdr file (length and time), followed by
+ * the table of the items of the tdr ( paths, then user stations ):
+ *   'V' version
+ *   'K' tdr_length tdr_time
+ *   'N' nr_items
+ *   offset length type_code symbol_level level left top right bottom   (for each item)
+ *   'E'
+ * With the index, the tdr file is memory-mapped, and the items are kept as offsets in the
+ * mapped buffer ( deferred items ) until they are displayed, selected or exported.
+ * A deferred item is read into the stack slot it had in the load order.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.List;
+import java.util.ArrayList;
+
+// import android.util.Log;
+
+class DrawingTdrIndex
+{
+  // deferred item: the item data are read from the mapped tdr when the item is needed
+  static class Item
+  {
+    private final ByteBuffer mBuffer; // mapped tdr
+    private final int mOffset;
+    private final int mVersion;
+    private final int mWhat;          // item type code
+    private final float mDx, mDy;
+    private final String mSurveyName;
+    final String mPlotName;
+    final float left, top, right, bottom; // bounding box (scene coords)
+    final int mSymbolLevel;
+    final int mLevel;
+    int mSlot = -1; // position of the item in the stack of the manager, counting the deferred items before it (-1 user station)
+
+    Item( ByteBuffer buffer, int offset, int version, int what, float dx, float dy, String survey_name, String plot_name,
+          float l, float t, float r, float b, int symbol_level, int level )
+    {
+      mBuffer  = buffer;
+      mOffset  = offset;
+      mVersion = version;
+      mWhat    = what;
+      mDx = dx;
+      mDy = dy;
+      mSurveyName = survey_name;
+      mPlotName   = plot_name;
+      left   = l;
+      top    = t;
+      right  = r;
+      bottom = b;
+      mSymbolLevel = symbol_level;
+      mLevel       = level;
+    }
+
+    boolean isUserStation() { return mWhat == 'U'; }
+
+    boolean intersects( float l, float t, float r, float b ) { return left <= r && right >= l && top <= b && bottom >= t; }
+
+    /** read the item from the mapped tdr
+     * @return the item, or null on error
+     */
+    DrawingPath materialize()
+    {
+      ByteBuffer buffer = mBuffer.duplicate(); // independent position
+      buffer.position( mOffset );
+      DataInputStream dis = new DataInputStream( new BufferInputStream( buffer ) );
+      try {
+        int what = dis.read();
+        if ( what != mWhat ) {
+          TDLog.Error( "tdr index: bad item " + what + " at " + mOffset );
+          return null;
+        }
+        DrawingPath path;
+        synchronized( BrushManager.class ) { // the item may load a missing symbol
+          path = DrawingIO.loadPathDataStream( what, mVersion, dis, mDx, mDy, mSurveyName );
+        }
+        if ( path != null ) path.mPlotName = mPlotName;
+        return path;
+      } catch ( IOException e ) {
+        TDLog.Error( "tdr index: item read error " + e.getMessage() );
+      }
+      return null;
+    }
+  }
+
+  // input stream on a byte buffer
+  private static class BufferInputStream extends InputStream
+  {
+    private final ByteBuffer mBuffer;
+
+    BufferInputStream( ByteBuffer buffer ) { mBuffer = buffer; }
+
+    @Override
+    public int read() { return mBuffer.hasRemaining() ? ( mBuffer.get() & 0xff ) : -1; }
+
+    @Override
+    public int read( byte[] b, int off, int len )
+    {
+      if ( len == 0 ) return 0;
+      if ( ! mBuffer.hasRemaining() ) return -1;
+      len = Math.min( len, mBuffer.remaining() );
+      mBuffer.get( b, off, len );
+      return len;
+    }
+
+    @Override
+    public int available() { return mBuffer.remaining(); }
+  }
+
+  static String getIndexFile( String tdrname ) { return tdrname + TDPath.TDX_SUFFIX; }
+
+  // table of the snapshot being written
+  private int   mCount = 0;
+  private int[] mOffset = new int[ 64 ];
+  private int[] mLength = new int[ 64 ];
+  private int[] mWhat   = new int[ 64 ];
+  private int[] mSymbolLevel = new int[ 64 ];
+  private int[] mLevel  = new int[ 64 ];
+  private float[] mBBox = new float[ 4*64 ];
+
+  // -----------------------------------------------------------------
+  // WRITE
+
+  /** start writing a tdr snapshot
+   */
+  synchronized void startSnapshot() { mCount = 0; }
+
+  /** add an item to the snapshot
+   * @param path   item
+   * @param offset offset of the item data in the tdr
+   * @param data   data of the item written to the snapshot
+   */
+  synchronized void addSnapshotItem( DrawingPath path, int offset, byte[] data )
+  {
+    if ( mCount == mOffset.length ) {
+      int n = 2 * mCount;
+      mOffset = grow( mOffset, n );
+      mLength = grow( mLength, n );
+      mWhat   = grow( mWhat, n );
+      mSymbolLevel = grow( mSymbolLevel, n );
+      mLevel  = grow( mLevel, n );
+      float[] bbox = new float[ 4*n ];
+      System.arraycopy( mBBox, 0, bbox, 0, 4*mCount );
+      mBBox = bbox;
+    }
+    mOffset[ mCount ] = offset;
+    mLength[ mCount ] = data.length;
+    mWhat[ mCount ]   = data[0] & 0xff; // toDataStream writes the type code first
+    mSymbolLevel[ mCount ] = DrawingLevel.getSymbolLevel( path );
+    mLevel[ mCount ]  = path.mLevel;
+    int k = 4 * mCount;
+    mBBox[ k   ] = path.left;
+    mBBox[ k+1 ] = path.top;
+    mBBox[ k+2 ] = path.right;
+    mBBox[ k+3 ] = path.bottom;
+    ++ mCount;
+  }
+
+  /** the snapshot has been written to the tdr file: write the index
+   * @param tdrname   tdr file
+   */
+  synchronized void commitSnapshot( String tdrname )
+  {
+    File tdr = new File( tdrname );
+    String filename = getIndexFile( tdrname );
+    DataOutputStream dos = null;
+    try {
+      dos = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( filename ) ) );
+      dos.write( 'V' );
+      dos.writeInt( TopoDroidApp.VERSION_CODE );
+      dos.write( 'K' );
+      dos.writeLong( tdr.length() );
+      dos.writeLong( tdr.lastModified() );
+      dos.write( 'N' );
+      dos.writeInt( mCount );
+      for ( int j = 0; j < mCount; ++j ) {
+        dos.writeInt( mOffset[j] );
+        dos.writeInt( mLength[j] );
+        dos.write( mWhat[j] );
+        dos.writeInt( mSymbolLevel[j] );
+        dos.writeInt( mLevel[j] );
+        int k = 4 * j;
+        dos.writeFloat( mBBox[k] );
+        dos.writeFloat( mBBox[k+1] );
+        dos.writeFloat( mBBox[k+2] );
+        dos.writeFloat( mBBox[k+3] );
+      }
+      dos.write( 'E' );
+      dos.close();
+      dos = null;
+    } catch ( IOException e ) {
+      TDLog.Error( "tdr index " + filename + " write error " + e.getMessage() );
+      if ( dos != null ) try { dos.close(); } catch ( IOException ee ) { }
+      TDUtil.deleteFile( filename );
+    }
+  }
+
+  private static int[] grow( int[] a, int n )
+  {
+    int[] ret = new int[ n ];
+    System.arraycopy( a, 0, ret, 0, a.length );
+    return ret;
+  }
+
+  // -----------------------------------------------------------------
+  // READ
+
+  /** load the deferred items of a tdr file
+   * @param tdrname       tdr file
+   * @param dx            X offset
+   * @param dy            Y offset
+   * @param plot_name     plot name (can be null)
+   * @param localPalette  palette
+   * @param items         [output] deferred items
+   * @return true if the items have been loaded, false if the tdr must be read
+   * @note the tdr must be read if it has no valid index, or it has a journal
+   * @note this can run on a worker thread
+   */
+  static boolean load( String tdrname, float dx, float dy, String plot_name, SymbolsPalette localPalette, List< Item > items )
+  {
+    File tdr = new File( tdrname );
+    File tdx = new File( getIndexFile( tdrname ) );
+    if ( ! tdx.exists() || ! tdr.exists() ) return false;
+    if ( new File( DrawingJournal.getJournalFile( tdrname ) ).exists() ) return false;
+
+    long tdr_length = tdr.length();
+    ArrayList< Item > ret = null;
+    DataInputStream dis = null;
+    FileInputStream fis = null;
+    try {
+      dis = new DataInputStream( new BufferedInputStream( new FileInputStream( tdx ) ) );
+      if ( dis.read() != 'V' ) throw new IOException( "bad index header" );
+      dis.readInt();
+      if ( dis.read() != 'K' ) throw new IOException( "bad index header" );
+      long length = dis.readLong();
+      long time   = dis.readLong();
+      if ( length != tdr_length || time != tdr.lastModified() ) {
+        TDLog.Log( TDLog.LOG_IO, "tdr index " + tdrname + " does not match the tdr" );
+        dis.close();
+        return false;
+      }
+      if ( dis.read() != 'N' ) throw new IOException( "bad index table" );
+      int n = dis.readInt();
+
+      // the mapping remains valid after the channel is closed
+      fis = new FileInputStream( tdr );
+      ByteBuffer buffer = fis.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, tdr_length );
+      fis.close();
+      fis = null;
+
+      // tdr header: version and palette
+      DataInputStream hdr = new DataInputStream( new BufferInputStream( buffer.duplicate() ) );
+      if ( hdr.read() != 'V' ) throw new IOException( "bad tdr header" );
+      int version = hdr.readInt();
+      if ( hdr.read() != 'S' ) throw new IOException( "bad tdr header" );
+      hdr.readUTF();
+      if ( hdr.readInt() == PlotInfo.PLOT_PROJECTED ) hdr.readInt();
+      DrawingJournal.addPalette( hdr.readUTF(), hdr.readUTF(), hdr.readUTF(), localPalette );
+
+      String survey_name = DrawingIO.getSurveyName( tdrname );
+      ret = new ArrayList<>( n );
+      for ( int j = 0; j < n; ++j ) {
+        int offset = dis.readInt();
+        int len    = dis.readInt();
+        int what   = dis.read();
+        int symbol_level = dis.readInt();
+        int level  = dis.readInt();
+        float l = dis.readFloat() + dx;
+        float t = dis.readFloat() + dy;
+        float r = dis.readFloat() + dx;
+        float b = dis.readFloat() + dy;
+        if ( offset < 0 || len <= 0 || (long)offset + len > tdr_length ) throw new IOException( "bad index item " + j );
+        ret.add( new Item( buffer, offset, version, what, dx, dy, survey_name, plot_name, l, t, r, b, symbol_level, level ) );
+      }
+      if ( dis.read() != 'E' ) throw new IOException( "bad index end" );
+    } catch ( IOException e ) {
+      TDLog.Error( "tdr index " + tdrname + " error " + e.getMessage() );
+      ret = null;
+    } finally {
+      if ( dis != null ) try { dis.close(); } catch ( IOException e ) { }
+      if ( fis != null ) try { fis.close(); } catch ( IOException e ) { }
+    }
+    if ( ret == null ) return false;
+    items.addAll( ret );
+    TDLog.Log( TDLog.LOG_IO, "tdr index " + tdrname + " deferred items " + ret.size() );
+    return true;
+  }
+}
@@ -1113,6 +1113,28 @@ public class DrawingWindow extends ItemDrawer
     List< NumShot > shots       = mNum.getShots();
     List< NumSplay > splays     = mNum.getSplays();
 
+    addReferences( type, name, stations, shots, splays, cosp, sinp );
+    setGridBounds( type );
+
+    if ( can_toast ) {
+      if ( (! mNum.surveyAttached) && TDSetting.mCheckAttached ) {
+        if ( (! mNum.surveyExtend) && TDSetting.mCheckExtend && type == PlotInfo.PLOT_EXTENDED ) {
+          TDToast.makeWarn( R.string.survey_not_attached_extend );
+        } else {
+          TDToast.makeWarn( R.string.survey_not_attached );
+        }
+      } else if ( (! mNum.surveyExtend) && TDSetting.mCheckExtend && type == PlotInfo.PLOT_EXTENDED ) {
+        TDToast.makeWarn( R.string.survey_not_extend );
+      }
+    }
+    return true;
+  }
+
+  // add the references of legs, splays and stations to the current manager
+  // @param cosp, sinp   projection direction (only for PROJECTED)
+  private void addReferences( int type, String name, List< NumStation > stations, List< NumShot > shots, List< NumSplay > splays,
+                              float cosp, float sinp )
+  {
     String parent = ( TDInstance.xsections? null : name );
 
     if ( type == PlotInfo.PLOT_PLAN ) {
@@ -1211,19 +1233,55 @@ public class DrawingWindow extends ItemDrawer
         }
       }
     }
+  }
 
-    if ( can_toast ) {
-      if ( (! mNum.surveyAttached) && TDSetting.mCheckAttached ) {
-        if ( (! mNum.surveyExtend) && TDSetting.mCheckExtend && type == PlotInfo.PLOT_EXTENDED ) {
-          TDToast.makeWarn( R.string.survey_not_attached_extend );
-        } else {
-          TDToast.makeWarn( R.string.survey_not_attached );
-        }
-      } else if ( (! mNum.surveyExtend) && TDSetting.mCheckExtend && type == PlotInfo.PLOT_EXTENDED ) {
-        TDToast.makeWarn( R.string.survey_not_extend );
+  // survey bounds of the grids of the plan and of the profile: E-min E-max S-min S-max H-min H-max V-min V-max
+  private float[] mGridBounds = new float[8];
+
+  private void setGridBounds( int type )
+  {
+    if ( type == PlotInfo.PLOT_PLAN ) {
+      mGridBounds[0] = mNum.surveyEmin();
+      mGridBounds[1] = mNum.surveyEmax();
+      mGridBounds[2] = mNum.surveySmin();
+      mGridBounds[3] = mNum.surveySmax();
+    } else {
+      mGridBounds[4] = mNum.surveyHmin();
+      mGridBounds[5] = mNum.surveyHmax();
+      mGridBounds[6] = mNum.surveyVmin();
+      mGridBounds[7] = mNum.surveyVmax();
+    }
+  }
+
+  // @return true if the grid of the plot covers the survey (the grid has a 100 m margin)
+  private boolean gridCovers( long type )
+  {
+    final float slack = 50.0f;
+    if ( type == PlotInfo.PLOT_PLAN ) {
+      return mNum.surveyEmin() > mGridBounds[0] - slack && mNum.surveyEmax() < mGridBounds[1] + slack
+          && mNum.surveySmin() > mGridBounds[2] - slack && mNum.surveySmax() < mGridBounds[3] + slack;
+    }
+    return mNum.surveyHmin() > mGridBounds[4] - slack && mNum.surveyHmax() < mGridBounds[5] + slack
+        && mNum.surveyVmin() > mGridBounds[6] - slack && mNum.surveyVmax() < mGridBounds[7] + slack;
+  }
+
+  // add the legs, splays and stations of the last incremental reduction to the references of a plot
+  // this is called only for PLAN / PROFILE
+  private void appendReferences( int type, String name )
+  {
+    float cosp = 0;
+    float sinp = 0;
+    if ( type == PlotInfo.PLOT_PLAN ) {
+      mDrawingSurface.setManager( DrawingSurface.DRAWING_PLAN, type );
+    } else {
+      mDrawingSurface.setManager( DrawingSurface.DRAWING_PROFILE, type );
+      if ( type == PlotInfo.PLOT_PROJECTED ) {
+        cosp = TDMath.cosd( mPlot2.azimuth );
+        sinp = TDMath.sind( mPlot2.azimuth );
       }
     }
-    return true;
+    mDrawingSurface.updateReferences( mNum.getOldSplays() );
+    addReferences( type, name, mNum.getNewStations(), mNum.getNewShots(), mNum.getNewSplays(), cosp, sinp );
   }
 
   // --------------------------------------------------------------
@@ -2301,12 +2359,12 @@ public class DrawingWindow extends ItemDrawer
       if ( ! mDrawingSurface.resetManager( DrawingSurface.DRAWING_PLAN, mFullName1, false ) ) {
         // mAllSymbols =
         mDrawingSurface.modeloadDataStream( filename1b /*, filename1, FIXME-MISSING missingSymbols */ );
-        DrawingSurface.addManagerToCache( mFullName1 );
+        DrawingSurface.addManagerToCache( this, mFullName1, PlotInfo.PLOT_PLAN, 0 );
       }
       if ( ! mDrawingSurface.resetManager( DrawingSurface.DRAWING_PROFILE, mFullName2, PlotInfo.isExtended(mPlot2.type) ) ) {
         // mAllSymbols = mAllSymbols &&
         mDrawingSurface.modeloadDataStream( filename2b /*, filename2, FIXME-MISSING missingSymbols */ );
-        DrawingSurface.addManagerToCache( mFullName2 );
+        DrawingSurface.addManagerToCache( this, mFullName2, mPlot2.type, (int)mPlot2.azimuth );
       }
       
       String parent = ( TDInstance.xsections? null : mName);
@@ -2643,6 +2701,9 @@ public class DrawingWindow extends ItemDrawer
     }
   }
 
+  // called by the edit dialogs after they have modified an item in place
+  void itemEdited() { mDrawingSurface.itemEdited(); }
+
   void sharpenLine( DrawingLinePath line )
   {
     // Log.v("DistoX-C", "sharpenLine " + ( (mLastLinePath != null)? mLastLinePath.mLineType : "null" ) );
@@ -2804,7 +2865,7 @@ public class DrawingWindow extends ItemDrawer
         return false;
       }
       DrawingLinePath line = null;
-      line = mDrawingSurface.getLineToContinue( lp2.mFirst, mCurrentLine, mZoom, mSelectSize );
+      line = mDrawingSurface.getLineToContinue( lp2.first(), mCurrentLine, mZoom, mSelectSize );
       if ( line != null && mCurrentLine == line.mLineType ) { // continue line with the current line
         mDrawingSurface.addLineToLine( lp2, line );
         return false;
@@ -2821,29 +2882,29 @@ public class DrawingWindow extends ItemDrawer
       DrawingLinePath line1 = null;
       DrawingLinePath line2 = null;
       if ( mContinueLine == CONT_START || mContinueLine == CONT_BOTH ) {
-        line1 = mDrawingSurface.getLineToContinue( lp2.mFirst, mCurrentLine, mZoom, mSelectSize );
+        line1 = mDrawingSurface.getLineToContinue( lp2.first(), mCurrentLine, mZoom, mSelectSize );
       }
       if ( mContinueLine == CONT_END || mContinueLine == CONT_BOTH ) {
-        line2 = mDrawingSurface.getLineToContinue( lp2.mLast, mCurrentLine, mZoom, mSelectSize );
+        line2 = mDrawingSurface.getLineToContinue( lp2.last(), mCurrentLine, mZoom, mSelectSize );
       }
       if ( line1 != null ) {
-        float d1 = line1.mFirst.distance( lp1.mFirst );
-        float d2 = line1.mLast.distance( lp1.mFirst );
+        float d1 = line1.first().distance( lp1.first() );
+        float d2 = line1.last().distance( lp1.first() );
         if ( d1 < d2 ) {
           // line.reversePath();
-          lp1.moveFirstTo( line1.mFirst.x, line1.mFirst.y );
+          lp1.moveFirstTo( line1.first().x, line1.first().y );
         } else {
-          lp1.moveFirstTo( line1.mLast.x, line1.mLast.y );
+          lp1.moveFirstTo( line1.last().x, line1.last().y );
         }
       }
       if ( line2 != null ) {
-        float d1 = line2.mFirst.distance( lp1.mLast );
-        float d2 = line2.mLast.distance( lp1.mLast );
+        float d1 = line2.first().distance( lp1.last() );
+        float d2 = line2.last().distance( lp1.last() );
         if ( d1 < d2 ) {
           // line.reversePath();
-          lp1.moveLastTo( line2.mFirst.x, line2.mFirst.y );
+          lp1.moveLastTo( line2.first().x, line2.first().y );
         } else {
-          lp1.moveLastTo( line2.mLast.x, line2.mLast.y );
+          lp1.moveLastTo( line2.last().x, line2.last().y );
         }
       }
     }
@@ -2965,14 +3026,14 @@ public class DrawingWindow extends ItemDrawer
             //       "DX " + (xs - mCurrentAreaPath.mFirst.x) + " DY " + (ys - mCurrentAreaPath.mFirst.y ) );
             if (    PlotInfo.isVertical( mType )
                  && BrushManager.mAreaLib.isCloseHorizontal( mCurrentArea ) 
-                 && Math.abs( ys - mCurrentAreaPath.mFirst.y ) < 10  // 10 == 0.5 meter
+                 && Math.abs( ys - mCurrentAreaPath.first().y ) < 10  // 10 == 0.5 meter
               ) {
               DrawingAreaPath area = new DrawingAreaPath( mCurrentAreaPath.mAreaType,
                                                           mCurrentAreaPath.mAreaCnt, 
                                                           mCurrentAreaPath.mPrefix, 
                                                           TDSetting.mAreaBorder );
-              if ( xs - mCurrentAreaPath.mFirst.x > 20 ) { // 20 == 1.0 meter // CLOSE BOTTOM SURFACE
-                LinePoint lp = mCurrentAreaPath.mFirst; 
+              if ( xs - mCurrentAreaPath.first().x > 20 ) { // 20 == 1.0 meter // CLOSE BOTTOM SURFACE
+                LinePoint lp = mCurrentAreaPath.first(); 
                 float yy = lp.y;
                 mCurrentAreaPath.addPoint( xs, yy-0.001f );
                 area.addStartPoint( lp.x, lp.y );
@@ -2985,8 +3046,8 @@ public class DrawingWindow extends ItemDrawer
                   }
                 }
                 mCurrentAreaPath = area; // area is empty if not recreated
-              } else if ( mCurrentAreaPath.mFirst.x - xs > 20 ) { // 20 == 1.0 meter // CLOSE TOP SURFACE
-                LinePoint lp = mCurrentAreaPath.mFirst; 
+              } else if ( mCurrentAreaPath.first().x - xs > 20 ) { // 20 == 1.0 meter // CLOSE TOP SURFACE
+                LinePoint lp = mCurrentAreaPath.first(); 
                 float yy = lp.y;
                 mCurrentAreaPath.addPoint( xs, yy-0.001f );
                 area.addStartPoint( lp.x, lp.y );
@@ -3019,7 +3080,7 @@ public class DrawingWindow extends ItemDrawer
               if ( nPts > 1 ) {
 		if ( TDSetting.isLineStyleBezier() ) {
                   ArrayList< Point2D > pts = new ArrayList<>(); // [ nPts ];
-                  LinePoint lp = (mSymbol == Symbol.LINE )? mCurrentLinePath.mFirst : mCurrentAreaPath.mFirst;
+                  LinePoint lp = (mSymbol == Symbol.LINE )? mCurrentLinePath.first() : mCurrentAreaPath.first();
                   for ( ; lp != null; lp = lp.mNext ) {
                     pts.add( new Point2D( lp.x, lp.y ) );
                   }
@@ -3075,7 +3136,7 @@ public class DrawingWindow extends ItemDrawer
                   }
                 } else { // if ( TDSetting.isLineStyleSimplified() ) 
 		  Weeder weeder = new Weeder();
-                  LinePoint lp = (mSymbol == Symbol.LINE )? mCurrentLinePath.mFirst : mCurrentAreaPath.mFirst;
+                  LinePoint lp = (mSymbol == Symbol.LINE )? mCurrentLinePath.first() : mCurrentAreaPath.first();
                   for ( ; lp != null; lp = lp.mNext ) {
                     weeder.addPoint( lp.x, lp.y );
                   }
@@ -3558,7 +3619,7 @@ public class DrawingWindow extends ItemDrawer
     //         L1->L2 = atan2( (L2-L1).x, -(L2-l1).y )  Y is point downward North upward
     //         azimuth = dir(L1->L2) + 90
     //
-    LinePoint l2 = currentLine.mFirst; // .mNext;
+    LinePoint l2 = currentLine.first(); // .mNext;
     LinePoint l1 = l2.mNext;
     // Log.v("DistoX", "section line L1 " + l1.x + " " + l1.y + " L2 " + l2.x + " " + l2.y );
 
@@ -3640,8 +3701,8 @@ public class DrawingWindow extends ItemDrawer
       mDrawingSurface.addDrawingPath( currentLine );
 
       if ( TDSetting.mAutoSectionPt && section_id != null ) {
-        float x5 = currentLine.mLast.x + currentLine.mDx * 20; 
-        float y5 = currentLine.mLast.y + currentLine.mDy * 20; 
+        float x5 = currentLine.last().x + currentLine.mDx * 20; 
+        float y5 = currentLine.last().y + currentLine.mDy * 20; 
         // FIXME_LANDSCAPE if ( mLandscape ) { float t=x5; x5=-y5; y5=t; }
         // FIXME String scrap_option = "-scrap " /* + TDInstance.survey + "-" */ + section_id;
         String scrap_option = "-scrap " + TDInstance.survey + "-" + section_id;
@@ -5060,7 +5121,7 @@ public class DrawingWindow extends ItemDrawer
               DrawingPointPath point = (DrawingPointPath)(sp.mItem);
               // Log.v("DistoX", "edit point type " + point.mPointType );
               if ( BrushManager.isPointPhoto( point.mPointType ) ) {
-                new DrawingPhotoEditDialog( mActivity, /* this, mApp, */ (DrawingPhotoPath)point ).show();
+                new DrawingPhotoEditDialog( mActivity, this, /* mApp, */ (DrawingPhotoPath)point ).show();
               } else if ( BrushManager.isPointAudio( point.mPointType ) ) {
                 if ( audioCheck ) {
                   DrawingAudioPath audio = (DrawingAudioPath)point;
@@ -5484,9 +5545,14 @@ public class DrawingWindow extends ItemDrawer
       doRestart();
       updateSplays( mApp.mSplayMode );
     } else {
-      List<DBlock> list = mApp_mData.selectAllShots( mSid, TDStatus.NORMAL );
-      mNum = new DistoXNum( list, mPlot1.start, mPlot1.view, mPlot1.hide, mDecl, mFormatClosure );
-      recomputeReferences( TopoDroidApp.mScaleFactor );
+      // add the new shots to the data reduction and to the references, if possible, otherwise recompute them
+      if ( mNum != null && mNum.appendData( mApp_mData.selectAllShotsAfter( mNum.getTailId(), mSid, TDStatus.NORMAL ) ) ) {
+        appendReferences();
+      } else {
+        List<DBlock> list = mApp_mData.selectAllShots( mSid, TDStatus.NORMAL );
+        mNum = new DistoXNum( list, mPlot1.start, mPlot1.view, mPlot1.hide, mDecl, mFormatClosure );
+        recomputeReferences( TopoDroidApp.mScaleFactor );
+      }
       // if ( mType == (int)PlotInfo.PLOT_PLAN ) {
       //   if ( mPlot2 != null ) {
       //     computeReferences( (int)mPlot2.type, mPlot2.name, mApp.mScaleFactor, false );
@@ -5546,6 +5612,21 @@ public class DrawingWindow extends ItemDrawer
     computeReferences( (int)mType, mName, zoom, false );
   }
 
+  // called when shots have been appended to the data reduction
+  private void appendReferences()
+  {
+    if ( ! gridCovers( PlotInfo.PLOT_PLAN ) || ( mPlot2 != null && ! gridCovers( mPlot2.type ) ) ) {
+      recomputeReferences( TopoDroidApp.mScaleFactor );
+      return;
+    }
+    if ( mType == (int)PlotInfo.PLOT_PLAN ) {
+      if ( mPlot2 != null ) appendReferences( mPlot2.type, mPlot2.name );
+    } else if ( PlotInfo.isProfile( mType ) ) {
+      appendReferences( mPlot1.type, mPlot1.name );
+    }
+    appendReferences( (int)mType, mName );
+  }
+
   // @Override
   // public void updateBlockList( CalibCBlock blk ) { }
   
@@ -5827,19 +5908,19 @@ public class DrawingWindow extends ItemDrawer
       mDrawingSurface.resetManager( DrawingSurface.DRAWING_PLAN, null, false );
       mDrawingSurface.modeloadDataStream( tdr /*, th2, null */ ); // no missing symbols
       mDrawingSurface.linkSections();
-      DrawingSurface.addManagerToCache( mFullName1 );
+      DrawingSurface.addManagerToCache( this, mFullName1, PlotInfo.PLOT_PLAN, 0 );
       setPlotType1( true );
     } else if ( PlotInfo.isProfile( type ) ) {
       mDrawingSurface.resetManager( DrawingSurface.DRAWING_PROFILE, null, PlotInfo.isExtended(type) );
       mDrawingSurface.modeloadDataStream( tdr /*, th2,  null */ );
       mDrawingSurface.linkSections();
-      DrawingSurface.addManagerToCache( mFullName2 );
+      DrawingSurface.addManagerToCache( this, mFullName2, type, (int)mPlot2.azimuth );
       // now switch to extended view FIXME-VIEW
       setPlotType2( true );
     } else {
       mDrawingSurface.resetManager( DrawingSurface.DRAWING_SECTION, null, false );
       mDrawingSurface.modeloadDataStream( tdr /*, th2, null */ );
-      // DrawingSurface.addManagerToCache( mFullName2 ); // sections are not cached
+      // DrawingSurface.addManagerToCache( this, mFullName2 ); // sections are not cached
       setPlotType3( );
       DrawingUtil.addGrid( -10, 10, -10, 10, 0.0f, 0.0f, mDrawingSurface );
       makeSectionReferences( mApp_mData.selectAllShots( mSid, TDStatus.NORMAL ), -1, 0 );
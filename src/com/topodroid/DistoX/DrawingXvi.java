@@ -14,15 +14,12 @@ package com.topodroid.DistoX;
 // import android.util.Log;
 
 import java.util.Locale;
+import java.util.ArrayList;
 
 // import java.io.FileWriter;
 import java.io.StringWriter;
 import java.io.PrintWriter;
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import android.graphics.RectF;
@@ -266,7 +263,7 @@ class DrawingXvi
   static private void toXviPointLine( PrintWriter pw, DrawingPointLinePath lp, String color, float xoff, float yoff, boolean closed )
   {
     float bezier_step = TDSetting.getBezierStep();
-    LinePoint p = lp.mFirst;
+    LinePoint p = lp.first();
     float x0 = TDSetting.mToTherion*(xoff+p.x);
     float y0 = TDSetting.mToTherion*(yoff-p.y);
     float x00 = x0;
@@ -440,60 +437,17 @@ class DrawingXvi
   {
     // TDLog.Log( TDLog.LOG_IO, "trd to xvi. scrap file " + scrapfile );
     // Log.v( "DistoXX", "trd to xvi. scrap file " + scrapfile + " shift " + dx + " " + dy + " offset " + xoff + " " + yoff );
-    try {
-      FileInputStream fis = new FileInputStream( TDPath.getTdrFile( scrapfile ) );
-      BufferedInputStream bfis = new BufferedInputStream( fis );
-      DataInputStream dis = new DataInputStream( bfis );
-      int version = DrawingIO.skipTdrHeader( dis );
-      // Log.v("DistoX", "tdr to xvi delta " + dx + " " + dy + " Offset " + xoff + " " + yoff );
-
-      DrawingPath path = null;
-      boolean done = false;
-      while ( ! done ) {
-        int what = dis.read();
-        switch ( what ) {
-          case 'P':
-            path = DrawingPointPath.loadDataStream( version, dis, dx, dy /*, null */ );
-            if ( path != null) toXvi( pw, (DrawingPointPath)path, xoff, yoff );
-            break;
-          case 'T':
-            path = DrawingLabelPath.loadDataStream( version, dis, dx, dy );
-            if ( path != null) toXvi( pw, (DrawingLabelPath)path, xoff, yoff );
-            break;
-          case 'L':
-            path = DrawingLinePath.loadDataStream( version, dis, dx, dy /*, null */ );
-            if ( path != null) toXvi( pw, (DrawingLinePath)path, xoff, yoff );
-            break;
-          case 'A':
-            path = DrawingAreaPath.loadDataStream( version, dis, dx, dy /*, null*/ );
-            if ( path != null) toXvi( pw, (DrawingAreaPath)path, xoff, yoff );
-            break;
-          case 'U':
-            path = DrawingStationPath.loadDataStream( version, dis ); // consume DrawingStationName data
-            break;
-          case 'X':
-            path = DrawingStationName.loadDataStream( version, dis ); // consume DrawingStationName data
-            break;
-          case 'Y':
-            path = DrawingPhotoPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'Z':
-            path = DrawingAudioPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'J':
-            path = DrawingSpecialPath.loadDataStream( version, dis, dx, dy );
-            break;
-          case 'F':
-            done = true;
-            break;
-	  default:
-	    TDLog.Error("TDR2XVI Error. unexpected code=" + what );
-	    return;
-        }
+    ArrayList< DrawingPath > items = DrawingIO.readScrapItems( scrapfile, dx, dy );
+    if ( items == null ) return;
+    for ( DrawingPath path : items ) {
+      if ( path.mType == DrawingPath.DRAWING_PATH_LINE ) {
+        toXvi( pw, (DrawingLinePath)path, xoff, yoff );
+      } else if ( path.mType == DrawingPath.DRAWING_PATH_AREA ) {
+        toXvi( pw, (DrawingAreaPath)path, xoff, yoff );
+      } else if ( path.mType == DrawingPath.DRAWING_PATH_POINT ) {
+        if ( path instanceof DrawingPhotoPath || path instanceof DrawingAudioPath ) continue;
+        toXvi( pw, (DrawingPointPath)path, xoff, yoff );
       }
-    } catch ( FileNotFoundException e ) { // this is OK
-    } catch ( IOException e ) {
-      e.printStackTrace();
     }
   }
 
@@ -70,7 +70,7 @@ class EraseAction // implements ICanvasCommand
   private void setPoints( ArrayList<LinePoint> pts, DrawingPointLinePath line )
   {
     LinePoint prev = null;
-    for ( LinePoint lp = line.mFirst; lp != null; lp = lp.mNext ) {
+    for ( LinePoint lp = line.first(); lp != null; lp = lp.mNext ) {
       prev = new LinePoint( lp, prev );
       pts.add( prev );
     }
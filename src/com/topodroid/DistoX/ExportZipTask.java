@@ -21,10 +21,12 @@ class ExportZipTask extends AsyncTask< Void, Void, Boolean >
   private Archiver mArchiver;
   private String   mSaved;
   private TopoDroidApp mApp;
+  private int[]    mTypes; // survey data formats of the archive
   
-  ExportZipTask( Context context, TopoDroidApp app )
+  ExportZipTask( Context context, TopoDroidApp app, int[] types )
   {
     mApp   = app;
+    mTypes = types;
     mArchiver = new Archiver( );
     mSaved    = context.getResources().getString( R.string.zip_saved );
   }
@@ -32,7 +34,22 @@ class ExportZipTask extends AsyncTask< Void, Void, Boolean >
   @Override
   protected Boolean doInBackground( Void... arg )
   {
-    TopoDroidApp.doExportDataSync( TDSetting.mExportShotsFormat );
+    if ( mTypes.length == 1 ) {
+      TopoDroidApp.doExportDataSync( mTypes[0] );
+      return mArchiver.archive( mApp );
+    }
+    // several formats: the survey data are loaded once
+    SurveyExportPipeline pipeline = TopoDroidApp.doExportDataSync( mTypes, true );
+    if ( pipeline != null ) {
+      for ( int k = 0; k < pipeline.size(); ++k ) {
+        if ( pipeline.getFilename( k ) == null ) {
+          TDLog.Error( "zip export failed: type " + pipeline.getType( k ) );
+        } else {
+          TDLog.Log( TDLog.LOG_IO, "zip export type " + pipeline.getType( k ) + " time " + pipeline.getMillis( k ) + " ms" );
+        }
+      }
+      TDLog.Log( TDLog.LOG_IO, "zip export: model " + pipeline.getModelMillis() + " ms, total " + pipeline.getTotalMillis() + " ms" );
+    }
     return mArchiver.archive( mApp );
   }
 
@@ -80,6 +80,9 @@ public class GMActivity extends Activity
   private String mCalibName;
   // private ConnHandler mHandler;
 
+  private CalibStream mStream = null; // streaming calibration (null if off)
+  private float mStreamDelta = -1;    // delta of the streaming calibration estimate (negative if none)
+
   static final private int[] izons = {
                         R.drawable.iz_toggle,
                         R.drawable.iz_bt,
@@ -596,7 +599,56 @@ public class GMActivity extends Activity
   @Override
   public void updateBlockList( long blk_id ) 
   {
-    updateCBlockList( mApp_mDData.selectGM( blk_id, TDInstance.cid ) );
+    CalibCBlock blk = mApp_mDData.selectGM( blk_id, TDInstance.cid );
+    updateCBlockList( blk );
+    if ( mStream != null && blk != null ) {
+      mStream.add( blk );
+      setTitle( getStreamTitle() );
+    }
+  }
+
+  // -----------------------------------------------------------
+  // streaming calibration
+
+  private void startStream()
+  {
+    if ( ! TDLevel.overBasic || mStream != null ) return;
+    mStream = new CalibStream( this, mAlgo == CalibInfo.ALGO_NON_LINEAR );
+  }
+
+  private void stopStream()
+  {
+    if ( mStream == null ) return;
+    mStream.stop();
+    mStream = null;
+  }
+
+  private void resetStream()
+  {
+    if ( mStream == null ) return;
+    mStreamDelta = -1;
+    mStream.reset( mApp_mDData.selectAllGMs( TDInstance.cid, 0, true ) ); // true: include negative-grp
+  }
+
+  // @param nr     number of data
+  // @param iter   number of iterations
+  // @param delta  estimate delta
+  void setStreamEstimate( int nr, int iter, float delta )
+  {
+    if ( mStream == null ) return;
+    // Log.v("DistoX", "stream estimate data " + nr + " iter " + iter + " delta " + delta );
+    mStreamDelta = delta;
+    setTitle( getStreamTitle() );
+  }
+
+  // title with the coverages and the delta of the streaming calibration
+  private String getStreamTitle()
+  {
+    if ( mStream == null ) return mCalibName;
+    if ( mStreamDelta < 0 ) {
+      return String.format( Locale.US, "%s  G %.0f%% M %.0f%%", mCalibName, mStream.getCoverageG(), mStream.getCoverageM() );
+    }
+    return String.format( Locale.US, "%s  G %.0f%% M %.0f%%  %.2f", mCalibName, mStream.getCoverageG(), mStream.getCoverageM(), mStreamDelta );
   }
 
   @Override
@@ -619,7 +671,8 @@ public class GMActivity extends Activity
       List<CalibCBlock> list = mApp_mDData.selectAllGMs( TDInstance.cid, mBlkStatus, true ); // true: include negative-grp
       // Log.v( TopoDroidApp.TAG, "update Display GMs " + list.size() );
       updateGMList( list );
-      setTitle( mCalibName );
+      resetStream();
+      setTitle( getStreamTitle() );
     }
   }
 
@@ -814,7 +867,7 @@ public class GMActivity extends Activity
 
   private void resetTitle()
   {
-    setTitle( mCalibName );
+    setTitle( getStreamTitle() );
     if ( mBlkStatus == 0 ) {
       setTitleColor( TDColor.TITLE_NORMAL );
     } else {
@@ -1083,6 +1136,7 @@ public class GMActivity extends Activity
     super.onResume();
     // if ( mApp.mComm != null ) { mApp.mComm.resume(); }
     // Log.v( TopoDroidApp.TAG, "onResume ");
+    startStream();
     updateDisplay( );
     // mApp.registerConnListener( mHandler );
     TopoDroidApp.mGMActivityVisible = true;
@@ -1093,6 +1147,7 @@ public class GMActivity extends Activity
   { 
     super.onPause();
     TopoDroidApp.mGMActivityVisible = false;
+    stopStream();
     // mApp.unregisterConnListener( mHandler );
     // if ( mApp.mComm != null ) { mApp.mComm.suspend(); }
   }
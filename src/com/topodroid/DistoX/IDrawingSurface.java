@@ -24,4 +24,8 @@ interface IDrawingSurface
 
   boolean isDrawing();
 
+  /** @return the max delay before the scene is repainted [msec], 0 if the scene changes only when it is invalidated
+   */
+  long refreshDelay();
+
 }
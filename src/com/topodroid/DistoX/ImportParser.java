@@ -17,7 +17,6 @@ import java.io.IOException;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.util.ArrayList;
-import java.util.regex.Pattern;
 
 // import android.util.Log;
 
@@ -58,7 +57,7 @@ class ImportParser
 
   int mLineCnt;  // line counter
 
-  Pattern pattern = Pattern.compile( "\\s+" );
+  final ParserScanline mScan = new ParserScanline(); // line tokenizer
 
   ImportParser( boolean apply_declination ) // throws ParserException
   {
@@ -74,6 +73,7 @@ class ImportParser
     if ( line == null ) return null; // EOF
     line = line.trim();
     ++mLineCnt;
+    if ( ! line.endsWith( "\\" ) ) return line;
     StringBuilder ret = new StringBuilder();
     while ( line != null && line.endsWith( "\\" ) ) {
       ret.append( line.replace( '\\', ' ' ) ); // FIXME
@@ -84,11 +84,6 @@ class ImportParser
     return ret.toString();
   }
 
-  String[] splitLine( String line )
-  {
-     return pattern.split(line); // line.split( "\\s+" );
-  }
-   
   /** read input file
    * @param filename name of the file to parse
    */
@@ -0,0 +1,186 @@
+/* @file LinePointArray.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid drawing: packed points of a line
+ *
+ * The points of a line that has been read from file are stored in primitive arrays
+ * (coords, control-points, flags) until the line-points are needed, eg, to select or to edit the line.
+ * The control-points array is allocated only if a point has control-points.
+ *
+ *    xy:    x0 y0 x1 y1 ...                 2 floats per point
+ *    cp:    x1 y1 x2 y2 (point 0) ...       4 floats per point
+ *    flags: FLAG_CP                         1 byte per point
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+class LinePointArray
+{
+  static final byte FLAG_CP = 0x01; // the point has control-points
+
+  private float[] mXY;
+  private float[] mCP = null;
+  private byte[]  mFlags;
+  private int mSize = 0;
+
+  LinePointArray( int capacity )
+  {
+    if ( capacity < 4 ) capacity = 4;
+    mXY    = new float[ 2 * capacity ];
+    mFlags = new byte[ capacity ];
+  }
+
+  int size() { return mSize; }
+
+  float x( int k ) { return mXY[ 2*k ]; }
+  float y( int k ) { return mXY[ 2*k+1 ]; }
+  boolean hasCP( int k ) { return ( mFlags[k] & FLAG_CP ) != 0; }
+
+  // control-points of the k-th point: meaningful only if hasCP( k )
+  float x1( int k ) { return ( mCP == null )? 0 : mCP[ 4*k ]; }
+  float y1( int k ) { return ( mCP == null )? 0 : mCP[ 4*k+1 ]; }
+  float x2( int k ) { return ( mCP == null )? 0 : mCP[ 4*k+2 ]; }
+  float y2( int k ) { return ( mCP == null )? 0 : mCP[ 4*k+3 ]; }
+
+  private void ensureCapacity()
+  {
+    if ( mSize < mFlags.length ) return;
+    int capacity = 2 * mFlags.length;
+    float[] xy = new float[ 2 * capacity ];
+    System.arraycopy( mXY, 0, xy, 0, 2 * mSize );
+    mXY = xy;
+    byte[] flags = new byte[ capacity ];
+    System.arraycopy( mFlags, 0, flags, 0, mSize );
+    mFlags = flags;
+    if ( mCP != null ) {
+      float[] cp = new float[ 4 * capacity ];
+      System.arraycopy( mCP, 0, cp, 0, 4 * mSize );
+      mCP = cp;
+    }
+  }
+
+  /** append a point without control-points
+   * @param x,y   point coords
+   */
+  void add( float x, float y )
+  {
+    ensureCapacity();
+    mXY[ 2*mSize ]   = x;
+    mXY[ 2*mSize+1 ] = y;
+    mFlags[ mSize ] = 0;
+    ++ mSize;
+  }
+
+  /** append a point with control-points
+   * @param x1,y1  first control-point
+   * @param x2,y2  second control-point
+   * @param x,y    point coords
+   */
+  void add( float x1, float y1, float x2, float y2, float x, float y )
+  {
+    ensureCapacity();
+    if ( mCP == null ) mCP = new float[ 4 * mFlags.length ];
+    mXY[ 2*mSize ]   = x;
+    mXY[ 2*mSize+1 ] = y;
+    int k = 4*mSize;
+    mCP[ k   ] = x1;
+    mCP[ k+1 ] = y1;
+    mCP[ k+2 ] = x2;
+    mCP[ k+3 ] = y2;
+    mFlags[ mSize ] = FLAG_CP;
+    ++ mSize;
+  }
+
+  /** shift the points - same as LinePoint.shiftBy on every point
+   * @param dx,dy   shift vector
+   * @note the first control-point of the first point is not shifted
+   */
+  void shiftBy( float dx, float dy )
+  {
+    int n = 2 * mSize;
+    for ( int k = 0; k < n; k += 2 ) {
+      mXY[ k   ] += dx;
+      mXY[ k+1 ] += dy;
+    }
+    if ( mCP == null ) return;
+    for ( int k = 0; k < mSize; ++k ) {
+      if ( ( mFlags[k] & FLAG_CP ) == 0 ) continue;
+      int j = 4*k;
+      if ( k > 0 ) {
+        mCP[ j   ] += dx;
+        mCP[ j+1 ] += dy;
+      }
+      mCP[ j+2 ] += dx;
+      mCP[ j+3 ] += dy;
+    }
+  }
+
+  /** flip the X coords - same as LinePoint.flipXAxis on every point
+   * @param dx   twice the flip axis X coord
+   */
+  void flipXAxis( float dx )
+  {
+    int n = 2 * mSize;
+    for ( int k = 0; k < n; k += 2 ) mXY[ k ] = dx - mXY[ k ];
+    if ( mCP == null ) return;
+    n = 4 * mSize;
+    for ( int k = 0; k < n; k += 2 ) mCP[ k ] = dx - mCP[ k ];
+  }
+
+  /** rotate the points - same as LinePoint.landscapeToPortrait on every point
+   */
+  void landscapeToPortrait()
+  {
+    int n = 2 * mSize;
+    for ( int k = 0; k < n; k += 2 ) {
+      float t = mXY[ k ];
+      mXY[ k ]   = - mXY[ k+1 ];
+      mXY[ k+1 ] = t;
+    }
+    if ( mCP == null ) return;
+    n = 4 * mSize;
+    for ( int k = 0; k < n; k += 2 ) {
+      float t = mCP[ k ];
+      mCP[ k ]   = - mCP[ k+1 ];
+      mCP[ k+1 ] = t;
+    }
+  }
+
+  /** clear the control-points flags
+   */
+  void clearCP()
+  {
+    for ( int k = 0; k < mSize; ++k ) mFlags[k] = 0;
+  }
+
+  /** make the linked line-points
+   * @return the first line-point (null if there are no points)
+   */
+  LinePoint toLinePoints()
+  {
+    LinePoint first = null;
+    LinePoint lp = null;
+    for ( int k = 0; k < mSize; ++k ) {
+      if ( ( mFlags[k] & FLAG_CP ) != 0 ) {
+        int j = 4*k;
+        lp = new LinePoint( mCP[j], mCP[j+1], mCP[j+2], mCP[j+3], mXY[2*k], mXY[2*k+1], lp );
+      } else {
+        lp = new LinePoint( mXY[2*k], mXY[2*k+1], lp );
+        if ( mCP != null ) {
+          int j = 4*k;
+          lp.x1 = mCP[ j   ];
+          lp.y1 = mCP[ j+1 ];
+          lp.x2 = mCP[ j+2 ];
+          lp.y2 = mCP[ j+3 ];
+        }
+      }
+      if ( first == null ) first = lp;
+    }
+    return first;
+  }
+}
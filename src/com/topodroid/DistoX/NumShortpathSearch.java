@@ -0,0 +1,162 @@
+/* @file NumShortpathSearch.java
+ *
+ * @author marco corvi
+ * @date jan 2013
+ *
+ * @brief TopoDroid survey reduction shortest path search (Dijkstra)
+ *        uses the station adjacency lists, and the indices of the stations in the
+ *        station set to keep the search state in primitive arrays
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+// import android.util.Log;
+
+class NumShortpathSearch
+{
+  static final float FAR = 100000.0f; // distance of unreached stations
+
+  private NumStationSet mStations;
+
+  // search state, indexed by station index
+  private float[] mDist;   // shortest-path length
+  private float[] mDist2;  // sum of the squared lengths of the shortest-path segments
+  private int[]   mNr;     // number of segments of the shortest-path
+  private int[]   mStamp;  // search stamp: state is valid only if equal to the current stamp
+  private int[]   mPos;    // position in the heap (-1 not in the heap)
+  private int     mCurStamp;
+
+  // binary min-heap of station indices
+  private int[]   mHeap;
+  private int     mHeapSize;
+
+  NumShortpathSearch( NumStationSet stations )
+  {
+    mStations = stations;
+    mCurStamp = 0;
+    allocate( 64 );
+  }
+
+  private void allocate( int size )
+  {
+    mDist  = new float[ size ];
+    mDist2 = new float[ size ];
+    mNr    = new int[ size ];
+    mStamp = new int[ size ];
+    mPos   = new int[ size ];
+    mHeap  = new int[ size ];
+    mCurStamp = 0;
+  }
+
+  /** shortest-path between two stations, not using the legs between the two stations
+   * @param s1        first station
+   * @param s2        second station
+   * @param max_shot  use only the legs with index less than this
+   * @return shortest-path from s1 to s2 (distance FAR if s2 cannot be reached)
+   */
+  NumShortpath shortestPath( NumStation s1, NumStation s2, int max_shot )
+  {
+    if ( s1.mIndex < 0 || s2.mIndex < 0 ) return new NumShortpath( 0, FAR, 0 );
+    if ( mDist.length < mStations.size() ) allocate( mStations.size() * 2 );
+    ++ mCurStamp;
+    if ( mCurStamp == Integer.MAX_VALUE ) { // stamp overflow: reset the stamps
+      for ( int k = 0; k < mStamp.length; ++k ) mStamp[k] = 0;
+      mCurStamp = 1;
+    }
+    mHeapSize = 0;
+
+    int k1 = s1.mIndex;
+    int k2 = s2.mIndex;
+    reach( k1, 0, 0, 0 );
+    while ( mHeapSize > 0 ) {
+      int k = pop();
+      if ( k == k2 ) break;
+      NumStation s = mStations.getStation( k );
+      float d  = mDist[k];
+      float d2 = mDist2[k];
+      int   nr = mNr[k];
+      for ( NumShot e : s.mLinks ) {
+        if ( e.mIndex >= max_shot ) continue;
+        if ( ( e.from == s1 && e.to == s2 ) || ( e.from == s2 && e.to == s1 ) ) continue;
+        NumStation t = ( e.from == s )? e.to : e.from;
+        int kt = t.mIndex;
+        if ( kt < 0 ) continue; // station not in the set
+        float len = e.length();
+        float dt  = d + len;
+        if ( mStamp[kt] != mCurStamp ) {
+          reach( kt, nr+1, dt, d2 + len*len );
+        } else if ( dt < mDist[kt] && mPos[kt] >= 0 ) {
+          mNr[kt]    = nr+1;
+          mDist[kt]  = dt;
+          mDist2[kt] = d2 + len*len;
+          siftUp( mPos[kt] );
+        }
+      }
+    }
+    if ( mStamp[k2] != mCurStamp ) return new NumShortpath( 0, FAR, 0 );
+    return new NumShortpath( mNr[k2], mDist[k2], mDist2[k2] );
+  }
+
+  // first time a station is reached in the current search
+  private void reach( int k, int nr, float d, float d2 )
+  {
+    mStamp[k] = mCurStamp;
+    mNr[k]    = nr;
+    mDist[k]  = d;
+    mDist2[k] = d2;
+    mHeap[ mHeapSize ] = k;
+    mPos[k] = mHeapSize;
+    ++ mHeapSize;
+    siftUp( mHeapSize - 1 );
+  }
+
+  private int pop()
+  {
+    int k = mHeap[0];
+    mPos[k] = -1;
+    -- mHeapSize;
+    if ( mHeapSize > 0 ) {
+      mHeap[0] = mHeap[ mHeapSize ];
+      mPos[ mHeap[0] ] = 0;
+      siftDown( 0 );
+    }
+    return k;
+  }
+
+  private void siftUp( int i )
+  {
+    int k = mHeap[i];
+    float d = mDist[k];
+    while ( i > 0 ) {
+      int p = (i-1)/2;
+      int kp = mHeap[p];
+      if ( mDist[kp] <= d ) break;
+      mHeap[i] = kp;
+      mPos[kp] = i;
+      i = p;
+    }
+    mHeap[i] = k;
+    mPos[k]  = i;
+  }
+
+  private void siftDown( int i )
+  {
+    int k = mHeap[i];
+    float d = mDist[k];
+    for ( ; ; ) {
+      int c = 2*i+1;
+      if ( c >= mHeapSize ) break;
+      if ( c+1 < mHeapSize && mDist[ mHeap[c+1] ] < mDist[ mHeap[c] ] ) ++c;
+      int kc = mHeap[c];
+      if ( mDist[kc] >= d ) break;
+      mHeap[i] = kc;
+      mPos[kc] = i;
+      i = c;
+    }
+    mHeap[i] = k;
+    mPos[k]  = i;
+  }
+}
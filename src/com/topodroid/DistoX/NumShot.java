@@ -20,6 +20,7 @@ class NumShot
   final DBlock firstBlock;
   final ArrayList<DBlock> blocks;
 
+  int mIndex;     // index in the list of shots (order of insertion)
   int mBranchDir; // branch direction
   int mDirection; // direction of the block (1 same, -1 opposite)
                   // this is used only to decide between barrier and hidden
@@ -55,6 +56,7 @@ class NumShot
     mIgnoreExtend = ( blk.getIntExtend() == DBlock.EXTEND_IGNORE);
     mUsed = false;
     mDirection = dir;
+    mIndex = -1;
     mBranchDir = 0;
     branch = null;
     blocks = new ArrayList<>();
@@ -69,6 +71,28 @@ class NumShot
     firstBlock = blk;
   }
 
+  /** copy of a shot between other stations - used by the translated copy of a reduction
+   * @param sh   shot
+   * @param f    from station of the copy
+   * @param t    to station of the copy
+   * @note the copy shares the blocks and the average leg of the shot
+   */
+  NumShot( NumShot sh, NumStation f, NumStation t )
+  {
+    from = f;
+    to   = t;
+    mIgnoreExtend = sh.mIgnoreExtend;
+    mUsed = sh.mUsed;
+    mDirection = sh.mDirection;
+    mIndex = sh.mIndex;
+    mBranchDir = sh.mBranchDir;
+    branch = null;
+    blocks = sh.blocks;
+    mAvgLeg  = sh.mAvgLeg;
+    mAnomaly = sh.mAnomaly;
+    firstBlock = sh.firstBlock;
+  }
+
   void addBlock( DBlock blk )
   {
     int n = blocks.size();
@@ -113,6 +137,20 @@ class NumShot
     st.s = sf.s - dn;
   }
 
+  /** displacement from "from" to "to", in the frame of the stations coords (no declination)
+   * @param ret   east, south, vertical (downward) [output]
+   */
+  void getDisplacement( double[] ret )
+  {
+    double l = length();
+    double b = ( bearing() - mAvgLeg.mDecl - mAnomaly ) * TDMath.DEG2RAD;
+    double c = clino() * TDMath.DEG2RAD;
+    double h = l * Math.abs( Math.cos( c ) );
+    ret[0] =   h * Math.sin( b );
+    ret[1] = - h * Math.cos( b );
+    ret[2] = - l * Math.sin( c );
+  }
+
   // float length() { return block.mLength; }
 
   // boolean connectedTo( NumShot sh ) 
@@ -0,0 +1,242 @@
+/* @file NumSparseCholesky.java
+ *
+ * @author marco corvi
+ * @date jan 2013
+ *
+ * @brief TopoDroid survey reduction: sparse symmetric positive-definite solver
+ *        for the normal equations of a network adjustment (graph laplacian).
+ *        The unknowns are reordered with reverse Cuthill-McKee, and the matrix is
+ *        factored with an envelope (profile) Cholesky in double precision.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+// import android.util.Log;
+
+class NumSparseCholesky
+{
+  private int mN;        // number of unknowns
+
+  // edges (observations)
+  private int mNe;       // number of edges
+  private int[] mEi;
+  private int[] mEj;
+  private double[] mEw;
+
+  // factorization
+  private int[] mPerm;   // new index -> old index
+  private int[] mIperm;  // old index -> new index
+  private int[] mFirst;  // first column of the envelope of each row (new indices)
+  private int[] mRowPtr; // offset of the row in the envelope array, minus its first column
+  private double[] mEnv; // envelope of the lower triangular factor, row-wise
+
+  /** cstr
+   * @param n   number of unknowns
+   */
+  NumSparseCholesky( int n )
+  {
+    mN  = n;
+    mNe = 0;
+    mEi = new int[ 16 ];
+    mEj = new int[ 16 ];
+    mEw = new double[ 16 ];
+    mEnv = null;
+  }
+
+  int size() { return mN; }
+
+  /** number of non-zero entries of the envelope (available after the factorization)
+   */
+  int envelopeSize() { return ( mEnv == null )? 0 : mEnv.length; }
+
+  /** add an observation between two unknowns
+   * @param i   first unknown (-1 for a fixed point)
+   * @param j   second unknown (-1 for a fixed point)
+   * @param w   weight
+   * the matrix gets w on the diagonal of i and j, and -w at (i,j)
+   */
+  void addEdge( int i, int j, double w )
+  {
+    if ( i == j ) return;
+    if ( mNe == mEi.length ) {
+      int sz = 2 * mNe;
+      int[] ei = new int[ sz ];
+      int[] ej = new int[ sz ];
+      double[] ew = new double[ sz ];
+      System.arraycopy( mEi, 0, ei, 0, mNe );
+      System.arraycopy( mEj, 0, ej, 0, mNe );
+      System.arraycopy( mEw, 0, ew, 0, mNe );
+      mEi = ei;
+      mEj = ej;
+      mEw = ew;
+    }
+    mEi[ mNe ] = i;
+    mEj[ mNe ] = j;
+    mEw[ mNe ] = w;
+    ++ mNe;
+  }
+
+  /** factor the matrix
+   * @return false if the matrix is not positive-definite (eg, an unknown not connected to a fixed point)
+   */
+  boolean factor()
+  {
+    if ( mN == 0 ) return true;
+    // adjacency (CSR) between unknowns
+    int[] deg = new int[ mN + 1 ];
+    for ( int e = 0; e < mNe; ++e ) {
+      if ( mEi[e] >= 0 && mEj[e] >= 0 ) { ++ deg[ mEi[e] ]; ++ deg[ mEj[e] ]; }
+    }
+    int[] ptr = new int[ mN + 1 ];
+    for ( int i = 0; i < mN; ++i ) ptr[i+1] = ptr[i] + deg[i];
+    int[] adj = new int[ ptr[mN] ];
+    int[] pos = new int[ mN ];
+    for ( int i = 0; i < mN; ++i ) pos[i] = ptr[i];
+    for ( int e = 0; e < mNe; ++e ) {
+      int i = mEi[e];
+      int j = mEj[e];
+      if ( i >= 0 && j >= 0 ) { adj[ pos[i]++ ] = j; adj[ pos[j]++ ] = i; }
+    }
+
+    orderRCM( ptr, adj, deg );
+
+    // envelope
+    mFirst  = new int[ mN ];
+    mRowPtr = new int[ mN ];
+    for ( int r = 0; r < mN; ++r ) mFirst[r] = r;
+    for ( int e = 0; e < mNe; ++e ) {
+      int i = mEi[e];
+      int j = mEj[e];
+      if ( i < 0 || j < 0 ) continue;
+      int ri = mIperm[i];
+      int rj = mIperm[j];
+      if ( ri > rj ) { if ( rj < mFirst[ri] ) mFirst[ri] = rj; }
+      else           { if ( ri < mFirst[rj] ) mFirst[rj] = ri; }
+    }
+    int size = 0;
+    for ( int r = 0; r < mN; ++r ) {
+      mRowPtr[r] = size - mFirst[r];
+      size += r - mFirst[r] + 1;
+    }
+    mEnv = new double[ size ];
+    for ( int e = 0; e < mNe; ++e ) {
+      int i = mEi[e];
+      int j = mEj[e];
+      double w = mEw[e];
+      int ri = ( i >= 0 )? mIperm[i] : -1;
+      int rj = ( j >= 0 )? mIperm[j] : -1;
+      if ( ri >= 0 ) mEnv[ mRowPtr[ri] + ri ] += w;
+      if ( rj >= 0 ) mEnv[ mRowPtr[rj] + rj ] += w;
+      if ( ri >= 0 && rj >= 0 ) {
+        if ( ri > rj ) { mEnv[ mRowPtr[ri] + rj ] -= w; } else { mEnv[ mRowPtr[rj] + ri ] -= w; }
+      }
+    }
+
+    // profile Cholesky, row by row
+    double[] env = mEnv;
+    for ( int i = 0; i < mN; ++i ) {
+      int fi = mFirst[i];
+      int pi = mRowPtr[i];
+      for ( int j = fi; j < i; ++j ) {
+        int pj = mRowPtr[j];
+        int k0 = Math.max( fi, mFirst[j] );
+        double s = env[ pi + j ];
+        for ( int k = k0; k < j; ++k ) s -= env[ pi + k ] * env[ pj + k ];
+        env[ pi + j ] = s / env[ pj + j ];
+      }
+      double s = env[ pi + i ];
+      for ( int k = fi; k < i; ++k ) s -= env[ pi + k ] * env[ pi + k ];
+      if ( s <= 0 ) {
+        mEnv = null;
+        return false;
+      }
+      env[ pi + i ] = Math.sqrt( s );
+    }
+    return true;
+  }
+
+  /** solve the system for a right-hand side
+   * @param b   right-hand side (indexed by unknown), replaced by the solution
+   * @note the matrix must have been factored
+   */
+  void solve( double[] b )
+  {
+    if ( mN == 0 ) return;
+    double[] y = new double[ mN ];
+    for ( int r = 0; r < mN; ++r ) y[r] = b[ mPerm[r] ];
+    double[] env = mEnv;
+    for ( int i = 0; i < mN; ++i ) { // L y = b
+      int pi = mRowPtr[i];
+      double s = y[i];
+      for ( int k = mFirst[i]; k < i; ++k ) s -= env[ pi + k ] * y[k];
+      y[i] = s / env[ pi + i ];
+    }
+    for ( int i = mN-1; i >= 0; --i ) { // L^t x = y
+      int pi = mRowPtr[i];
+      double yi = y[i] / env[ pi + i ];
+      y[i] = yi;
+      for ( int k = mFirst[i]; k < i; ++k ) y[k] -= env[ pi + k ] * yi;
+    }
+    for ( int r = 0; r < mN; ++r ) b[ mPerm[r] ] = y[r];
+  }
+
+  // -----------------------------------------------------------------
+  /** reverse Cuthill-McKee ordering
+   * each connected component starts from a pseudo-peripheral node
+   */
+  private void orderRCM( int[] ptr, int[] adj, int[] deg )
+  {
+    mPerm  = new int[ mN ];
+    mIperm = new int[ mN ];
+    boolean[] visited = new boolean[ mN ];
+    int[] level = new int[ mN ];
+    for ( int k = 0; k < mN; ++k ) level[k] = -1;
+    int cnt = 0;
+    for ( int i0 = 0; i0 < mN; ++i0 ) {
+      if ( visited[i0] ) continue;
+      // pseudo-peripheral start: the last node of a breadth-first visit from i0
+      int start = i0;
+      int[] queue = mPerm; // scratch from cnt on
+      int head = cnt;
+      int tail = cnt;
+      queue[ tail++ ] = i0;
+      level[i0] = 0;
+      while ( head < tail ) {
+        int i = queue[ head++ ];
+        start = i;
+        for ( int p = ptr[i]; p < ptr[i+1]; ++p ) {
+          int j = adj[p];
+          if ( level[j] < 0 ) { level[j] = level[i] + 1; queue[ tail++ ] = j; }
+        }
+      }
+      for ( int k = cnt; k < tail; ++k ) level[ queue[k] ] = -1;
+      // Cuthill-McKee from the start node, neighbours by increasing degree
+      head = cnt;
+      tail = cnt;
+      mPerm[ tail++ ] = start;
+      visited[start] = true;
+      while ( head < tail ) {
+        int i = mPerm[ head++ ];
+        int t0 = tail;
+        for ( int p = ptr[i]; p < ptr[i+1]; ++p ) {
+          int j = adj[p];
+          if ( ! visited[j] ) { visited[j] = true; mPerm[ tail++ ] = j; }
+        }
+        for ( int a = t0+1; a < tail; ++a ) { // insertion sort (few neighbours)
+          int j = mPerm[a];
+          int b = a - 1;
+          while ( b >= t0 && deg[ mPerm[b] ] > deg[j] ) { mPerm[b+1] = mPerm[b]; --b; }
+          mPerm[b+1] = j;
+        }
+      }
+      cnt = tail;
+    }
+    for ( int a = 0, b = mN-1; a < b; ++a, --b ) { // reverse
+      int t = mPerm[a]; mPerm[a] = mPerm[b]; mPerm[b] = t;
+    }
+    for ( int r = 0; r < mN; ++r ) mIperm[ mPerm[r] ] = r;
+  }
+}
@@ -26,6 +26,23 @@ class NumSplay extends NumSurveyPoint
   int getReducedFlag() { return mBlock.getReducedFlag(); }
   String getComment()  { return mBlock.mComment; }
 
+  /** translated copy of a splay - used by the translated copy of a reduction
+   * @param sp     splay
+   * @param f      from station of the copy
+   * @param e0, s0, v0, h0  coordinates of the new origin
+   */
+  NumSplay( NumSplay sp, NumStation f, float e0, float s0, float v0, float h0 )
+  {
+    from = f;
+    e = sp.e - e0;
+    s = sp.s - s0;
+    v = sp.v - v0;
+    h = sp.h - h0;
+    mBlock  = sp.mBlock;
+    mDecl   = sp.mDecl;
+    mCosine = sp.mCosine;
+  }
+
   NumSplay( NumStation f, float d, float b, float c, float cosine, DBlock blk, float decl )
   {
     from = f;
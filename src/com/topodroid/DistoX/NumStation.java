@@ -18,7 +18,8 @@ import java.util.ArrayList;
 class NumStation extends NumSurveyPoint
 {
   String name;  // station name
-  NumShortpath mShortpathDist;  // loop closure distance (shortest-path algo)
+  int     mIndex;   // index in the station set (-1 if not in the set)
+  ArrayList< NumShot > mLinks; // legs at the station (adjacency list, used by the shortest-path algo)
   boolean mDuplicate; // whether this is a duplicate station
   boolean mHasCoords; // whether the station has got coords after loop-closure
   NumShot s1;
@@ -38,6 +39,7 @@ class NumStation extends NumSurveyPoint
   boolean hidden()  { return mBarrierAndHidden || mHidden > 0; }
 
   private ArrayList< NumAzimuth > mLegs; // ordered list of legs at the shot (used to compute extends)
+  private ArrayList< NumAzimuth > mRawLegs; // legs before setAzimuths (null if azimuths are not set)
 
   NumStation( String id )
   {
@@ -52,7 +54,10 @@ class NumStation extends NumSurveyPoint
     mHidden  = 0;
     mBarrierAndHidden = false;
     mParent  = null;
+    mIndex   = -1;
+    mLinks = new ArrayList<>();
     mLegs = new ArrayList<>();
+    mRawLegs = null;
   }
 
   NumStation( String id, NumStation from, float d, float b, float c, float extend, boolean has_coords )
@@ -75,15 +80,50 @@ class NumStation extends NumSurveyPoint
     mHidden  = 0;
     mBarrierAndHidden = false;
     mParent  = from;
+    mIndex   = -1;
+    mLinks = new ArrayList<>();
     mLegs = new ArrayList<>();
+    mRawLegs = null;
     // Log.v( "DistoX", "NumStation cstr " + id + " extend " + extend + " H " + h + " V " + v );
   }
 
+  /** translated copy of a station - used by the translated copy of a reduction
+   * @param st     station
+   * @param e0, s0, v0, h0  coordinates of the new origin
+   * @note the copy has no links, no legs, and no parent: the caller must set the parent
+   */
+  NumStation( NumStation st, float e0, float s0, float v0, float h0 )
+  {
+    super();
+    name = st.name;
+    e = st.e - e0;
+    s = st.s - s0;
+    v = st.v - v0;
+    h = st.h - h0;
+    mDuplicate = st.mDuplicate;
+    mHasCoords = st.mHasCoords;
+    s1 = null;
+    s2 = null;
+    node = null;
+    mAnomaly = st.mAnomaly;
+    mHidden  = st.mHidden;
+    mBarrierAndHidden = st.mBarrierAndHidden;
+    mParent  = null;
+    mIndex   = -1;
+    mLinks = new ArrayList<>();
+    mLegs = new ArrayList<>();
+    mRawLegs = null;
+  }
+
   // azimuth [degrees]
   // extend  [-1,0,+1]
   void addAzimuth( float azimuth, float extend ) 
   {
     // Log.v("DistoX-SPLAY", "Station " + name + " add azimuth " + azimuth + " extend " + extend );
+    if ( mRawLegs != null ) { // azimuths already set: go back to the list of legs
+      mLegs = mRawLegs;
+      mRawLegs = null;
+    }
     NumAzimuth leg = new NumAzimuth( azimuth, extend );
     for ( int k=0; k<mLegs.size(); ++k ) {
       if ( azimuth < mLegs.get(k).mAzimuth ) {
@@ -94,8 +134,10 @@ class NumStation extends NumSurveyPoint
     mLegs.add( leg );
   }
 
+  // can be called again after new legs have been added with addAzimuth
   void setAzimuths()
   {
+    if ( mRawLegs != null ) return; // already set
     int sz = mLegs.size();
     if ( sz == 0 ) return;
 
@@ -152,6 +194,7 @@ class NumStation extends NumSurveyPoint
         temp.add( new NumAzimuth( a1.mAzimuth+360, a1.mExtend ) );
       }
     }
+    mRawLegs = mLegs;
     mLegs = temp;
     // for ( NumAzimuth a : mLegs ) {
     //   Log.v("DistoX-NUM", "Station " + name + " Azimuth " + a.mAzimuth + " extend " + a.mExtend );
@@ -108,14 +108,6 @@ class NumStationSet
       return ( right == null )? null : right.get( name );
     }
 
-    // initialize the subtree at this node with a distance value "p" (supposedly large)
-    void initShortPathDist( float p ) 
-    { 
-      value.mShortpathDist = new NumShortpath( 0, p, 0 );
-      if ( left  != null ) left.initShortPathDist( p );
-      if ( right != null ) right.initShortPathDist( p );
-    }
-
     void setCoords( boolean b )
     {
       value.mHasCoords = b;
@@ -159,13 +151,6 @@ class NumStationSet
     mStations = new ArrayList<>();
   }
 
-  // initialize the tree with a distance value "p" (supposedly large)
-  void initShortestPath( float p ) 
-  {
-    if ( mRoot == null ) return;
-    mRoot.initShortPathDist( p );
-  }
-
   void setCoords( boolean b ) 
   {
     if ( mRoot == null ) return;
@@ -226,7 +211,10 @@ class NumStationSet
       // rebalance
       if ( ret ) insert_case1( n );
     }
-    if ( ret ) mStations.add( v );
+    if ( ret ) {
+      v.mIndex = mStations.size();
+      mStations.add( v );
+    }
     // Log.v("DistoX", "added station " + v.name + " root " + mRoot.value.name );
     return ret;
   }
@@ -237,6 +225,9 @@ class NumStationSet
     return ( mRoot == null )? null : mRoot.get( name );
   }
 
+  // @param k   station index
+  NumStation getStation( int k ) { return mStations.get( k ); }
+
   // -----------------------------------------------------
   // private helper methods
   //
@@ -0,0 +1,167 @@
+/* @file OverviewLoadTask.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid overview: parallel loading of the plots
+ *
+ * The tdr files are read by a bounded number of worker threads, each plot into its own
+ * list of items. The lists are then added to the overview surface in the order of the plots,
+ * so that the result is the same as that of the sequential load: the deferred items of the
+ * indexed plots are later read into the stack slots they have in this order.
+ *
+ * The symbol libraries are not thread-safe, and reading an item may load a missing symbol.
+ * The plots with an index are read without touching the libraries. The plots without an index
+ * are read in parallel too: only the symbol lookups, which may load a missing symbol, take the
+ * lock of the BrushManager, one at a time. Loading a symbol appends it to its library,
+ * so the indices of the symbols that the other workers have already looked up do not change.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.lang.ref.WeakReference;
+
+import java.io.File;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.AsyncTask;
+
+import android.app.ProgressDialog;
+
+// import android.util.Log;
+
+class OverviewLoadTask extends AsyncTask< Void, Integer, Boolean >
+{
+  private static final int MAX_WORKERS = 4;
+
+  // plot to load
+  static class Plot
+  {
+    final String mTdr;
+    final float  mXDelta, mYDelta;
+    final String mName;
+    final SymbolsPalette mPalette;
+    ArrayList< DrawingPath > mItems = null;                 // items read from the tdr
+    ArrayList< DrawingTdrIndex.Item > mDeferred = null;     // items read from the tdr index
+
+    Plot( String tdr, float xdelta, float ydelta, String name )
+    {
+      mTdr    = tdr;
+      mXDelta = xdelta;
+      mYDelta = ydelta;
+      mName   = name;
+      mPalette = BrushManager.preparePalette(); // the palette is prepared on the main thread
+    }
+  }
+
+  private final WeakReference<OverviewWindow> mWindow;
+  private final DrawingSurface mSurface;
+  private final List< Plot > mPlots;
+  private ProgressDialog mProgress = null; // accessed only on the main thread
+  private long mTime = 0;
+
+  OverviewLoadTask( OverviewWindow window, DrawingSurface surface, List< Plot > plots )
+  {
+    super();
+    mWindow  = new WeakReference<OverviewWindow>( window );
+    mSurface = surface;
+    mPlots   = plots;
+    BrushManager.resetPointOrientations();
+    mProgress = new ProgressDialog( window );
+    mProgress.setTitle( window.getResources().getString(R.string.pleasewait) );
+    mProgress.setMessage( window.getResources().getString(R.string.processing) );
+    mProgress.setProgressStyle( ProgressDialog.STYLE_HORIZONTAL );
+    mProgress.setMax( plots.size() );
+    mProgress.setCancelable( false );
+    mProgress.show();
+  }
+
+  @Override
+  protected Boolean doInBackground( Void... arg0 )
+  {
+    mTime = System.currentTimeMillis();
+    final AtomicInteger done = new AtomicInteger( 0 );
+    TDWorkers.run( mPlots.size(), MAX_WORKERS, new TDWorkers.Job() {
+      public void run( int k )
+      {
+        if ( isCancelled() ) return;
+        loadPlot( mPlots.get( k ) );
+        publishProgress( done.incrementAndGet() );
+      }
+    } );
+    return ! isCancelled();
+  }
+
+  // read the items of a plot, with the tdr index if possible
+  private static void loadPlot( Plot plot )
+  {
+    if ( ! (new File( plot.mTdr )).exists() ) return;
+    ArrayList< DrawingTdrIndex.Item > deferred = new ArrayList<>();
+    if ( DrawingTdrIndex.load( plot.mTdr, plot.mXDelta, plot.mYDelta, plot.mName, plot.mPalette, deferred ) ) {
+      plot.mDeferred = deferred;
+    } else {
+      plot.mItems = DrawingIO.readDataStream( plot.mTdr, plot.mXDelta, plot.mYDelta, plot.mPalette, null, false, plot.mName );
+    }
+  }
+
+  /** cancel the task and drop the progress dialog - called by the window when it reloads or it is destroyed
+   */
+  void release()
+  {
+    cancel( false );
+    dismissProgress();
+  }
+
+  private void dismissProgress()
+  {
+    if ( mProgress != null ) {
+      try {
+        mProgress.dismiss();
+      } catch ( IllegalArgumentException e ) { // the window of the dialog is gone
+        TDLog.Error( "overview load: dismiss error " + e.getMessage() );
+      }
+      mProgress = null;
+    }
+  }
+
+  @Override
+  protected void onProgressUpdate( Integer... progress ) { if ( mProgress != null ) mProgress.setProgress( progress[0] ); }
+
+  @Override
+  protected void onPostExecute( Boolean result )
+  {
+    dismissProgress();
+    OverviewWindow window = mWindow.get();
+    if ( window == null || window.isFinishing() || ! result ) return;
+    // the items are added in the order of the plots
+    int nr = 0;
+    for ( Plot plot : mPlots ) {
+      if ( plot.mDeferred != null ) {
+        mSurface.addDeferredItems( plot.mDeferred );
+        nr += plot.mDeferred.size();
+      } else if ( plot.mItems != null ) {
+        for ( DrawingPath item : plot.mItems ) {
+          if ( item.mType == DrawingPath.DRAWING_PATH_STATION ) {
+            mSurface.addDrawingStationPath( (DrawingStationPath)item );
+          } else {
+            mSurface.addDrawingPath( item );
+          }
+        }
+        nr += plot.mItems.size();
+      }
+    }
+    TDLog.Log( TDLog.LOG_PLOT, "overview load: plots " + mPlots.size() + " items " + nr + " msec " + (System.currentTimeMillis() - mTime) );
+  }
+
+  @Override
+  protected void onCancelled( Boolean result )
+  {
+    dismissProgress();
+  }
+}
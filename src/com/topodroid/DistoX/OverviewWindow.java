@@ -136,6 +136,7 @@ public class OverviewWindow extends ItemDrawer
   // String getSurvey() { return TDInstance.survey; }
   // private static BezierInterpolator mBezierInterpolator = new BezierInterpolator();
   private DrawingSurface  mOverviewSurface;
+  private OverviewLoadTask mLoadTask = null;
 
   private DistoXNum mNum;
   private Path mCrossPath;
@@ -543,6 +544,17 @@ public class OverviewWindow extends ItemDrawer
       mOverviewSurface.setDisplayMode( mOverviewSurface.getDisplayMode() & DisplayMode.DISPLAY_OVERVIEW );
     }
 
+    @Override
+    protected synchronized void onDestroy()
+    {
+      // the load task must not touch the window, nor its progress dialog, after this
+      if ( mLoadTask != null ) {
+        mLoadTask.release();
+        mLoadTask = null;
+      }
+      super.onDestroy();
+    }
+
     private void doResume()
     {
       // PlotInfo info = mApp.mData.getPlotInfo( mSid, mName );
@@ -593,7 +605,9 @@ public class OverviewWindow extends ItemDrawer
 
       NumStation mStartStation = null;
 
+      if ( mLoadTask != null ) mLoadTask.release();
       mOverviewSurface.resetManager( DrawingSurface.DRAWING_OVERVIEW, null, false ); // is_extended = false
+      ArrayList< OverviewLoadTask.Plot > loads = new ArrayList<>();
 
       for ( int k=0; k<plots.size(); ++k ) {
         PlotInfo plot = plots.get(k);
@@ -635,13 +649,18 @@ public class OverviewWindow extends ItemDrawer
         // String th2 = TDPath.getTh2FileWithExt( fullName );
         // if ( TDSetting.mBinaryTh2 ) { // TDR BINARY
           String tdr = TDPath.getTdrFileWithExt( fullName );
-          mOverviewSurface.addLoadDataStream( tdr, /* th2, */ xdelta, ydelta, /* null, */ fullName ); // save plot name in paths
+          // mOverviewSurface.addLoadDataStream( tdr, /* th2, */ xdelta, ydelta, /* null, */ fullName ); // save plot name in paths
+          loads.add( new OverviewLoadTask.Plot( tdr, xdelta, ydelta, fullName ) ); // save plot name in paths
         // } else {
         //   // FIXME_OVER N.B. this loads the drawing on DrawingSurface.mCommandManager3
         //   mOverviewSurface.addloadTherion( th2, xdelta, ydelta, null ); // ignore missing symbols
         // }
       }
 
+      // the tdr files are read in parallel, and their items added in the order of the plots
+      mLoadTask = new OverviewLoadTask( this, mOverviewSurface, loads );
+      mLoadTask.execute();
+
       // if ( ! mAllSymbols ) {
       //   String msg = missingSymbols.getMessage( getResources() );
       //   TDLog.Log( TDLog.LOG_PLOT, "Missing " + msg );
@@ -662,6 +681,7 @@ public class OverviewWindow extends ItemDrawer
      // TDLog.Log( TDLog.LOG_IO, "export plot type " + mType + " with extension " + ext );
      // Log.v( "DistoXX", "export th2 file " + fullname );
      DrawingCommandManager manager = mOverviewSurface.getManager( DrawingSurface.DRAWING_OVERVIEW );
+     manager.materializeAll(); // the exports need all the items
 
      if ( ext.equals("th2") ) {
        Handler th2Handler = new Handler() {
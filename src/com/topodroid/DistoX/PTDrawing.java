@@ -13,8 +13,6 @@ package com.topodroid.DistoX;
 
 import java.util.ArrayList;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 
 // import android.util.Log;
 
@@ -51,7 +49,7 @@ class PTDrawing
 
     // ---------------------------------------------------
 
-    void read( FileInputStream fs )
+    void read( PTInputStream fs )
     {
       clear();
       _mapping.read( fs );
@@ -74,7 +72,7 @@ class PTDrawing
       // Log.v("PTDistoX", "drawing read " + _elements.size() + " elements " );
     }
 
-    void write( FileOutputStream fs )
+    void write( PTOutputStream fs )
     {
       _mapping.write( fs );
       // Log.v( "DistoX", "PT drawing write elements " + _elements.size() );
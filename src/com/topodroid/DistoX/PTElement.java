@@ -11,7 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 
 // import android.util.Log;
@@ -31,11 +30,11 @@ class PTElement
 
   byte id() { return _id; }
 
-  void read( FileInputStream fs ) 
+  void read( PTInputStream fs ) 
   {
   }
 
-  void write( FileOutputStream fs ) 
+  void write( PTOutputStream fs ) 
   { 
   }
   
@@ -14,151 +14,38 @@ package com.topodroid.DistoX;
 import java.util.ArrayList;
 import java.util.HashMap;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.IOException;
 
 // import android.util.Log;
 
 class PTFile
 {
 
-  static private byte bytes2byte( byte[] b )
-  {
-    final ByteBuffer bb = ByteBuffer.wrap( b );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    return bb.get(0);
-  }
- 
-  static private int bytes2int( byte[] b )
-  {
-    final ByteBuffer bb = ByteBuffer.wrap( b );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    return bb.getInt();
-  }
- 
-  static private byte[] int2bytes( int i )
-  { 
-    final ByteBuffer bb = ByteBuffer.allocate( Integer.SIZE / Byte.SIZE );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    bb.putInt( i );
-    return bb.array();
-  }
-
-  static private int bytes2short( byte[] b )
-  {
-    final ByteBuffer bb = ByteBuffer.wrap( b );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    return bb.getShort();
-  }
- 
-  static private byte[] short2bytes( short i )
-  { 
-    final ByteBuffer bb = ByteBuffer.allocate( Short.SIZE / Byte.SIZE );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    bb.putShort( i );
-    return bb.array();
-  }
-
-  static private long bytes2long( byte[] b )
-  {
-    final ByteBuffer bb = ByteBuffer.wrap( b );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    return bb.getLong();
-  }
- 
-  static private byte[] long2bytes( long i )
-  { 
-    final ByteBuffer bb = ByteBuffer.allocate( Long.SIZE / Byte.SIZE );
-    bb.order( ByteOrder.LITTLE_ENDIAN );
-    bb.putLong( i );
-    return bb.array();
-  }
-
-  private static void write( FileOutputStream fs, byte[] b, int n )
-  {
-    try {
-      fs.write( b, 0, n );
-    } catch ( IOException e ) {
-      TDLog.Error( "IO error on write " + n + " bytes: " + e.toString() );
-    }
-  }
+  // the fields are read and written through a buffered little-endian stream, which reuses
+  // one byte buffer for all the fields
 
   // used also by PTString
   //  @param fs    input stream
   //  @param b     byte array to store read bytes (size n+1)
   //  @param n     total number of bytes to read
-  static void read( FileInputStream fs, byte[] b, int n )
-  {
-    try {
-      int nread  = 0; // number of bytes that have been read
-      int toread = n; // number of bytes still to read
-      do {
-        int nn = fs.read( b, nread, toread ); // 401126 reports an ArrayOutOfBound here but it does not make sense
-	    nread  += nn;
-	    toread -= nn;
-      } while ( nread < n );
-    } catch ( IOException e ) {
-      TDLog.Error( "IO error on read " + n + " bytes: " + e.getMessage() );
-    }
-  }
+  static void read( PTInputStream fs, byte[] b, int n ) { fs.read( b, n ); }
 
-  static byte readByte( FileInputStream fs )
-  {
-    byte[] b = new byte[1];
-    read( fs, b, 1 );
-    return bytes2byte( b );
-  }
+  static byte readByte( PTInputStream fs ) { return fs.readByte(); }
 
-  static void writeByte( FileOutputStream fs, byte b )
-  {
-    try { 
-      fs.write( b );
-    } catch ( IOException e ) {
-    }
-  }
+  static void writeByte( PTOutputStream fs, byte b ) { fs.writeByte( b ); }
 
-  static int readInt( FileInputStream fs )
-  {
-    byte[] b = new byte[4];
-    read( fs, b, 4 );
-    return bytes2int( b );
-  }
+  static int readInt( PTInputStream fs ) { return fs.readInt(); }
 
-  static void writeInt( FileOutputStream fs, int i ) 
-  {
-    byte[] b = int2bytes( i );
-    write( fs, b, 4 );
-  }
+  static void writeInt( PTOutputStream fs, int i ) { fs.writeInt( i ); }
 
-  static short readShort( FileInputStream fs )
-  {
-    byte[] b = new byte[2];
-    read( fs, b, 2 );
-    return (short)bytes2short( b );
-  }
+  static short readShort( PTInputStream fs ) { return fs.readShort(); }
 
-  static void writeShort( FileOutputStream fs, short i ) 
-  {
-    byte[] b = short2bytes( i );
-    write( fs, b, 2 );
-  }
+  static void writeShort( PTOutputStream fs, short i ) { fs.writeShort( i ); }
 
-  static long readLong( FileInputStream fs )
-  {
-    byte[] b = new byte[8];
-    read( fs, b, 8 );
-    return bytes2long( b );
-  }
+  static long readLong( PTInputStream fs ) { return fs.readLong(); }
 
-  static void writeLong( FileOutputStream fs, long i ) 
-  {
-    byte[] b = long2bytes( i );
-    write( fs, b, 8 );
-  }
+  static void writeLong( PTOutputStream fs, long i ) { fs.writeLong( i ); }
 
   // ---------------------------------------------------------------
   // ---------------------------------------------------------------
@@ -284,9 +171,10 @@ class PTFile
 
 
 
-    void read( FileInputStream fs )
+    void read( FileInputStream fis )
     {
       clear();
+      PTInputStream fs = new PTInputStream( fis );
       // read ID and version
       byte[] bytes = new byte[4];
       read( fs, bytes, 4 );
@@ -325,13 +213,11 @@ class PTFile
       _sideview.read( fs );
     }
 
-    void write( FileOutputStream fs ) 
+    void write( FileOutputStream fos ) 
     {
-      try {
-        byte[] header = { 'T', 'o', 'p', (byte)3 };
-        fs.write( header, 0, 4 );
-      } catch( IOException e ) {
-      }
+      PTOutputStream fs = new PTOutputStream( fos );
+      byte[] header = { 'T', 'o', 'p', (byte)3 };
+      fs.write( header, 4 );
       PTFile.writeInt( fs, _trips.size() );
       for ( PTTrip t : _trips ) t.write( fs );
       PTFile.writeInt( fs, _shots.size() );
@@ -341,6 +227,7 @@ class PTFile
       _overview.write( fs );
       _outline.write( fs );
       _sideview.write( fs );
+      fs.flush();
     }
 
     // void print()
@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 import java.util.Locale;
 // import android.util.Log;
 
@@ -112,12 +109,12 @@ class PTId
 
   // -----------------------------------------------------------
 
-  void read( FileInputStream fs )
+  void read( PTInputStream fs )
   { 
     _id = PTFile.readInt( fs );
   }
 
-  void write( FileOutputStream fs )
+  void write( PTOutputStream fs )
   {
     PTFile.writeInt( fs, _id );
   }
@@ -0,0 +1,94 @@
+/* @file PTInputStream.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief PocketTopo file IO - buffered little-endian input
+ *
+ * The file is read in blocks into a single byte buffer, which is reused for all the fields,
+ * instead of reading each field with a new byte array straight from the file.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import java.io.InputStream;
+import java.io.IOException;
+
+class PTInputStream
+{
+  private static final int SIZE = 8192; // buffer size [bytes]
+
+  private final InputStream mIn;
+  private final ByteBuffer mBuffer; // bytes between position and limit have not been read yet
+  private boolean mEof = false;
+
+  PTInputStream( InputStream in )
+  {
+    mIn = in;
+    mBuffer = ByteBuffer.allocate( SIZE );
+    mBuffer.order( ByteOrder.LITTLE_ENDIAN );
+    mBuffer.limit( 0 );
+  }
+
+  /** make n bytes available in the buffer
+   * @param n   number of bytes (at most the buffer size)
+   * @return false at the end of the file
+   */
+  private boolean fill( int n )
+  {
+    if ( mBuffer.remaining() >= n ) return true;
+    if ( mEof ) return false;
+    mBuffer.compact();
+    byte[] buf = mBuffer.array();
+    try {
+      while ( mBuffer.position() < n ) {
+        int nn = mIn.read( buf, mBuffer.position(), mBuffer.capacity() - mBuffer.position() );
+        if ( nn < 0 ) {
+          mEof = true;
+          break;
+        }
+        mBuffer.position( mBuffer.position() + nn );
+      }
+    } catch ( IOException e ) {
+      TDLog.Error( "PT IO error on read: " + e.getMessage() );
+      mEof = true;
+    }
+    mBuffer.flip();
+    if ( mBuffer.remaining() >= n ) return true;
+    TDLog.Error( "PT unexpected end of file" );
+    mBuffer.position( mBuffer.limit() );
+    return false;
+  }
+
+  /** @return the next byte as unsigned int, or -1 at the end of the file
+   */
+  int read() { return fill( 1 )? ( mBuffer.get() & 0xff ) : -1; }
+
+  /** read bytes
+   * @param b    byte array to store the read bytes
+   * @param n    number of bytes to read
+   */
+  void read( byte[] b, int n )
+  {
+    int off = 0;
+    while ( off < n && fill( 1 ) ) {
+      int nn = Math.min( n - off, mBuffer.remaining() );
+      mBuffer.get( b, off, nn );
+      off += nn;
+    }
+  }
+
+  byte  readByte()  { return fill( 1 )? mBuffer.get() : 0; }
+
+  short readShort() { return fill( 2 )? mBuffer.getShort() : 0; }
+
+  int   readInt()   { return fill( 4 )? mBuffer.getInt() : 0; }
+
+  long  readLong()  { return fill( 8 )? mBuffer.getLong() : 0; }
+}
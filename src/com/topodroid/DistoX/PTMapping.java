@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 // import android.util.Log;
 
 class PTMapping
@@ -41,14 +38,14 @@ class PTMapping
       if ( s >= 50 && s <= 20000 ) _scale = s;
     }
 
-    void read( FileInputStream fs )
+    void read( PTInputStream fs )
     {
       _origin.read( fs );
       _scale = PTFile.readInt( fs );
       TDLog.Log( TDLog.LOG_PTOPO, "PT Mapping origin " + _origin._x + " " + _origin._y + " scale " + _scale );
     }
 
-    void write( FileOutputStream fs )
+    void write( PTOutputStream fs )
     {
       _origin.write( fs );
       PTFile.writeInt( fs, _scale );
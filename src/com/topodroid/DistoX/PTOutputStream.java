@@ -0,0 +1,82 @@
+/* @file PTOutputStream.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief PocketTopo file IO - buffered little-endian output
+ *
+ * The fields are put in a single byte buffer, which is written to the file when it is full
+ * and on flush.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import java.io.OutputStream;
+import java.io.IOException;
+
+class PTOutputStream
+{
+  private static final int SIZE = 8192; // buffer size [bytes]
+
+  private final OutputStream mOut;
+  private final ByteBuffer mBuffer; // bytes before position have not been written yet
+
+  PTOutputStream( OutputStream out )
+  {
+    mOut = out;
+    mBuffer = ByteBuffer.allocate( SIZE );
+    mBuffer.order( ByteOrder.LITTLE_ENDIAN );
+  }
+
+  /** write the buffered bytes to the file
+   */
+  void flush()
+  {
+    if ( mBuffer.position() == 0 ) return;
+    try {
+      mOut.write( mBuffer.array(), 0, mBuffer.position() );
+    } catch ( IOException e ) {
+      TDLog.Error( "PT IO error on write " + mBuffer.position() + " bytes: " + e.getMessage() );
+    }
+    mBuffer.clear();
+  }
+
+  // make room for n bytes in the buffer
+  private void ensure( int n )
+  {
+    if ( mBuffer.remaining() < n ) flush();
+  }
+
+  /** write bytes
+   * @param b    bytes
+   * @param n    number of bytes to write
+   */
+  void write( byte[] b, int n )
+  {
+    if ( n > SIZE ) {
+      flush();
+      try {
+        mOut.write( b, 0, n );
+      } catch ( IOException e ) {
+        TDLog.Error( "PT IO error on write " + n + " bytes: " + e.getMessage() );
+      }
+    } else {
+      ensure( n );
+      mBuffer.put( b, 0, n );
+    }
+  }
+
+  void writeByte( byte b )    { ensure( 1 ); mBuffer.put( b ); }
+
+  void writeShort( short s )  { ensure( 2 ); mBuffer.putShort( s ); }
+
+  void writeInt( int i )      { ensure( 4 ); mBuffer.putInt( i ); }
+
+  void writeLong( long l )    { ensure( 8 ); mBuffer.putLong( l ); }
+}
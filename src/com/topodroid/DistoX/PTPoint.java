@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 // import android.util.Log;
 
 
@@ -35,14 +32,14 @@ class PTPoint
 
   // ----------------------------------------------------------
 
-  void read( FileInputStream fs )
+  void read( PTInputStream fs )
   {
     _x = PTFile.readInt( fs );
     _y = PTFile.readInt( fs );
     // TODO return
   }
 
-  void write( FileOutputStream fs )
+  void write( PTOutputStream fs )
   {
     PTFile.writeInt( fs, _x );
     PTFile.writeInt( fs, _y );
@@ -13,8 +13,6 @@ package com.topodroid.DistoX;
 
 import java.util.ArrayList;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 
 // import android.util.Log;
 
@@ -70,7 +68,7 @@ class PTPolygonElement extends PTElement
 
 
     @Override
-    void read( FileInputStream fs )
+    void read( PTInputStream fs )
     {
       _points.clear();
       int pc = PTFile.readInt( fs );
@@ -83,7 +81,7 @@ class PTPolygonElement extends PTElement
     }
  
     @Override
-    void write( FileOutputStream fs )
+    void write( PTOutputStream fs )
     {
       PTFile.writeByte( fs, _id );
       PTFile.writeInt( fs, _points.size() );
@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 // import android.util.Log;
 
 
@@ -69,7 +66,7 @@ class PTReference
     // ---------------------------------------------------
 
 
-    void read( FileInputStream fs )
+    void read( PTInputStream fs )
     {
       _station.read( fs );
       _east     = PTFile.readLong( fs );
@@ -78,7 +75,7 @@ class PTReference
       _comment.read( fs );
     }
 
-    void write( FileOutputStream fs )
+    void write( PTOutputStream fs )
     {
       _station.write( fs );
       PTFile.writeLong( fs, _east );
@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 // import android.util.Log;
 
 
@@ -163,7 +160,7 @@ class PTShot
 
     // ------------------------------------------------------------
 
-    void read( FileInputStream fs )
+    void read( PTInputStream fs )
     {
       _from.read( fs );
       _to.read( fs );
@@ -178,7 +175,7 @@ class PTShot
       }
     }
 
-    void write( FileOutputStream fs )
+    void write( PTOutputStream fs )
     {
       _from.write( fs );
       _to.write( fs );
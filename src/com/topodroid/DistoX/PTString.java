@@ -11,10 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-
 // import android.util.Log;
 
 class PTString 
@@ -39,19 +35,17 @@ class PTString
   int size() { return _str.length(); }
   String value() { return _str; }
 
-  void read( FileInputStream fs )
+  void read( PTInputStream fs )
   {
     int len = 0;
-    try {
-      int shift = 0; 
-      int b = 0;
-      do {
-        b = fs.read( );
-        len |= ( b << shift );
-        shift += 7;
-      } while ( (b & 0x80) != 0 );
-    } catch ( IOException e ) {
-    }
+    int shift = 0; 
+    int b = 0;
+    do {
+      b = fs.read( );
+      if ( b < 0 ) break; // end of file
+      len |= ( b << shift );
+      shift += 7;
+    } while ( (b & 0x80) != 0 );
 
     if ( len > 0 ) {
       byte[] chars = new byte[ len + 1 ];
@@ -63,23 +57,20 @@ class PTString
     }
   }
 
-  void write( FileOutputStream fs )
+  void write( PTOutputStream fs )
   {
-    try {
-      int len = _str.length();
-      do {
-        byte b = (byte)( len & 0x7f );
-        len = len >> 7;
-        if ( len > 0 ) {
-          b |= 0x80;
-        }
-        fs.write( b );
-      } while ( len > 0 );
-      if ( _str.length() > 0 ) {
-        byte[] chars = _str.getBytes();
-        fs.write( chars, 0, _str.length() );
+    int len = _str.length();
+    do {
+      byte b = (byte)( len & 0x7f );
+      len = len >> 7;
+      if ( len > 0 ) {
+        b |= 0x80;
       }
-    } catch ( IOException e ) {
+      fs.writeByte( b );
+    } while ( len > 0 );
+    if ( _str.length() > 0 ) {
+      byte[] chars = _str.getBytes();
+      fs.write( chars, _str.length() );
     }
   }
 
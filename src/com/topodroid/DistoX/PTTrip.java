@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 // import android.util.Log;
 
 
@@ -140,14 +137,14 @@ class PTTrip
       // printf("Trip set date %d %d %d -- %llx\n", y, m, d, _time );
     }
 
-    void read( FileInputStream fs )
+    void read( PTInputStream fs )
     {
       _time = PTFile.readLong( fs );
       _comment.read( fs );
       _declination = PTFile.readShort( fs );
     }
 
-    void write( FileOutputStream fs )
+    void write( PTOutputStream fs )
     {
       PTFile.writeLong( fs, _time );
       _comment.write( fs );
@@ -11,9 +11,6 @@
  */
 package com.topodroid.DistoX;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
 // import android.util.Log;
 
 
@@ -61,7 +58,7 @@ class PTXSectionElement extends PTElement
     // ---------------------------------------------------------
 
     @Override
-    void read( FileInputStream fs ) 
+    void read( PTInputStream fs ) 
     {
       _pos.read( fs );
       _station.read( fs );
@@ -71,7 +68,7 @@ class PTXSectionElement extends PTElement
     }
 
     @Override
-    void write( FileOutputStream fs ) 
+    void write( PTOutputStream fs ) 
     {
       PTFile.writeInt( fs, _id );
       _pos.write( fs );
@@ -67,19 +67,19 @@ class ParserCaveSniper extends ImportParser
         } else if ( line.startsWith("Od") ) {
           // Od Do Odleglosc Azymut Upad Komentarz
         } else if ( line.length() > 8 ) {
-          String[] vals = splitLine(line); // line.split( "\\s+" );
+          mScan.set( line );
           int k = 0;
-          int kmax = vals.length;
+          int kmax = mScan.size();
           if ( kmax >= 5 ) {
             mLength = -1;
             mLeft = mRight = mUp = mDown = -1;
-            mFrom = vals[k]; ++k;
-            mTo = vals[k];   ++k;
+            mFrom = mScan.get( k ); ++k;
+            mTo = mScan.get( k );   ++k;
             try {
-              mLength  = Float.parseFloat(vals[k]); ++k;
-              mBearing = Float.parseFloat(vals[k]); ++k;
-              mClino   = Float.parseFloat(vals[k]); ++k;
-              mComment = TDUtil.concat( vals, k );
+              mLength  = mScan.floatValue( k ); ++k;
+              mBearing = mScan.floatValue( k ); ++k;
+              mClino   = mScan.floatValue( k ); ++k;
+              mComment = mScan.concat( k );
               // k = vals.length;
 	      if ( mTo.startsWith( mFrom + ":" ) ) { // splay are added to the shots array to keep the list order
 		// splays have "extend" = DBlock.EXTEND_UNSET
@@ -71,7 +71,8 @@ class ParserCompass extends ImportParser
           }
         } else if ( line.startsWith("SURVEY DATE") ) {
           if ( mDate == null ) {
-            String[] vals = splitLine(line); // line.split( "\\s+" );
+            mScan.set( line );
+            String[] vals = mScan.values();
             try {
               mDate = String.format(Locale.US, "%04d.%02d.%02d",
                 Integer.parseInt( vals[4] ), Integer.parseInt( vals[2] ), Integer.parseInt( vals[3] ) );
@@ -87,38 +88,38 @@ class ParserCompass extends ImportParser
             mTeam = team.trim();
           }
         } else if ( line.startsWith("DECLINATION") ) {
-          String[] vals = splitLine(line); // line.split( "\\s+" );
-          mDeclination = Float.parseFloat( vals[1] );
+          mScan.set( line );
+          mDeclination = mScan.floatValue( 1 );
         } else if ( line.length() > 8 ) {
-          String[] vals = splitLine(line); // line.split( "\\s+" );
+          mScan.set( line );
           int k = 0;
-          int kmax = vals.length;
-          if ( kmax >= 5 && ! vals[0].equals("FROM") ) {
+          int kmax = mScan.size();
+          if ( kmax >= 5 && ! mScan.equals( 0, "FROM" ) ) {
             mLength = -1;
             mLeft = mRight = mUp = mDown = -1;
 
-            mFrom = vals[k]; ++k;
-            mTo   = vals[k]; ++k;
+            mFrom = mScan.get( k ); ++k;
+            mTo   = mScan.get( k ); ++k;
             try {
-              mLength  = Float.parseFloat(vals[k]) * TDUtil.FT2M; ++k;
-              mBearing = Float.parseFloat(vals[k]); ++k;
-              mClino   = Float.parseFloat(vals[k]); ++k;
+              mLength  = mScan.floatValue( k ) * TDUtil.FT2M; ++k;
+              mBearing = mScan.floatValue( k ); ++k;
+              mClino   = mScan.floatValue( k ); ++k;
               if ( k < kmax ) {
-                mLeft = Float.parseFloat(vals[k]) * TDUtil.FT2M; ++k;
+                mLeft = mScan.floatValue( k ) * TDUtil.FT2M; ++k;
                 if ( k < kmax ) {
-                  mUp = Float.parseFloat(vals[k]) * TDUtil.FT2M; ++k;
+                  mUp = mScan.floatValue( k ) * TDUtil.FT2M; ++k;
                   if ( k < kmax ) {
-                    mDown = Float.parseFloat(vals[k]) * TDUtil.FT2M; ++k;
+                    mDown = mScan.floatValue( k ) * TDUtil.FT2M; ++k;
                     if ( k < kmax ) {
-                      mRight = Float.parseFloat(vals[k]) * TDUtil.FT2M; ++k;
+                      mRight = mScan.floatValue( k ) * TDUtil.FT2M; ++k;
                       mFlag = null;
                       mComment = "";
                       if ( k < kmax ) {
-                        if (vals[k].startsWith("#")) {
-                          mFlag = vals[k]; ++k;
-                          if ( k < kmax ) mComment = TDUtil.concat( vals, k );
+                        if ( mScan.charAt( k ) == '#' ) {
+                          mFlag = mScan.get( k ); ++k;
+                          if ( k < kmax ) mComment = mScan.concat( k );
                         } else if ( mBearing < -900 || mClino < -900 ) {
-                          float bearing = TDMath.add180( Float.parseFloat(vals[k]) ); ++k; 
+                          float bearing = TDMath.add180( mScan.floatValue( k ) ); ++k; 
                           if ( mBearing < -900 ) {
                             mBearing = bearing;
                           } else if ( bearing >= 0 && bearing <= 360 ) {
@@ -129,7 +130,7 @@ class ParserCompass extends ImportParser
                             }
                           }
                           if ( k < kmax ) {
-                            float clino = Float.parseFloat(vals[k]); ++k;
+                            float clino = mScan.floatValue( k ); ++k;
                             if ( mClino < -900 ) {
                               mClino = - clino;
                             } else if ( clino >= -90 && clino <= 90 ) {
@@ -137,10 +138,10 @@ class ParserCompass extends ImportParser
                             }
                           }
                           if ( k < kmax ) {
-                            if (vals[k].startsWith("#")) {
-                              mFlag = vals[k]; ++k;
+                            if ( mScan.charAt( k ) == '#' ) {
+                              mFlag = mScan.get( k ); ++k;
                             }
-                            if ( k < kmax ) mComment = TDUtil.concat( vals, k );
+                            if ( k < kmax ) mComment = mScan.concat( k );
                           }
                         }
                       }
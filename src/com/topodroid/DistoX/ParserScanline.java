@@ -0,0 +1,192 @@
+/* @file ParserScanline.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid import parser line tokenizer
+ *
+ * The line is split in whitespace-separated tokens (same as split( "\\s+" ) of a trimmed line),
+ * but only the token bounds are stored: the tokens are compared and the numbers are parsed
+ * in the line, and substrings are made only for the tokens that are kept.
+ * The scanline is reused for all the lines of a file.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+class ParserScanline
+{
+  private static final int MAX_DIGITS = 9;                // max significant digits of the fast number parsing
+  private static final long MAX_MANTISSA = 1L << 24;      // mantissas exactly representable as float
+
+  // powers of ten exactly representable as float
+  private static final float[] POW10 = {
+    1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
+  private String mLine = null;
+  private int mSize = 0;
+  private int[] mStart = new int[ 16 ]; // token start (inclusive)
+  private int[] mEnd   = new int[ 16 ]; // token end (exclusive)
+
+  // whitespace as in the regex "\\s"
+  private static boolean isSpace( char ch )
+  {
+    return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r' || ch == '\f' || ch == 0x0b;
+  }
+
+  /** set the line
+   * @param line   line
+   */
+  void set( String line ) { set( line, line.length() ); }
+
+  /** set the line
+   * @param line   line
+   * @param end    end of the part of the line to tokenize (eg, position of the comment)
+   */
+  void set( String line, int end )
+  {
+    mLine = line;
+    mSize = 0;
+    int pos = 0;
+    while ( pos < end ) {
+      while ( pos < end && isSpace( line.charAt( pos ) ) ) ++ pos;
+      if ( pos >= end ) break;
+      int start = pos;
+      while ( pos < end && ! isSpace( line.charAt( pos ) ) ) ++ pos;
+      if ( mSize == mStart.length ) {
+        int[] tmp = new int[ 2 * mSize ];
+        System.arraycopy( mStart, 0, tmp, 0, mSize );
+        mStart = tmp;
+        tmp = new int[ 2 * mSize ];
+        System.arraycopy( mEnd, 0, tmp, 0, mSize );
+        mEnd = tmp;
+      }
+      mStart[ mSize ] = start;
+      mEnd[ mSize ]   = pos;
+      ++ mSize;
+    }
+  }
+
+  /** @return the number of tokens
+   */
+  int size() { return mSize; }
+
+  /** @return the k-th token
+   * @param k   token index
+   */
+  String get( int k )
+  {
+    if ( k >= mSize ) throw new ArrayIndexOutOfBoundsException( k );
+    return mLine.substring( mStart[k], mEnd[k] );
+  }
+
+  /** @return the length of the k-th token
+   * @param k   token index
+   */
+  int length( int k ) { return mEnd[k] - mStart[k]; }
+
+  /** @return the first char of the k-th token
+   * @param k   token index
+   */
+  char charAt( int k ) { return mLine.charAt( mStart[k] ); }
+
+  /** @return true if the k-th token is the given string
+   * @param k   token index
+   * @param s   string
+   */
+  boolean equals( int k, String s )
+  {
+    int len = mEnd[k] - mStart[k];
+    return len == s.length() && mLine.regionMatches( mStart[k], s, 0, len );
+  }
+
+  /** @return true if the k-th token starts with the given string
+   * @param k   token index
+   * @param s   string
+   */
+  boolean startsWith( int k, String s ) { return mLine.startsWith( s, mStart[k] ) && s.length() <= mEnd[k] - mStart[k]; }
+
+  /** @return true if two tokens are equal
+   * @param k1  first token index
+   * @param k2  second token index
+   */
+  boolean equals( int k1, int k2 )
+  {
+    int len = mEnd[k1] - mStart[k1];
+    return len == mEnd[k2] - mStart[k2] && mLine.regionMatches( mStart[k1], mLine, mStart[k2], len );
+  }
+
+  /** @return the tokens from the k-th, separated by a space (empty string if none)
+   * @param k   index of the first token
+   */
+  String concat( int k )
+  {
+    if ( k >= mSize ) return TDString.EMPTY;
+    if ( k == mSize - 1 ) return get( k );
+    StringBuilder sb = new StringBuilder();
+    sb.append( mLine, mStart[k], mEnd[k] );
+    for ( ++k; k < mSize; ++k ) sb.append( ' ' ).append( mLine, mStart[k], mEnd[k] );
+    return sb.toString();
+  }
+
+  /** @return the tokens as an array of strings
+   */
+  String[] values()
+  {
+    String[] ret = new String[ mSize ];
+    for ( int k = 0; k < mSize; ++k ) ret[k] = get( k );
+    return ret;
+  }
+
+  /** parse the k-th token as a float
+   * @param k   token index
+   * @return the float value (same as Float.parseFloat)
+   * @throws NumberFormatException if the token is not a number, or there is no such token
+   *
+   * plain decimals ( [+-]digits[.digits] ) with few significant digits are parsed in the line,
+   * the others with Float.parseFloat.
+   * The value is the quotient of the mantissa (at most 2^24) by a power of ten (at most 10^10):
+   * both are exact floats, so the float division is correctly rounded, as Float.parseFloat
+   */
+  float floatValue( int k ) throws NumberFormatException
+  {
+    if ( k < 0 || k >= mSize ) throw new NumberFormatException( "missing value " + k );
+    int pos = mStart[k];
+    int end = mEnd[k];
+    boolean negative = false;
+    char ch = mLine.charAt( pos );
+    if ( ch == '-' || ch == '+' ) {
+      negative = ( ch == '-' );
+      ++ pos;
+    }
+    long mantissa = 0;
+    int  digits   = 0;  // significant digits
+    int  decimals = 0;  // digits after the point
+    boolean point = false;
+    boolean any   = false;
+    for ( ; pos < end; ++pos ) {
+      ch = mLine.charAt( pos );
+      if ( ch >= '0' && ch <= '9' ) {
+        any = true;
+        if ( mantissa == 0 && ch == '0' ) { // leading zero
+          if ( point ) ++ decimals;
+          continue;
+        }
+        if ( ++digits > MAX_DIGITS ) return Float.parseFloat( get( k ) );
+        mantissa = mantissa * 10 + ( ch - '0' );
+        if ( point ) ++ decimals;
+      } else if ( ch == '.' && ! point ) {
+        point = true;
+      } else { // exponent, suffix, or not a number
+        return Float.parseFloat( get( k ) );
+      }
+    }
+    if ( ! any ) return Float.parseFloat( get( k ) ); // throws
+    if ( decimals >= POW10.length || mantissa > MAX_MANTISSA ) return Float.parseFloat( get( k ) );
+    float value = (float)mantissa / POW10[ decimals ]; // exact operands: correctly rounded
+    return negative ? -value : value;
+  }
+}
@@ -21,7 +21,6 @@ import java.io.BufferedReader;
 import java.util.ArrayList;
 // import java.util.Stack;
 import java.util.HashMap;
-import java.util.regex.Pattern;
 
 // TODO this class can be made extend ImportParser
 //
@@ -150,8 +149,6 @@ class ParserSurvex extends ImportParser
     int ksmax = 20;
     int[] survey_pos = new int[ksmax]; // current survey pos in the pathname
 
-    Pattern pattern = Pattern.compile( "\\s+" );
-
     try {
       String dirname = "./";
       int i = filename.lastIndexOf('/');
@@ -168,37 +165,111 @@ class ParserSurvex extends ImportParser
         // Log.v( TopoDroidApp.TAG, "TH " + state.in_survey + " " + state.in_centerline + " " + state.in_data + " : " + line );
         line = line.trim();
         int pos = line.indexOf( ';' );
-        if ( pos >= 0 ) {
-          line = line.substring( 0, pos );
-        }
-        if ( line.length() > 0 ) {
-          String[] vals = pattern.split(line); // line.split( "\\s+" );
-          int vals_len = vals.length;
-          if ( vals_len == 1 ) {
-	    if ( vals[0].startsWith("*") ) {
-	        String cmd = vals[0].substring(1);
-	        if ( cmd.equals("solve" ) ) {
-                // ignore
-	      } else if ( cmd.equals("data" ) ) { // data default
-                state.setDataDefault();
-	        resetJIndices();
-	      }
-	    } else { 
-              // interleaved station
-	      if ( state.interleaved && in_station ) { // read station
-                to = checkAlias( ParserUtil.applyCase( state.mCase, vals[0] ) );
+        mScan.set( line, ( pos >= 0 )? pos : line.length() );
+        int vals_len = mScan.size();
+        if ( vals_len > 0 && mScan.charAt( 0 ) != '*' ) { // data line: parsed in the scanline
+          if ( state.interleaved ) {
+            if ( in_station ) { // interleaved station
+              to = checkAlias( ParserUtil.applyCase( state.mCase, mScan.get( 0 ) ) );
 		if ( from != null ) { // add shot
                   shots.add( new ParserShot( from, to, len, ber, cln, 0.0f,
                                          DBlock.EXTEND_RIGHT, 0, state.mDuplicate, state.mSurface, false, "" ) );
 		}
 		from = to;
 		in_station = false; // in_data
+            } else if ( vals_len > 1 ) {
+              try {
+                len  = mScan.floatValue( jLength );
+                ber  = mScan.floatValue( jCompass );
+                cln  = mScan.floatValue( jClino );
+
+                float zLen = state.mZeroLen;
+                float sLen = state.mScaleLen * state.mUnitLen;
+
+                len = len * sLen - zLen;
+                ber = ber * state.mScaleBer * state.mUnitBer - state.mZeroBer;
+                if ( mApplyDeclination ) ber += state.mDeclination;
+                // if ( ber < 0 ) { ber += 360; } else if ( ber >= 360 ) { ber -= 360; }
+                ber = TDMath.in360( ber );
+                cln = cln * state.mScaleCln * state.mUnitCln - state.mZeroCln;
+              } catch ( NumberFormatException e ) {
+                TDLog.Error( "survex parser error: data " + line );
 	      }
+              in_station = true;
 	    }
-	  } else if ( vals_len > 1 ) {
-            // all commands have parameters, except "*solve" which is ignored
-	    // and data line have at least two values
-	    if ( vals[0].startsWith("*") ) {
+          } else if ( vals_len >= 5 ) {
+            // data line
+            try {
+              from = checkAlias( ParserUtil.applyCase( state.mCase, mScan.get( jFrom ) ) );
+              to   = checkAlias( ParserUtil.applyCase( state.mCase, mScan.get( jTo ) ) );
+              len  = mScan.floatValue( jLength );
+              ber  = mScan.floatValue( jCompass );
+              cln  = mScan.floatValue( jClino );
+
+              // measure = read * scale - zero;
+              float zLen = state.mZeroLen;
+              float sLen = state.mScaleLen * state.mUnitLen;
+
+              len = len * sLen - zLen;
+              ber = ber * state.mScaleBer * state.mUnitBer - state.mZeroBer;
+              if ( mApplyDeclination ) ber += state.mDeclination;
+              // if ( ber < 0 ) { ber += 360; } else if ( ber >= 360 ) { ber -= 360; }
+              ber = TDMath.in360( ber );
+              cln = cln * state.mScaleCln * state.mUnitCln - state.mZeroCln;
+
+              float dist, b;
+              if ( jLeft >= 0 && jLeft < vals_len) {
+                dist = mScan.floatValue( jLeft ) * sLen - zLen;
+                // b = ber - 90; if ( b < 0 ) b += 360;
+                b = TDMath.in360( ber - 90 );
+                shots.add( new ParserShot( from, TDString.EMPTY,
+                           dist, b, 0, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
+              }
+              if ( jRight >= 0 && jRight < vals_len) {
+                dist = mScan.floatValue( jRight ) * sLen - zLen;
+                // b = ber + 90; if ( b >= 360 ) b -= 360;
+                b = TDMath.add90( ber );
+                shots.add( new ParserShot( from, TDString.EMPTY,
+                           dist, b, 0, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
+              }
+              if ( jUp >= 0 && jUp < vals_len) {
+                dist = mScan.floatValue( jUp ) * sLen - zLen;
+                shots.add( new ParserShot( from, TDString.EMPTY,
+                           dist, 0, 90, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
+              }
+              if ( jDown >= 0 && jDown < vals_len) {
+                dist = mScan.floatValue( jDown ) * sLen - zLen;
+                shots.add( new ParserShot( from, TDString.EMPTY,
+                           dist, 0, -90, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
+              }
+
+              // TODO add shot
+              if ( to.equals("-") || to.equals(".") ) { // splay shot
+                // FIXME splays
+                shots.add( new ParserShot( from, TDString.EMPTY,
+                                      len, ber, cln, 0.0f,
+                                      DBlock.EXTEND_UNSET, 0, state.mDuplicate, state.mSurface, false, "" ) );
+              } else {
+                // Log.v( TopoDroidApp.TAG, "add shot " + from + " -- " + to);
+                shots.add( new ParserShot( from, to,
+                                     len, ber, cln, 0.0f,
+                                     DBlock.EXTEND_RIGHT, 0, state.mDuplicate, state.mSurface, false, "" ) );
+              }
+            } catch ( NumberFormatException e ) {
+              TDLog.Error( "survex parser error: data " + line );
+            }
+            // FIXME other data types
+          }
+        } else if ( vals_len == 1 ) {
+          String cmd = mScan.get( 0 ).substring(1);
+          if ( cmd.equals("solve" ) ) {
+            // ignore
+          } else if ( cmd.equals("data" ) ) { // data default
+            state.setDataDefault();
+            resetJIndices();
+          }
+        } else if ( vals_len > 1 ) { // all commands have parameters, except "*solve" which is ignored
+          String[] vals = mScan.values();
               String cmd = vals[0].substring(1);
               if ( cmd.equals("alias" ) ) { 
                 // alias station <alias> <target>
@@ -512,105 +583,6 @@ class ParserSurvex extends ImportParser
 	        }
                 // path = path.substring(survey_pos[ks]); // return to previous survey_pos in path
 	      }
-            } else {
-	      if ( state.interleaved ) {
-		if ( in_station ) {
-                  to = checkAlias( ParserUtil.applyCase( state.mCase, vals[0] ) );
-		  if ( from != null ) { // add shot
-                    shots.add( new ParserShot( from, to, len, ber, cln, 0.0f,
-                                           DBlock.EXTEND_RIGHT, 0, state.mDuplicate, state.mSurface, false, "" ) );
-		  }
-		  from = to;
-                  in_station = false;
-		} else {
-                  try {
-                    len  = Float.parseFloat( vals[jLength] );
-                    ber  = Float.parseFloat( vals[jCompass] );
-                    cln  = Float.parseFloat( vals[jClino] );
-
-	            float zLen = state.mZeroLen;
-	            float sLen = state.mScaleLen * state.mUnitLen;
-
-                    len = len * sLen - zLen;
-                    ber = ber * state.mScaleBer * state.mUnitBer - state.mZeroBer;
-                    if ( mApplyDeclination ) ber += state.mDeclination;
-	            // if ( ber < 0 ) { ber += 360; } else if ( ber >= 360 ) { ber -= 360; }
-                    ber = TDMath.in360( ber );
-                    cln = cln * state.mScaleCln * state.mUnitCln - state.mZeroCln;
-
-                  } catch ( NumberFormatException e ) {
-                    TDLog.Error( "survex parser error: data " + line );
-                  }
-
-                  in_station = true;
-		}
-	      } else {
-	        if ( vals_len >= 5 ) {
-                  // data line
-                  try {
-                      from = checkAlias( ParserUtil.applyCase( state.mCase, vals[jFrom] ) );
-                    to   = checkAlias( ParserUtil.applyCase( state.mCase, vals[jTo] ) );
-                    len  = Float.parseFloat( vals[jLength] );
-                    ber  = Float.parseFloat( vals[jCompass] );
-                    cln  = Float.parseFloat( vals[jClino] );
-
-	            // measure = read * scale - zero;
-	            float zLen = state.mZeroLen;
-	            float sLen = state.mScaleLen * state.mUnitLen;
-
-                    len = len * sLen - zLen;
-                    ber = ber * state.mScaleBer * state.mUnitBer - state.mZeroBer;
-                    if ( mApplyDeclination ) ber += state.mDeclination;
-	            // if ( ber < 0 ) { ber += 360; } else if ( ber >= 360 ) { ber -= 360; }
-                    ber = TDMath.in360( ber );
-                    cln = cln * state.mScaleCln * state.mUnitCln - state.mZeroCln;
-
-                    float dist, b;
-                    if ( jLeft >= 0 && jLeft < vals_len) {
-                      dist = Float.parseFloat( vals[jLeft] ) * sLen - zLen;
-                      // b = ber - 90; if ( b < 0 ) b += 360;
-                      b = TDMath.in360( ber - 90 );
-                      shots.add( new ParserShot( from, TDString.EMPTY,
-                                 dist, b, 0, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                    if ( jRight >= 0 && jRight < vals_len) {
-                      dist = Float.parseFloat( vals[jRight] ) * sLen - zLen;
-                      // b = ber + 90; if ( b >= 360 ) b -= 360;
-                      b = TDMath.add90( ber );
-                      shots.add( new ParserShot( from, TDString.EMPTY,
-                                 dist, b, 0, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                    if ( jUp >= 0 && jUp < vals_len) {
-                      dist = Float.parseFloat( vals[jUp] ) * sLen - zLen;
-                      shots.add( new ParserShot( from, TDString.EMPTY,
-                                 dist, 0, 90, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                    if ( jDown >= 0 && jDown < vals_len) {
-                      dist = Float.parseFloat( vals[jDown] ) * sLen - zLen;
-                      shots.add( new ParserShot( from, TDString.EMPTY,
-                                 dist, 0, -90, 0.0f, DBlock.EXTEND_UNSET, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-
-                    // TODO add shot
-                    if ( to.equals("-") || to.equals(".") ) { // splay shot
-                      // FIXME splays
-                      shots.add( new ParserShot( from, TDString.EMPTY,
-                                            len, ber, cln, 0.0f,
-                                            DBlock.EXTEND_UNSET, 0, state.mDuplicate, state.mSurface, false, "" ) );
-                    } else {
-                      // Log.v( TopoDroidApp.TAG, "add shot " + from + " -- " + to);
-                      shots.add( new ParserShot( from, to,
-                                           len, ber, cln, 0.0f,
-                                           DBlock.EXTEND_RIGHT, 0, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                  } catch ( NumberFormatException e ) {
-                    TDLog.Error( "survex parser error: data " + line );
-                  }
-                }
-                // FIXME other data types
-              }
-            }            
-          }
         }
         line = nextLine( br );
       }
@@ -18,7 +18,6 @@ import java.io.FileReader;
 import java.io.BufferedReader;
 import java.util.ArrayList;
 // import java.util.Stack;
-import java.util.regex.Pattern;
 
 // import android.util.Log;
 
@@ -146,6 +145,21 @@ class ParserTherion extends ImportParser
     return fullname;
   }
 
+  // commands in a centerline: a line that begins with one of these is not a data line
+  private static final String[] CENTERLINE_COMMANDS = {
+    "encoding", "import", "grade", "revise", "join", "input", "surface", "map", "scrap", "survey",
+    "endcenterline", "endcentreline", "date", "team", "calibrate", "units", "sd", "declination",
+    "instrument", "flags", "cs", "mark", "station", "fix", "equate", "break", "infer",
+    "group", "endgroup", "walls", "vthreshold", "extend", "station_names", "data"
+  };
+
+  private static boolean isCenterlineCommand( ParserScanline scan )
+  {
+    if ( scan.startsWith( 0, "explo" ) ) return true;
+    for ( String command : CENTERLINE_COMMANDS ) if ( scan.equals( 0, command ) ) return true;
+    return false;
+  }
+
   /** read input file
    * @param filename name of the file to parse
    * @param basepath survey pathname base
@@ -168,8 +182,6 @@ class ParserTherion extends ImportParser
     int jUp    = -1;
     int jDown  = -1;
 
-    Pattern pattern = Pattern.compile( "\\s+" );
-
     try {
       String dirname = "./";
       int i = filename.lastIndexOf('/');
@@ -186,21 +198,74 @@ class ParserTherion extends ImportParser
         // Log.v( TopoDroidApp.TAG, "TH " + state.in_survey + " " + state.in_centerline + " " + state.in_data + " : " + line );
         line = line.trim();
         int pos = line.indexOf( '#' );
-        if ( pos >= 0 ) {
-          line = line.substring( 0, pos );
-        }
-        if ( line.length() > 0 ) {
-          String[] vals = pattern.split(line); // line.split( "\\s+" );
-          // int vals_len = 0;
-          // for ( int k=0; k<vals.length; ++k ) {
-          //   vals[vals_len] = vals[k];
-          //   if ( vals[vals_len].length() > 0 ) {
-          //     ++ vals_len;
-          //   }
-          // }
-          // Log.v( TopoDroidApp.TAG, "vals " + vals.length + " " + vals_len );
-          int vals_len = vals.length;
-          if ( vals_len > 0 ) {
+        mScan.set( line, ( pos >= 0 )? pos : line.length() );
+        int vals_len = mScan.size();
+        if ( vals_len > 0 ) {
+          if ( state.in_centerline && state.in_data && state.data_type == ParserUtil.DATA_NORMAL && vals_len >= 5
+            && ! ( state.in_map || state.in_surface || state.in_scrap || state.in_line || state.in_area )
+            && ! isCenterlineCommand( mScan ) ) { // data line: parsed in the scanline
+            if ( jFrom < vals_len && jTo < vals_len && jLength < vals_len && jCompass < vals_len && jClino < vals_len ) {
+              try {
+                String from = mScan.get( jFrom );
+                String to   = mScan.get( jTo );
+                float len  = mScan.floatValue( jLength );
+                float ber  = mScan.floatValue( jCompass );
+                float cln  = mScan.floatValue( jClino );
+
+                // measure = (read - zero)*scale
+                float zLen = state.mZeroLen;
+                float sLen = state.mScaleLen * state.mUnitLen;
+
+                len = (len - zLen) * sLen;
+                ber = (ber - state.mZeroBer) * state.mScaleBer * state.mUnitBer;
+                if ( mApplyDeclination ) ber += state.mDeclination;
+                ber = TDMath.in360( ber );
+                cln = (cln - state.mZeroCln) * state.mScaleCln * state.mUnitCln;
+
+                String station = state.mPrefix + from + state.mSuffix;
+                float dist, b;
+                if ( jLeft >= 0 && jLeft < vals_len ) {
+                  dist = (mScan.floatValue( jLeft ) - zLen) * sLen;
+                  b = TDMath.sub90( ber );
+                  shots.add( new ParserShot( station, TDString.EMPTY,
+                             dist, b, 0, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
+                }
+                if ( jRight >= 0 && jRight < vals_len ) {
+                  dist = (mScan.floatValue( jRight ) - zLen) * sLen;
+                  b = TDMath.add90( ber );
+                  shots.add( new ParserShot( station, TDString.EMPTY,
+                             dist, b, 0, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
+                }
+                if ( jUp >= 0 && jUp < vals_len ) {
+                  dist = (mScan.floatValue( jUp ) - zLen) * sLen;
+                  shots.add( new ParserShot( station, TDString.EMPTY,
+                             dist, 0, 90, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
+                }
+                if ( jDown >= 0 && jDown < vals_len ) {
+                  dist = (mScan.floatValue( jDown ) - zLen) * sLen;
+                  shots.add( new ParserShot( station, TDString.EMPTY,
+                             dist, 0, -90, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
+                }
+
+                if ( to.equals("-") || to.equals(".") ) { // splay shot
+                  // FIXME splays
+                  shots.add( new ParserShot( station, TDString.EMPTY,
+                                        len, ber, cln, 0.0f,
+                                        state.mExtend, 0, state.mDuplicate, state.mSurface, false, "" ) );
+                } else {
+                  // Log.v( TopoDroidApp.TAG, "add shot " + from + " -- " + to);
+                  shots.add( new ParserShot( station, state.mPrefix + to + state.mSuffix,
+                                       len, ber, cln, 0.0f,
+                                       state.mExtend, 0, state.mDuplicate, state.mSurface, false, "" ) );
+                }
+              } catch ( NumberFormatException e ) {
+                TDLog.Error( "therion parser error: data " + line );
+              }
+            } else {
+              TDLog.Error( "therion parser error: short data " + line );
+            }
+          } else { // command line
+            String[] vals = mScan.values();
             String cmd = vals[0];
             
             if ( cmd.equals("encoding" ) ) { 
@@ -626,73 +691,6 @@ class ParserTherion extends ImportParser
                 } else {
                   state.data_type = ParserUtil.DATA_NONE;
                 }
-              } else if ( state.in_data && vals_len >= 5 ) {
-                if ( state.data_type == ParserUtil.DATA_NORMAL ) {
-                  try {
-                    int sz = vals.length;
-                    String from = vals[jFrom];
-                    String to   = vals[jTo];
-                    float len  = Float.parseFloat( vals[jLength] );
-                    float ber  = Float.parseFloat( vals[jCompass] );
-                    float cln  = Float.parseFloat( vals[jClino] );
-
-		    // measure = (read - zero)*scale
-		    float zLen = state.mZeroLen;
-		    float sLen = state.mScaleLen * state.mUnitLen;
-
-                    len = (len - zLen) * sLen;
-                    ber = (ber - state.mZeroBer) * state.mScaleBer * state.mUnitBer;
-                    if ( mApplyDeclination ) ber += state.mDeclination;
-		    // if ( ber < 0 ) { ber += 360; } else if ( ber >= 360 ) { ber -= 360; }
-                    ber = TDMath.in360( ber );
-                    cln = (cln - state.mZeroCln) * state.mScaleCln * state.mUnitCln;
-
-                    float dist, b;
-                    if ( jLeft >= 0 && jLeft < sz ) {
-                      dist = (Float.parseFloat( vals[jLeft] ) - zLen) * sLen;
-                      // b = ber - 90; if ( b < 0 ) b += 360;
-                      b = TDMath.sub90( ber );
-                      shots.add( new ParserShot( state.mPrefix + from + state.mSuffix, TDString.EMPTY,
-                                 dist, b, 0, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                    if ( jRight >= 0 && jRight < sz ) {
-                      dist = (Float.parseFloat( vals[jRight] ) - zLen) * sLen;
-                      // b = ber + 90; if ( b >= 360 ) b -= 360;
-                      b = TDMath.add90( ber );
-                      shots.add( new ParserShot( state.mPrefix + from + state.mSuffix, TDString.EMPTY,
-                                 dist, b, 0, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                    if ( jUp >= 0 && jUp < sz ) {
-                      dist = (Float.parseFloat( vals[jUp] ) - zLen) * sLen;
-                      shots.add( new ParserShot( state.mPrefix + from + state.mSuffix, TDString.EMPTY,
-                                 dist, 0, 90, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                    if ( jDown >= 0 && jDown < sz ) {
-                      dist = (Float.parseFloat( vals[jDown] ) - zLen) * sLen;
-                      shots.add( new ParserShot( state.mPrefix + from + state.mSuffix, TDString.EMPTY,
-                                 dist, 0, -90, 0.0f, state.mExtend, 2, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-
-                    // TODO add shot
-                    if ( to.equals("-") || to.equals(".") ) { // splay shot
-                      // from = from + "@" + path;
-                      // FIXME splays
-                      shots.add( new ParserShot( state.mPrefix + from + state.mSuffix, TDString.EMPTY,
-                                            len, ber, cln, 0.0f,
-                                            state.mExtend, 0, state.mDuplicate, state.mSurface, false, "" ) );
-                    } else {
-                      // from = from + "@" + path;
-                      // to   = to + "@" + path;
-                      // Log.v( TopoDroidApp.TAG, "add shot " + from + " -- " + to);
-                      shots.add( new ParserShot( state.mPrefix + from + state.mSuffix, state.mPrefix + to + state.mSuffix,
-                                           len, ber, cln, 0.0f,
-                                           state.mExtend, 0, state.mDuplicate, state.mSurface, false, "" ) );
-                    }
-                  } catch ( NumberFormatException e ) {
-                    TDLog.Error( "therion parser error: data " + line );
-                  }
-                }
-                // FIXME other data types
               }            
             } else if ( cmd.equals("centerline") || cmd.equals("centreline") ) {
               // pushState( state );
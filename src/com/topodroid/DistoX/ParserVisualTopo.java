@@ -54,6 +54,12 @@ class ParserVisualTopo extends ImportParser
     return ( flag.indexOf('X') >= 0 );
   }
 
+  // @return true if the substring is "Dir"
+  private static boolean isDir( String s, int start, int end )
+  {
+    return end - start == 3 && s.startsWith( "Dir", start );
+  }
+
   private float angle( float value, float unit, boolean dm )
   {
     if ( dm ) {
@@ -105,16 +111,15 @@ class ParserVisualTopo extends ImportParser
         }
         if ( line.length() == 0 ) {    // comment
         } else {
-          String[] vals = splitLine(line); // line.split( "\\s+" );
+          mScan.set( line );
           if ( line.startsWith("Version") ) {
             // IGNORE
           } else if ( line.startsWith("Trou") ) {
-            String[] params = line.substring(5).split(",");
-            if ( params.length > 0 ) {
-              mName = params[0].replaceAll(" ","_");
-              // TODO coordinates
-            }
-          } else if ( vals[0].equals("Param") ) {
+            int comma = line.indexOf( ',', 5 );
+            mName = ( ( comma >= 0 )? line.substring( 5, comma ) : line.substring( 5 ) ).replace( ' ', '_' );
+            // TODO coordinates
+          } else if ( mScan.equals( 0, "Param" ) ) {
+            String[] vals = mScan.values();
             for ( int k = 1; k < vals.length; ++k ) {
               if ( vals[k].equals("Deca") ) {
                 if ( ++k < vals.length ) {
@@ -141,11 +146,13 @@ class ParserVisualTopo extends ImportParser
                   }
                 }
               } else if ( vals[k].startsWith("Dir") || vals[k].startsWith("Inv") ) {
-                String[] dirs = vals[k].split(",");
-                if ( dirs.length == 3 ) {
-                  dirb = ( dirs[0].equals("Dir") )? 1 : -1;
-                  dirc = ( dirs[1].equals("Dir") )? 1 : -1;
-                  dirw = ( dirs[2].equals("Dir") )? 1 : -1;
+                String dirs = vals[k]; // three comma-separated directions
+                int c1 = dirs.indexOf( ',' );
+                int c2 = ( c1 >= 0 )? dirs.indexOf( ',', c1+1 ) : -1;
+                if ( c2 > 0 && c2 + 1 < dirs.length() && dirs.indexOf( ',', c2+1 ) < 0 ) {
+                  dirb = isDir( dirs, 0, c1 )? 1 : -1;
+                  dirc = isDir( dirs, c1+1, c2 )? 1 : -1;
+                  dirw = isDir( dirs, c2+1, dirs.length() )? 1 : -1;
                 }
               } else if ( vals[k].equals("Inc") ) {
                 // FIXME splay at next station: Which ???
@@ -164,26 +171,27 @@ class ParserVisualTopo extends ImportParser
                 // ignore colors
               }
             }
-          } else if ( vals[0].equals("Entree") ) {
+          } else if ( mScan.equals( 0, "Entree" ) ) {
             // ignore
-          } else if ( vals[0].equals("Club") ) {
+          } else if ( mScan.equals( 0, "Club" ) ) {
             mTeam = line.substring(5);
-          } else if ( vals[0].equals("Couleur") ) {
+          } else if ( mScan.equals( 0, "Couleur" ) ) {
             // IGNORE
-          } else if ( vals[0].equals("Surface") ) {
+          } else if ( mScan.equals( 0, "Surface" ) ) {
             // IGNORE
           } else { // survey data
-            if ( vals.length >= 5 && ! vals[0].equals( vals[1] ) ) {
+            int kmax = mScan.size();
+            if ( kmax >= 5 && ! mScan.equals( 0, 1 ) ) {
               boolean splay = false;
               int k = 0;
-              mFrom = vals[k]; ++k; // 0
-              mTo   = vals[k]; ++k; // 1
+              mFrom = mScan.get( k ); ++k; // 0
+              mTo   = mScan.get( k ); ++k; // 1
               if ( mTo.equals( "*" ) ) splay = true;
               try {
                 String station = ( (splayAtFrom || splay )? mFrom : mTo );
-                mLength  = Float.parseFloat(vals[k]) * ul; ++k; // 2
-                mBearing = angle( Float.parseFloat(vals[k]), ub, dmb); ++k; // 3
-                mClino   = angle( Float.parseFloat(vals[k]), uc, dmc); ++k; // 5
+                mLength  = mScan.floatValue( k ) * ul; ++k; // 2
+                mBearing = angle( mScan.floatValue( k ), ub, dmb); ++k; // 3
+                mClino   = angle( mScan.floatValue( k ), uc, dmc); ++k; // 5
                 if ( splay ) {
                   shots.add( new ParserShot( mFrom, TDString.EMPTY, mLength, mBearing, mClino, 0.0f,
                                              DBlock.EXTEND_UNSET, 2, false, false, false, "" ) );
@@ -191,25 +199,25 @@ class ParserVisualTopo extends ImportParser
                 } else {
                   // Log.v("DistoX-VT", mFrom + " " + mTo + " " + mBearing + " DMB " + dmb + " UB " + ub );
                   mLeft = mRight = mUp = mDown = 0;
-                  if ( k < vals.length ) {
-                    mLeft  = vals[k].equals("*")? -1 : Float.parseFloat(vals[k]) * ul; ++k; // 5
+                  if ( k < kmax ) {
+                    mLeft  = mScan.equals( k, "*" )? -1 : mScan.floatValue( k ) * ul; ++k; // 5
                   }
-                  if ( k < vals.length ) {
-                    mRight = vals[k].equals("*")? -1 : Float.parseFloat(vals[k]) * ul; ++k; // 6
+                  if ( k < kmax ) {
+                    mRight = mScan.equals( k, "*" )? -1 : mScan.floatValue( k ) * ul; ++k; // 6
                   }
-                  if ( k < vals.length ) {
-                    mUp    = vals[k].equals("*")? -1 : Float.parseFloat(vals[k]) * ul; ++k; // 7
+                  if ( k < kmax ) {
+                    mUp    = mScan.equals( k, "*" )? -1 : mScan.floatValue( k ) * ul; ++k; // 7
                   }
-		  if ( k < vals.length ) {
-                    mDown  = vals[k].equals("*")? -1 : Float.parseFloat(vals[k]) * ul; ++k; // 8
+		  if ( k < kmax ) {
+                    mDown  = mScan.equals( k, "*" )? -1 : mScan.floatValue( k ) * ul; ++k; // 8
                   }
                   shot_extend = DBlock.EXTEND_RIGHT;
-                  if ( k < vals.length ) {
-                    shot_extend = vals[k].equals("N")? DBlock.EXTEND_RIGHT : DBlock.EXTEND_LEFT; ++k; // 'N' or 'I'
+                  if ( k < kmax ) {
+                    shot_extend = mScan.equals( k, "N" )? DBlock.EXTEND_RIGHT : DBlock.EXTEND_LEFT; ++k; // 'N' or 'I'
                   } 
                   duplicate = false;
-                  if ( k < vals.length ) {
-                    duplicate = vals[k].equals("E"); ++k;           // 'I' or 'E'
+                  if ( k < kmax ) {
+                    duplicate = mScan.equals( k, "E" ); ++k;           // 'I' or 'E'
                   }
 
                   if ( mLeft > 0 ) {
@@ -21,5 +21,6 @@ class PlotSave
   final static int MODIFIED = 5; 
   final static int OVERVIEW = 6; // used by OverviewWindow to save whole therion, svg, etc.
   final static int CREATE   = 7; 
+  final static int EVICT    = 8; // save binary of a plot evicted from the cache (never to the journal)
 
 }
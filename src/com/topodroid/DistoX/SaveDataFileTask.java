@@ -63,89 +63,119 @@ class SaveDataFileTask extends AsyncTask<Void, Void, String >
 
   // sync exec (immediate)
   String immed_exec() 
+  {
+    return exportSurvey( mType, mSid, mInfo, mData, mSurvey, mDevice, null );
+  }
+
+  /** export the survey data
+   * @param type    export type
+   * @param sid     survey id
+   * @param info    survey info
+   * @param data    database helper
+   * @param survey  survey name
+   * @param device  device (only for SVX)
+   * @param model   survey export model (null to read the survey data from the database)
+   * @return the filename (null on failure)
+   * @note called also by the export pipeline, possibly concurrently for different types
+   *
+   * The TDExporter methods keep their signatures: the model is handed to them through
+   * a thread-local, which is set only for the duration of this call, on the calling thread.
+   */
+  static String exportSurvey( int type, long sid, SurveyInfo info, DataHelper data, String survey, Device device, SurveyExportModel model )
+  {
+    if ( model == null ) return exportSurvey( type, sid, info, data, survey, device );
+    TDExporter.setExportModel( model );
+    try {
+      return exportSurvey( type, sid, info, data, survey, device );
+    } finally {
+      TDExporter.setExportModel( null );
+    }
+  }
+
+  private static String exportSurvey( int type, long sid, SurveyInfo info, DataHelper data, String survey, Device device )
   {
     String filename = null;
     // synchronized( TDPath.mTherionLock ) // FIXME-THREAD_SAFE
     { 
-      switch ( mType ) {
+      switch ( type ) {
         // case TDConst.DISTOX_EXPORT_TLX:
         //   filename = exportSurveyAsTlx();
         //   break;
-        case TDConst.DISTOX_EXPORT_CSX: // cSurvey (only mInfo, no plot-data)
-          filename = TDExporter.exportSurveyAsCsx( mSid, mData, mInfo, null, null, null, TDPath.getSurveyCsxFile( mSurvey ));
+        case TDConst.DISTOX_EXPORT_CSX: // cSurvey (only info, no plot-data)
+          filename = TDExporter.exportSurveyAsCsx( sid, data, info, null, null, null, TDPath.getSurveyCsxFile( survey ));
           break;
         case TDConst.DISTOX_EXPORT_CSV:
 	  if ( TDSetting.mCsvRaw ) {
-            filename = TDExporter.exportSurveyAsRawCsv( mSid, mData, mInfo, TDPath.getSurveyCsvFile( mSurvey ) );
+            filename = TDExporter.exportSurveyAsRawCsv( sid, data, info, TDPath.getSurveyCsvFile( survey ) );
           } else {
-            filename = TDExporter.exportSurveyAsCsv( mSid, mData, mInfo, TDPath.getSurveyCsvFile( mSurvey ) );
+            filename = TDExporter.exportSurveyAsCsv( sid, data, info, TDPath.getSurveyCsvFile( survey ) );
 	  }
           break;
         case TDConst.DISTOX_EXPORT_CAV: // Topo
-          filename = TDExporter.exportSurveyAsCav( mSid, mData, mInfo, TDPath.getSurveyCavFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsCav( sid, data, info, TDPath.getSurveyCavFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_DAT:
-          filename = TDExporter.exportSurveyAsDat( mSid, mData, mInfo, TDPath.getSurveyDatFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsDat( sid, data, info, TDPath.getSurveyDatFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_DXF:
-          List<DBlock> list = mData.selectAllShots( mSid, TDStatus.NORMAL );
+          List<DBlock> list = data.selectAllShots( sid, TDStatus.NORMAL );
           if ( list.size() > 0 ) {
             DBlock blk = list.get( 0 );
             // Log.v( TopoDroidApp.TAG, "DISTOX_EXPORT_DXF from " + blk.mFrom );
-            // float decl = mData.getSurveyDeclination( mSid );
+            // float decl = data.getSurveyDeclination( sid );
             // if ( decl >= SurveyInfo.DECLINATION_MAX ) decl = 0;
-            float decl = mInfo.getDeclination();
+            float decl = info.getDeclination();
             DistoXNum num = new DistoXNum( list, blk.mFrom, null, null, decl, null ); // null formatClosure
-            filename = TDExporter.exportSurveyAsDxf( mSid, mData, mInfo, num, TDPath.getSurveyDxfFile( mSurvey ) );
+            filename = TDExporter.exportSurveyAsDxf( sid, data, info, num, TDPath.getSurveyDxfFile( survey ) );
           }
           break;
         case TDConst.DISTOX_EXPORT_GRT: // Grottolf
           // TDToast.make( "WARNING Grottolf export is untested" );
-          filename = TDExporter.exportSurveyAsGrt( mSid, mData, mInfo, TDPath.getSurveyGrtFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsGrt( sid, data, info, TDPath.getSurveyGrtFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_GTX: // GHTopo
           // TDToast.make( "WARNING GHTopo export is untested" );
-          filename = TDExporter.exportSurveyAsGtx( mSid, mData, mInfo, TDPath.getSurveyGtxFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsGtx( sid, data, info, TDPath.getSurveyGtxFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_KML: // KML
-          filename = TDExporter.exportSurveyAsKml( mSid, mData, mInfo, TDPath.getSurveyKmlFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsKml( sid, data, info, TDPath.getSurveyKmlFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_JSON: // GeoJSON
-          filename = TDExporter.exportSurveyAsJson( mSid, mData, mInfo, TDPath.getSurveyJsonFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsJson( sid, data, info, TDPath.getSurveyJsonFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_SHP: // Shapefile
-          filename = TDExporter.exportSurveyAsShp( mSid, mData, mInfo, TDPath.getShpPath( mSurvey ) );
+          filename = TDExporter.exportSurveyAsShp( sid, data, info, TDPath.getShpPath( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_PLT: // Track file
-          filename = TDExporter.exportSurveyAsPlt( mSid, mData, mInfo, TDPath.getSurveyPltFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsPlt( sid, data, info, TDPath.getSurveyPltFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_PLG: // Polygon CAVE
-          filename = TDExporter.exportSurveyAsPlg( mSid, mData, mInfo, TDPath.getSurveyCaveFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsPlg( sid, data, info, TDPath.getSurveyCaveFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_SRV: // Walls
-          filename = TDExporter.exportSurveyAsSrv( mSid, mData, mInfo, TDPath.getSurveySrvFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsSrv( sid, data, info, TDPath.getSurveySrvFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_SUR: // WinKarst
           // TDToast.make( "WARNING WinKarst export is untested" );
-          filename = TDExporter.exportSurveyAsSur( mSid, mData, mInfo, TDPath.getSurveySurFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsSur( sid, data, info, TDPath.getSurveySurFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_SVX:
-          filename = TDExporter.exportSurveyAsSvx( mSid, mData, mInfo, mDevice, TDPath.getSurveySvxFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsSvx( sid, data, info, device, TDPath.getSurveySvxFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_TRO:
-          filename = TDExporter.exportSurveyAsTro( mSid, mData, mInfo, TDPath.getSurveyTroFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsTro( sid, data, info, TDPath.getSurveyTroFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_TRB: // TopoRobot
           // TDToast.make( "WARNING TopoRobot export is untested" );
-          filename = TDExporter.exportSurveyAsTrb( mSid, mData, mInfo, TDPath.getSurveyTrbFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsTrb( sid, data, info, TDPath.getSurveyTrbFile( survey ) );
           break;
         case TDConst.DISTOX_EXPORT_TOP: // PocketTopo
-          filename = TDExporter.exportSurveyAsTop( mSid, mData, mInfo, null, null, TDPath.getSurveyTopFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsTop( sid, data, info, null, null, TDPath.getSurveyTopFile( survey ) );
           break;
 
         case TDConst.DISTOX_EXPORT_TH:
         default:
-          filename = TDExporter.exportSurveyAsTh( mSid, mData, mInfo, TDPath.getSurveyThFile( mSurvey ) );
+          filename = TDExporter.exportSurveyAsTh( sid, data, info, TDPath.getSurveyThFile( survey ) );
           break;
       }
     }
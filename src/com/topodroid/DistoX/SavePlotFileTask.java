@@ -183,7 +183,11 @@ class SavePlotFileTask extends AsyncTask<Intent,Void,Boolean>
       }
       
       // second pass: save
-      if ( mSuffix != PlotSave.EXPORT ) {
+      // the intermediate saves append the changes to the journal of the tdr, when possible
+      if ( mManager != null && ( mSuffix == PlotSave.MODIFIED || mSuffix == PlotSave.TOGGLE || mSuffix == PlotSave.HANDLER )
+           && mManager.appendJournal( TDPath.getTdrFileWithExt( mFullName ) ) ) {
+        // Log.v( "DistoX", "saved journal " + mFullName );
+      } else if ( mSuffix != PlotSave.EXPORT ) {
 
         String filename = TDPath.getTdrFileWithExt( mFullName ) + TDPath.BCK_SUFFIX;
 
@@ -210,7 +214,7 @@ class SavePlotFileTask extends AsyncTask<Intent,Void,Boolean>
           DrawingIO.exportDataStream( mPaths, mType, file1, mFullName, mProjDir );
         } else {
           if ( mManager != null ) {
-            DrawingIO.exportDataStream( mManager, mType, file1, mFullName, mProjDir );
+            DrawingIO.exportDataStream( mManager, mType, file1, mFullName, mProjDir, true ); // true: tdr save
           }
         }
 
@@ -225,6 +229,7 @@ class SavePlotFileTask extends AsyncTask<Intent,Void,Boolean>
           File file0 = new File( filename1 );
           if ( file0.exists() ) file0.renameTo( new File( filename1 + TDPath.BCK_SUFFIX ) );
           file1.renameTo( new File( filename1 ) );
+          if ( mManager != null && mSuffix != PlotSave.CREATE ) mManager.commitSnapshot( filename1 );
         }
       }
     }
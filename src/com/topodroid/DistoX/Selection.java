@@ -4,6 +4,12 @@
  * @date feb 2013
  *
  * @brief Selection among drawing items
+ *
+ * The splays are not in the buckets: their midpoints are packed in a float array, with the splay paths
+ * at the same index, and a selection point is made only for the splays that are hit.
+ * The lines and areas with packed points are not in the buckets either: their points are inserted
+ * (and unpacked) when a selection query comes near their bounding box, so that the lines that
+ * are not edited stay packed.
  * --------------------------------------------------------
  *  Copyright This software is distributed under GPL-3.0 or later
  *  See the file COPYING.
@@ -15,6 +21,10 @@ package com.topodroid.DistoX;
 // import java.util.ListIterator;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Set;
 
 // import android.util.Log;
 
@@ -26,15 +36,29 @@ class Selection
 
   ArrayList< SelectionPoint > mPoints;
   ArrayList< SelectionBucket > mBuckets;
+  private HashMap< Long, SelectionBucket > mGrid; // buckets by grid cell
+
+  // splays by index
+  private DrawingPath[] mSplays  = new DrawingPath[ 256 ];
+  private float[]       mSplayXY = new float[ 512 ]; // midpoints x0 y0 x1 y1 ...
+  private int mSplayNr = 0;
+  // positions of the splays by block, not used when a splay has no block or two splays have the same block
+  private HashMap< DBlock, Integer > mSplayPos = new HashMap<>();
+  private boolean mSplayPosValid = true;
+
+  // lines and areas with packed points, not yet in the buckets
+  private HashSet< DrawingPointLinePath > mPacked = new HashSet<>();
 
   Selection( )
   {
     mPoints  = new ArrayList<>();
     mBuckets = new ArrayList<>();
+    mGrid    = new HashMap<>();
   }
 
   void shiftSelectionBy( float x, float y )  // synchronized by CommandManager
   {
+    insertAllPacked(); // the line points are shifted through the selection
     for ( SelectionPoint sp : mPoints ) {
       int t = sp.type();
       if ( t == DrawingPath.DRAWING_PATH_POINT
@@ -56,6 +80,7 @@ class Selection
 
   void scaleSelectionBy( float z, Matrix m ) // synchronized by CommandManager
   {
+    insertAllPacked(); // the line points are scaled through the selection
     for ( SelectionPoint sp : mPoints ) {
       int t = sp.type();
       if ( t == DrawingPath.DRAWING_PATH_POINT
@@ -79,6 +104,9 @@ class Selection
   {
     mPoints.clear();
     mBuckets.clear();
+    mGrid.clear();
+    mPacked.clear();
+    clearSplays();
   }
 
   void clearReferencePoints() // synchronized by CommandManager
@@ -91,6 +119,7 @@ class Selection
         it.remove( );
       }
     }
+    clearSplays();
   }
 
   // void clearDrawingPoints()
@@ -130,21 +159,19 @@ class Selection
   
   void insertLinePath( DrawingLinePath path ) // synchronized by CommandManager
   {
-    for ( LinePoint p2 = path.first(); p2 != null; p2 = p2.mNext ) {
-      insertItem( path, p2 );
-    }
+    insertPointLine( path );
   }
 
   void insertPath( DrawingPath path ) // synchronized by CommandManager
   {
     // Log.v("DistoX", "Selection insert path" );
-    // LinePoint p1;
-    LinePoint p2;
     switch ( path.mType ) {
       case DrawingPath.DRAWING_PATH_FIXED:
-      case DrawingPath.DRAWING_PATH_SPLAY:
         insertItem( path, null );
         break;
+      case DrawingPath.DRAWING_PATH_SPLAY:
+        insertSplay( path );
+        break;
       case DrawingPath.DRAWING_PATH_GRID:
         // nothing
         break;
@@ -155,21 +182,52 @@ class Selection
         insertItem( path, null );
         break;
       case DrawingPath.DRAWING_PATH_LINE:
-        DrawingLinePath lp = (DrawingLinePath)path;
-        for ( p2 = lp.first(); p2 != null; p2 = p2.mNext ) {
-          insertItem( path, p2 );
-        }
-        break;
       case DrawingPath.DRAWING_PATH_AREA:
-        DrawingAreaPath ap = (DrawingAreaPath)path;
-        for ( p2 = ap.first(); p2 != null; p2 = p2.mNext ) {
-          insertItem( path, p2 );
-        }
+        insertPointLine( (DrawingPointLinePath)path );
         break;
       default:
     }
   }
 
+  // a line with packed points is kept aside until a query comes near it
+  private void insertPointLine( DrawingPointLinePath path )
+  {
+    if ( path.isPacked() ) {
+      mPacked.add( path );
+    } else {
+      insertPoints( path );
+    }
+  }
+
+  private void insertPoints( DrawingPointLinePath path )
+  {
+    for ( LinePoint lp = path.first(); lp != null; lp = lp.mNext ) {
+      insertItem( path, lp );
+    }
+  }
+
+  // insert the points of the packed lines whose bounding box intersects the square [x-r,x+r]x[y-r,y+r]
+  private void insertPackedNear( float x, float y, float r )
+  {
+    if ( mPacked.isEmpty() ) return;
+    Iterator< DrawingPointLinePath > it = mPacked.iterator();
+    while ( it.hasNext() ) {
+      DrawingPointLinePath path = it.next();
+      if ( path.left <= x + r && path.right >= x - r && path.top <= y + r && path.bottom >= y - r ) {
+        it.remove();
+        insertPoints( path );
+      }
+    }
+  }
+
+  // insert the points of all the packed lines
+  private void insertAllPacked()
+  {
+    if ( mPacked.isEmpty() ) return;
+    for ( DrawingPointLinePath path : mPacked ) insertPoints( path );
+    mPacked.clear();
+  }
+
   void resetDistances()
   {
     // Log.v("DistoX", "Selection reset distances" );
@@ -204,7 +262,7 @@ class Selection
     SelectionPoint spmin = null;
     float x0 = sp.X();
     float y0 = sp.Y();
-    for ( SelectionBucket bucket : mBuckets ) {
+    for ( SelectionBucket bucket : getBucketsNear( x0, y0, dmin ) ) {
       if ( bucket.contains( x0, y0, dmin, dmin ) ) {
         for ( SelectionPoint sp2 : bucket.mPoints ) {
           if ( sp == sp2 ) continue;
@@ -232,7 +290,7 @@ class Selection
     SelectionPoint spmin = null;
     float x0 = sp.X();
     float y0 = sp.Y();
-    for ( SelectionBucket bucket : mBuckets ) {
+    for ( SelectionBucket bucket : getBucketsNear( x0, y0, dmin ) ) {
       if ( bucket.contains( x0, y0, dmin, dmin ) ) {
         for ( SelectionPoint sp2 : bucket.mPoints ) {
           if ( sp == sp2 ) continue;
@@ -296,6 +354,10 @@ class Selection
 
   void removePoint( SelectionPoint sp ) // synchronized by CommandManager
   {
+    if ( sp.type() == DrawingPath.DRAWING_PATH_SPLAY ) {
+      removeSplay( sp.mItem );
+      return;
+    }
     sp.setBucket( null );
     mPoints.remove( sp ); 
   }
@@ -304,6 +366,7 @@ class Selection
   {
     if ( path.mType == DrawingPath.DRAWING_PATH_LINE || path.mType == DrawingPath.DRAWING_PATH_AREA ) {
       DrawingPointLinePath line = (DrawingPointLinePath)path;
+      if ( mPacked.remove( line ) ) return; // no points in the buckets
       for ( LinePoint lp = line.first(); lp != null; lp = lp.mNext ) {
         for ( SelectionPoint sp : mPoints ) {
           if ( sp.mPoint == lp ) {
@@ -319,6 +382,125 @@ class Selection
           break;
         }
       }
+    } else if ( path.mType == DrawingPath.DRAWING_PATH_SPLAY ) {
+      removeSplay( path );
+    }
+  }
+
+  void removeSplays( Set<DBlock> blocks ) // synchronized by CommandManager
+  {
+    if ( mSplayPosValid ) {
+      for ( DBlock blk : blocks ) {
+        Integer k = mSplayPos.get( blk );
+        if ( k != null ) removeSplayAt( k );
+      }
+      return;
+    }
+    int n = 0;
+    for ( int k = 0; k < mSplayNr; ++k ) {
+      if ( blocks.contains( mSplays[k].mBlock ) ) continue;
+      mSplays[n] = mSplays[k];
+      mSplayXY[2*n]   = mSplayXY[2*k];
+      mSplayXY[2*n+1] = mSplayXY[2*k+1];
+      ++ n;
+    }
+    Arrays.fill( mSplays, n, mSplayNr, null );
+    mSplayNr = n;
+    reindexSplays();
+  }
+
+  // ---------------------------------------------------------------
+  // SPLAYS
+
+  private void insertSplay( DrawingPath path )
+  {
+    if ( mSplayNr == mSplays.length ) {
+      mSplays  = Arrays.copyOf( mSplays,  2 * mSplayNr );
+      mSplayXY = Arrays.copyOf( mSplayXY, 4 * mSplayNr );
+    }
+    indexSplay( path, mSplayNr );
+    mSplays[ mSplayNr ] = path;
+    mSplayXY[ 2*mSplayNr   ] = path.cx;
+    mSplayXY[ 2*mSplayNr+1 ] = path.cy;
+    ++ mSplayNr;
+  }
+
+  // the last splay is moved into the slot of the removed splay: the order of the splays does not matter
+  private void removeSplay( DrawingPath path )
+  {
+    if ( mSplayPosValid ) {
+      Integer k = mSplayPos.get( path.mBlock );
+      if ( k != null && mSplays[k] == path ) removeSplayAt( k );
+      return;
+    }
+    for ( int k = 0; k < mSplayNr; ++k ) {
+      if ( mSplays[k] == path ) {
+        -- mSplayNr;
+        mSplays[k] = mSplays[ mSplayNr ];
+        mSplayXY[2*k]   = mSplayXY[ 2*mSplayNr ];
+        mSplayXY[2*k+1] = mSplayXY[ 2*mSplayNr+1 ];
+        mSplays[ mSplayNr ] = null;
+        return;
+      }
+    }
+  }
+
+  private void clearSplays()
+  {
+    Arrays.fill( mSplays, 0, mSplayNr, null );
+    mSplayNr = 0;
+    mSplayPos.clear();
+    mSplayPosValid = true;
+  }
+
+  private void indexSplay( DrawingPath path, int pos )
+  {
+    if ( path.mBlock == null || mSplayPos.put( path.mBlock, pos ) != null ) mSplayPosValid = false;
+  }
+
+  private void reindexSplays()
+  {
+    mSplayPos.clear();
+    mSplayPosValid = true;
+    for ( int k = 0; k < mSplayNr; ++k ) indexSplay( mSplays[k], k );
+  }
+
+  // with a valid index
+  private void removeSplayAt( int k )
+  {
+    mSplayPos.remove( mSplays[k].mBlock );
+    -- mSplayNr;
+    if ( k < mSplayNr ) {
+      mSplays[k] = mSplays[ mSplayNr ];
+      mSplayXY[2*k]   = mSplayXY[ 2*mSplayNr ];
+      mSplayXY[2*k+1] = mSplayXY[ 2*mSplayNr+1 ];
+      mSplayPos.put( mSplays[k].mBlock, k );
+    }
+    mSplays[ mSplayNr ] = null;
+  }
+
+  // add to the selection set the splays whose midpoint is within the radius
+  // @param station_splay   stations with splays on/off (null: all the splays)
+  // @param splays          whether the splays are shown (used only with station_splay)
+  private void splaysSelectAt( float x, float y, float radius, SelectionSet sel, boolean splays, DrawingStationSplay station_splay )
+  {
+    float r2 = radius * radius;
+    for ( int k = 0; k < mSplayNr; ++k ) {
+      float dx = mSplayXY[2*k]   - x;
+      float dy = mSplayXY[2*k+1] - y;
+      float d2 = dx*dx + dy*dy;
+      if ( d2 >= r2 ) continue;
+      DrawingPath path = mSplays[k];
+      if ( station_splay != null ) {
+        if ( splays ) {
+          if ( station_splay.isStationOFF( path ) ) continue;
+        } else {
+          if ( ! station_splay.isStationON( path ) ) continue;
+        }
+      }
+      SelectionPoint sp = new SelectionPoint( path, null, null );
+      sp.setDistance( (float)Math.sqrt( d2 ) );
+      sel.addPoint( sp );
     }
   }
 
@@ -342,7 +524,7 @@ class Selection
     // FIXED use buckets
     float x0 = lp.x;
     float y0 = lp.y;
-    for ( SelectionBucket bucket : mBuckets ) {
+    for ( SelectionBucket bucket : getBucketsNear( x0, y0, 10f ) ) {
       if ( bucket.contains( x0, y0, 10f, 10f ) ) {
         for ( SelectionPoint sp : bucket.mPoints ) {
           if ( lp == sp.mPoint ) return sp;
@@ -362,7 +544,7 @@ class Selection
   {  
     float min_distance = radius;
     SelectionPoint ret = null;
-    for ( SelectionBucket bucket : mBuckets ) {
+    for ( SelectionBucket bucket : getBucketsNear( x, y, radius ) ) {
       if ( bucket.contains( x, y, radius, radius ) ) {
         for ( SelectionPoint sp : bucket.mPoints ) {
           if ( sp.mItem == item ) {
@@ -382,7 +564,8 @@ class Selection
   {
     // Log.v("DistoX", "bucket select at " + x + " " + y + " R " + radius + " buckets " + mBuckets.size() );
     if ( mode == Drawing.FILTER_ALL ) {
-      for ( SelectionBucket bucket : mBuckets ) {
+      splaysSelectAt( x, y, radius, sel, splays, station_splay );
+      for ( SelectionBucket bucket : getBucketsNear( x, y, radius ) ) {
         if ( bucket.contains( x, y, radius, radius ) ) {
           for ( SelectionPoint sp : bucket.mPoints ) {
             int type = sp.type();
@@ -390,13 +573,7 @@ class Selection
             // if ( !splays && type == DrawingPath.DRAWING_PATH_SPLAY ) continue;
             if ( !stations && (    type == DrawingPath.DRAWING_PATH_STATION 
                                 || type == DrawingPath.DRAWING_PATH_NAME ) ) continue;
-            if ( type == DrawingPath.DRAWING_PATH_SPLAY && station_splay != null ) {
-              if ( splays ) {
-                if ( station_splay.isStationOFF( sp.mItem ) ) continue;
-	      } else {
-                if ( ! station_splay.isStationON( sp.mItem ) ) continue;
-	      }
-	    } else if ( type == DrawingPath.DRAWING_PATH_POINT
+	    if ( type == DrawingPath.DRAWING_PATH_POINT
 	             || type == DrawingPath.DRAWING_PATH_LINE 
 	             || type == DrawingPath.DRAWING_PATH_AREA ) {
               if ( ! DrawingLevel.isLevelVisible( sp.mItem ) ) continue;
@@ -411,11 +588,12 @@ class Selection
       }
     } else if ( mode == Drawing.FILTER_SHOT ) {
       if ( ! (legs || splays) ) return;
-      for ( SelectionBucket bucket : mBuckets ) {
+      if ( splays ) splaysSelectAt( x, y, radius, sel, true, null );
+      if ( ! legs ) return;
+      for ( SelectionBucket bucket : getBucketsNear( x, y, radius ) ) {
         if ( bucket.contains( x, y, radius, radius ) ) {
           for ( SelectionPoint sp : bucket.mPoints ) {
-            if ( ( legs && sp.type() == DrawingPath.DRAWING_PATH_FIXED ) ||
-                 ( splays && sp.type() == DrawingPath.DRAWING_PATH_SPLAY ) ) {
+            if ( sp.type() == DrawingPath.DRAWING_PATH_FIXED ) {
               if ( sp.distance( x, y ) < radius ) sel.addPoint( sp );
             }
           }
@@ -423,7 +601,7 @@ class Selection
       }
     } else if ( mode == Drawing.FILTER_STATION ) {
       if ( ! stations ) return;
-      for ( SelectionBucket bucket : mBuckets ) {
+      for ( SelectionBucket bucket : getBucketsNear( x, y, radius ) ) {
         if ( bucket.contains( x, y, radius, radius ) ) {
           for ( SelectionPoint sp : bucket.mPoints ) {
             if (    sp.type() == DrawingPath.DRAWING_PATH_STATION 
@@ -438,7 +616,7 @@ class Selection
       if ( mode == Drawing.FILTER_POINT ) { type = DrawingPath.DRAWING_PATH_POINT; }
       else if ( mode == Drawing.FILTER_LINE ) { type = DrawingPath.DRAWING_PATH_LINE; }
       else if ( mode == Drawing.FILTER_AREA ) { type = DrawingPath.DRAWING_PATH_AREA; }
-      for ( SelectionBucket bucket : mBuckets ) {
+      for ( SelectionBucket bucket : getBucketsNear( x, y, radius ) ) {
         if ( bucket.contains( x, y, radius, radius ) ) {
           for ( SelectionPoint sp : bucket.mPoints ) {
             if ( sp.type() == type && ! DrawingLevel.isLevelVisible( sp.mItem ) ) {
@@ -459,7 +637,7 @@ class Selection
   private void bucketSelectAt(float x,float y,float radius,int type, SelectionSet sel )
   {
     // Log.v("DistoX", "bucket select at " + x + " " + y + " R " + radius + " buckets " + mBuckets.size() );
-    for ( SelectionBucket bucket : mBuckets ) {
+    for ( SelectionBucket bucket : getBucketsNear( x, y, radius ) ) {
       if ( bucket.contains( x, y, radius, radius ) ) {
         for ( SelectionPoint sp : bucket.mPoints ) {
           if ( sp.type() == type && DrawingLevel.isLevelVisible( sp.mItem ) && sp.distance( x, y ) < radius ) {
@@ -477,15 +655,45 @@ class Selection
   }
 
 
+  // key of the grid cell (i,j)
+  private static Long cellKey( int i, int j ) { return Long.valueOf( ( ((long)i) << 32 ) | ( j & 0xffffffffL ) ); }
+
+  private static int cellIndex( float x ) { return (int)Math.floor( x / BSIZE ); }
+
   private SelectionBucket getBucket( float x, float y )
   {
-    for ( SelectionBucket bucket : mBuckets ) {
-      if ( bucket.contains( x, y ) ) return bucket;
-    }
-    float x0 = BSIZE * (float)Math.floor(x / BSIZE);
-    float y0 = BSIZE * (float)Math.floor(y / BSIZE);
-    SelectionBucket ret = new SelectionBucket( x0, y0, x0+BSIZE, y0+BSIZE );
+    int i = cellIndex( x );
+    int j = cellIndex( y );
+    Long key = cellKey( i, j );
+    SelectionBucket ret = mGrid.get( key );
+    if ( ret != null ) return ret;
+    float x0 = BSIZE * (float)i;
+    float y0 = BSIZE * (float)j;
+    ret = new SelectionBucket( x0, y0, x0+BSIZE, y0+BSIZE );
     mBuckets.add( ret );
+    mGrid.put( key, ret );
+    return ret;
+  }
+
+  /** buckets of the grid cells that intersect the square [x-r,x+r]x[y-r,y+r]
+   * @note the caller must still check the bucket extended-contains
+   * @note the points of the packed lines near the square are inserted first
+   */
+  private ArrayList< SelectionBucket > getBucketsNear( float x, float y, float r )
+  {
+    insertPackedNear( x, y, r );
+    int i1 = cellIndex( x - r );
+    int i2 = cellIndex( x + r );
+    int j1 = cellIndex( y - r );
+    int j2 = cellIndex( y + r );
+    if ( (long)(i2 - i1 + 1) * (long)(j2 - j1 + 1) > mBuckets.size() ) return mBuckets; // large radius: scan all buckets
+    ArrayList< SelectionBucket > ret = new ArrayList<>();
+    for ( int i = i1; i <= i2; ++i ) {
+      for ( int j = j1; j <= j2; ++j ) {
+        SelectionBucket bucket = mGrid.get( cellKey( i, j ) );
+        if ( bucket != null ) ret.add( bucket );
+      }
+    }
     return ret;
   }
 
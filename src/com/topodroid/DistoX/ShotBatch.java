@@ -0,0 +1,182 @@
+/* @file ShotBatch.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid batched insertion of the downloaded shots
+ *
+ * The shots are queued and inserted in the database in a single transaction,
+ * when the queue is full, or the oldest queued shot has waited long enough.
+ * The ids of the shots are assigned in the transaction, so that the shots are committed in the order of the ids,
+ * and the queue is flushed before any other shot is inserted and before the shots are read.
+ * The vector data (X310) are merged into the queued shot.
+ * The lister is notified of the shots after they have been inserted, in order.
+ * The queued shots have been acknowledged to the DistoX: if the app dies before they are inserted
+ * they must be read again from the DistoX memory.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Message;
+
+import java.util.ArrayList;
+
+// import android.util.Log;
+
+class ShotBatch
+{
+  private static final int MAX_SHOTS = 64;  // max nr. of queued shots
+  private static final int MAX_DELAY = 200; // msec: max wait of a queued shot
+
+  // queued shot
+  static class Shot
+  {
+    final long sid;
+    long id = -1;   // shot id, assigned when the shot is inserted
+    final long millis;
+    final double d, b, c;
+    double r;
+    double acc = 0, mag = 0, dip = 0;
+    final long status;
+    final String addr;
+    final Handler lister;
+
+    Shot( long s, double d0, double b0, double c0, double r0, long st, String a, Handler l )
+    {
+      sid = s;
+      millis = System.currentTimeMillis()/1000;
+      d = d0;
+      b = b0;
+      c = c0;
+      r = r0;
+      status = st;
+      addr   = a;
+      lister = l;
+    }
+  }
+
+  private ArrayList< Shot > mShots = new ArrayList<>(); // guarded by this
+  private long mFirstTime = 0;   // time the oldest queued shot was queued [msec]
+  private Thread mFlusher = null; // flusher thread: it exits when the queue is empty
+
+  private int mNrFlushes = 0;
+  private int mNrShots   = 0;
+
+  /** queue a DistoX shot
+   * @param sid     survey id
+   * @param d       distance
+   * @param b       azimuth
+   * @param c       clino
+   * @param r       roll
+   * @param status  shot status
+   * @param addr    device address
+   * @param lister  lister to notify after the shot has been inserted (can be null)
+   * @return the queued shot
+   */
+  synchronized Shot add( long sid, double d, double b, double c, double r, long status, String addr, Handler lister )
+  {
+    if ( mShots.isEmpty() ) {
+      mFirstTime = System.currentTimeMillis();
+      TopoDroidApp.mData.setPendingBatch( this );
+    }
+    Shot shot = new Shot( sid, d, b, c, r, status, addr, lister );
+    mShots.add( shot );
+    if ( mShots.size() >= MAX_SHOTS ) {
+      flush();
+    } else if ( mFlusher == null ) {
+      startFlusher();
+    }
+    return shot;
+  }
+
+  /** set the vector data of a shot: if the shot is queued they are merged into it
+   * @param shot    shot
+   * @param acc     acceleration
+   * @param mag     magnetic field
+   * @param dip     magnetic dip
+   * @param r       roll
+   */
+  synchronized void setAMDR( Shot shot, double acc, double mag, double dip, double r )
+  {
+    if ( shot.id < 0 ) { // queued
+      shot.acc = acc;
+      shot.mag = mag;
+      shot.dip = dip;
+      shot.r   = r;
+    } else {
+      TopoDroidApp.mData.updateShotAMDR( shot.id, shot.sid, acc, mag, dip, r );
+    }
+  }
+
+  /** insert the queued shots, and notify the listers
+   * if the insertion fails the shots stay in the queue
+   */
+  synchronized void flush()
+  {
+    if ( mShots.isEmpty() ) return;
+    if ( ! TopoDroidApp.mData.insertDistoXShots( mShots ) ) {
+      TDLog.Error( "shot batch: failed insert of " + mShots.size() + " shots" );
+      mFirstTime = System.currentTimeMillis(); // retry after MAX_DELAY
+      return;
+    }
+    ++ mNrFlushes;
+    mNrShots += mShots.size();
+    for ( Shot shot : mShots ) {
+      if ( shot.lister != null ) {
+        Message msg = shot.lister.obtainMessage( Lister.LIST_UPDATE );
+        Bundle bundle = new Bundle();
+        bundle.putLong( Lister.BLOCK_ID, shot.id );
+        msg.setData(bundle);
+        shot.lister.sendMessage(msg);
+      }
+    }
+    mShots.clear();
+  }
+
+  /** insert the queued shots, and stop the flusher thread
+   */
+  void close()
+  {
+    Thread flusher;
+    synchronized( this ) {
+      flush();
+      flusher = mFlusher;
+      mFlusher = null;
+    }
+    if ( flusher != null ) flusher.interrupt();
+    TopoDroidApp.mData.clearPendingBatch( this );
+    TDLog.Log( TDLog.LOG_COMM, "shot batch: shots " + mNrShots + " transactions " + mNrFlushes );
+  }
+
+  // the flusher thread inserts the queued shots when the oldest has waited MAX_DELAY
+  // it exits when the queue is empty, and it is started again by the next shot
+  private void startFlusher()
+  {
+    mFlusher = new Thread( "shot batch" ) {
+      public void run()
+      {
+        synchronized( ShotBatch.this ) {
+          try {
+            while ( mFlusher == this && ! mShots.isEmpty() ) {
+              long wait = mFirstTime + MAX_DELAY - System.currentTimeMillis();
+              if ( wait > 0 ) {
+                ShotBatch.this.wait( wait );
+              } else {
+                flush();
+              }
+            }
+          } catch ( InterruptedException e ) {
+          } finally {
+            if ( mFlusher == this ) mFlusher = null;
+          }
+        }
+      }
+    };
+    mFlusher.start();
+  }
+}
@@ -207,6 +207,7 @@ public class ShotWindow extends Activity
   // private int mListPos = -1;
   // private int mListTop = 0;
   private DBlockAdapter mDataAdapter;
+  private StationNameEngine mStationNames = null; // station naming of the downloaded shots
   // private ArrayAdapter< String > mDataAdapter;
   private ArrayList< String > mShowSplay;
 
@@ -357,6 +358,7 @@ public class ShotWindow extends Activity
   {
     // highlightBlocks( null );
     if ( mApp_mData != null && TDInstance.sid >= 0 ) {
+      if ( mStationNames != null ) mStationNames.invalidate();
       List<DBlock> list = mApp_mData.selectAllShots( TDInstance.sid, TDStatus.NORMAL );
       mSurveyAccuracy = new SurveyAccuracy( list ); 
       // if ( list.size() > 4 ) SurveyAccuracy.setBlocks( list );
@@ -399,7 +401,7 @@ public class ShotWindow extends Activity
 
   // add a block to the adapter (ILister interface)
   // called by the RFcommThread after receiving a data packet
-  // this is the only place where assignStationsAll is called: 
+  // the station names are assigned by the naming engine, only to the new blocks
   // synchronize it
   @Override
   synchronized public void updateBlockList( long blk_id )
@@ -410,11 +412,8 @@ public class ShotWindow extends Activity
       // FIXME 3.3.0
       if ( mDataAdapter.addDataBlock( blk ) ) {
         mSurveyAccuracy.addBlockAMD( blk );
-        if ( StationPolicy.doBacksight() || StationPolicy.doTripod() ) {
-          mApp.assignStationsAll( mDataAdapter.mItems );
-        } else {
-          mApp.assignStationsAll( mDataAdapter.getItemsForAssign() );
-        }
+        if ( mStationNames == null ) mStationNames = new StationNameEngine( mApp );
+        mStationNames.assignStations( mDataAdapter.mItems );
         // mApp_mData.getShotName( TDInstance.sid, blk );
 
         mList.post( new Runnable() {
@@ -1661,6 +1660,7 @@ public class ShotWindow extends Activity
     //       + " blk type " + blk.getBlockType() + " comment " + comment );
 
     blk.setBlockName( from, to, (leg == LegType.BACK) );
+    if ( mStationNames != null ) mStationNames.invalidate();
 
     int ret = mApp_mData.updateShot( blk.mId, TDInstance.sid, from, to, extend, flag, leg, comment );
 
@@ -1895,6 +1895,7 @@ public class ShotWindow extends Activity
   public void updateSplayShots( String from, String to, long extend, long flag, long leg, String comment, DBlock blk )
   {
     ArrayList< DBlock > splays = mDataAdapter.getSplaysAtId( blk.mId, blk.mFrom );
+    if ( mStationNames != null ) mStationNames.invalidate();
     for ( DBlock b : splays ) {
       if ( b.mId == blk.mId ) {
         blk.setBlockName( from, to );
@@ -2073,6 +2074,7 @@ public class ShotWindow extends Activity
       shots = mApp_mData.selectAllShotsAfter( blk.mId, TDInstance.sid, TDStatus.NORMAL );
     // }
     // Log.v("DistoX", "shots " + shots.size() );
+    if ( mStationNames != null ) mStationNames.invalidate();
     mApp.assignStationsAfter( blk, shots /*, stations */ );
 
     // DEBUG re-assign all the stations
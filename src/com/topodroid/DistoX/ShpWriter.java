@@ -934,10 +934,12 @@ class ShpPolyline extends ShpObject
   private void writeShpRecord( int cnt, int len, DrawingPointLinePath ln, int close, float x0, float y0, float scale )
   {
     double xmin, ymin, xmax, ymax;
-    LinePoint pt = ln.mFirst;
+    DrawingPointLinePath.PointIterator pt = ln.pointIterator();
+    pt.next();
     xmin = xmax =  pt.x;
     ymin = ymax = -pt.y;
-    for ( pt = pt.mNext; pt != null; pt = pt.mNext ) {
+    while ( pt.hasNext() ) {
+      pt.next();
       if (  pt.x < xmin ) { xmin =  pt.x; } else if (  pt.x > xmax ) { xmax =  pt.x; }
       if ( -pt.y < ymin ) { ymin = -pt.y; } else if ( -pt.y > ymax ) { ymax = -pt.y; }
     }
@@ -956,12 +958,14 @@ class ShpPolyline extends ShpObject
     shpBuffer.putInt( 1 ); // one part: number of parts
     shpBuffer.putInt( ln.size() + close ); // total number of points
     shpBuffer.putInt( 0 ); // part 0 starts with point 0 
-    for ( pt = ln.mFirst; pt != null; pt = pt.mNext ) {
+    for ( pt = ln.pointIterator(); pt.hasNext(); ) {
+      pt.next();
       shpBuffer.putDouble( x0+scale*pt.x );
       shpBuffer.putDouble( y0-scale*pt.y );
     }
     if ( close == 1 ) {
-      pt = ln.mFirst;
+      pt = ln.pointIterator();
+      pt.next();
       shpBuffer.putDouble( x0+scale*pt.x );
       shpBuffer.putDouble( y0-scale*pt.y );
     }
@@ -977,14 +981,17 @@ class ShpPolyline extends ShpObject
     int nrs = ( lns != null )? lns.size() : 0;
     if ( nrs > 0 ) {
       DrawingPointLinePath ln = lns.get(0);
-      LinePoint pt = ln.mFirst;
+      DrawingPointLinePath.PointIterator pt = ln.pointIterator();
+      pt.next();
       initBBox( x0+scale*pt.x, y0-scale*pt.y );
-      for ( pt = pt.mNext; pt != null; pt = pt.mNext ) {
+      while ( pt.hasNext() ) {
+        pt.next();
         updateBBox( x0+scale*pt.x, y0-scale*pt.y );
       }
       for ( int k=1; k<nrs; ++k ) {
         ln = lns.get(k);
-        for ( pt = ln.mFirst; pt != null; pt = pt.mNext ) {
+        for ( pt = ln.pointIterator(); pt.hasNext(); ) {
+          pt.next();
           updateBBox( x0+scale*pt.x, y0-scale*pt.y );
         }
       }
@@ -0,0 +1,149 @@
+/* @file StationNameEngine.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid station naming of the shots as they are downloaded
+ *
+ * The engine keeps the station names of the legs and the restart point of the naming policy,
+ * so that a new shot is named by running the policy only on the shots from the restart point,
+ * instead of querying all the station names and running the policy on the whole list.
+ * The restart point is a leg where the policy resets its state: for the backsight policy
+ * a foresight leg, for the other policies any leg.
+ * The engine makes a full pass when the list, the survey or the policy changes,
+ * or when it is invalidated because the shots have been edited.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.List;
+import java.util.Set;
+
+// import android.util.Log;
+
+class StationNameEngine
+{
+  private static final int POLICY_DEFAULT   = 0;
+  private static final int POLICY_BACKSIGHT = 1;
+  private static final int POLICY_TRIPOD    = 2;
+  private static final int POLICY_TROBOT    = 3;
+
+  private final TopoDroidApp mApp;
+
+  private Set<String> mStations = null; // station names of the legs (null: full pass)
+  private long mSid = -1;
+  private int  mPolicy = -1;            // naming policy of the last pass
+  private int  mSurveyStations = -1;
+  private boolean mShotAfterSplays = false;
+  private boolean mBackshot = false;
+  private int  mSize   = 0;             // nr. of blocks of the list at the last pass
+  private long mLastId = -1;            // id of the last block of the list at the last pass
+  private int  mRestart   = 0;          // index of the restart block
+  private long mRestartId = -1;         // id of the restart block
+
+  StationNameEngine( TopoDroidApp app )
+  {
+    mApp = app;
+  }
+
+  /** force a full pass at the next assignment
+   * to be called when the shots have been edited
+   */
+  synchronized void invalidate() { mStations = null; }
+
+  /** assign station names to the blocks appended to the list
+   * @param list   list of blocks (the blocks of the survey in order)
+   */
+  synchronized void assignStations( List<DBlock> list )
+  {
+    int size = list.size();
+    if ( size == 0 ) {
+      mStations = null;
+      return;
+    }
+    int policy = getPolicy();
+    int start = -1;
+    if ( mStations != null
+      && mSid == TDInstance.sid
+      && mPolicy == policy
+      && mSurveyStations == StationPolicy.mSurveyStations
+      && mShotAfterSplays == StationPolicy.mShotAfterSplays
+      && mBackshot == TDSetting.mDistoXBackshot
+      && size >= mSize
+      && list.get( mSize-1 ).mId == mLastId
+      && list.get( mRestart ).mId == mRestartId ) {
+      start = mRestart;
+    }
+    if ( start < 0 ) {
+      // TDLog.Log( TDLog.LOG_SHOT, "station names: full pass. size " + size );
+      mStations = TopoDroidApp.mData.selectAllStations( TDInstance.sid );
+      mSid      = TDInstance.sid;
+      mPolicy   = policy;
+      mSurveyStations  = StationPolicy.mSurveyStations;
+      mShotAfterSplays = StationPolicy.mShotAfterSplays;
+      mBackshot        = TDSetting.mDistoXBackshot;
+      // backsight and tripod need the whole list, the others start at the last leg
+      start = ( policy == POLICY_BACKSIGHT || policy == POLICY_TRIPOD )? 0 : lastLeg( list );
+    }
+    List<DBlock> window = list.subList( start, size );
+    makeStationName( policy ).assignStations( window, mStations );
+
+    // the names of the new legs, and the new restart point
+    String oldFrom = "empty"; // same as the backsight policy
+    int restart = start;
+    for ( int k = start; k < size; ++k ) {
+      DBlock blk = list.get( k );
+      if ( blk.mFrom.length() == 0 || blk.mTo.length() == 0 ) continue;
+      mStations.add( blk.mFrom );
+      mStations.add( blk.mTo );
+      if ( policy == POLICY_BACKSIGHT ) {
+        if ( mBackshot ) {
+          if ( blk.mFrom.equals( oldFrom ) ) continue; // backsight leg
+          oldFrom = blk.mTo;
+        } else {
+          if ( blk.mTo.equals( oldFrom ) ) continue; // backsight leg
+          oldFrom = blk.mFrom;
+        }
+      }
+      restart = k;
+    }
+    mRestart   = restart;
+    mRestartId = list.get( restart ).mId;
+    mSize      = size;
+    mLastId    = list.get( size-1 ).mId;
+    // Log.v("DistoX", "station names: window " + start + "-" + size + " restart " + mRestart );
+  }
+
+  // @return the index of the last leg (0 if there is no leg)
+  private static int lastLeg( List<DBlock> list )
+  {
+    int k = list.size() - 1;
+    for ( ; k > 0; --k ) {
+      DBlock blk = list.get( k );
+      if ( blk.mFrom.length() > 0 && blk.mTo.length() > 0 ) break;
+    }
+    return k;
+  }
+
+  // same policy selection as TopoDroidApp.assignStationsAll
+  private static int getPolicy()
+  {
+    if ( StationPolicy.doTopoRobot() ) return POLICY_TROBOT;
+    if ( StationPolicy.doBacksight() ) return POLICY_BACKSIGHT;
+    if ( StationPolicy.doTripod() )    return POLICY_TRIPOD;
+    return POLICY_DEFAULT;
+  }
+
+  private StationName makeStationName( int policy )
+  {
+    switch ( policy ) {
+      case POLICY_TROBOT:    return new StationNameTRobot( mApp, TopoDroidApp.mData, TDInstance.sid );
+      case POLICY_BACKSIGHT: return new StationNameBacksight( mApp, TopoDroidApp.mData, TDInstance.sid );
+      case POLICY_TRIPOD:    return new StationNameTripod( mApp, TopoDroidApp.mData, TDInstance.sid );
+    }
+    return new StationNameDefault( mApp, TopoDroidApp.mData, TDInstance.sid );
+  }
+}
@@ -0,0 +1,81 @@
+/* @file SurveyExportModel.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid survey data shared by the exports of several formats
+ *
+ * The export shots are read from the database once (and the clino is set in diving mode),
+ * and the reductions are computed once for each set of parameters.
+ * The lists are not modified after the model is made: the exports can read them concurrently.
+ * The reductions are made under the model lock, because a reduction marks the shots.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
+
+// import android.util.Log;
+
+class SurveyExportModel
+{
+  final long mSid;
+  final List<DBlock> mShots;  // normal export shots
+  final List<DBlock> mChecks; // check export shots
+
+  private List< FixedInfo > mFixeds = null;
+  private final HashMap< String, DistoXNum > mNums = new HashMap<>();             // reductions by start station
+  private final HashMap< String, List<DistoXNum> > mGeoNums = new HashMap<>();    // geolocalized reductions by parameters
+
+  /** load the survey data
+   * @param sid    survey id
+   * @param data   database helper
+   */
+  SurveyExportModel( long sid, DataHelper data )
+  {
+    mSid = sid;
+    List<DBlock> shots = data.selectAllExportShots( sid, TDStatus.NORMAL );
+    TDExporter.checkShotsClino( shots );
+    mShots  = Collections.unmodifiableList( shots );
+    mChecks = Collections.unmodifiableList( data.selectAllExportShots( sid, TDStatus.CHECK ) );
+  }
+
+  /** @return the reduction of the normal shots, without declination
+   * @param start   start station
+   */
+  synchronized DistoXNum getNum( String start )
+  {
+    DistoXNum num = mNums.get( start );
+    if ( num == null ) {
+      num = new DistoXNum( mShots, start, null, null, 0.0f, null ); // no declination, null formatClosure
+      mNums.put( start, num );
+    }
+    return num;
+  }
+
+  /** @return the geolocalized reductions of the normal shots, one for each fixed station or for each component (null if there are no fixed stations)
+   * @param data       database helper
+   * @param decl       declination
+   * @param asl_factor altitude factor
+   * @param ellipsoid_altitude whether to use the ellipsoid altitude
+   * @param by_component  whether to reduce each connected component once
+   */
+  synchronized List<DistoXNum> getGeolocalizedData( DataHelper data, float decl, float asl_factor, boolean ellipsoid_altitude, boolean by_component )
+  {
+    if ( mFixeds == null ) mFixeds = data.selectAllFixed( mSid, TDStatus.NORMAL );
+    if ( mFixeds.size() == 0 ) return null;
+    String key = decl + " " + asl_factor + " " + ellipsoid_altitude + " " + by_component;
+    List<DistoXNum> nums = mGeoNums.get( key );
+    if ( nums == null ) {
+      nums = by_component ? TDExporter.reduceGeolocalizedComponents( mFixeds, mShots, decl, asl_factor, ellipsoid_altitude )
+                          : TDExporter.reduceGeolocalizedData( mFixeds, mShots, decl, asl_factor, ellipsoid_altitude );
+      mGeoNums.put( key, nums );
+    }
+    return nums;
+  }
+}
@@ -0,0 +1,107 @@
+/* @file SurveyExportPipeline.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid export of the survey data in several formats
+ *
+ * The survey data are loaded once in an export model, which is shared by the exports of all the formats.
+ * The formats are written by a bounded number of worker threads, or sequentially,
+ * and the time of each format is logged.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+// import android.util.Log;
+
+class SurveyExportPipeline
+{
+  private static final int MAX_WORKERS = 2;
+
+  private final long mSid;
+  private final SurveyInfo mInfo;
+  private final DataHelper mData;
+  private final String mSurvey;
+  private final Device mDevice;   // only for SVX
+  private final int[] mTypes;     // export types
+  private final String[] mFilenames;
+  private final long[] mMillis;   // export time of each type [ms]
+  private long mModelMillis = 0;  // model load time [ms]
+  private long mTotalMillis = 0;  // total export time [ms]
+
+  SurveyExportPipeline( long sid, SurveyInfo info, DataHelper data, String survey, Device device, int[] types )
+  {
+    mSid    = sid;
+    mInfo   = info.copy();
+    mData   = data;
+    mSurvey = survey;
+    mDevice = device;
+    mTypes  = types;
+    mFilenames = new String[ types.length ];
+    mMillis    = new long[ types.length ];
+  }
+
+  /** export the survey in all the formats
+   * @param parallel   whether to write the formats concurrently
+   * @return true if all the formats have been exported
+   */
+  boolean run( boolean parallel )
+  {
+    long time = System.currentTimeMillis();
+    final SurveyExportModel model = new SurveyExportModel( mSid, mData );
+    mModelMillis = System.currentTimeMillis() - time;
+    TDLog.Log( TDLog.LOG_IO, "export model: shots " + model.mShots.size() + " time " + mModelMillis + " ms" );
+
+    final int nr = mTypes.length;
+    TDWorkers.run( nr, ( parallel ? MAX_WORKERS : 1 ), new TDWorkers.Job() {
+      public void run( int k ) { export( model, k ); }
+    } );
+    mTotalMillis = System.currentTimeMillis() - time;
+    TDLog.Log( TDLog.LOG_IO, "export " + nr + " formats: time " + mTotalMillis + " ms" );
+
+    boolean ret = true;
+    for ( int k = 0; k < nr; ++k ) {
+      if ( mFilenames[k] == null || mFilenames[k].length() == 0 ) ret = false;
+    }
+    return ret;
+  }
+
+  // export the k-th format with the model
+  private void export( SurveyExportModel model, int k )
+  {
+    long time = System.currentTimeMillis();
+    mFilenames[k] = SaveDataFileTask.exportSurvey( mTypes[k], mSid, mInfo, mData, mSurvey, mDevice, model );
+    mMillis[k] = System.currentTimeMillis() - time;
+    TDLog.Log( TDLog.LOG_IO, "export type " + mTypes[k] + " file " + mFilenames[k] + " time " + mMillis[k] + " ms" );
+  }
+
+  /** @return the filename of the k-th format (null on failure)
+   * @param k   index of the format
+   */
+  String getFilename( int k ) { return mFilenames[k]; }
+
+  /** @return the export time of the k-th format [ms]
+   * @param k   index of the format
+   */
+  long getMillis( int k ) { return mMillis[k]; }
+
+  /** @return the number of formats
+   */
+  int size() { return mTypes.length; }
+
+  /** @return the export type of the k-th format
+   * @param k   index of the format
+   */
+  int getType( int k ) { return mTypes[k]; }
+
+  /** @return the model load time [ms]
+   */
+  long getModelMillis() { return mModelMillis; }
+
+  /** @return the total export time, including the model load [ms]
+   */
+  long getTotalMillis() { return mTotalMillis; }
+}
@@ -364,7 +364,7 @@ public class SurveyWindow extends Activity
   {
     while ( ! TopoDroidApp.mEnableZip ) Thread.yield();
 
-    (new ExportZipTask( getApplicationContext(), mApp )).execute();
+    (new ExportZipTask( getApplicationContext(), mApp, new int[] { TDSetting.mExportShotsFormat } )).execute();
     // TopoDroidApp.doExportDataSync( TDSetting.mExportShotsFormat );
     // Archiver archiver = new Archiver( );
     // if ( archiver.archive( mApp ) ) {
@@ -57,7 +57,49 @@ class TDExporter
   private static final String   therion_flags_surface       = "   flags surface\n";
   private static final String   therion_flags_not_surface   = "   flags not surface\n";
 
-  private static void checkShotsClino( List<DBlock> list )
+  // export model of the thread, set by SaveDataFileTask.exportSurvey for the duration of an export
+  private static final ThreadLocal< SurveyExportModel > mExportModel = new ThreadLocal<>();
+
+  /** set the export model of the current thread
+   * @param model   export model (null to read the database)
+   * @note to be called only by SaveDataFileTask.exportSurvey, which resets it after the export
+   */
+  static void setExportModel( SurveyExportModel model ) { mExportModel.set( model ); }
+
+  // @return the export model of the current thread for the survey, or null
+  private static SurveyExportModel getExportModel( long sid )
+  {
+    SurveyExportModel model = mExportModel.get();
+    return ( model != null && model.mSid == sid )? model : null;
+  }
+
+  // @return the normal export shots, with the clino set in diving mode
+  private static List<DBlock> getExportShots( long sid, DataHelper data )
+  {
+    SurveyExportModel model = getExportModel( sid );
+    if ( model != null ) return model.mShots;
+    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
+    checkShotsClino( list );
+    return list;
+  }
+
+  // @return the check export shots
+  private static List<DBlock> getExportCheckShots( long sid, DataHelper data )
+  {
+    SurveyExportModel model = getExportModel( sid );
+    if ( model != null ) return model.mChecks;
+    return data.selectAllExportShots( sid, TDStatus.CHECK );
+  }
+
+  // @return the reduction of the normal export shots from a station, without declination
+  private static DistoXNum getExportNum( long sid, List<DBlock> list, String start )
+  {
+    SurveyExportModel model = getExportModel( sid );
+    if ( model != null ) return model.getNum( start );
+    return new DistoXNum( list, start, null, null, 0.0f, null ); // no declination, null formatClosure
+  }
+
+  static void checkShotsClino( List<DBlock> list )
   {
     if ( TDInstance.datamode == SurveyInfo.DATAMODE_DIVING ) {
       for ( DBlock blk : list ) {
@@ -215,9 +257,8 @@ class TDExporter
     //   }
     // }
 
-    List<DBlock> dlist = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    List<DBlock> clist = data.selectAllExportShots( sid, TDStatus.CHECK );
-    checkShotsClino( dlist );
+    List<DBlock> dlist = getExportShots( sid, data );
+    List<DBlock> clist = getExportCheckShots( sid, data );
 
     List< FixedInfo > fixed = data.selectAllFixed( sid, TDStatus.NORMAL );
     // List< PlotInfo > plots  = data.selectAllPlots( sid, TDStatus.NORMAL );
@@ -534,14 +575,30 @@ class TDExporter
   static private final float EARTH_RADIUS1 = (float)(6378137 * Math.PI / 180.0f); // semimajor axis [m]
   static private final float EARTH_RADIUS2 = (float)(6356752 * Math.PI / 180.0f);
 
-  static private List<DistoXNum> getGeolocalizedData( long sid, DataHelper data, float decl, float asl_factor, boolean ellipsoid_altitude )
+  // @param by_component  whether to reduce each connected component once, instead of once for each fixed station
+  static private List<DistoXNum> getGeolocalizedData( long sid, DataHelper data, float decl, float asl_factor, boolean ellipsoid_altitude,
+                                                      boolean by_component )
   {
+    SurveyExportModel model = getExportModel( sid );
+    if ( model != null ) return model.getGeolocalizedData( data, decl, asl_factor, ellipsoid_altitude, by_component );
     List< FixedInfo > fixeds = data.selectAllFixed( sid, 0 );
     // Log.v("DistoX", "get geoloc. data. Decl " + decl + " fixeds " + fixeds.size() );
     if ( fixeds.size() == 0 ) return null;
+    List<DBlock> shots_data = data.selectAllExportShots( sid, 0 );
+    return by_component ? reduceGeolocalizedComponents( fixeds, shots_data, decl, asl_factor, ellipsoid_altitude )
+                        : reduceGeolocalizedData( fixeds, shots_data, decl, asl_factor, ellipsoid_altitude );
+  }
 
+  /** reduce the shots from each fixed station, and geolocalize the reductions
+   * @param fixeds     fixed stations
+   * @param shots_data export shots
+   * @param decl       declination
+   * @param asl_factor altitude factor
+   * @param ellipsoid_altitude whether to use the ellipsoid altitude
+   */
+  static List<DistoXNum> reduceGeolocalizedData( List< FixedInfo > fixeds, List<DBlock> shots_data, float decl, float asl_factor, boolean ellipsoid_altitude )
+  {
     List<DistoXNum> nums = new ArrayList<DistoXNum>();
-    List<DBlock> shots_data = data.selectAllExportShots( sid, 0 );
     FixedInfo origin = null;
     for ( FixedInfo fixed : fixeds ) {
       DistoXNum num = new DistoXNum( shots_data, fixed.name, null, null, decl, null ); // null formatClosure
@@ -555,6 +612,121 @@ class TDExporter
     return nums;
   }
 
+  static private final int MAX_REDUCTION_WORKERS = 2;
+
+  /** reduce each connected component of the shots once, from its first fixed station, and geolocalize the reduction
+   * @param fixeds     fixed stations
+   * @param shots_data export shots
+   * @param decl       declination
+   * @param asl_factor altitude factor
+   * @param ellipsoid_altitude whether to use the ellipsoid altitude
+   * @return a geolocalized reduction for each fixed station with legs, as reduceGeolocalizedData
+   *
+   * The other fixed stations of a component do not make a reduction, because it would be
+   * the same reduction, only shifted: they get a copy of the reduction translated to their station.
+   * Each reduction is made with the shots of its component only, so that the reductions of
+   * different components do not share shots, and they are made concurrently.
+   */
+  static List<DistoXNum> reduceGeolocalizedComponents( List< FixedInfo > fixeds, List<DBlock> shots_data,
+                         final float decl, final float asl_factor, final boolean ellipsoid_altitude )
+  {
+    // connected components of the legs
+    HashMap< String, String > parent = new HashMap<>();
+    for ( DBlock blk : shots_data ) {
+      if ( ! ( blk.isMainLeg() || blk.isBackLeg() ) ) continue;
+      if ( blk.mFrom == null || blk.mFrom.length() == 0 || blk.mTo == null || blk.mTo.length() == 0 ) continue;
+      String r1 = findRoot( parent, blk.mFrom );
+      String r2 = findRoot( parent, blk.mTo );
+      if ( ! r1.equals( r2 ) ) parent.put( r1, r2 );
+    }
+
+    // the fixed stations of each component: the first one is the start of the reduction
+    final ArrayList< ArrayList<FixedInfo> > starts = new ArrayList<>();
+    final ArrayList< ArrayList<DBlock> > blocks = new ArrayList<>();
+    HashMap< String, ArrayList<DBlock> > components = new HashMap<>();
+    HashMap< String, ArrayList<FixedInfo> > component_fixeds = new HashMap<>();
+    for ( FixedInfo fixed : fixeds ) {
+      if ( ! parent.containsKey( fixed.name ) ) continue; // no legs at the fixed station
+      String root = findRoot( parent, fixed.name );
+      ArrayList<FixedInfo> fixed_list = component_fixeds.get( root );
+      if ( fixed_list != null ) {  // component already reduced
+        fixed_list.add( fixed );
+        continue;
+      }
+      ArrayList<DBlock> component = new ArrayList<>();
+      fixed_list = new ArrayList<>();
+      fixed_list.add( fixed );
+      components.put( root, component );
+      component_fixeds.put( root, fixed_list );
+      starts.add( fixed_list );
+      blocks.add( component );
+    }
+    if ( starts.size() == 0 ) return new ArrayList<DistoXNum>();
+
+    // shots of each component, in order: a block without stations goes with the previous block
+    ArrayList<DBlock> component = null;
+    for ( DBlock blk : shots_data ) {
+      String st = ( blk.mFrom != null && blk.mFrom.length() > 0 )? blk.mFrom
+                : ( blk.mTo   != null && blk.mTo.length()   > 0 )? blk.mTo : null;
+      if ( st != null ) {
+        component = parent.containsKey( st )? components.get( findRoot( parent, st ) ) : null;
+      }
+      if ( component != null ) component.add( blk );
+    }
+
+    final int nr = starts.size();
+    final List<List<DistoXNum>> nums = new ArrayList<>();
+    for ( int k = 0; k < nr; ++k ) nums.add( null );
+    TDWorkers.run( nr, MAX_REDUCTION_WORKERS, new TDWorkers.Job() {
+      public void run( int k )
+      {
+        nums.set( k, reduceGeolocalizedComponent( blocks.get( k ), starts.get( k ), decl, asl_factor, ellipsoid_altitude ) );
+      }
+    } );
+    List<DistoXNum> ret = new ArrayList<DistoXNum>();
+    for ( List<DistoXNum> component_nums : nums ) ret.addAll( component_nums );
+    return ret;
+  }
+
+  // @return the geolocalized reductions of a component, one for each fixed station (empty if it has no shots)
+  // @param fixeds   fixed stations of the component: the first is the start of the reduction
+  static private List<DistoXNum> reduceGeolocalizedComponent( List<DBlock> shots, List<FixedInfo> fixeds, float decl, float asl_factor, boolean ellipsoid_altitude )
+  {
+    List<DistoXNum> ret = new ArrayList<DistoXNum>();
+    FixedInfo start = fixeds.get( 0 );
+    DistoXNum num = new DistoXNum( shots, start.name, null, null, decl, null ); // null formatClosure
+    if ( num.getShots().size() == 0 ) return ret;
+    ret.add( num );
+    // the copies are made before the reduction is geolocalized
+    for ( int k = 1; k < fixeds.size(); ++k ) {
+      NumStation origin = num.getStation( fixeds.get( k ).name );
+      ret.add( ( origin == null )? null : num.translatedCopy( origin ) );
+    }
+    makeGeolocalizedData( num, start, asl_factor, ellipsoid_altitude );
+    for ( int k = 1; k < fixeds.size(); ++k ) {
+      if ( ret.get( k ) != null ) makeGeolocalizedData( ret.get( k ), fixeds.get( k ), asl_factor, ellipsoid_altitude );
+    }
+    while ( ret.remove( null ) ) { }
+    return ret;
+  }
+
+  // @return the root of the component of a station (union-find with path halving)
+  static private String findRoot( HashMap< String, String > parent, String st )
+  {
+    String p = parent.get( st );
+    if ( p == null ) {
+      parent.put( st, st );
+      return st;
+    }
+    while ( ! p.equals( st ) ) {
+      String pp = parent.get( p );
+      parent.put( st, pp );
+      st = p;
+      p  = pp;
+    }
+    return st;
+  }
+
   static private void makeGeolocalizedData( DistoXNum num, FixedInfo origin, float asl_factor, boolean ellipsoid_altitude )
   {
 
@@ -617,7 +789,7 @@ class TDExporter
     final String coordinates3 = "    <coordinates>%f,%f,%f</coordinates>\n";
     final String coordinates6 = "    %f,%f,%f %f,%f,%f\n";
     // Log.v("DistoX", "export as KML " + filename );
-    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), 1.0f, false ); // false: Geoid altitude
+    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), 1.0f, false, true ); // false: Geoid altitude
     if ( nums == null || nums.size() == 0 ) {
       TDLog.Error( "Failed KML export: no geolocalized station");
       return "";
@@ -751,7 +923,7 @@ class TDExporter
   // @param filename filepath without extension 
   static String exportSurveyAsShp( long sid, DataHelper data, SurveyInfo info, String filename )
   {
-    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), 1.0f, false ); // false: Geoid altitude
+    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), 1.0f, false, true ); // false: Geoid altitude
     if ( nums == null || nums.size() == 0 ) {
       TDLog.Error( "Failed SHP export: no geolocalized station");
       return "";
@@ -827,7 +999,7 @@ class TDExporter
     final String coords  = "\"coordinates\": ";
     final String feature = "\"Feature\"";
     // Log.v("DistoX", "export as KML " + filename );
-    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), 1.0f, true ); // true: ellipsoid altitude
+    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), 1.0f, true, true ); // true: ellipsoid altitude
     if ( nums == null || nums.size() == 0 ) {
       TDLog.Error( "Failed GeoJSON export: no geolocalized station");
       return "";
@@ -910,7 +1082,7 @@ class TDExporter
   static String exportSurveyAsPlt( long sid, DataHelper data, SurveyInfo info, String filename )
   {
     // Log.v("DistoX", "export as trackfile: " + filename );
-    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), TDUtil.M2FT, false );
+    List<DistoXNum> nums = getGeolocalizedData( sid, data, info.getDeclination(), TDUtil.M2FT, false, false ); // a track for each fixed station
     if ( nums == null || nums.size() == 0 ) {
       TDLog.Error( "Failed PLT export: no geolocalized station");
       return "";
@@ -1003,8 +1175,7 @@ class TDExporter
       TDLog.Error( "exportSurveyAsTop date parse error " + info.date );
     }
 
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     long extend = 0;  // current extend
     DBlock ref_item = null;
     int fromId, toId;
@@ -1105,9 +1276,8 @@ class TDExporter
     // String uls = TDSetting.mUnitLengthStr;
     // String uas = TDSetting.mUnitAngleStr;
 
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    List<DBlock> clist = data.selectAllExportShots( sid, TDStatus.CHECK );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
+    List<DBlock> clist = getExportCheckShots( sid, data );
 
     List< FixedInfo > fixed = data.selectAllFixed( sid, TDStatus.NORMAL );
     List< PlotInfo > plots  = data.selectAllPlots( sid, TDStatus.NORMAL );
@@ -1461,8 +1631,7 @@ class TDExporter
     String uls = ( ul < 1.01f )? "meters"  : "feet"; // FIXME
     String uas = ( ua < 1.01f )? "degrees" : "grads";
 
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     List< FixedInfo > fixed = data.selectAllFixed( sid, TDStatus.NORMAL );
     List<DBlock> st_blk = new ArrayList<>(); // blocks with from station (for LRUD)
 
@@ -1629,7 +1798,7 @@ class TDExporter
         }
         if ( from != null ) {
           boolean do_header = true;
-          DistoXNum num = new DistoXNum( list, from, null, null, 0.0f, null ); // no declination, null formatClosure
+          DistoXNum num = getExportNum( sid, list, from );
           List<NumBranch> branches = num.makeBranches( true );
           // Log.v("DistoX", "Station " + from + " shots " + num.shotsNr() + " splays " + num.splaysNr()
           //               + " branches " + branches.size() );
@@ -1825,8 +1994,7 @@ class TDExporter
     char sep = TDSetting.mCsvSeparator;
     String newline = TDSetting.mSurvexEol;
     // Log.v("DistoX", "export as CSV: " + filename );
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     // List< FixedInfo > fixed = data.selectAllFixed( sid, TDStatus.NORMAL );
     float ul = TDSetting.mUnitLength;
     float ua = TDSetting.mUnitAngle;
@@ -2265,8 +2433,7 @@ class TDExporter
   static String exportSurveyAsDat( long sid, DataHelper data, SurveyInfo info, String filename )
   {
     // Log.v("DistoX", "export as compass: " + filename + " swap LR " + TDSetting.mSwapLR );
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     try {
       // TDLog.Log( TDLog.LOG_IO, "export Compass " + filename );
       TDPath.checkPath( filename );
@@ -2429,8 +2596,7 @@ class TDExporter
   {
     int trip = 1;
     int code = 1;
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     // Log.v("DistoX", "export as TopoRobot: " + filename + " data " + list.size() );
     char[] line = new char[ TRB_LINE_LENGTH ];
     try {
@@ -2671,8 +2837,7 @@ class TDExporter
   static String exportSurveyAsSur( long sid, DataHelper data, SurveyInfo info, String filename )
   {
     // Log.v("DistoX", "export as winkarst: " + filename + " swap LR " + TDSetting.mSwapLR );
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     try {
       // TDLog.Log( TDLog.LOG_IO, "export WinKarst " + filename );
       TDPath.checkPath( filename );
@@ -2814,8 +2979,7 @@ class TDExporter
                 TDUtil.getDateString("yyyy/MM/dd"), TopoDroidApp.VERSION );
       pw.format("  </General>\n");
 
-      List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-      checkShotsClino( list );
+      List<DBlock> list = getExportShots( sid, data );
       TRobot trobot = new TRobot( list );
       // trobot.dump(); // DEBUG
 
@@ -2987,8 +3151,7 @@ class TDExporter
 
       List< FixedInfo > fixed = data.selectAllFixed( sid, TDStatus.NORMAL );
       boolean first = true; // first station
-      List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-      checkShotsClino( list );
+      List<DBlock> list = getExportShots( sid, data );
       // int extend = 1;
       AverageLeg leg = new AverageLeg(0);
       DBlock ref_item = null;
@@ -3145,8 +3308,7 @@ class TDExporter
 
       pw.format("#Units %s A=%s\n", uls, uas );
 
-      List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-      checkShotsClino( list );
+      List<DBlock> list = getExportShots( sid, data );
       // int extend = 1;
       AverageLeg leg = new AverageLeg(0);
       DBlock ref_item = null;
@@ -3385,8 +3547,7 @@ class TDExporter
       pw.format("#from_to%s", eol);
       pw.format("#R0%s", eol);
 
-      List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-      checkShotsClino( list );
+      List<DBlock> list = getExportShots( sid, data );
       AverageLeg leg = new AverageLeg(0);
       DBlock ref_item = null;
 
@@ -3538,8 +3699,7 @@ class TDExporter
       pw.format("Survey data\n");
       pw.format("From\tTo\tLength\tAzimuth\tVertical\tLabel\tLeft\tRight\tUp\tDown\tNote\n");
 
-      List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-      checkShotsClino( list );
+      List<DBlock> list = getExportShots( sid, data );
 
       AverageLeg leg = new AverageLeg(0);
       DBlock ref_item = null;
@@ -3845,8 +4005,7 @@ class TDExporter
   static String exportSurveyAsTro( long sid, DataHelper data, SurveyInfo info, String filename )
   {
     // Log.v("DistoX", "export as visualtopo: " + filename );
-    List<DBlock> list = data.selectAllExportShots( sid, TDStatus.NORMAL );
-    checkShotsClino( list );
+    List<DBlock> list = getExportShots( sid, data );
     List< FixedInfo > fixed = data.selectAllFixed( sid, TDStatus.NORMAL );
     try {
       // TDLog.Log( TDLog.LOG_IO, "export VisualTopo " + filename );
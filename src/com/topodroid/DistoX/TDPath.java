@@ -31,6 +31,8 @@ class TDPath
 {
   final static int NR_BACKUP = 5;
   final static String BCK_SUFFIX = ".bck";
+  final static String JRN_SUFFIX = ".jrn"; // tdr journal
+  final static String TDX_SUFFIX = ".tdx"; // tdr index
 
   final static String CSN = ".csn";  // CaveSniper
   final static String CSV = ".csv";
@@ -530,6 +532,8 @@ class TDPath
     File file1;
     File file2;
     TDUtil.renameFile( old_tdr, new_tdr );
+    TDUtil.renameFile( old_tdr + JRN_SUFFIX, new_tdr + JRN_SUFFIX );
+    TDUtil.renameFile( old_tdr + TDX_SUFFIX, new_tdr + TDX_SUFFIX );
     old_tdr = old_tdr + TDPath.BCK_SUFFIX;
     new_tdr = new_tdr + TDPath.BCK_SUFFIX;
     for ( int i=0; ; ++i ) {
@@ -627,6 +631,8 @@ class TDPath
   static void deletePlotFileWithBackups( String filename )
   {
     TDUtil.deleteFile( filename );
+    TDUtil.deleteFile( filename + JRN_SUFFIX );
+    TDUtil.deleteFile( filename + TDX_SUFFIX );
     String filepath = filename + TDPath.BCK_SUFFIX;
     TDUtil.deleteFile( filepath );
     for ( int i = 0; i < NR_BACKUP; ++i ) {
@@ -644,6 +650,8 @@ class TDPath
       // deleteBackups( filename + BCK_SUFFIX );
       String filename = getSurveyPlotTdrFile( survey, p.name );
       TDUtil.deleteFile( filename );
+      TDUtil.deleteFile( filename + JRN_SUFFIX );
+      TDUtil.deleteFile( filename + TDX_SUFFIX );
       deleteBackups( filename + BCK_SUFFIX );
       TDUtil.deleteFile( getSurveyPlotCsxFile( survey, p.name ) );
       TDUtil.deleteFile( getSurveyPlotDxfFile( survey, p.name ) );
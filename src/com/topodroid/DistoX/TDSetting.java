@@ -289,8 +289,9 @@ class TDSetting
 
   static final int LOOP_NONE      = 0;
   static final int LOOP_CYCLES    = 1;
+  static final int LOOP_WEIGHTED  = 2;
   static final int LOOP_TRIANGLES = 3;
-  static int mLoopClosure = LOOP_NONE;      // loop closure: 0 none, 1 normal, 3 triangles
+  static int mLoopClosure = LOOP_NONE;      // loop closure: 0 none, 1 normal, 2 least squares, 3 triangles
   
   static final  String UNIT_LENGTH         = "meters";
   static final  String UNIT_ANGLE          = "degrees";
@@ -377,6 +378,8 @@ class TDSetting
   static boolean mAutoXSections   = true;  // auto save/export xsections with section points
   static boolean mSavedStations   = false;
   // static boolean mPlotCache       = true;  // default value
+  static int   mPlotCacheSize   = 8;     // max nr. of plots in the drawing managers cache
+  static int   mPlotCacheKB     = 16384; // max estimated memory of the drawing managers cache [kB]
   static float mDotRadius      = 5;
   static float mArrowLength    = 8;
 
@@ -566,6 +569,8 @@ class TDSetting
     mLoopClosure = loop_closure;
     if ( mLoopClosure == LOOP_CYCLES ) {
       if ( ! TDLevel.overAdvanced ) mLoopClosure = LOOP_NONE;
+    } else if ( mLoopClosure == LOOP_WEIGHTED ) {
+      if ( ! TDLevel.overAdvanced ) mLoopClosure = LOOP_NONE;
     } else if ( mLoopClosure == LOOP_TRIANGLES ) {
       if ( ! TDLevel.overExpert ) mLoopClosure = LOOP_NONE;
     }
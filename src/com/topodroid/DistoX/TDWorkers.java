@@ -0,0 +1,74 @@
+/* @file TDWorkers.java
+ *
+ * @author marco corvi
+ * @date nov 2019
+ *
+ * @brief TopoDroid bounded pool of worker threads for indexed jobs
+ *
+ * The jobs 0 .. nr-1 are taken in order by at most max_workers threads (bounded by the
+ * number of processors), and the caller waits for all of them.
+ * With a single worker the jobs run on the calling thread.
+ * --------------------------------------------------------
+ *  Copyright This software is distributed under GPL-3.0 or later
+ *  See the file COPYING.
+ * --------------------------------------------------------
+ */
+package com.topodroid.DistoX;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// import android.util.Log;
+
+class TDWorkers
+{
+  interface Job
+  {
+    /** run the k-th job
+     * @param k   index of the job
+     */
+    void run( int k );
+  }
+
+  /** @return the number of workers for a number of jobs
+   * @param nr          number of jobs
+   * @param max_workers max number of workers
+   */
+  static int workers( int nr, int max_workers )
+  {
+    return Math.min( nr, Math.max( 1, Math.min( max_workers, Runtime.getRuntime().availableProcessors() ) ) );
+  }
+
+  /** run the jobs and wait for them
+   * @param nr          number of jobs
+   * @param max_workers max number of workers
+   * @param job         job
+   */
+  static void run( final int nr, int max_workers, final Job job )
+  {
+    int nw = workers( nr, max_workers );
+    if ( nw <= 1 ) {
+      for ( int k = 0; k < nr; ++k ) job.run( k );
+      return;
+    }
+    final AtomicInteger next = new AtomicInteger( 0 );
+    Thread[] workers = new Thread[ nw ];
+    for ( int w = 0; w < nw; ++w ) {
+      workers[w] = new Thread() {
+        public void run()
+        {
+          while ( true ) {
+            int k = next.getAndIncrement();
+            if ( k >= nr ) break;
+            job.run( k );
+          }
+        }
+      };
+      workers[w].start();
+    }
+    for ( Thread worker : workers ) {
+      try {
+        worker.join();
+      } catch ( InterruptedException e ) { }
+    }
+  }
+}
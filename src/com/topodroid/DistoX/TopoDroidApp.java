@@ -1291,7 +1291,7 @@ public class TopoDroidApp extends Application
     }
   }
 
-  // called also by ShotWindow::updataBlockList
+  // full pass: the downloaded shots are named by StationNameEngine
   // @param list blocks whose stations need to be set in the DB
   //
   void assignStationsAll(  List<DBlock> list )
@@ -2093,4 +2093,19 @@ public class TopoDroidApp extends Application
       (new SaveDataFileTask( null, TDInstance.sid, info, mData, TDInstance.survey, TDInstance.device, exportType, false )).immed_exec();
     }
   }
+
+  // export the survey in several formats, loading the survey data once - called by zip archiver
+  // @param exportTypes  export types
+  // @param parallel     whether to write the formats concurrently
+  // @return the export pipeline, with the filename and the time of each format (null if there is nothing to export)
+  static SurveyExportPipeline doExportDataSync( int[] exportTypes, boolean parallel )
+  {
+    if ( TDInstance.sid < 0 || exportTypes.length == 0 ) return null;
+    SurveyInfo info = getSurveyInfo( );
+    if ( info == null ) return null;
+    TDLog.Log( TDLog.LOG_IO, "sync-export survey " + TDInstance.survey + " types " + exportTypes.length );
+    SurveyExportPipeline pipeline = new SurveyExportPipeline( TDInstance.sid, info, mData, TDInstance.survey, TDInstance.device, exportTypes );
+    pipeline.run( parallel );
+    return pipeline;
+  }
 }
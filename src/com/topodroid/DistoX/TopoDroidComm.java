@@ -112,6 +112,7 @@ class TopoDroidComm
             if ( toRead == -1 ) {
               doWork = false;
             } else {
+              mShotBatch.flush(); // no packet: insert the queued shots before sleeping
               // TDLog.Log( TDLog.LOG_COMM, "RF comm sleeping 1000 " );
               TDUtil.slowDown( TDSetting.mWaitConn, "RF comm thread sleep interrupt");
             }
@@ -132,6 +133,7 @@ class TopoDroidComm
         mProtocol.readPacket( true ); // start reading a packet
       }
       // TDLog.Log( TDLog.LOG_COMM, "RF comm thread run() exiting");
+      mShotBatch.flush();
       mCommThread = null;
 
       // FIXME_COMM
@@ -154,13 +156,9 @@ class TopoDroidComm
       // Log.v( "DistoXBLE", "Comm D PACKET " + d + " " + b + " " + c );
       // NOTE type=0 shot is DistoX-type
       long status = ( d > TDSetting.mMaxShotLength )? TDStatus.OVERSHOOT : TDStatus.NORMAL;
-      mLastShotId = TopoDroidApp.mData.insertDistoXShot( TDInstance.sid, -1L, d, b, c, r, DBlock.EXTEND_IGNORE, status, TDInstance.deviceAddress() );
+      // the shot is queued: the lister is notified when it is inserted
+      mLastShot = mShotBatch.add( TDInstance.sid, d, b, c, r, status, TDInstance.deviceAddress(), lister );
       if ( lister != null ) { // FIXME_LISTER sendMessage with mLastShotId only
-        Message msg = lister.obtainMessage( Lister.LIST_UPDATE );
-        Bundle bundle = new Bundle();
-        bundle.putLong( Lister.BLOCK_ID, mLastShotId );
-        msg.setData(bundle);
-        lister.sendMessage(msg);
         if ( TDInstance.deviceType() == Device.DISTO_A3 && TDSetting.mWaitData > 10 ) {
           TDUtil.slowDown( TDSetting.mWaitData );
         }
@@ -234,9 +232,9 @@ class TopoDroidComm
       double mag  = mProtocol.mMagnetic;
       double dip  = mProtocol.mDip;
       double roll = mProtocol.mRoll;
-      TDLog.Log( TDLog.LOG_COMM, "Comm V PACKET " + mLastShotId + " " + acc + " " + mag + " " + dip + " " + roll );
+      TDLog.Log( TDLog.LOG_COMM, "Comm V PACKET " + ( ( mLastShot != null )? mLastShot.id : -1 ) + " " + acc + " " + mag + " " + dip + " " + roll );
       if ( TDInstance.deviceType() == Device.DISTO_X310 ) {
-        TopoDroidApp.mData.updateShotAMDR( mLastShotId, TDInstance.sid, acc, mag, dip, roll );
+        if ( mLastShot != null ) mShotBatch.setAMDR( mLastShot, acc, mag, dip, roll );
         if ( TDSetting.mWaitData > 10 ) {
           TDUtil.slowDown( TDSetting.mWaitData );
         }
@@ -246,7 +244,8 @@ class TopoDroidComm
 
   protected CommThread mCommThread;
   boolean mHasG = false;
-  long mLastShotId;   // last shot id
+  ShotBatch.Shot mLastShot = null; // last shot (its id is set when it is inserted)
+  protected ShotBatch mShotBatch = new ShotBatch(); // downloaded shots, inserted in batches
 
   protected TopoDroidComm( TopoDroidApp app )
   {
@@ -308,6 +307,7 @@ class TopoDroidComm
   {
     // TDLog.Log( TDLog.LOG_COMM, "disconnect remote device ");
     cancelCommThread();
+    mShotBatch.close();
     closeProtocol();
   }
 
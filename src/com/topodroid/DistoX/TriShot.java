@@ -32,6 +32,7 @@ class TriShot
   boolean commented;
   int     backshot; // 0 forward, +1 sibling forward, -1 sibling backshot
   TriShot sibling;  // sibling shot with same stations
+  boolean removed;  // sibling removed from the temp-shot list
   ArrayList<DBlock> blocks;
   AverageLeg mAvgLeg;
   TriCluster cluster;
@@ -55,6 +56,7 @@ class TriShot
     commented = false;
     backshot  = 0;
     sibling = null;
+    removed = false;
     blocks = new ArrayList<>();
     blocks.add( blk );
     mAvgLeg = new AverageLeg( 0.0f ); // temporary shot do not consider declination
@@ -66,6 +68,14 @@ class TriShot
   double bearing() { return mAvgLeg.bearing(); } 
   double clino()   { return mAvgLeg.clino(); } 
 
+  /** key of the station pair, independent of the shot direction
+   */
+  String pairKey()
+  {
+    if ( from == null || to == null ) return null;
+    return ( from.compareTo( to ) <= 0 )? from + "\u0000" + to : to + "\u0000" + from;
+  }
+
   int   getIntExtend()   { return extend; }
   float getFloatExtend() { return extend + stretch; }
 